@@ -0,0 +1,30 @@
+#!/bin/bash
+# Compare benchmark throughput with the command log disabled and enabled
+# Usage: ./scripts/commandlog-benchmark.sh [benchmark] [extra ant args...]
+
+# Make "ant ... | tee" fail when ant does, not just when tee does
+set -o pipefail
+
+BENCHMARK=${1:-tm1}
+shift
+OUTPUT_DIR=${OUTPUT_DIR:-/tmp/commandlog-benchmark}
+RESULT_REGEX="Throughput:[[:space:]]*[0-9.]+ txn/s"
+
+mkdir -p $OUTPUT_DIR
+ant hstore-prepare -Dproject=$BENCHMARK || exit
+
+for enable in false true; do
+    output=$OUTPUT_DIR/$BENCHMARK-commandlog-$enable.log
+    ant hstore-benchmark \
+        -Dproject=$BENCHMARK \
+        -Dsite.commandlog_enable=$enable \
+        -Dsite.commandlog_dir=$OUTPUT_DIR/cmdlog \
+        "$@" | tee $output || exit
+done
+
+echo
+echo "$BENCHMARK Command Log Comparison"
+for enable in false true; do
+    result=`grep -Eo "$RESULT_REGEX" $OUTPUT_DIR/$BENCHMARK-commandlog-$enable.log | tail -n 1 | grep -Eo "[0-9]+\.[0-9]+"`
+    printf "  commandlog_enable=%-5s  %s txn/s\n" $enable ${result:-???}
+done
@@ -14,6 +14,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.collections15.CollectionUtils;
 import org.apache.commons.collections15.map.ListOrderedMap;
@@ -259,7 +260,7 @@ public abstract class CatalogUtil extends org.voltdb.utils.CatalogUtil {
 
 	}
 
-	private static final Map<Database, CatalogUtil.Cache> CACHE = new HashMap<Database, CatalogUtil.Cache>();
+	private static final Map<Database, CatalogUtil.Cache> CACHE = new ConcurrentHashMap<Database, CatalogUtil.Cache>();
 
 	/**
 	 * Get the Cache handle for the Database catalog object If one doesn't exist
@@ -114,6 +114,14 @@ public class DesignerHints implements Cloneable, JSONSerializable {
     public Integer limit_back_tracks = null;
     public double back_tracks_multiplier = 1.01;
 
+    /**
+     * The number of threads to use in the branch-and-bound search. If this is
+     * greater than one, then the subtrees for the first table in the search
+     * are traversed in parallel. Each thread uses its own copy of the catalog
+     * and cost model, but they all prune with the same best solution.
+     */
+    public int search_threads = 1;
+
     /**
      * The amount of memory available to each partition
      */
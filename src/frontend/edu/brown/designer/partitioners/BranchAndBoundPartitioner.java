@@ -10,7 +10,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.collections15.CollectionUtils;
 import org.apache.commons.collections15.map.ListOrderedMap;
@@ -25,6 +29,7 @@ import org.voltdb.catalog.Table;
 import org.voltdb.types.TimestampType;
 import org.voltdb.utils.Pair;
 
+import edu.brown.catalog.CatalogCloner;
 import edu.brown.catalog.CatalogKey;
 import edu.brown.catalog.CatalogUtil;
 import edu.brown.catalog.special.MultiColumn;
@@ -32,6 +37,7 @@ import edu.brown.catalog.special.NullProcParameter;
 import edu.brown.catalog.special.ReplicatedColumn;
 import edu.brown.catalog.special.VerticalPartitionColumn;
 import edu.brown.costmodel.AbstractCostModel;
+import edu.brown.costmodel.TimeIntervalCostModel;
 import edu.brown.designer.AccessGraph;
 import edu.brown.designer.Designer;
 import edu.brown.designer.DesignerHints;
@@ -42,6 +48,7 @@ import edu.brown.designer.partitioners.plan.PartitionPlan;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.statistics.TableStatistics;
+import edu.brown.utils.ClassUtil;
 import edu.brown.utils.MathUtil;
 import edu.brown.utils.ProfileMeasurement;
 import edu.brown.utils.StringUtil;
@@ -244,12 +251,25 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
     // DATA MEMBERS
     // --------------------------------------------------------------------------------------------
 
-    protected StateVertex best_vertex = null;
+    protected volatile StateVertex best_vertex = null;
     protected StateVertex upper_bounds_vertex = null;
     protected PartitionPlan upper_bounds_pplan = null;
     protected final Map<CatalogType, WorkloadFilter> traversal_filters = new HashMap<CatalogType, WorkloadFilter>();
     protected TraverseThread thread = null;
 
+    /**
+     * The TraverseThreads for a parallel search (see DesignerHints.search_threads)
+     */
+    protected final List<TraverseThread> workers = new ArrayList<TraverseThread>();
+
+    /**
+     * Search state that is shared by all of the TraverseThreads. The back
+     * track count is the total for the entire search and the halt reason is
+     * set by the first thread that stops so that the other ones stop too.
+     */
+    private final AtomicLong search_backtracks = new AtomicLong(0);
+    private final AtomicReference<HaltReason> search_halt_reason = new AtomicReference<HaltReason>();
+
     protected List<Table> table_visit_order = new ArrayList<Table>();
     protected List<Procedure> proc_visit_order = new ArrayList<Procedure>();
     protected AccessGraph agraph = null;
@@ -314,7 +334,9 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
      * @return
      */
     public Boolean wasHalted() {
-        if (this.thread != null) {
+        if (this.workers.isEmpty() == false) {
+            return (this.search_halt_reason.get() != null);
+        } else if (this.thread != null) {
             return (this.thread.halt_search);
         }
         return (null);
@@ -326,13 +348,17 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
      * @return
      */
     public HaltReason getLastHaltReason() {
-        if (this.thread != null)
+        if (this.workers.isEmpty() == false)
+            return (this.halt_reason);
+        else if (this.thread != null)
             return (this.thread.halt_reason);
         return (null);
     }
 
     public Long getLastBackTrackCount() {
-        if (this.thread != null)
+        if (this.workers.isEmpty() == false)
+            return (this.search_backtracks.get());
+        else if (this.thread != null)
             return (this.thread.backtrack_ctr);
         return (null);
     }
@@ -346,6 +372,35 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
         return (this.best_vertex);
     }
 
+    /**
+     * Replace the best solution with the given StateVertex if its cost is
+     * lower. This is the only place that the best solution gets changed
+     * during the search, so that the TraverseThreads in a parallel search
+     * never overwrite a better solution found by another thread.
+     * Returns true if the StateVertex is the new best solution.
+     * 
+     * @param hints
+     * @param state
+     * @return
+     */
+    protected synchronized boolean updateBestVertex(DesignerHints hints, StateVertex state) {
+        if (this.best_vertex.isStartVertex() == false && this.best_vertex.cost <= state.cost) {
+            return (false);
+        }
+        assert (this.best_vertex.cost > state.cost) : "Best=" + this.best_vertex.cost + ", Current=" + state.cost;
+        assert (this.upper_bounds_vertex.cost > state.cost) : "Upper=" + this.upper_bounds_vertex.cost + ", Current=" + state.cost;
+
+        if (debug.get()) {
+            LOG.debug("Old Solution:\n" + StringUtil.box(this.best_vertex.toString()));
+        }
+        this.best_vertex = state;
+
+        // Log new solution cost
+        if (hints.shouldLogSolutionCosts())
+            hints.logSolutionCost(state.cost, state.singlep_txns);
+        return (true);
+    }
+
     protected PartitionPlan createPartitionPlan(DesignerHints hints, StateVertex vertex, boolean validate, boolean useCatalog) {
         Map<String, String> catalogkey_map = vertex.getCatalogKeyMap();
         if (validate) {
@@ -457,24 +512,7 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
         // tables for our level in the search tree.
         if (debug.get())
             LOG.debug("Creating table specific data structures for the " + table_visit_order.size() + " traversal levels");
-        List<Table> filter_tables = new ArrayList<Table>();
-
-        // IMPORTANT: Add in any table that is not in the attributes list
-        for (Table catalog_tbl : info.catalog_db.getTables()) {
-            if (catalog_tbl.getSystable())
-                continue;
-            if (!table_visit_order.contains(catalog_tbl)) {
-                filter_tables.add(catalog_tbl);
-            }
-        } // FOR
-        if (debug.get())
-            LOG.debug("Tables to never filter: " + CatalogUtil.debug(filter_tables));
-        // Now construct all of the workload filters for this level of the
-        // traversal
-        for (Table catalog_tbl : table_visit_order) {
-            filter_tables.add(catalog_tbl);
-            this.traversal_filters.put(catalog_tbl, new WorkloadFilter(info.catalog_db, filter_tables));
-        } // FOR
+        this.traversal_filters.putAll(this.createTraversalFilters(info.catalog_db, table_visit_order));
 
         // (4) Lastly, we need to add the list Procedures that we are going to
         // need to select
@@ -537,6 +575,118 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
         this.best_vertex = StateVertex.getStartVertex(this.upper_bounds_vertex.getCost(), this.upper_bounds_vertex.getMemory());
     }
 
+    /**
+     * Construct the workload filters for each level of the traversal for the
+     * given list of tables
+     * 
+     * @param catalog_db
+     * @param table_visit_order
+     * @return
+     * @throws Exception
+     */
+    protected Map<CatalogType, WorkloadFilter> createTraversalFilters(Database catalog_db, List<Table> table_visit_order) throws Exception {
+        Map<CatalogType, WorkloadFilter> filters = new HashMap<CatalogType, WorkloadFilter>();
+        List<Table> filter_tables = new ArrayList<Table>();
+
+        // IMPORTANT: Add in any table that is not in the attributes list
+        for (Table catalog_tbl : catalog_db.getTables()) {
+            if (catalog_tbl.getSystable())
+                continue;
+            if (!table_visit_order.contains(catalog_tbl)) {
+                filter_tables.add(catalog_tbl);
+            }
+        } // FOR
+        if (debug.get())
+            LOG.debug("Tables to never filter: " + CatalogUtil.debug(filter_tables));
+        // Now construct all of the workload filters for this level of the
+        // traversal
+        for (Table catalog_tbl : table_visit_order) {
+            filter_tables.add(catalog_tbl);
+            filters.put(catalog_tbl, new WorkloadFilter(catalog_db, filter_tables));
+        } // FOR
+        return (filters);
+    }
+
+    /**
+     * Create a new instance of our cost model for the given catalog
+     * 
+     * @param catalog_db
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    protected AbstractCostModel createCostModel(Database catalog_db) {
+        AbstractCostModel cost_model = this.info.getCostModel();
+        // Special Case: TimeIntervalCostModel
+        if (cost_model instanceof TimeIntervalCostModel<?>) {
+            TimeIntervalCostModel<?> ti_cost_model = (TimeIntervalCostModel<?>) cost_model;
+            Class<? extends AbstractCostModel> inner_class = ti_cost_model.getCostModel(0).getClass();
+            return (new TimeIntervalCostModel<AbstractCostModel>(catalog_db, inner_class, ti_cost_model.getIntevalCount()));
+        }
+        return (ClassUtil.newInstance((Class<AbstractCostModel>) cost_model.getClass(), new Object[] { catalog_db }, new Class<?>[] { Database.class }));
+    }
+
+    /**
+     * Create the TraverseThreads for a parallel search. The search changes
+     * the partitioning attributes in the catalog as it goes, so every thread
+     * needs its own copy of the catalog along with its own AccessGraph, cost
+     * model, and workload filters for that copy. Returns null if the search
+     * cannot be split up.
+     * 
+     * @param hints
+     * @return
+     * @throws Exception
+     */
+    protected List<TraverseThread> createWorkers(final DesignerHints hints) throws Exception {
+        // The greedy search picks the best attribute at each level, so one
+        // thread has to look at all of them
+        if (hints.greedy_search) {
+            LOG.warn("Unable to use multiple search threads with greedy search");
+            return (null);
+        }
+        // VerticalPartitionColumns add new TableStatistics to the WorkloadStatistics
+        // that is shared by all of the threads
+        if (hints.enable_vertical_partitioning) {
+            LOG.warn("Unable to use multiple search threads with vertical partitioning");
+            return (null);
+        }
+        if (this.table_visit_order.isEmpty()) {
+            return (null);
+        }
+
+        List<TraverseThread> threads = new ArrayList<TraverseThread>();
+        for (int i = 0; i < hints.search_threads; i++) {
+            Database clone_db = CatalogCloner.cloneDatabase(this.info.catalog_db);
+            DesignerInfo clone_info = new DesignerInfo(clone_db, this.info.workload, this.info.stats);
+            clone_info.setNumIntervals(this.info.getNumIntervals());
+            clone_info.setCostModel(this.createCostModel(clone_db));
+
+            AccessGraph clone_agraph = new AccessGraph(clone_db);
+            for (Procedure catalog_proc : this.info.catalog_db.getProcedures()) {
+                if (this.info.workload.getTraces(catalog_proc).isEmpty() || this.designer.getGraphs(catalog_proc) == null)
+                    continue;
+                Procedure clone_proc = clone_db.getProcedures().get(catalog_proc.getName());
+                new AccessGraphGenerator(clone_info, clone_proc).generate(clone_agraph);
+            } // FOR
+            clone_agraph = AccessGraphGenerator.convertToSingleColumnEdges(clone_db, clone_agraph);
+
+            List<Table> clone_tables = new ArrayList<Table>();
+            for (Table catalog_tbl : this.table_visit_order) {
+                clone_tables.add(clone_db.getTables().get(catalog_tbl.getName()));
+            } // FOR
+            List<Procedure> clone_procs = new ArrayList<Procedure>();
+            for (Procedure catalog_proc : this.proc_visit_order) {
+                clone_procs.add(clone_db.getProcedures().get(catalog_proc.getName()));
+            } // FOR
+
+            TraverseThread t = new TraverseThread(clone_info, hints, this.best_vertex, clone_agraph, clone_tables, clone_procs);
+            t.setName(String.format("%s-%02d", BranchAndBoundPartitioner.class.getSimpleName(), i));
+            threads.add(t);
+        } // FOR
+        if (debug.get())
+            LOG.debug(String.format("Created %d search threads", threads.size()));
+        return (threads);
+    }
+
     // --------------------------------------------------------------------------------------------
     // SEARCH
     // --------------------------------------------------------------------------------------------
@@ -559,6 +709,7 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
             m.put("Greedy Search", hints.greedy_search);
             m.put("Local Search Time", hints.limit_local_time);
             m.put("Back Track Limit", hints.limit_back_tracks);
+            m.put("Search Threads", hints.search_threads);
             m.put("Upper Bounds Cost", this.upper_bounds_vertex.getCost());
             m.put("Upper Bounds Memory", this.upper_bounds_vertex.getMemory());
             m.put("Number of Partitions", CatalogUtil.getNumberOfPartitions(info.catalog_db));
@@ -569,9 +720,27 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
             LOG.debug("Branch-and-Bound Status:\n" + StringUtil.formatMaps(m));
         }
 
-        this.thread = new TraverseThread(info, hints, this.best_vertex, this.agraph, this.table_visit_order, this.proc_visit_order);
-        thread.run(); // BLOCK
-        this.halt_reason = this.thread.halt_reason;
+        this.search_backtracks.set(0);
+        this.search_halt_reason.set(null);
+        this.workers.clear();
+        List<TraverseThread> threads = null;
+        if (hints.search_threads > 1) {
+            threads = this.createWorkers(hints);
+        }
+
+        boolean completed_search = true;
+        if (threads != null) {
+            this.workers.addAll(threads);
+            this.traverseParallel();
+            for (TraverseThread t : this.workers) {
+                completed_search = completed_search && t.completed_search;
+            } // FOR
+        } else {
+            this.thread = new TraverseThread(info, hints, this.best_vertex, this.agraph, this.table_visit_order, this.proc_visit_order);
+            thread.run(); // BLOCK
+            this.halt_reason = this.thread.halt_reason;
+            completed_search = this.thread.completed_search;
+        }
 
         PartitionPlan pplan = null;
 
@@ -593,7 +762,7 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
             this.setProcedureSinglePartitionFlags(pplan, hints);
         }
         // Make sure that we actually completed the search and didn't just abort
-        if (!thread.completed_search) {
+        if (!completed_search) {
             LOG.error("Failed to complete search successfully:\n" + pplan);
             assert (false);
         }
@@ -601,6 +770,37 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
         return (pplan);
     }
 
+    /**
+     * Run the search with all of the TraverseThreads in this.workers. Every
+     * candidate attribute for the first table is the root of a separate
+     * subtree that goes into a queue. Each thread keeps taking the next
+     * subtree off of the queue until it is empty, so a thread that finishes
+     * a small subtree will go help with the rest of the search.
+     * 
+     * @throws Exception
+     */
+    protected void traverseParallel() throws Exception {
+        assert (this.workers.isEmpty() == false);
+        Queue<String> queue = new ConcurrentLinkedQueue<String>(this.workers.get(0).getCandidateKeys(0));
+        if (debug.get())
+            LOG.debug(String.format("Splitting search into %d subtrees for %d threads", queue.size(), this.workers.size()));
+
+        for (TraverseThread t : this.workers) {
+            t.work_queue = queue;
+            t.start();
+        } // FOR
+        for (TraverseThread t : this.workers) {
+            t.join();
+        } // FOR
+        for (TraverseThread t : this.workers) {
+            if (t.error != null)
+                throw new RuntimeException("Failed to execute search in " + t.getName(), t.error);
+        } // FOR
+
+        HaltReason reason = this.search_halt_reason.get();
+        this.halt_reason = (reason != null ? reason : HaltReason.EXHAUSTED_SEARCH);
+    }
+
     /**
      * 
      */
@@ -618,6 +818,7 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
         private final Set<Table> previous_tables[];
 
         private final Set<Table> current_vertical_partitions = new HashSet<Table>();
+        private final Map<CatalogType, WorkloadFilter> traversal_filters;
 
         /**
          * Total number of catalog elements that we're going to search against
@@ -636,10 +837,19 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
 
         private Long halt_time;
         private boolean halt_time_local;
-        private boolean halt_search = false;
+        private volatile boolean halt_search = false;
         private HaltReason halt_reason = null;
         private boolean completed_search = false;
 
+        /**
+         * Parallel Search: The catalog keys of the attributes for the first
+         * element that still need to be searched and the one that we are
+         * currently searching below.
+         */
+        private Queue<String> work_queue = null;
+        private String root_attribute = null;
+        private Throwable error = null;
+
         /**
          * Constructor
          * 
@@ -681,6 +891,14 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
             try {
                 this.initializeTables();
                 this.initializeProcedures();
+
+                // We can only use the partitioner's workload filters if we are
+                // searching against the same catalog
+                if (this.info.catalog_db == BranchAndBoundPartitioner.this.info.catalog_db) {
+                    this.traversal_filters = BranchAndBoundPartitioner.this.traversal_filters;
+                } else {
+                    this.traversal_filters = createTraversalFilters(this.info.catalog_db, this.search_tables);
+                }
             } catch (Throwable ex) {
                 throw new RuntimeException("Failed to initialize BranchAndBound traverser!", ex);
             }
@@ -775,6 +993,33 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
             this.halt_search = true;
         }
 
+        /**
+         * Stop the search in this thread and let the other threads know that
+         * they need to stop too
+         * 
+         * @param reason
+         */
+        private void halt(HaltReason reason) {
+            this.halt_search = true;
+            this.halt_reason = reason;
+            BranchAndBoundPartitioner.this.search_halt_reason.compareAndSet(null, reason);
+        }
+
+        /**
+         * Return the catalog keys of the candidate attributes for the element
+         * at the given index in the search
+         * 
+         * @param idx
+         * @return
+         */
+        protected List<String> getCandidateKeys(int idx) {
+            List<String> keys = new ArrayList<String>();
+            for (CatalogType attribute : this.cp.getCandidateValues(this.all_search_elements.get(idx), CatalogType.class)) {
+                keys.add(CatalogKey.createKey(attribute));
+            } // FOR
+            return (keys);
+        }
+
         @Override
         public void run() {
             Pair<TimestampType, Boolean> p = hints.getNextStopTime();
@@ -794,10 +1039,24 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
 
             ProfileMeasurement timer = new ProfileMeasurement("timer").start();
             try {
-                this.traverse(start, 0);
+                if (this.work_queue == null) {
+                    this.traverse(start, 0);
+                } else {
+                    while (this.halt_search == false && (this.root_attribute = this.work_queue.poll()) != null) {
+                        this.traverse(start, 0);
+                    } // WHILE
+                }
             } catch (Exception ex) {
                 LOG.error("Failed to execute search", ex);
-                throw new RuntimeException(ex);
+                // The partitioner will throw the error after the other threads stop
+                if (this.work_queue != null) {
+                    this.error = ex;
+                    for (TraverseThread t : BranchAndBoundPartitioner.this.workers) {
+                        t.halt();
+                    } // FOR
+                } else {
+                    throw new RuntimeException(ex);
+                }
             } finally {
                 timer.stop();
                 if (this.halt_reason == null)
@@ -829,15 +1088,19 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
 
             if (this.halt_search == false) {
                 assert (this.halt_reason == null);
-                if (hints.limit_back_tracks != null && hints.limit_back_tracks >= 0 && this.backtrack_ctr > hints.limit_back_tracks) {
-                    LOG.info("Hit back track limit. Halting search [" + this.backtrack_ctr + "]");
-                    this.halt_search = true;
-                    this.halt_reason = HaltReason.BACKTRACK_LIMIT;
+                long backtracks = BranchAndBoundPartitioner.this.search_backtracks.get();
+                HaltReason other_reason = BranchAndBoundPartitioner.this.search_halt_reason.get();
+                if (hints.limit_back_tracks != null && hints.limit_back_tracks >= 0 && backtracks > hints.limit_back_tracks) {
+                    LOG.info("Hit back track limit. Halting search [" + backtracks + "]");
+                    this.halt(HaltReason.BACKTRACK_LIMIT);
                     return;
                 } else if (this.halt_time != null && System.currentTimeMillis() >= this.halt_time) {
-                    LOG.info("Hit time limit. Halting search [" + this.backtrack_ctr + "]");
-                    this.halt_search = true;
-                    this.halt_reason = (this.halt_time_local ? HaltReason.LOCAL_TIME_LIMIT : HaltReason.GLOBAL_TIME_LIMIT);
+                    LOG.info("Hit time limit. Halting search [" + backtracks + "]");
+                    this.halt(this.halt_time_local ? HaltReason.LOCAL_TIME_LIMIT : HaltReason.GLOBAL_TIME_LIMIT);
+                    return;
+                } else if (other_reason != null) {
+                    // Another thread in a parallel search stopped
+                    this.halt(other_reason);
                     return;
                 }
             } else
@@ -868,7 +1131,7 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
             VerticalPartitionColumn vp_col = null;
 
             // Get our workload filter for this level of the traversal
-            Filter filter = BranchAndBoundPartitioner.this.traversal_filters.get(current);
+            Filter filter = this.traversal_filters.get(current);
 
             // Descendant tables used for memory calculations
             // It's ok for it to be empty. That means we're searching against
@@ -895,6 +1158,13 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
             for (CatalogType attribute : current_attributes) {
                 assert (attribute != null) : "Null attribute key for " + current + ": " + current_attributes;
                 String attribute_key = CatalogKey.createKey(attribute);
+
+                // In a parallel search, we only look at the subtree that
+                // we were given for the first element
+                if (idx == 0 && this.root_attribute != null && this.root_attribute.equals(attribute_key) == false) {
+                    attribute_ctr++;
+                    continue;
+                }
                 if (trace.get())
                     LOG.trace("Evaluating " + attribute.fullName());
                 boolean memory_exceeded = false;
@@ -1092,24 +1362,13 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
                 // (b) Or the current solution has a cost less than the current
                 // best solution
                 if (complete_solution && memory_exceeded == false && cost < BranchAndBoundPartitioner.this.upper_bounds_vertex.cost
-                        && (BranchAndBoundPartitioner.this.best_vertex.isStartVertex() || cost < BranchAndBoundPartitioner.this.best_vertex.cost)) {
-                    assert (best_vertex.cost > state.cost) : "Best=" + best_vertex.cost + ", Current=" + state.cost;
-                    assert (upper_bounds_vertex.cost > state.cost) : "Upper=" + upper_bounds_vertex.cost + ", Current=" + state.cost;
-
-                    if (debug.get()) {
-                        LOG.debug("Old Solution:\n" + StringUtil.box(best_vertex.toString()));
-                    }
-                    BranchAndBoundPartitioner.this.best_vertex = state;
+                        && BranchAndBoundPartitioner.this.updateBestVertex(this.hints, state)) {
                     if (debug.get()) {
-                        LOG.debug("New Best Solution:\n" + StringUtil.box(best_vertex.toString()));
+                        LOG.debug("New Best Solution:\n" + StringUtil.box(state.toString()));
                         if (this.cost_model.hasDebugMessages())
                             LOG.debug("Last Cost Model Info:\n " + this.cost_model.getLastDebugMessage());
                     }
 
-                    // Log new solution cost
-                    if (hints.shouldLogSolutionCosts())
-                        hints.logSolutionCost(state.cost, state.singlep_txns);
-
                     // Check whether we found our target solution and need to
                     // stop
                     // Note that we only need to compare Tables, because the
@@ -1119,10 +1378,14 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
                     if (hints.target_plan != null) {
                         if (debug.get())
                             LOG.info("Comparing new best solution with target PartitionPlan");
-                        PartitionPlan new_plan = createPartitionPlan(hints, best_vertex, false, false);
+                        PartitionPlan new_plan = null;
+                        // The other search threads may be using the
+                        // partitioner's catalog at the same time
+                        synchronized (BranchAndBoundPartitioner.this) {
+                            new_plan = createPartitionPlan(hints, state, false, false);
+                        } // SYNCH
                         if (hints.target_plan.getTableEntries().equals(new_plan.getTableEntries())) {
-                            this.halt_search = true;
-                            this.halt_reason = HaltReason.FOUND_TARGET;
+                            this.halt(HaltReason.FOUND_TARGET);
                         }
                     }
 
@@ -1247,8 +1510,10 @@ public class BranchAndBoundPartitioner extends AbstractPartitioner {
                     catalog_proc.setPartitionparameter(-1);
                 } // FOR
             }
-            if (this.halt_search == false)
+            if (this.halt_search == false) {
                 this.backtrack_ctr++;
+                BranchAndBoundPartitioner.this.search_backtracks.incrementAndGet();
+            }
             return;
         }
 
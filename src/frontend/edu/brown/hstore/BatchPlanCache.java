@@ -0,0 +1,194 @@
+package edu.brown.hstore;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.catalog.Statement;
+
+import edu.brown.hstore.Hstoreservice.WorkFragment;
+
+/**
+ * A bounded cache of fully built BatchPlans that is shared by all of the BatchPlanners
+ * at an HStoreSite. Each entry holds the PlanGraph and the WorkFragments for a batch of
+ * Statements that touches a specific set of partitions. A batch that maps to the same
+ * partitions as an earlier one gets that batch's WorkFragments back without rebuilding
+ * the graph or any of the protobuf messages. A WorkFragment only contains fragment ids,
+ * dependency ids, and statement indexes. Each txn's parameters are sent separately, so
+ * the cached WorkFragments can be reused by any txn.
+ * <p>
+ * The cache is split into segments to cut down on lock contention. Each segment evicts
+ * its least recently used entry when it is full.
+ */
+public class BatchPlanCache {
+
+    private static final int NUM_SEGMENTS = 16;
+
+    /**
+     * Identifies a batch of Statements, the partition it is planned from, and the
+     * partitions that each of its PlanFragments need to go to
+     */
+    public static final class Key {
+        private final Statement stmts[];
+        private final int signature[];
+        private final int hash;
+
+        /**
+         * @param stmts
+         * @param signature the base partition plus the encoded partitions for each PlanFragment.
+         *                  This array is owned by the Key afterwards.
+         */
+        public Key(Statement stmts[], int signature[]) {
+            this.stmts = stmts;
+            this.signature = signature;
+            this.hash = 31 * Arrays.hashCode(stmts) + Arrays.hashCode(signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.hash);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return (true);
+            if ((obj instanceof Key) == false) return (false);
+            Key other = (Key)obj;
+            return (this.hash == other.hash &&
+                    Arrays.equals(this.signature, other.signature) &&
+                    Arrays.equals(this.stmts, other.stmts));
+        }
+    } // END CLASS
+
+    /**
+     * A cached plan. Nothing in here may be modified once it is in the cache.
+     */
+    protected static final class CachedPlan {
+        protected final BatchPlanner.PlanGraph graph;
+        protected final List<WorkFragment> fragments;
+
+        protected CachedPlan(BatchPlanner.PlanGraph graph, List<WorkFragment> fragments) {
+            this.graph = graph;
+            this.fragments = Collections.unmodifiableList(fragments);
+        }
+    } // END CLASS
+
+    private final class Segment extends LinkedHashMap<Key, CachedPlan> {
+        private static final long serialVersionUID = 1L;
+        private final int limit;
+
+        Segment(int limit) {
+            super(16, 0.75f, true);
+            this.limit = limit;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, CachedPlan> eldest) {
+            if (this.size() > this.limit) {
+                evictions.incrementAndGet();
+                return (true);
+            }
+            return (false);
+        }
+    } // END CLASS
+
+    private final int capacity;
+    private final Segment segments[];
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    /**
+     * Constructor
+     * @param capacity the maximum number of plans to keep in the cache
+     */
+    public BatchPlanCache(int capacity) {
+        assert(capacity > 0);
+        int num_segments = Math.min(NUM_SEGMENTS, capacity);
+        int limit = (int)Math.ceil(capacity / (double)num_segments);
+        this.capacity = limit * num_segments;
+        this.segments = new Segment[num_segments];
+        for (int i = 0; i < num_segments; i++) {
+            this.segments[i] = new Segment(limit);
+        } // FOR
+    }
+
+    private Segment getSegment(Key key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return (this.segments[(h & 0x7FFFFFFF) % this.segments.length]);
+    }
+
+    /**
+     * Returns the cached plan for the given key, or null if there isn't one
+     * @param key
+     * @return
+     */
+    protected CachedPlan get(Key key) {
+        Segment segment = this.getSegment(key);
+        CachedPlan entry = null;
+        synchronized (segment) {
+            entry = segment.get(key);
+        } // SYNCH
+        if (entry != null) this.hits.incrementAndGet();
+        else this.misses.incrementAndGet();
+        return (entry);
+    }
+
+    /**
+     * Store a newly built plan. If another thread already added a plan
+     * for the same key, then we keep that one.
+     * @param key
+     * @param entry
+     */
+    protected void put(Key key, CachedPlan entry) {
+        Segment segment = this.getSegment(key);
+        synchronized (segment) {
+            if (segment.containsKey(key) == false) segment.put(key, entry);
+        } // SYNCH
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size();
+            } // SYNCH
+        } // FOR
+        return (size);
+    }
+
+    public void clear() {
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                segment.clear();
+            } // SYNCH
+        } // FOR
+    }
+
+    public int getCapacity() {
+        return (this.capacity);
+    }
+    public long getHitCount() {
+        return (this.hits.get());
+    }
+    public long getMissCount() {
+        return (this.misses.get());
+    }
+    public long getEvictionCount() {
+        return (this.evictions.get());
+    }
+
+    @Override
+    public String toString() {
+        long h = this.hits.get();
+        long total = h + this.misses.get();
+        return String.format("%d / %d plans [hits=%d, misses=%d, evictions=%d, hitRate=%.1f%%]",
+                             this.size(), this.capacity, h, total - h, this.evictions.get(),
+                             (total > 0 ? (h / (double)total) * 100d : 0d));
+    }
+}
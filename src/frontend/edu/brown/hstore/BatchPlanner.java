@@ -59,6 +59,7 @@ import edu.brown.plannodes.PlanNodeUtil;
 import edu.brown.statistics.Histogram;
 import edu.brown.utils.CollectionUtil;
 import edu.brown.utils.PartitionEstimator;
+import edu.brown.utils.PartitionSet;
 import edu.brown.utils.ProfileMeasurement;
 import edu.brown.utils.StringUtil;
 import edu.uci.ics.jung.graph.DirectedSparseMultigraph;
@@ -89,7 +90,11 @@ public class BatchPlanner implements Loggable {
      */
     private static final AtomicInteger NEXT_DEPENDENCY_ID = new AtomicInteger(FIRST_DEPENDENCY_ID);
 
-    private static Set<Integer> CACHED_SINGLE_PARTITION_SETS[];
+    /**
+     * PartitionId -> PartitionSet with just that partition
+     * These are shared by all BatchPlanners, so they must never be modified
+     */
+    private static PartitionSet CACHED_SINGLE_PARTITION_SETS[];
 
     private static Map<Statement, Map<PlanFragment, Set<Integer>>> CACHED_FRAGMENT_PARTITION_MAPS[];
 
@@ -128,6 +133,9 @@ public class BatchPlanner implements Loggable {
 
     private Map<Statement, Map<PlanFragment, Set<Integer>>> cache_singlePartitionFragmentPartitions;
 
+    // SITE-WIDE PLAN CACHE
+    private BatchPlanCache plan_cache;
+
     // PROFILING
     private final ProfileMeasurement time_plan;
     private final ProfileMeasurement time_partitionEstimator;
@@ -230,6 +238,18 @@ public class BatchPlanner implements Loggable {
         private PlanGraph graph;
         private MispredictionException mispredict;
 
+        /**
+         * The WorkFragments that we got from the BatchPlanCache (or that we have
+         * already built) for this plan. If this is null, then we have to build them.
+         */
+        private List<WorkFragment> cached_fragments;
+
+        /**
+         * If this is not null, then we need to add our WorkFragments to the
+         * BatchPlanCache under this key once we have built them
+         */
+        private BatchPlanCache.Key cache_key;
+
         /** Temporary buffer space for sorting the PlanFragments per Statement */
         private final List<PlanFragment> frag_list[];
 
@@ -240,8 +260,8 @@ public class BatchPlanner implements Loggable {
         /**
          * StmtIndex -> Target Partition Ids
          */
-        private final Set<Integer>[] stmt_partitions;
-        private final Set<Integer>[] stmt_partitions_swap;
+        private final PartitionSet[] stmt_partitions;
+        private final PartitionSet[] stmt_partitions_swap;
 
         /**
          * StmtIndex -> Map{PlanFragment, Set<PartitionIds>}
@@ -293,13 +313,13 @@ public class BatchPlanner implements Loggable {
 
             // Batch Data
             this.frag_list = (List<PlanFragment>[]) new List<?>[batch_size];
-            this.stmt_partitions = (Set<Integer>[]) new Set<?>[batch_size];
-            this.stmt_partitions_swap = (Set<Integer>[]) new Set<?>[batch_size];
+            this.stmt_partitions = new PartitionSet[batch_size];
+            this.stmt_partitions_swap = new PartitionSet[batch_size];
             this.frag_partitions = (Map<PlanFragment, Set<Integer>>[]) new HashMap<?, ?>[batch_size];
             this.frag_partitions_swap = (Map<PlanFragment, Set<Integer>>[]) new HashMap<?, ?>[batch_size];
             this.singlepartition_bitmap = new boolean[batch_size];
             for (int i = 0; i < batch_size; i++) {
-                this.stmt_partitions[i] = new HashSet<Integer>();
+                this.stmt_partitions[i] = new PartitionSet(num_partitions);
                 this.frag_partitions[i] = new HashMap<PlanFragment, Set<Integer>>();
             } // FOR
         }
@@ -314,6 +334,8 @@ public class BatchPlanner implements Loggable {
             assert (this.cached == false);
             this.base_partition = base_partition;
             this.mispredict = null;
+            this.cached_fragments = null;
+            this.cache_key = null;
 
             this.readonly = true;
             this.all_local = true;
@@ -356,7 +378,23 @@ public class BatchPlanner implements Loggable {
         }
 
         public void getWorkFragments(Long txn_id, List<WorkFragment> tasks) {
+            if (this.cached_fragments != null) {
+                if (t)
+                    LOG.trace(String.format("Using %d cached WorkFragments for txn #%d", this.cached_fragments.size(), txn_id));
+                tasks.addAll(this.cached_fragments);
+                return;
+            }
+            int offset = tasks.size();
             BatchPlanner.this.buildWorkFragments(txn_id, this, graph, tasks);
+
+            // Nothing in the WorkFragments is specific to this txn, so we can
+            // hand them out again to anybody else that needs the same plan
+            if (this.cache_key != null) {
+                BatchPlanCache.CachedPlan entry = new BatchPlanCache.CachedPlan(this.graph, new ArrayList<WorkFragment>(tasks.subList(offset, tasks.size())));
+                BatchPlanner.this.plan_cache.put(this.cache_key, entry);
+                this.cached_fragments = entry.fragments;
+                this.cache_key = null;
+            }
         }
 
         public int getBatchSize() {
@@ -385,7 +423,7 @@ public class BatchPlanner implements Loggable {
          * 
          * @return
          */
-        public Set<Integer>[] getStatementPartitions() {
+        public PartitionSet[] getStatementPartitions() {
             return (this.stmt_partitions);
         }
 
@@ -519,11 +557,12 @@ public class BatchPlanner implements Loggable {
         if (CACHED_SINGLE_PARTITION_SETS == null) {
             synchronized (BatchPlanner.class) {
                 if (CACHED_SINGLE_PARTITION_SETS == null) {
-                    CACHED_SINGLE_PARTITION_SETS = (Set<Integer>[]) new Set<?>[this.num_partitions];
+                    CACHED_SINGLE_PARTITION_SETS = new PartitionSet[this.num_partitions];
                     CACHED_FRAGMENT_PARTITION_MAPS = (Map<Statement, Map<PlanFragment, Set<Integer>>>[]) new Map<?, ?>[this.num_partitions];
 
                     for (int i = 0; i < num_partitions; i++) {
-                        CACHED_SINGLE_PARTITION_SETS[i] = Collections.unmodifiableSet(Collections.singleton(i));
+                        CACHED_SINGLE_PARTITION_SETS[i] = new PartitionSet(this.num_partitions);
+                        CACHED_SINGLE_PARTITION_SETS[i].add(i);
                         CACHED_FRAGMENT_PARTITION_MAPS[i] = new HashMap<Statement, Map<PlanFragment, Set<Integer>>>();
                     } // FOR
                 }
@@ -535,6 +574,18 @@ public class BatchPlanner implements Loggable {
         return (this.plan);
     }
 
+    /**
+     * Share fully built plans with the other BatchPlanners at this site
+     * @param plan_cache
+     */
+    public void setPlanCache(BatchPlanCache plan_cache) {
+        this.plan_cache = plan_cache;
+    }
+
+    public BatchPlanCache getPlanCache() {
+        return (this.plan_cache);
+    }
+
     public Procedure getProcedure() {
         return this.catalog_proc;
     }
@@ -659,7 +710,7 @@ public class BatchPlanner implements Loggable {
                 LOG.trace(String.format("[#%d-%02d] Calculating touched partitions plans for %s", txn_id, stmt_index, catalog_stmt.fullName()));
 
             Map<PlanFragment, Set<Integer>> frag_partitions = plan.frag_partitions[stmt_index];
-            Set<Integer> stmt_all_partitions = plan.stmt_partitions[stmt_index];
+            PartitionSet stmt_all_partitions = plan.stmt_partitions[stmt_index];
 
             boolean has_singlepartition_plan = catalog_stmt.getHas_singlesited();
             boolean is_replicated_only = this.stmt_is_replicatedonly[stmt_index];
@@ -695,7 +746,7 @@ public class BatchPlanner implements Loggable {
                 Map<PlanFragment, Set<Integer>> cached_frag_partitions = this.cache_singlePartitionFragmentPartitions.get(catalog_stmt);
                 if (cached_frag_partitions == null) {
                     cached_frag_partitions = new HashMap<PlanFragment, Set<Integer>>();
-                    Set<Integer> p = CACHED_SINGLE_PARTITION_SETS[base_partition.intValue()];
+                    PartitionSet p = CACHED_SINGLE_PARTITION_SETS[base_partition.intValue()];
                     for (PlanFragment catalog_frag : catalog_stmt.getFragments().values()) {
                         cached_frag_partitions.put(catalog_frag, p);
                     } // FOR
@@ -896,14 +947,30 @@ public class BatchPlanner implements Loggable {
             }
         } // FOR (Statement)
 
-        // Check whether we have an existing graph exists for this batch
-        // configuration
-        // This is the only place where we need to synchronize
-        int bitmap_hash = Arrays.hashCode(plan.singlepartition_bitmap);
-        PlanGraph graph = this.plan_graphs.get(bitmap_hash);
-        if (graph == null) { // assume fast case
-            graph = this.buildPlanGraph(plan);
-            this.plan_graphs.put(bitmap_hash, graph);
+        // Check whether somebody at this site has already built a plan for this
+        // batch that sends the same fragments to the same partitions
+        BatchPlanCache.CachedPlan cache_entry = null;
+        if (this.plan_cache != null && mispredict_h == null) {
+            plan.cache_key = this.getPlanCacheKey(plan);
+            cache_entry = this.plan_cache.get(plan.cache_key);
+        }
+        PlanGraph graph = null;
+        if (cache_entry != null) {
+            if (d)
+                LOG.debug(String.format("[#%d] Using BatchPlan from the site-wide cache: %s", txn_id, Arrays.toString(this.catalog_stmts)));
+            graph = cache_entry.graph;
+            plan.cached_fragments = cache_entry.fragments;
+            plan.cache_key = null;
+        } else {
+            // Check whether we have an existing graph exists for this batch
+            // configuration
+            // This is the only place where we need to synchronize
+            int bitmap_hash = Arrays.hashCode(plan.singlepartition_bitmap);
+            graph = this.plan_graphs.get(bitmap_hash);
+            if (graph == null) { // assume fast case
+                graph = this.buildPlanGraph(plan);
+                this.plan_graphs.put(bitmap_hash, graph);
+            }
         }
         plan.graph = graph;
         plan.rounds_length = graph.num_rounds;
@@ -935,6 +1002,54 @@ public class BatchPlanner implements Loggable {
         return (plan);
     }
 
+    /**
+     * Build the BatchPlanCache key for the given plan. This encodes the base partition
+     * and then for each Statement whether it is single-partitioned, followed by the
+     * sorted partition ids for each of its PlanFragments.
+     * @param plan
+     * @return
+     */
+    private BatchPlanCache.Key getPlanCacheKey(BatchPlanner.BatchPlan plan) {
+        int size = 2;
+        for (int stmt_index = 0; stmt_index < this.batchSize; stmt_index++) {
+            size += 2;
+            Map<PlanFragment, Set<Integer>> frag_partitions = plan.frag_partitions[stmt_index];
+            for (PlanFragment catalog_frag : plan.frag_list[stmt_index]) {
+                size += 1 + frag_partitions.get(catalog_frag).size();
+            } // FOR
+        } // FOR
+
+        int signature[] = new int[size];
+        int idx = 0;
+        signature[idx++] = plan.base_partition.intValue();
+        signature[idx++] = this.batchSize;
+        for (int stmt_index = 0; stmt_index < this.batchSize; stmt_index++) {
+            List<PlanFragment> fragments = plan.frag_list[stmt_index];
+            Map<PlanFragment, Set<Integer>> frag_partitions = plan.frag_partitions[stmt_index];
+            signature[idx++] = (plan.singlepartition_bitmap[stmt_index] ? 1 : 0);
+            signature[idx++] = fragments.size();
+            for (PlanFragment catalog_frag : fragments) {
+                Set<Integer> partitions = frag_partitions.get(catalog_frag);
+                signature[idx++] = partitions.size();
+                if (partitions instanceof PartitionSet) {
+                    // PartitionSets are already sorted
+                    PartitionSet ps = (PartitionSet)partitions;
+                    for (int p = ps.next(0); p != -1; p = ps.next(p + 1)) {
+                        signature[idx++] = p;
+                    } // FOR
+                } else {
+                    int start = idx;
+                    for (Integer p : partitions) {
+                        signature[idx++] = p.intValue();
+                    } // FOR
+                    Arrays.sort(signature, start, idx);
+                }
+            } // FOR
+        } // FOR
+        assert(idx == size);
+        return (new BatchPlanCache.Key(this.catalog_stmts, signature));
+    }
+
     /**
      * @param plan
      * @param graph
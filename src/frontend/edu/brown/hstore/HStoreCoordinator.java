@@ -28,6 +28,7 @@ import org.voltdb.messaging.FastSerializer;
 import org.voltdb.utils.Pair;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.GeneratedMessage;
 import com.google.protobuf.RpcCallback;
 import com.google.protobuf.RpcController;
 
@@ -35,6 +36,8 @@ import edu.brown.catalog.CatalogUtil;
 import edu.brown.catalog.ReplicaWrapperSite;
 import edu.brown.hstore.Hstoreservice.DataFragment;
 import edu.brown.hstore.Hstoreservice.HStoreService;
+import edu.brown.hstore.Hstoreservice.ReplicationStreamRequest;
+import edu.brown.hstore.Hstoreservice.ReplicationStreamResponse;
 import edu.brown.hstore.Hstoreservice.SendDataRequest;
 import edu.brown.hstore.Hstoreservice.SendDataResponse;
 import edu.brown.hstore.Hstoreservice.ShutdownRequest;
@@ -42,6 +45,8 @@ import edu.brown.hstore.Hstoreservice.ShutdownResponse;
 import edu.brown.hstore.Hstoreservice.Status;
 import edu.brown.hstore.Hstoreservice.TimeSyncRequest;
 import edu.brown.hstore.Hstoreservice.TimeSyncResponse;
+import edu.brown.hstore.Hstoreservice.TransactionBatchRequest;
+import edu.brown.hstore.Hstoreservice.TransactionBatchResponse;
 import edu.brown.hstore.Hstoreservice.TransactionFinishRequest;
 import edu.brown.hstore.Hstoreservice.TransactionFinishResponse;
 import edu.brown.hstore.Hstoreservice.TransactionInitRequest;
@@ -64,6 +69,7 @@ import edu.brown.hstore.dispatchers.TransactionFinishDispatcher;
 import edu.brown.hstore.dispatchers.TransactionInitDispatcher;
 import edu.brown.hstore.dispatchers.TransactionRedirectDispatcher;
 import edu.brown.hstore.dtxn.LocalTransaction;
+import edu.brown.hstore.handlers.AbstractTransactionHandler;
 import edu.brown.hstore.handlers.SendDataHandler;
 import edu.brown.hstore.handlers.TransactionFinishHandler;
 import edu.brown.hstore.handlers.TransactionInitHandler;
@@ -72,13 +78,16 @@ import edu.brown.hstore.handlers.TransactionPrepareHandler;
 import edu.brown.hstore.handlers.TransactionReduceHandler;
 import edu.brown.hstore.handlers.TransactionWorkHandler;
 import edu.brown.hstore.interfaces.Shutdownable;
+import edu.brown.hstore.replication.ReplicationStreamHandler;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.protorpc.EventLoop;
 import edu.brown.protorpc.NIOEventLoop;
 import edu.brown.protorpc.ProtoRpcChannel;
 import edu.brown.protorpc.ProtoRpcController;
 import edu.brown.protorpc.ProtoServer;
 import edu.brown.utils.EventObservable;
+import edu.brown.utils.PartitionSet;
 import edu.brown.utils.StringUtil;
 import edu.brown.utils.ThreadUtil;
 
@@ -105,12 +114,20 @@ public class HStoreCoordinator implements Shutdownable {
 	private final Site catalog_site;
 	private final int local_site_id;
 	private final Collection<Integer> local_partitions;
-	private final NIOEventLoop eventLoop = new NIOEventLoop();
+	/**
+	 * All of the event loops that handle our network traffic. The first one
+	 * also accepts new connections from remote sites.
+	 */
+	private final NIOEventLoop eventLoops[];
+	private final NIOEventLoop eventLoop;
+
+	/** SiteId -> The event loop that handles our outbound channel to that site */
+	private final Map<Integer, NIOEventLoop> siteEventLoops = new HashMap<Integer, NIOEventLoop>();
 
 	/** SiteId -> HStoreServer */
 	private final Map<Integer, HStoreService> channels = new HashMap<Integer, HStoreService>();
 
-	private final Thread listener_thread;
+	private final Thread listener_threads[];
 	private final ProtoServer listener;
 	private final HStoreService remoteService;
 
@@ -121,6 +138,14 @@ public class HStoreCoordinator implements Shutdownable {
 	private final TransactionPrepareHandler transactionPrepare_handler;
 	private final TransactionFinishHandler transactionFinish_handler;
 	private final SendDataHandler sendData_handler;
+	private final ReplicationStreamHandler replicationStream_handler;
+
+	/**
+	 * Packs outgoing txn messages for the same remote site into a single RPC.
+	 * We always need this to unpack the batches that other sites send us, but
+	 * we will only use it for our own messages if batching is enabled
+	 */
+	private final TransactionBatcher batcher;
 
 	private final TransactionInitDispatcher transactionInit_dispatcher;
 	private final TransactionFinishDispatcher transactionFinish_dispatcher;
@@ -134,13 +159,19 @@ public class HStoreCoordinator implements Shutdownable {
      * 
      */
 	private class MessengerListener implements Runnable {
+		private final NIOEventLoop eventLoop;
+
+		public MessengerListener(NIOEventLoop eventLoop) {
+			this.eventLoop = eventLoop;
+		}
+
 		@Override
 		public void run() {
 			if (hstore_conf.site.cpu_affinity)
 				hstore_site.getThreadManager().registerProcessingThread();
 			Throwable error = null;
 			try {
-				HStoreCoordinator.this.eventLoop.run();
+				this.eventLoop.run();
 			} catch (RuntimeException ex) {
 				error = ex;
 			} catch (AssertionError ex) {
@@ -199,11 +230,21 @@ public class HStoreCoordinator implements Shutdownable {
 			LOG.debug("Local Partitions for Site #" + hstore_site.getSiteId()
 					+ ": " + this.local_partitions);
 
+		// Each remote site's connections will be pinned to one of these
+		int num_loops = Math.max(1, hstore_conf.site.coordinator_event_loops);
+		this.eventLoops = new NIOEventLoop[num_loops];
+		for (int i = 0; i < num_loops; i++) {
+			this.eventLoops[i] = new NIOEventLoop();
+		} // FOR
+		this.eventLoop = this.eventLoops[0];
+
 		// Incoming RPC Handler
 		this.remoteService = this.initHStoreService();
+		this.batcher = new TransactionBatcher(this,
+				hstore_conf.site.coordinator_batch_size);
 
-		// This listener thread will process incoming messages
-		this.listener = new ProtoServer(this.eventLoop);
+		// These listener threads will process incoming messages
+		this.listener = new ProtoServer(this.eventLoop, this.eventLoops);
 
 		// Special dispatcher threads to handle incoming requests
 		// These are used so that we can process messages in a different thread
@@ -228,11 +269,17 @@ public class HStoreCoordinator implements Shutdownable {
 		this.transactionFinish_handler = new TransactionFinishHandler(
 				hstore_site, this, transactionFinish_dispatcher);
 		this.sendData_handler = new SendDataHandler(hstore_site, this);
+		this.replicationStream_handler = new ReplicationStreamHandler(
+				hstore_site, this);
 
-		// Wrap the listener in a daemon thread
-		this.listener_thread = new Thread(new MessengerListener(),
-				HStoreSite.getThreadName(this.hstore_site, "coord"));
-		this.listener_thread.setDaemon(true);
+		// Wrap each event loop in a daemon thread
+		this.listener_threads = new Thread[num_loops];
+		for (int i = 0; i < num_loops; i++) {
+			this.listener_threads[i] = new Thread(new MessengerListener(
+					this.eventLoops[i]), HStoreSite.getThreadName(
+					this.hstore_site, "coord" + (i > 0 ? i : "")));
+			this.listener_threads[i].setDaemon(true);
+		} // FOR
 		this.eventLoop.setExitOnSigInt(true);
 	}
 
@@ -280,8 +327,11 @@ public class HStoreCoordinator implements Shutdownable {
 		}
 
 		if (debug.get())
-			LOG.debug("Starting listener thread");
-		this.listener_thread.start();
+			LOG.debug("Starting " + this.listener_threads.length
+					+ " listener threads");
+		for (Thread t : this.listener_threads) {
+			t.start();
+		} // FOR
 
 		if (this.hstore_conf.site.coordinator_sync_time) {
 			syncClusterTimes();
@@ -325,17 +375,23 @@ public class HStoreCoordinator implements Shutdownable {
 			if (trace.get())
 				LOG.trace("Stopping eventLoop for Site #"
 						+ this.getLocalSiteId());
-			this.eventLoop.exitLoop();
+			for (NIOEventLoop loop : this.eventLoops) {
+				loop.exitLoop();
+			} // FOR
 
 			if (trace.get())
-				LOG.trace("Stopping listener thread for Site #"
+				LOG.trace("Stopping listener threads for Site #"
 						+ this.getLocalSiteId());
-			this.listener_thread.interrupt();
+			for (Thread t : this.listener_threads) {
+				t.interrupt();
+			} // FOR
 
 			if (trace.get())
-				LOG.trace("Joining on listener thread for Site #"
+				LOG.trace("Joining on listener threads for Site #"
 						+ this.getLocalSiteId());
-			this.listener_thread.join();
+			for (Thread t : this.listener_threads) {
+				t.join();
+			} // FOR
 		} catch (InterruptedException ex) {
 			// IGNORE
 		} catch (Throwable ex) {
@@ -381,7 +437,27 @@ public class HStoreCoordinator implements Shutdownable {
 	}
 
 	protected final Thread getListenerThread() {
-		return (this.listener_thread);
+		return (this.listener_threads[0]);
+	}
+
+	/**
+	 * Returns the event loop that handles our outbound channel to the given
+	 * remote site. Anything that needs to stay in order with the messages that
+	 * we send to that site should be scheduled in this loop.
+	 * 
+	 * @param site_id
+	 * @return
+	 */
+	public EventLoop getEventLoop(int site_id) {
+		NIOEventLoop loop = this.siteEventLoops.get(site_id);
+		return (loop != null ? loop : this.eventLoop);
+	}
+
+	/**
+	 * Returns the number of event loop threads used by this coordinator
+	 */
+	public int getEventLoopCount() {
+		return (this.eventLoops.length);
 	}
 
 	public HStoreService getChannel(int site_id) {
@@ -392,6 +468,14 @@ public class HStoreCoordinator implements Shutdownable {
 		return (this.remoteService);
 	}
 
+	/**
+	 * Returns the TransactionBatcher that outgoing txn messages should be
+	 * added to, or null if ${site.coordinator_batching} is disabled
+	 */
+	public TransactionBatcher getTransactionBatcher() {
+		return (this.hstore_conf.site.coordinator_batching ? this.batcher : null);
+	}
+
 	public EventObservable<HStoreCoordinator> getReadyObservable() {
 		return (this.ready_observable);
 	}
@@ -460,19 +544,22 @@ public class HStoreCoordinator implements Shutdownable {
 						+ " remote site messengers");
 			ProtoRpcChannel[] channels = null;
 			InetSocketAddress arr[] = new InetSocketAddress[destinations.size()];
+			NIOEventLoop loops[] = new NIOEventLoop[destinations.size()];
 			for (int i = 0; i < arr.length; i++) {
 				arr[i] = destinations.get(i).getSecond();
+				loops[i] = this.eventLoops[i % this.eventLoops.length];
+				this.siteEventLoops.put(destinations.get(i).getFirst(), loops[i]);
 			} // FOR
 
 			try {
 				channels = ProtoRpcChannel.connectParallel(this.eventLoop, arr,
-						15000);
+						15000, loops);
 			} catch (RuntimeException ex) {
 				LOG.warn("Failed to connect to remote sites. Going to try again...");
 				// Try again???
 				try {
 					channels = ProtoRpcChannel.connectParallel(this.eventLoop,
-							arr);
+							arr, ProtoRpcChannel.TOTAL_CONNECT_TIMEOUT_MS, loops);
 				} catch (Exception ex2) {
 					LOG.fatal("Site #" + this.getLocalSiteId()
 							+ " failed to connect to remote sites");
@@ -678,6 +765,24 @@ public class HStoreCoordinator implements Shutdownable {
 					.setT1S(System.currentTimeMillis()).build();
 			done.run(response);
 		}
+
+		@Override
+		public void replicationStream(RpcController controller,
+				ReplicationStreamRequest request,
+				RpcCallback<ReplicationStreamResponse> done) {
+			replicationStream_handler.remoteHandler(controller, request, done);
+		}
+
+		@Override
+		public void transactionBatch(RpcController controller,
+				TransactionBatchRequest request,
+				RpcCallback<TransactionBatchResponse> done) {
+			// Acknowledge the envelope right away. The responses for the
+			// messages inside of it will go back in our own batches
+			done.run(TransactionBatchResponse.newBuilder()
+					.setSenderId(local_site_id).build());
+			batcher.receive(controller, request);
+		}
 	} // END CLASS
 
 	// ----------------------------------------------------------------------------
@@ -711,35 +816,15 @@ public class HStoreCoordinator implements Shutdownable {
 		// InitRequest to send notifications
 		// about the rejection to the other partitions that are included in the
 		// InitRequest.
+		PartitionSet partitions = ts.getPredictTouchedPartitions();
 		TransactionInitRequest request = TransactionInitRequest.newBuilder()
 				.setTransactionId(ts.getTransactionId())
 				.setProcedureId(ts.getProcedure().getId())
-				.addAllPartitions(ts.getPredictTouchedPartitions()).build();
-		assert (callback != null) : String.format(
-				"Trying to initialize %s with a null TransactionInitCallback",
-				ts);
-		this.transactionInit_handler.sendMessages(ts, request, callback,
-				request.getPartitionsList());
-	}
-
-	// (kowshik) extra method to send transcation init to replicas only
-	/******* FOR REPLICATION *****/
-	public void transactionInitForReplicas(LocalTransaction ts,
-			RpcCallback<TransactionInitResponse> callback, int partitionId,
-			List<Integer> replicaIds) {
-		TransactionInitRequest request = TransactionInitRequest.newBuilder()
-				.setTransactionId(ts.getTransactionId())
-				.setProcedureId(ts.getProcedure().getId())
-				.addPartitions(partitionId).build();
-		assert (callback != null) : String.format(
-				"Trying to initialize %s with a null TransactionInitCallback",
-				ts);
-		this.transactionInit_handler.sendMessagesToReplicas(ts, request,
-				callback, partitionId, replicaIds);
+				.addAllPartitions(partitions).build();
+		this.sendToPartitions(this.transactionInit_handler, ts, request,
+				callback, partitions);
 	}
 
-	/************************/
-
 	/**
 	 * 
 	 * @param builders
@@ -763,9 +848,13 @@ public class HStoreCoordinator implements Shutdownable {
 							request.getClass().getSimpleName(), request
 									.getTransactionId());
 
-			this.channels.get(site_id)
-					.transactionWork(ts.getTransactionWorkController(site_id),
-							request, callback);
+			if (hstore_conf.site.coordinator_batching) {
+				this.batcher.addWorkRequest(site_id, request, callback);
+			} else {
+				this.channels.get(site_id).transactionWork(
+						ts.getTransactionWorkController(site_id), request,
+						callback);
+			}
 		} // FOR
 	}
 
@@ -778,17 +867,12 @@ public class HStoreCoordinator implements Shutdownable {
 	 * @param partitions
 	 */
 	public void transactionPrepare(LocalTransaction ts,
-			TransactionPrepareCallback callback, Collection<Integer> partitions) {
-		if (debug.get())
-			LOG.debug(String.format(
-					"Notifying partitions %s that %s is preparing to commit",
-					partitions, ts));
-
+			TransactionPrepareCallback callback, PartitionSet partitions) {
 		TransactionPrepareRequest request = TransactionPrepareRequest
 				.newBuilder().setTransactionId(ts.getTransactionId())
 				.addAllPartitions(partitions).build();
-		this.transactionPrepare_handler.sendMessages(ts, request, callback,
-				partitions);
+		this.sendToPartitions(this.transactionPrepare_handler, ts, request,
+				callback, partitions);
 	}
 
 	/**
@@ -804,17 +888,12 @@ public class HStoreCoordinator implements Shutdownable {
 	 */
 	public void transactionFinish(LocalTransaction ts, Status status,
 			TransactionFinishCallback callback) {
-		Collection<Integer> partitions = ts.getPredictTouchedPartitions();
-		if (debug.get())
-			LOG.debug(String.format(
-					"Notifying partitions %s that %s is finished [status=%s]",
-					partitions, ts, status));
-
+		PartitionSet partitions = ts.getPredictTouchedPartitions();
 		TransactionFinishRequest request = TransactionFinishRequest
 				.newBuilder().setTransactionId(ts.getTransactionId())
 				.setStatus(status).addAllPartitions(partitions).build();
-		this.transactionFinish_handler.sendMessages(ts, request, callback,
-				partitions);
+		this.sendToPartitions(this.transactionFinish_handler, ts, request,
+				callback, partitions);
 
 		// HACK: At this point we can tell the local partitions that the txn is
 		// done
@@ -831,30 +910,31 @@ public class HStoreCoordinator implements Shutdownable {
 		// } // FOR
 	}
 
-	// (kowshik) extra method to send transcation finish to replicas only
-	/*******
-	 * FOR REPLICATION
+	/**
+	 * Send a copy of a txn's request to every HStoreSite that has one of the
+	 * given partitions. The handler is the only place that groups the
+	 * partitions by site: it sends one copy to each remote site (through the
+	 * TransactionBatcher if batching is enabled) and then invokes the local
+	 * site directly if it has any of the partitions.
 	 * 
-	 * @throws Exception
-	 *****/
-	public void transactionFinishForReplicas(LocalTransaction ts,
-			Status status, int partitionId, List<Integer> replicaIds)
-			throws Exception {
-		TransactionFinishRequest request = TransactionFinishRequest
-				.newBuilder().setTransactionId(ts.getTransactionId())
-				.setStatus(status).addPartitions(partitionId).build();
-		TransactionFinishCallback callback = HStoreObjectPools.CALLBACKS_TXN_FINISH
-				.borrowObject();
-		callback.init(ts, status);
+	 * @param handler
+	 * @param ts
+	 * @param request
+	 * @param callback
+	 * @param partitions
+	 */
+	private <T extends GeneratedMessage, U extends GeneratedMessage> void sendToPartitions(
+			AbstractTransactionHandler<T, U> handler, LocalTransaction ts,
+			T request, RpcCallback<U> callback, PartitionSet partitions) {
 		assert (callback != null) : String.format(
-				"Trying to initialize %s with a null TransactionInitCallback",
-				ts);
-		this.transactionFinish_handler.sendMessagesToReplicas(ts, request,
-				callback, partitionId, replicaIds);
+				"Trying to send %s for %s with a null callback",
+				request.getClass().getSimpleName(), ts);
+		if (debug.get())
+			LOG.debug(String.format("Sending %s for %s to partitions %s",
+					request.getClass().getSimpleName(), ts, partitions));
+		handler.sendMessages(ts, request, callback, partitions);
 	}
 
-	/************************/
-
 	/**
 	 * Forward a StoredProcedureInvocation request to a remote site for
 	 * execution
@@ -877,6 +957,43 @@ public class HStoreCoordinator implements Shutdownable {
 				new ProtoRpcController(), mr, callback);
 	}
 
+	// ----------------------------------------------------------------------------
+	// REPLICATION METHODS
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Send a batch of records from a partition's ReplicationStream to one of
+	 * the replicas of this site. The callback is invoked with the replica's
+	 * cumulative acknowledgement.
+	 * 
+	 * @param replica_id
+	 * @param request
+	 * @param callback
+	 */
+	public void replicationStream(int replica_id,
+			ReplicationStreamRequest request,
+			RpcCallback<ReplicationStreamResponse> callback) {
+		HStoreService channel = this.channels.get(replica_id);
+		assert (channel != null) : "Invalid replica id " + replica_id;
+		channel.replicationStream(new ProtoRpcController(), request, callback);
+	}
+
+	/**
+	 * Returns the ids of the replicas for this site. If this site is itself
+	 * a replica, then the returned list will be empty.
+	 * 
+	 * @return
+	 */
+	public List<Integer> getReplicaIds() {
+		List<Integer> replica_ids = new ArrayList<Integer>();
+		if (this.catalog_site instanceof ReplicaWrapperSite == false) {
+			for (Replica r : this.catalog_site.getReplicas()) {
+				replica_ids.add(r.getId());
+			} // FOR
+		}
+		return (replica_ids);
+	}
+
 	// ----------------------------------------------------------------------------
 	// MapReduce METHODS
 	// ----------------------------------------------------------------------------
@@ -904,7 +1021,7 @@ public class HStoreCoordinator implements Shutdownable {
 				.setBasePartition(ts.getBasePartition())
 				.setInvocation(invocation).build();
 
-		Collection<Integer> partitions = ts.getPredictTouchedPartitions();
+		PartitionSet partitions = ts.getPredictTouchedPartitions();
 		if (debug.get())
 			LOG.debug(String.format(
 					"Notifying partitions %s that %s is in Map Phase",
@@ -914,8 +1031,8 @@ public class HStoreCoordinator implements Shutdownable {
 		// hstore_site.getSiteName();
 
 		LOG.info("<HStoreCoordinator.TransactionMap> is executing to sendMessages to all partitions\n");
-		this.transactionMap_handler.sendMessages(ts, request, callback,
-				partitions);
+		this.sendToPartitions(this.transactionMap_handler, ts, request,
+				callback, partitions);
 	}
 
 	/**
@@ -941,15 +1058,15 @@ public class HStoreCoordinator implements Shutdownable {
 				.setBasePartition(ts.getBasePartition())
 				.setInvocation(invocation).build();
 
-		Collection<Integer> partitions = ts.getPredictTouchedPartitions();
+		PartitionSet partitions = ts.getPredictTouchedPartitions();
 		if (debug.get())
 			LOG.debug(String.format(
 					"Notifying partitions %s that %s is in Reduce Phase",
 					partitions, ts));
 
 		LOG.info("<HStoreCoordinator.TransactionReduce> is executing to sendMessages to all partitions\n");
-		this.transactionReduce_handler.sendMessages(ts, request, callback,
-				partitions);
+		this.sendToPartitions(this.transactionReduce_handler, ts, request,
+				callback, partitions);
 	}
 
 	// ----------------------------------------------------------------------------
@@ -5,7 +5,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import org.apache.commons.collections15.map.ListOrderedMap;
-import org.apache.commons.pool.impl.StackObjectPool;
 
 import edu.brown.hstore.callbacks.TransactionFinishCallback;
 import edu.brown.hstore.callbacks.TransactionInitCallback;
@@ -18,7 +17,7 @@ import edu.brown.hstore.dtxn.DependencyInfo;
 import edu.brown.hstore.dtxn.LocalTransaction;
 import edu.brown.hstore.dtxn.MapReduceTransaction;
 import edu.brown.hstore.dtxn.RemoteTransaction;
-import edu.brown.utils.TypedStackObjectPool;
+import edu.brown.utils.TypedObjectPool;
 
 public abstract class HStoreObjectPools {
 
@@ -29,28 +28,28 @@ public abstract class HStoreObjectPools {
     /**
      * 
      */
-    public static TypedStackObjectPool<TransactionInitCallback> CALLBACKS_TXN_INIT;
+    public static TypedObjectPool<TransactionInitCallback> CALLBACKS_TXN_INIT;
     /**
      * 
      */
-    public static TypedStackObjectPool<TransactionInitWrapperCallback> CALLBACKS_TXN_INITWRAPPER;
+    public static TypedObjectPool<TransactionInitWrapperCallback> CALLBACKS_TXN_INITWRAPPER;
     /**
      * 
      */
-    public static TypedStackObjectPool<TransactionPrepareCallback> CALLBACKS_TXN_PREPARE;
+    public static TypedObjectPool<TransactionPrepareCallback> CALLBACKS_TXN_PREPARE;
     /**
      * 
      */
-    public static TypedStackObjectPool<TransactionFinishCallback> CALLBACKS_TXN_FINISH;
+    public static TypedObjectPool<TransactionFinishCallback> CALLBACKS_TXN_FINISH;
     /**
      * ForwardTxnRequestCallback Pool
      */
-    public static TypedStackObjectPool<TransactionRedirectCallback> CALLBACKS_TXN_REDIRECT_REQUEST;
+    public static TypedObjectPool<TransactionRedirectCallback> CALLBACKS_TXN_REDIRECT_REQUEST;
     
     /**
      * ForwardTxnResponseCallback Pool
      */
-    public static TypedStackObjectPool<TransactionRedirectResponseCallback> CALLBACKS_TXN_REDIRECTRESPONSE;
+    public static TypedObjectPool<TransactionRedirectResponseCallback> CALLBACKS_TXN_REDIRECTRESPONSE;
     
     // ----------------------------------------------------------------------------
     // INTERNAL STATE OBJECTS
@@ -59,22 +58,22 @@ public abstract class HStoreObjectPools {
     /**
      * LocalTransaction State ObjectPool
      */
-    public static TypedStackObjectPool<LocalTransaction> STATES_TXN_LOCAL;
+    public static TypedObjectPool<LocalTransaction> STATES_TXN_LOCAL;
     
     /**
      * MapReduceTransaction State ObjectPool
      */
-    public static TypedStackObjectPool<MapReduceTransaction> STATES_TXN_MAPREDUCE;
+    public static TypedObjectPool<MapReduceTransaction> STATES_TXN_MAPREDUCE;
     
     /**
      * RemoteTransaction State ObjectPool
      */
-    public static TypedStackObjectPool<RemoteTransaction> STATES_TXN_REMOTE;
+    public static TypedObjectPool<RemoteTransaction> STATES_TXN_REMOTE;
     
     /**
      * DependencyInfo ObjectPool
      */
-    public static TypedStackObjectPool<DependencyInfo> STATES_DEPENDENCYINFO;
+    public static TypedObjectPool<DependencyInfo> STATES_DEPENDENCYINFO;
 
     
     // ----------------------------------------------------------------------------
@@ -89,54 +88,55 @@ public abstract class HStoreObjectPools {
         assert(hstore_site != null);
         if (CALLBACKS_TXN_REDIRECT_REQUEST == null) {
             HStoreConf hstore_conf = hstore_site.getHStoreConf();
+            int local_idle = (int)(hstore_conf.site.pool_threadlocal_idle * hstore_conf.site.pool_scale_factor);
             
-            CALLBACKS_TXN_INIT = TypedStackObjectPool.factory(TransactionInitCallback.class,
-                    (int)(hstore_conf.site.pool_txninit_idle * hstore_conf.site.pool_scale_factor),
+            CALLBACKS_TXN_INIT = TypedObjectPool.factory(TransactionInitCallback.class,
+                    (int)(hstore_conf.site.pool_txninit_idle * hstore_conf.site.pool_scale_factor), local_idle,
                     hstore_conf.site.pool_profiling, hstore_site);
-            CALLBACKS_TXN_INITWRAPPER = TypedStackObjectPool.factory(TransactionInitWrapperCallback.class,
-                    (int)(hstore_conf.site.pool_txninitwrapper_idle * hstore_conf.site.pool_scale_factor),
+            CALLBACKS_TXN_INITWRAPPER = TypedObjectPool.factory(TransactionInitWrapperCallback.class,
+                    (int)(hstore_conf.site.pool_txninitwrapper_idle * hstore_conf.site.pool_scale_factor), local_idle,
                     hstore_conf.site.pool_profiling, hstore_site);
-            CALLBACKS_TXN_PREPARE = TypedStackObjectPool.factory(TransactionPrepareCallback.class,
-                    (int)(hstore_conf.site.pool_txnprepare_idle * hstore_conf.site.pool_scale_factor),
+            CALLBACKS_TXN_PREPARE = TypedObjectPool.factory(TransactionPrepareCallback.class,
+                    (int)(hstore_conf.site.pool_txnprepare_idle * hstore_conf.site.pool_scale_factor), local_idle,
                     hstore_conf.site.pool_profiling, hstore_site);
-            CALLBACKS_TXN_FINISH = TypedStackObjectPool.factory(TransactionFinishCallback.class,
-                    (int)(hstore_conf.site.pool_txnprepare_idle * hstore_conf.site.pool_scale_factor),
+            CALLBACKS_TXN_FINISH = TypedObjectPool.factory(TransactionFinishCallback.class,
+                    (int)(hstore_conf.site.pool_txnprepare_idle * hstore_conf.site.pool_scale_factor), local_idle,
                     hstore_conf.site.pool_profiling, hstore_site);
             
-            CALLBACKS_TXN_REDIRECT_REQUEST = TypedStackObjectPool.factory(TransactionRedirectCallback.class,
-                    (int)(hstore_conf.site.pool_txnredirect_idle * hstore_conf.site.pool_scale_factor),
+            CALLBACKS_TXN_REDIRECT_REQUEST = TypedObjectPool.factory(TransactionRedirectCallback.class,
+                    (int)(hstore_conf.site.pool_txnredirect_idle * hstore_conf.site.pool_scale_factor), local_idle,
                     hstore_conf.site.pool_profiling);
-            CALLBACKS_TXN_REDIRECTRESPONSE = TypedStackObjectPool.factory(TransactionRedirectResponseCallback.class,
-                    (int)(hstore_conf.site.pool_txnredirectresponses_idle * hstore_conf.site.pool_scale_factor),
+            CALLBACKS_TXN_REDIRECTRESPONSE = TypedObjectPool.factory(TransactionRedirectResponseCallback.class,
+                    (int)(hstore_conf.site.pool_txnredirectresponses_idle * hstore_conf.site.pool_scale_factor), local_idle,
                     hstore_conf.site.pool_profiling);
 
-            STATES_TXN_LOCAL = TypedStackObjectPool.factory(LocalTransaction.class,
-                    (int)(hstore_conf.site.pool_localtxnstate_idle * hstore_conf.site.pool_scale_factor),
+            STATES_TXN_LOCAL = TypedObjectPool.factory(LocalTransaction.class,
+                    (int)(hstore_conf.site.pool_localtxnstate_idle * hstore_conf.site.pool_scale_factor), local_idle,
                     hstore_conf.site.pool_profiling, hstore_site);
-            STATES_TXN_MAPREDUCE = TypedStackObjectPool.factory(MapReduceTransaction.class,
-                    (int)(hstore_conf.site.pool_mapreducetxnstate_idle * hstore_conf.site.pool_scale_factor),
+            STATES_TXN_MAPREDUCE = TypedObjectPool.factory(MapReduceTransaction.class,
+                    (int)(hstore_conf.site.pool_mapreducetxnstate_idle * hstore_conf.site.pool_scale_factor), local_idle,
                     hstore_conf.site.pool_profiling, hstore_site);
-            STATES_TXN_REMOTE = TypedStackObjectPool.factory(RemoteTransaction.class,
-                    (int)(hstore_conf.site.pool_remotetxnstate_idle * hstore_conf.site.pool_scale_factor),
+            STATES_TXN_REMOTE = TypedObjectPool.factory(RemoteTransaction.class,
+                    (int)(hstore_conf.site.pool_remotetxnstate_idle * hstore_conf.site.pool_scale_factor), local_idle,
                     hstore_conf.site.pool_profiling, hstore_site);
-            STATES_DEPENDENCYINFO = TypedStackObjectPool.factory(DependencyInfo.class,
-                    (int)(hstore_conf.site.pool_dependencyinfos_idle * hstore_conf.site.pool_scale_factor),
+            STATES_DEPENDENCYINFO = TypedObjectPool.factory(DependencyInfo.class,
+                    (int)(hstore_conf.site.pool_dependencyinfos_idle * hstore_conf.site.pool_scale_factor), local_idle,
                     hstore_conf.site.pool_profiling);
         }
-        for (Entry<String, StackObjectPool> e : getAllPools().entrySet()) {
+        for (Entry<String, TypedObjectPool<?>> e : getAllPools().entrySet()) {
             assert(e.getValue() != null) : e.getKey() + " is null!";
         } // FOR
     }
     
-    public static Map<String, StackObjectPool> getAllPools() {
-        Map<String, StackObjectPool> m = new ListOrderedMap<String, StackObjectPool>();
+    public static Map<String, TypedObjectPool<?>> getAllPools() {
+        Map<String, TypedObjectPool<?>> m = new ListOrderedMap<String, TypedObjectPool<?>>();
         
         Object val = null;
         for (Field f : HStoreObjectPools.class.getFields()) {
             try {
                 val = f.get(null);
-                if (val instanceof TypedStackObjectPool<?>) {
-                    m.put(f.getName(), (StackObjectPool)val);
+                if (val instanceof TypedObjectPool<?>) {
+                    m.put(f.getName(), (TypedObjectPool<?>)val);
                 }
             } catch (Exception ex) {
                 throw new RuntimeException(ex);
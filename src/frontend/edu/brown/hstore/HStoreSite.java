@@ -25,17 +25,15 @@
  ***************************************************************************/
 package edu.brown.hstore;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -43,6 +41,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.collections15.set.ListOrderedSet;
 import org.apache.log4j.Logger;
 import org.voltdb.ClientResponseImpl;
+import org.voltdb.ParameterSet;
 import org.voltdb.StoredProcedureInvocation;
 import org.voltdb.TransactionIdManager;
 import org.voltdb.catalog.Database;
@@ -52,6 +51,7 @@ import org.voltdb.catalog.Site;
 import org.voltdb.exceptions.MispredictionException;
 import org.voltdb.messaging.FastSerializer;
 import org.voltdb.messaging.FragmentTaskMessage;
+import org.voltdb.sysprocs.ReplayWork;
 import org.voltdb.utils.Pair;
 
 import com.google.protobuf.RpcCallback;
@@ -77,9 +77,16 @@ import edu.brown.hstore.estimators.TM1Estimator;
 import edu.brown.hstore.estimators.TPCCEstimator;
 import edu.brown.hstore.interfaces.Loggable;
 import edu.brown.hstore.interfaces.Shutdownable;
+import edu.brown.hstore.replication.ReplicationStream;
+import edu.brown.hstore.wal.CommandLogReader;
+import edu.brown.hstore.wal.CommandLogRecovery;
+import edu.brown.hstore.wal.CommandLogWriter;
+import edu.brown.hstore.util.InflightTxnTable;
 import edu.brown.hstore.util.MapReduceHelperThread;
 import edu.brown.hstore.util.PartitionExecutorPostProcessor;
+import edu.brown.hstore.util.TransactionRouter;
 import edu.brown.hstore.util.TxnCounter;
+import edu.brown.hstore.util.TxnLatencyStats;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.markov.EstimationThresholds;
@@ -91,6 +98,7 @@ import edu.brown.markov.MarkovVertex;
 import edu.brown.markov.TransactionEstimator;
 import edu.brown.plannodes.PlanNodeUtil;
 import edu.brown.protorpc.NIOEventLoop;
+import edu.brown.protorpc.NullCallback;
 import edu.brown.statistics.Histogram;
 import edu.brown.utils.CollectionUtil;
 import edu.brown.utils.EventObservable;
@@ -98,6 +106,7 @@ import edu.brown.utils.EventObservableExceptionHandler;
 import edu.brown.utils.EventObserver;
 import edu.brown.utils.ParameterMangler;
 import edu.brown.utils.PartitionEstimator;
+import edu.brown.utils.PartitionSet;
 import edu.brown.utils.ProfileMeasurement;
 import edu.brown.utils.StringUtil;
 import edu.brown.utils.ThreadUtil;
@@ -196,11 +205,64 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     private final PartitionExecutor executors[];
     private final Thread executor_threads[];
     
+    /**
+     * Per-partition streams that ship executed work to our replicas.
+     * These are only created if this site has replicas.
+     */
+    private final ReplicationStream replication_streams[];
+    
+    /**
+     * Write-ahead command log writer
+     * This will be null if ${site.commandlog_enable} is false
+     */
+    private CommandLogWriter commandLogger = null;
+    
+    /**
+     * Halts the cluster if one of our threads dies
+     */
+    private final EventObservableExceptionHandler exceptionHandler = new EventObservableExceptionHandler();
+    
+    /**
+     * Command log recovery that we executed when we started up
+     * This will be null if there was nothing to recover
+     */
+    private CommandLogRecovery commandLogRecovery = null;
+    
+    /**
+     * Set to true until we have replayed the part of our command log that only
+     * touches our own partitions. Txns from other sites get rejected until then.
+     */
+    private volatile boolean recovering;
+    
     /**
      * Procedure Listener Stuff
      */
     private VoltProcedureListener voltListener;
-    private final NIOEventLoop procEventLoop = new NIOEventLoop();
+    private final NIOEventLoop procEventLoops[];
+
+    /**
+     * Transaction Routing Threads
+     * If there are none, then the listener threads route requests themselves
+     */
+    private final List<TransactionRouter> routers = new ArrayList<TransactionRouter>();
+    
+    /**
+     * New txn requests waiting for a TransactionRouter. This is bounded by
+     * ${site.queue_incoming_max_per_partition} for each local partition
+     */
+    private final LinkedBlockingDeque<Object[]> incoming_requests;
+
+    /**
+     * BatchPlans that are shared by all of the PartitionExecutors at this site
+     * This will be null if the plan cache is disabled
+     */
+    private final BatchPlanCache batchPlanCache;
+    
+    /**
+     * Latency histograms for each Procedure
+     * This will be null if txn profiling is disabled
+     */
+    private final TxnLatencyStats txn_latencies;
 
     /**
      * 
@@ -230,13 +292,13 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     private final AbstractHasher hasher;
     
     /** All of the partitions in the cluster */
-    private final Collection<Integer> all_partitions;
+    private final PartitionSet all_partitions;
 
     /** List of local partitions at this HStoreSite */
     private final ListOrderedSet<Integer> local_partitions = new ListOrderedSet<Integer>();
     
     
-    private final Collection<Integer> single_partition_sets[]; 
+    private final PartitionSet single_partition_sets[]; 
     
     private final int num_local_partitions;
     
@@ -274,7 +336,7 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     /**
      * Keep track of which txns that we have in-flight right now
      */
-    private final Map<Long, AbstractTransaction> inflight_txns = new ConcurrentHashMap<Long, AbstractTransaction>();
+    private final InflightTxnTable<AbstractTransaction> inflight_txns;
     
     /**
      * Fixed Markov Estimator
@@ -313,20 +375,22 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         this.catalog_site = catalog_site;
         this.catalog_db = CatalogUtil.getDatabase(this.catalog_site);
         this.site_id = this.catalog_site.getId();
+        this.recovering = (hstore_conf.site.commandlog_enable && hstore_conf.site.commandlog_recover);
         
         // TODO: Pull the PartitionEstimator info from HStoreConf
         this.p_estimator = new PartitionEstimator(this.catalog_db);
         
         // **IMPORTANT**
         // We have to setup the partition offsets before we do anything else here
-        this.all_partitions = CatalogUtil.getAllPartitionIds(this.catalog_db);
+        this.all_partitions = new PartitionSet(CatalogUtil.getAllPartitionIds(this.catalog_db));
         final int num_partitions = this.all_partitions.size();
         this.local_partitions.addAll(CatalogUtil.getLocalPartitionIds(catalog_site));
         this.num_local_partitions = this.local_partitions.size();
         
         this.executors = new PartitionExecutor[num_partitions];
         this.executor_threads = new Thread[num_partitions];
-        this.single_partition_sets = new Collection[num_partitions];
+        this.replication_streams = new ReplicationStream[num_partitions];
+        this.single_partition_sets = new PartitionSet[num_partitions];
         
         // Offset Hack
         this.LOCAL_PARTITION_OFFSETS = new int[num_partitions];
@@ -335,7 +399,8 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         for (int partition : this.local_partitions) {
             this.LOCAL_PARTITION_OFFSETS[partition] = offset;
             this.LOCAL_PARTITION_REVERSE[offset] = partition; 
-            this.single_partition_sets[partition] = Collections.singleton(partition);
+            this.single_partition_sets[partition] = new PartitionSet(num_partitions);
+            this.single_partition_sets[partition].add(partition);
             offset++;
         } // FOR
         this.partition_site_xref = new int[num_partitions];
@@ -360,8 +425,27 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         // Distributed Transaction Queue Manager
         this.txnQueueManager = new TransactionQueueManager(this);
         this.txnid_manager = new TransactionIdManager(this.site_id);
+        this.inflight_txns = new InflightTxnTable<AbstractTransaction>(hstore_conf.site.txn_inflight_table_size);
         this.threadManager = new HStoreThreadManager(this);
-        this.voltListener = new VoltProcedureListener(this.procEventLoop, this);
+        this.txn_latencies = (hstore_conf.site.txn_profiling ? new TxnLatencyStats(this.catalog_db) : null);
+        this.batchPlanCache = (hstore_conf.site.planner_plan_cache_size > 0 ?
+                                    new BatchPlanCache(hstore_conf.site.planner_plan_cache_size) : null);
+        this.procEventLoops = new NIOEventLoop[Math.max(1, hstore_conf.site.txn_incoming_listeners)];
+        for (int i = 0; i < this.procEventLoops.length; i++) {
+            this.procEventLoops[i] = new NIOEventLoop();
+        } // FOR
+        this.voltListener = new VoltProcedureListener(this.procEventLoops[0], this.procEventLoops, this);
+        this.voltListener.setResponseBatching(hstore_conf.site.txn_response_batching);
+        
+        this.incoming_requests = new LinkedBlockingDeque<Object[]>(
+                Math.max(1, hstore_conf.site.queue_incoming_max_per_partition * this.num_local_partitions));
+        if (hstore_conf.site.txn_incoming_routers > 0) {
+            if (d)
+                LOG.debug(String.format("Starting %d transaction routing threads", hstore_conf.site.txn_incoming_routers));
+            for (int i = 0; i < hstore_conf.site.txn_incoming_routers; i++) {
+                this.routers.add(new TransactionRouter(this, i, this.incoming_requests));
+            } // FOR
+        }
         
         if (hstore_conf.site.status_show_executor_info) {
             this.idle_time.resetOnEvent(this.startWorkload_observable);
@@ -461,6 +545,66 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     public Collection<PartitionExecutorPostProcessor> getExecutionSitePostProcessors() {
         return (this.processors);
     }
+    public Collection<TransactionRouter> getTransactionRouters() {
+        return (this.routers);
+    }
+    /**
+     * Returns the number of event loop threads that read requests from client connections
+     */
+    public int getListenerCount() {
+        return (this.procEventLoops.length);
+    }
+    /**
+     * Returns the number of new txn requests that are waiting for a TransactionRouter
+     */
+    public int getIncomingRequestCount() {
+        return (this.incoming_requests.size());
+    }
+    /**
+     * Returns the site-wide BatchPlanCache. This will be null if it is disabled
+     */
+    public BatchPlanCache getBatchPlanCache() {
+        return (this.batchPlanCache);
+    }
+    /**
+     * Returns the site-wide latency histograms. This will be null if txn profiling is disabled
+     */
+    public TxnLatencyStats getTxnLatencyStats() {
+        return (this.txn_latencies);
+    }
+    /**
+     * Returns the ReplicationStream for the given partition.
+     * This will be null if this site does not have any replicas
+     * @param partition
+     * @return
+     */
+    public ReplicationStream getReplicationStream(int partition) {
+        return (this.replication_streams[partition]);
+    }
+    /**
+     * Returns the CommandLogWriter for this site.
+     * This will be null if command logging is disabled
+     * @return
+     */
+    public CommandLogWriter getCommandLogWriter() {
+        return (this.commandLogger);
+    }
+    /**
+     * Returns the CommandLogRecovery for this site.
+     * This will be null if we did not recover from a command log when we started
+     * @return
+     */
+    public CommandLogRecovery getCommandLogRecovery() {
+        return (this.commandLogRecovery);
+    }
+    /**
+     * Returns the file that this site writes its command log into
+     * @return
+     */
+    public File getCommandLogFile() {
+        return (new File(String.format("%s/%s-%d.log", hstore_conf.site.commandlog_dir,
+                                       this.getSiteName(), this.catalog_site.getProc_port())));
+    }
     /**
      * Return a new HStoreCoordinator for this HStoreSite. Note that this
      * should only be called by HStoreSite.init(), otherwise the 
@@ -520,7 +664,7 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     /**
      * Return the list of all the partition ids in this H-Store database cluster
      */
-    public Collection<Integer> getAllPartitionIds() {
+    public PartitionSet getAllPartitionIds() {
         return (this.all_partitions);
     }
     
@@ -536,7 +680,7 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     }
     
     @SuppressWarnings("unchecked")
-    public <T extends AbstractTransaction> T getTransaction(Long txn_id) {
+    public <T extends AbstractTransaction> T getTransaction(long txn_id) {
         return ((T)this.inflight_txns.get(txn_id));
     }
     /**
@@ -552,6 +696,12 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     protected int getInflightTxnCount() {
         return (this.inflight_txns.size());
     }
+    /**
+     * Get the table of in-flight transaction handles
+     */
+    protected InflightTxnTable<AbstractTransaction> getInflightTxnTable() {
+        return (this.inflight_txns);
+    }
     protected int getDTXNQueueSize() {
         int ctr = 0;
         for (Integer p : this.local_partitions) {
@@ -596,7 +746,7 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         
         this.hstore_coordinator = this.initHStoreCoordinator();
         
-        EventObservableExceptionHandler handler = new EventObservableExceptionHandler();
+        EventObservableExceptionHandler handler = this.exceptionHandler;
         EventObserver<Pair<Thread, Throwable>> observer = new EventObserver<Pair<Thread, Throwable>>() {
             @Override
             public void update(EventObservable<Pair<Thread, Throwable>> o, Pair<Thread, Throwable> arg) {
@@ -644,6 +794,14 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
             } // FOR
         }
         
+        // Start the TransactionRouters
+        for (TransactionRouter router : this.routers) {
+            t = new Thread(router);
+            t.setDaemon(true);
+            t.setUncaughtExceptionHandler(handler);
+            t.start();
+        } // FOR
+        
         // Start the MapReduceHelperThread
         if (this.mr_helper != null) {
             t = new Thread(this.mr_helper);
@@ -652,6 +810,22 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
             t.start();
         }
         
+        // Start the ReplicationStreams for our local partitions
+        // These have to be ready before the PartitionExecutors start
+        List<Integer> replica_ids = this.hstore_coordinator.getReplicaIds();
+        if (replica_ids.isEmpty() == false) {
+            if (d) LOG.debug(String.format("Starting ReplicationStreams for %d partitions [replicas=%s]",
+                                           this.local_partitions.size(), replica_ids));
+            for (int partition : this.local_partitions) {
+                ReplicationStream stream = new ReplicationStream(this, partition, replica_ids);
+                this.replication_streams[partition] = stream;
+                t = new Thread(stream);
+                t.setDaemon(true);
+                t.setUncaughtExceptionHandler(handler);
+                t.start();
+            } // FOR
+        }
+        
         // Schedule the ExecutionSiteHelper
 //        if (d) LOG.debug(String.format("Scheduling ExecutionSiteHelper to run every %.1f seconds", hstore_conf.site.helper_interval / 1000f));
 //        this.helper = new ExecutionSiteHelper(this,
@@ -705,6 +879,43 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         return (this);
     }
     
+    /**
+     * Replay our old command log (if ${site.commandlog_recover} is enabled) and then
+     * start the command log writer. This has to be called after init() but
+     * before start(), since we can't accept new txns until we have recovered.
+     */
+    protected void initCommandLog() {
+        if (hstore_conf.site.commandlog_enable == false) return;
+        
+        File file = this.getCommandLogFile();
+        long end_position = -1;
+        if (hstore_conf.site.commandlog_recover && file.exists() && file.length() > 0) {
+            try {
+                CommandLogReader reader = new CommandLogReader(file);
+                this.commandLogRecovery = new CommandLogRecovery(this, reader);
+                this.commandLogRecovery.recoverLocal();
+                
+                // The other sites can only start sending us their distributed txns
+                // once all of our single-partition txns are back
+                this.recovering = false;
+                this.commandLogRecovery.recoverDistributed();
+                end_position = reader.getPosition();
+                reader.close();
+            } catch (IOException ex) {
+                throw new RuntimeException("Failed to recover from command log " + file, ex);
+            }
+        }
+        this.recovering = false;
+        
+        // New entries get added after everything that we just recovered
+        this.commandLogger = new CommandLogWriter(this, file, end_position);
+        if (d) LOG.debug("Writing command log to " + this.commandLogger.getFile());
+        Thread t = new Thread(this.commandLogger);
+        t.setDaemon(true);
+        t.setUncaughtExceptionHandler(this.exceptionHandler);
+        t.start();
+    }
+    
     /**
      * Mark this HStoreSite as ready for action!
      */
@@ -817,6 +1028,9 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         for (PartitionExecutorPostProcessor espp : this.processors) {
             espp.prepareShutdown(false);
         } // FOR
+        for (TransactionRouter router : this.routers) {
+            router.prepareShutdown(false);
+        } // FOR
         
         if (this.mr_helper != null)
             this.mr_helper.prepareShutdown(error);
@@ -844,17 +1058,33 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         // Stop the monitor thread
         if (this.status_monitor != null) this.status_monitor.shutdown();
         
+        // Dump out our latency histograms
+        if (this.txn_latencies != null && hstore_conf.site.txn_profiling_dump) {
+            File f = new File(String.format("%s/%s-latencies.json", hstore_conf.site.log_dir, this.getSiteName()));
+            try {
+                this.txn_latencies.save(f.getAbsolutePath());
+                LOG.info("Wrote latency histograms to " + f);
+            } catch (IOException ex) {
+                LOG.warn("Failed to write latency histograms to " + f, ex);
+            }
+        }
+        
         // Tell our local boys to go down too
         for (PartitionExecutorPostProcessor p : this.processors) {
             p.shutdown();
         }
+        for (TransactionRouter router : this.routers) {
+            router.shutdown();
+        } // FOR
         // Tell the MapReduceHelperThread to shutdown too
         if (this.mr_helper != null) this.mr_helper.shutdown();
         
         for (int p : this.local_partitions) {
             if (t) LOG.trace("Telling the PartitionExecutor for partition " + p + " to shutdown");
             this.executors[p].shutdown();
+            if (this.replication_streams[p] != null) this.replication_streams[p].shutdown();
         } // FOR
+        if (this.commandLogger != null) this.commandLogger.shutdown();
       
         // Tell anybody that wants to know that we're going down
         if (t) LOG.trace("Notifying " + this.shutdown_observable.countObservers() + " observers that we're shutting down");
@@ -865,7 +1095,9 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         
         // Tell all of our event loops to stop
         if (t) LOG.trace("Telling Procedure Listener event loops to exit");
-        this.procEventLoop.exitLoop();
+        for (NIOEventLoop procEventLoop : this.procEventLoops) {
+            procEventLoop.exitLoop();
+        } // FOR
         
         // if (t) LOG.trace("Telling Dtxn.Engine event loop to exit");
         // this.engineEventLoop.exitLoop();
@@ -891,6 +1123,51 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
     public void procedureInvocation(StoredProcedureInvocation request, byte[] serializedRequest, RpcCallback<byte[]> done) {
         long timestamp = (hstore_conf.site.txn_profiling ? ProfileMeasurement.getTime() : -1);
         
+        // If we have TransactionRouters, then we'll let one of them do all of the
+        // estimation work so that the listener thread can go back to its socket
+        if (this.routers.isEmpty() == false) {
+            if (t) LOG.trace(String.format("Queuing new %s request for TransactionRouter [handle=%d]",
+                                           request.getProcName(), request.getClientHandle()));
+            if (this.incoming_requests.offer(new Object[]{ request, serializedRequest, done, timestamp }) == false) {
+                Status status = (hstore_conf.site.queue_incoming_throttle ? Status.ABORT_THROTTLED : Status.ABORT_REJECT);
+                if (d) LOG.debug(String.format("Rejecting new %s request because the routing queue is full [handle=%d, status=%s, queueSize=%d]",
+                                               request.getProcName(), request.getClientHandle(), status, this.incoming_requests.size()));
+                this.rejectInvocation(request, done, status, "The HStoreSite's incoming request queue is full");
+            }
+            return;
+        }
+        this.initializeInvocation(request, serializedRequest, done, timestamp);
+    }
+    
+    /**
+     * Send an error ClientResponse back for a request that never got a txn handle
+     * @param request
+     * @param done
+     * @param status
+     * @param message
+     */
+    public void rejectInvocation(StoredProcedureInvocation request, RpcCallback<byte[]> done, Status status, String message) {
+        ClientResponseImpl cresponse = new ClientResponseImpl(-1, request.getClientHandle(), -1, status, HStoreConstants.EMPTY_RESULT, message);
+        cresponse.setThrottleFlag(status == Status.ABORT_THROTTLED);
+        byte output[] = null;
+        try {
+            output = FastSerializer.serialize(cresponse);
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed to serialize ClientResponse for " + request.getProcName() + " request", ex);
+        }
+        done.run(output);
+    }
+    
+    /**
+     * Figure out where a new txn request needs to go and then dispatch it.
+     * This is either invoked directly by the listener thread that read the request
+     * or by one of our TransactionRouters.
+     * @param request
+     * @param serializedRequest
+     * @param done
+     * @param timestamp When the request arrived (only used if txn profiling is enabled)
+     */
+    public void initializeInvocation(StoredProcedureInvocation request, byte[] serializedRequest, RpcCallback<byte[]> done, long timestamp) {
         LOG.info("HStoreSite handling the procedureInvocation(...) request.\nSite ID: " + this.catalog_site.getId()+".\nProc port: " + this.catalog_site.getProc_port());
         // The serializedRequest is a StoredProcedureInvocation object
 //        StoredProcedureInvocation request = null;
@@ -942,6 +1219,26 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
                 this.hstore_coordinator.shutdownCluster(new Exception("Shutdown command received at " + this.getSiteName()), false);
                 return;
             }
+            // Single-partition sysprocs always take the partition that they need to
+            // execute on as their first parameter
+            if (catalog_proc.getSinglepartition()) {
+                String error = null;
+                if (args.length == 0 || (args[0] instanceof Number) == false) {
+                    error = String.format("%s expects the partition to execute on as its first parameter",
+                                          catalog_proc.getName());
+                } else {
+                    base_partition = ((Number)args[0]).intValue();
+                    if (this.all_partitions.contains(base_partition) == false) {
+                        error = String.format("Invalid partition %d for %s", base_partition, catalog_proc.getName());
+                    }
+                }
+                if (error != null) {
+                    if (d) LOG.debug(String.format("Rejecting %s request [handle=%d]: %s",
+                                                   catalog_proc.getName(), request.getClientHandle(), error));
+                    this.rejectInvocation(request, done, Status.ABORT_GRACEFUL, error);
+                    return;
+                }
+            }
         // DB2-style Transaction Redirection
         } else if (base_partition != -1 || hstore_conf.site.exec_db2_redirects) {
             if (d) LOG.debug(String.format("Using embedded base partition from %s request", request.getProcName()));
@@ -989,8 +1286,18 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
             }
             
             // Mark this request as having been redirected
+            // If the listener didn't give us the raw bytes, then we have to serialize it again
             assert(request.hasBasePartition() == false) : "Trying to redirect " + request.getProcName() + " transaction more than once!";
-            StoredProcedureInvocation.markRawBytesAsRedirected(base_partition, serializedRequest);
+            if (serializedRequest == null) {
+                request.setBasePartition(base_partition);
+                try {
+                    serializedRequest = FastSerializer.serialize(request);
+                } catch (IOException ex) {
+                    throw new RuntimeException("Failed to serialize " + request.getProcName() + " request to redirect it", ex);
+                }
+            } else {
+                StoredProcedureInvocation.markRawBytesAsRedirected(base_partition, serializedRequest);
+            }
             
             this.hstore_coordinator.transactionRedirect(serializedRequest, callback, base_partition);
             if (hstore_conf.site.status_show_txn_info) TxnCounter.REDIRECTED.inc(catalog_proc);
@@ -1028,14 +1335,20 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         Collection<Integer> predict_touchedPartitions = null;
         TransactionEstimator.State t_state = null; 
         
-        // Sysprocs are always multi-partitioned
+        // Sysprocs are always multi-partitioned, unless they were explicitly marked
+        // as being single-partitioned
         // Done(xin): add mapreduce
-        if (sysproc || catalog_proc.getMapreduce()) {
+        if ((sysproc && catalog_proc.getSinglepartition() == false) || catalog_proc.getMapreduce()) {
             if (t) LOG.trace(String.format("New request is for a %s %s, so it has to be multi-partitioned [clientHandle=%d]",
                              (catalog_proc.getMapreduce() ? "MapReduce" : "sysproc"),
                              request.getProcName(), request.getClientHandle()));
             predict_touchedPartitions = this.all_partitions;
             
+        } else if (sysproc) {
+            if (t) LOG.trace(String.format("New request is for single-partition sysproc %s on partition %d [clientHandle=%d]",
+                             request.getProcName(), base_partition, request.getClientHandle()));
+            predict_touchedPartitions = this.single_partition_sets[base_partition];
+            
         // Force all transactions to be single-partitioned
         } else if (hstore_conf.site.exec_force_singlepartitioned) {
             if (t) LOG.trace(String.format("The \"Always Single-Partitioned\" flag is true. Marking new %s transaction as single-partitioned on partition %d [clientHandle=%d]",
@@ -1122,41 +1435,72 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
             }
         }
         
-        if (mapreduce) {
-            ((MapReduceTransaction)ts).init(
-                    txn_id, request.getClientHandle(), base_partition,
-                    predict_touchedPartitions, predict_readOnly, predict_abortable,
-                    catalog_proc, request, done);
-        } else {
-            ts.init(
-                    txn_id, request.getClientHandle(), base_partition,
-                    predict_touchedPartitions, predict_readOnly, predict_abortable,
-                    catalog_proc, request, done);
-        }
-        if (t_state != null) ts.setEstimatorState(t_state);
-        
-        if (hstore_conf.site.txn_profiling) ts.profiler.startTransaction(timestamp);
-        if (d) {
-            LOG.debug(String.format("Initializing %s on partition %d [clientHandle=%d, partitions=%s, readOnly=%s, abortable=%s]",
-                      ts, base_partition,
-                      request.getClientHandle(),
-                      predict_touchedPartitions, predict_readOnly, predict_abortable));
+        try {
+            if (mapreduce) {
+                ((MapReduceTransaction)ts).init(
+                        txn_id, request.getClientHandle(), base_partition,
+                        predict_touchedPartitions, predict_readOnly, predict_abortable,
+                        catalog_proc, request, done);
+            } else {
+                ts.init(
+                        txn_id, request.getClientHandle(), base_partition,
+                        predict_touchedPartitions, predict_readOnly, predict_abortable,
+                        catalog_proc, request, done);
+            }
+            if (t_state != null) ts.setEstimatorState(t_state);
+            
+            if (hstore_conf.site.txn_profiling) ts.profiler.startTransaction(timestamp);
+            if (d) {
+                LOG.debug(String.format("Initializing %s on partition %d [clientHandle=%d, partitions=%s, readOnly=%s, abortable=%s]",
+                          ts, base_partition,
+                          request.getClientHandle(),
+                          predict_touchedPartitions, predict_readOnly, predict_abortable));
+            }
+            
+            // If this is the first non-sysproc transaction that we've seen, then
+            // we will notify anybody that is waiting for this event. This is used to clear
+            // out any counters or profiling information that got recorded when we were loading data
+            if (this.startWorkload == false && sysproc == false) {
+                synchronized (this) {
+                    if (this.startWorkload == false) {
+                        this.startWorkload = true;
+                        this.startWorkload_observable.notifyObservers(ts);
+                    }
+                } // SYNCH
+            }
+            this.dispatchInvocation(ts);
+        } catch (RuntimeException ex) {
+            this.abortInvocation(ts, txn_id, ex);
+            return;
         }
         
-        // If this is the first non-sysproc transaction that we've seen, then
-        // we will notify anybody that is waiting for this event. This is used to clear
-        // out any counters or profiling information that got recorded when we were loading data
-        if (this.startWorkload == false && sysproc == false) {
-            synchronized (this) {
-                if (this.startWorkload == false) {
-                    this.startWorkload = true;
-                    this.startWorkload_observable.notifyObservers(ts);
+        if (d) LOG.debug("Finished initial processing of " + ts + ". Returning back to listen on incoming socket");
+    }
+
+    /**
+     * Clean up after a new txn that failed before it could be handed off to its
+     * PartitionExecutor or the HStoreCoordinator. If it never made it into inflight_txns,
+     * then nobody else knows about it, so we just throw the error back to our caller
+     * so that it can reject the request. Otherwise we have to reject it and clean it
+     * up like any other txn so that the client gets exactly one response.
+     * @param ts
+     * @param txn_id
+     * @param error
+     */
+    private void abortInvocation(LocalTransaction ts, Long txn_id, RuntimeException error) {
+        if (this.inflight_txns.get(txn_id) != ts) {
+            if (ts.isInitialized()) {
+                if (ts.isMapReduce()) {
+                    HStoreObjectPools.STATES_TXN_MAPREDUCE.returnObject((MapReduceTransaction)ts);
+                } else {
+                    HStoreObjectPools.STATES_TXN_LOCAL.returnObject(ts);
                 }
-            } // SYNCH
+            }
+            throw error;
         }
-        this.dispatchInvocation(ts);
-        
-        if (d) LOG.debug("Finished initial processing of " + ts + ". Returning back to listen on incoming socket");
+        LOG.error(String.format("Failed to dispatch %s. Rejecting...", ts), error);
+        this.transactionReject(ts, Status.ABORT_REJECT);
+        this.completeTransaction(txn_id, Status.ABORT_REJECT);
     }
 
     /**
@@ -1168,25 +1512,9 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         Long txn_id = ts.getTransactionId();
         int base_partition = ts.getBasePartition();
                 
-        // For some odd reason we sometimes get duplicate transaction ids from the VoltDB id generator
-        // So we'll just double check to make sure that it's unique, and if not, we'll just ask for a new one
+        // The TransactionIdManager never hands out the same id twice
         LocalTransaction dupe = (LocalTransaction)this.inflight_txns.put(txn_id, ts);
-        if (dupe != null) {
-            // HACK!
-            this.inflight_txns.put(txn_id, dupe);
-            // long new_txn_id = this.txnid_managers[base_partition].getNextUniqueTransactionId();
-            Long new_txn_id = new Long(this.txnid_manager.getNextUniqueTransactionId());
-            if (new_txn_id == txn_id) {
-                String msg = "Duplicate transaction id #" + txn_id;
-                LOG.fatal("ORIG TRANSACTION:\n" + dupe);
-                LOG.fatal("NEW TRANSACTION:\n" + ts);
-                this.hstore_coordinator.shutdownCluster(new Exception(msg), true);
-            }
-            LOG.warn(String.format("Had to fix duplicate txn ids: %d -> %d", txn_id, new_txn_id));
-            txn_id = new_txn_id;
-            ts.setTransactionId(txn_id);
-            this.inflight_txns.put(txn_id, ts);
-        }
+        assert(dupe == null) : String.format("Duplicate transaction id #%d\nORIG TRANSACTION:\n%s\nNEW TRANSACTION:\n%s", txn_id, dupe, ts);
         
         // -------------------------------
         // SINGLE-PARTITION TRANSACTION
@@ -1206,7 +1534,7 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
             
             // Partitions
             // Figure out what partitions we plan on touching for this transaction
-            Collection<Integer> predict_touchedPartitions = ts.getPredictTouchedPartitions();
+            PartitionSet predict_touchedPartitions = ts.getPredictTouchedPartitions();
             
             if (ts.isMapReduce() == false) {
                 // TransactionEstimator
@@ -1225,7 +1553,7 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
 
             // Check whether our transaction can't run right now because its id is less than
             // the last seen txnid from the remote partitions that it wants to touch
-            for (int partition : predict_touchedPartitions) {
+            for (int partition = predict_touchedPartitions.next(0); partition != -1; partition = predict_touchedPartitions.next(partition + 1)) {
                 long last_txn_id = this.txnQueueManager.getLastTransaction(partition); 
                 if (txn_id < last_txn_id) {
                     // If we catch it here, then we can just block ourselves until
@@ -1256,6 +1584,12 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
      * @param callback
      */
     public void transactionInit(Long txn_id, Collection<Integer> partitions, TransactionInitWrapperCallback callback) {
+        // The other site will keep retrying until we are done replaying our command log
+        if (this.recovering) {
+            if (d) LOG.debug(String.format("Rejecting remote txn #%d while recovering from our command log", txn_id));
+            callback.abort(Status.ABORT_REJECT);
+            return;
+        }
         // We should always force a txn from a remote partition into the queue manager
         this.txnQueueManager.insert(txn_id, partitions, callback, true);
     }
@@ -1284,6 +1618,106 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         }
     }
     
+    /**
+     * Replay a single-partition txn that was already committed at the primary for the
+     * given partition. This is only used at replica sites. The txn skips the
+     * TransactionQueueManager and all of the init/prepare/finish callbacks and just gets
+     * queued directly at the partition's PartitionExecutor. The replica executes these
+     * txns in the same order that the primary committed them, so the ClientResponse is
+     * just thrown away.
+     * @param txn_id The txn id assigned by the primary
+     * @param catalog_proc
+     * @param params
+     * @param partition
+     */
+    public void transactionReplay(Long txn_id, Procedure catalog_proc, ParameterSet params, int partition) {
+        RpcCallback<byte[]> callback = NullCallback.getInstance();
+        LocalTransaction ts = this.createReplayTransaction(this.getReplayTransactionId(), txn_id.longValue(),
+                                                          catalog_proc, params.toArray(), partition, callback);
+        ts.markReplay();
+        this.executors[partition].queueNewTransaction(ts, true);
+    }
+    
+    /**
+     * Replay the WorkFragments that a distributed txn executed at the given partition
+     * of the primary. This is only used at replica sites. Every partition that the dtxn
+     * touched gets its own single-partition @ReplayWork txn, so the replica never has to
+     * run a dtxn of its own, and the partitions that are not at this site are taken care
+     * of by their own replicas.
+     * @param txn_id The txn id assigned by the primary
+     * @param fragments
+     * @param parameters The ParameterSets for each WorkFragment
+     * @param partition
+     */
+    public void transactionReplayWork(Long txn_id, List<WorkFragment> fragments, List<ParameterSet[]> parameters, int partition) {
+        assert(fragments.size() == parameters.size());
+        Procedure catalog_proc = this.catalog_db.getProcedures().getIgnoreCase("@" + ReplayWork.class.getSimpleName());
+        if (catalog_proc == null) {
+            throw new RuntimeException("The catalog does not have " + ReplayWork.class.getSimpleName() + " sysproc");
+        }
+        RpcCallback<byte[]> callback = NullCallback.getInstance();
+        LocalTransaction ts = this.createReplayTransaction(this.getReplayTransactionId(), txn_id.longValue(),
+                                                          catalog_proc, new Object[]{ partition }, partition, callback);
+        ts.markReplay();
+        for (int i = 0, cnt = fragments.size(); i < cnt; i++) {
+            ts.addReplayWork(fragments.get(i), parameters.get(i));
+        } // FOR
+        this.executors[partition].queueNewTransaction(ts, true);
+    }
+    
+    /**
+     * Replay a txn that was already committed as a single-partition txn at the given partition.
+     * The serialized ClientResponse will be passed to the given callback once it is done.
+     * @param txn_id
+     * @param catalog_proc
+     * @param params
+     * @param partition
+     * @param callback
+     */
+    public void transactionReplay(Long txn_id, Procedure catalog_proc, ParameterSet params, int partition, RpcCallback<byte[]> callback) {
+        LocalTransaction ts = this.createReplayTransaction(txn_id, txn_id.longValue(), catalog_proc,
+                                                          params.toArray(), partition, callback);
+        this.executors[partition].queueNewTransaction(ts, true);
+    }
+    
+    /**
+     * Replicas replay txns under new txn ids from this site. PartitionExecutors execute
+     * their queued txns in txn id order, so this keeps them in the same order that the
+     * primary's replication stream gave them to us. It also means that a dtxn that is
+     * replayed at more than one of our partitions does not collide with itself.
+     */
+    private Long getReplayTransactionId() {
+        return (new Long(this.txnid_manager.getNextUniqueTransactionId()));
+    }
+    
+    private LocalTransaction createReplayTransaction(Long txn_id, long client_handle, Procedure catalog_proc,
+                                                     Object params[], int partition, RpcCallback<byte[]> callback) {
+        assert(this.single_partition_sets[partition] != null) :
+            "Trying to replay txn #" + txn_id + " at non-local partition " + partition;
+        
+        LocalTransaction ts = null;
+        try {
+            ts = HStoreObjectPools.STATES_TXN_LOCAL.borrowObject();
+            assert(ts.isInitialized() == false);
+        } catch (Throwable ex) {
+            LOG.fatal(String.format("Failed to instantiate new LocalTransactionState for replayed %s txn #%s",
+                                    catalog_proc.getName(), txn_id));
+            throw new RuntimeException(ex);
+        }
+        StoredProcedureInvocation invocation = new StoredProcedureInvocation(client_handle, catalog_proc.getName(), params);
+        invocation.setBasePartition(partition);
+        ts.init(txn_id, client_handle, partition,
+                this.single_partition_sets[partition], catalog_proc.getReadonly(), true,
+                catalog_proc, invocation, callback);
+        
+        AbstractTransaction dupe = this.inflight_txns.put(txn_id, ts);
+        assert(dupe == null) : "Trying to replay multiple transaction handles for " + dupe;
+        
+        if (d) LOG.debug(String.format("Replaying %s on partition %d [origTxnId=%d]", ts, partition, client_handle));
+        if (hstore_conf.site.txn_profiling) ts.profiler.startTransaction(ProfileMeasurement.getTime());
+        return (ts);
+    }
+    
     public MapReduceTransaction createMapReduceTransaction(Long txn_id, StoredProcedureInvocation invocation, int base_partition) {
         String proc_name = invocation.getProcName();
         Procedure catalog_proc = catalog_db.getProcedures().getIgnoreCase(proc_name);
@@ -1510,8 +1944,27 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         if (status != Status.ABORT_MISPREDICT) {
             if (d) LOG.debug(String.format("Sending back ClientResponse for " + ts));
 
-            // Send result back to client!
-            ts.getClientCallback().run(this.serializeClientResponse(ts, cresponse).array());
+            byte output[] = this.serializeClientResponse(ts, cresponse).array();
+            
+            // This is the commit point for a distributed txn, since none of its partitions have
+            // been released yet. So this is where it has to go into the command log.
+            // Single-partition txns were already added when their PartitionExecutor committed them
+            if (this.commandLogger != null && status == Status.OK && ts.isPredictSinglePartition() == false &&
+                ts.getProcedure().getReadonly() == false) {
+                this.commandLogger.appendToLog(ts);
+            }
+            
+            // A distributed txn sends back its response after the 2PC PREPARE, but its replicas
+            // only apply it once they get the FINISH records. So if we are replicating
+            // synchronously, we have to hold on to it until completeTransaction()
+            ReplicationStream stream = this.replication_streams[ts.getBasePartition()];
+            if (status == Status.OK && ts.isPredictSinglePartition() == false &&
+                stream != null && stream.isSynchronous()) {
+                if (d) LOG.debug(String.format("Holding ClientResponse for %s until it is finished", ts));
+                ts.holdClientResponse(output);
+            } else {
+                this.logClientResponse(ts, status, output);
+            }
         }
         // If the txn was mispredicted, then we will pass the information over to the HStoreSite
         // so that it can re-execute the transaction. We want to do this first so that the txn gets re-executed
@@ -1522,6 +1975,43 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         }
     }
     
+    /**
+     * If the txn modified the database, then it has to be in the command log
+     * before we can tell the client that it committed
+     * @param ts
+     * @param status
+     * @param output
+     */
+    private void logClientResponse(LocalTransaction ts, Status status, byte output[]) {
+        if (this.commandLogger != null && status == Status.OK && ts.getProcedure().getReadonly() == false) {
+            this.commandLogger.queueClientResponse(ts, output);
+        } else {
+            this.releaseClientResponse(ts.getBasePartition(), ts.getReplicationSequence(), ts.getClientCallback(), output);
+        }
+    }
+    
+    /**
+     * Send a serialized ClientResponse back to the client once it is safe to do so.
+     * We can't use the txn's LocalTransaction handle here because this may be invoked
+     * after the txn has been cleaned up.
+     * @param base_partition
+     * @param replication_sequence
+     * @param callback
+     * @param output
+     */
+    public void releaseClientResponse(int base_partition, long replication_sequence, RpcCallback<byte[]> callback, byte output[]) {
+        // If we are replicating synchronously, then the ReplicationStream will hold
+        // on to the response until the replicas have caught up with this txn.
+        ReplicationStream stream = this.replication_streams[base_partition];
+        if (replication_sequence > 0 && stream != null && stream.isSynchronous()) {
+            stream.queueClientResponse(replication_sequence, callback, output);
+        }
+        // Send result back to client!
+        else {
+            callback.run(output);
+        }
+    }
+    
     // ----------------------------------------------------------------------------
     // FAILED TRANSACTIONS (REQUEUE / REJECT / RESTART)
     // ----------------------------------------------------------------------------
@@ -1589,6 +2079,15 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         assert(orig_ts.isInitialized()) : "Uninitialized transaction??";
         if (d) LOG.debug(String.format("%s got hit with a %s! Going to clean-up our mess and re-execute [restarts=%d]",
                                    orig_ts , status, orig_ts.getRestartCounter()));
+        // A txn from a primary's replication stream was already committed there. If we
+        // restarted it as a dtxn, our coordinator would send its work to the primary's
+        // partitions and apply its writes there a second time
+        if (orig_ts.isReplay()) {
+            LOG.error(String.format("Not restarting replayed %s after %s", orig_ts, status));
+            this.transactionReject(orig_ts, Status.ABORT_REJECT);
+            return;
+        }
+        
         int base_partition = orig_ts.getBasePartition();
         StoredProcedureInvocation spi = orig_ts.getInvocation();
         assert(spi != null) : "Missing StoredProcedureInvocation for " + orig_ts;
@@ -1697,14 +2196,12 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         // Restart the new transaction
         if (hstore_conf.site.txn_profiling) new_ts.profiler.startTransaction(ProfileMeasurement.getTime());
         
-        boolean malloc = false;
-        Collection<Integer> predict_touchedPartitions = null;
+        // The new LocalTransaction makes its own copy of this set
+        PartitionSet predict_touchedPartitions = new PartitionSet(this.all_partitions.size());
         if (status == Status.ABORT_RESTART) {
-            predict_touchedPartitions = orig_ts.getPredictTouchedPartitions();
+            predict_touchedPartitions.addAll(orig_ts.getPredictTouchedPartitions());
         } else if (orig_ts.getOriginalTransactionId() == null && orig_ts.hasTouchedPartitions()) {
             // HACK: Ignore ConcurrentModificationException
-            predict_touchedPartitions = new HashSet<Integer>();
-            malloc = true;
             Collection<Integer> orig_touchedPartitions = orig_ts.getTouchedPartitions().values();
             while (true) {
                 try {
@@ -1715,31 +2212,17 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
                 break;
             } // WHILE
         } else {
-            predict_touchedPartitions = this.all_partitions;
+            predict_touchedPartitions.addAll(this.all_partitions);
         }
         
         if (status == Status.ABORT_MISPREDICT && orig_ts.getPendingError() instanceof MispredictionException) {
             MispredictionException ex = (MispredictionException)orig_ts.getPendingError();
             Collection<Integer> partitions = ex.getPartitions().values();
-            if (predict_touchedPartitions.containsAll(partitions) == false) {
-                if (malloc == false) {
-                    predict_touchedPartitions = new HashSet<Integer>(predict_touchedPartitions);
-                    malloc = true;
-                }
-                predict_touchedPartitions.addAll(partitions);
-            }
+            predict_touchedPartitions.addAll(partitions);
             if (d) LOG.debug(orig_ts + " Mispredicted Partitions: " + partitions);
         }
         
-        if (predict_touchedPartitions.contains(base_partition) == false) {
-            if (malloc == false) {
-                predict_touchedPartitions = new HashSet<Integer>(predict_touchedPartitions);
-                malloc = true;
-            }
-            predict_touchedPartitions.add(base_partition);
-        }
-        
-        if (predict_touchedPartitions.isEmpty()) predict_touchedPartitions = this.all_partitions;
+        predict_touchedPartitions.add(base_partition);
         boolean predict_readOnly = orig_ts.getProcedure().getReadonly(); // FIXME
         boolean predict_abortable = true; // FIXME
         new_ts.init(new_txn_id,
@@ -1818,14 +2301,23 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         final int base_partition = ts.getBasePartition();
         final Procedure catalog_proc = ts.getProcedure();
         final boolean singlePartitioned = ts.isPredictSinglePartition();
+        
+        // Every partition has finished this txn, so its FINISH record is now in the
+        // base partition's ReplicationStream and we can queue its ClientResponse
+        byte held_response[] = ts.getHeldClientResponse();
+        if (held_response != null) {
+            assert(ts.getReplicationSequence() > 0) : "Missing FINISH record for " + ts;
+            this.logClientResponse(ts, Status.OK, held_response);
+        }
        
         // Update Transaction profiles
         // We have to calculate the profile information *before* we call PartitionExecutor.cleanup!
         // XXX: Should we include totals for mispredicted txns?
-        if (hstore_conf.site.txn_profiling && this.status_monitor != null &&
+        if (hstore_conf.site.txn_profiling &&
             ts.profiler.isDisabled() == false && status != Status.ABORT_MISPREDICT) {
             ts.profiler.stopTransaction();
-            this.status_monitor.addTxnProfile(catalog_proc, ts.profiler);
+            this.txn_latencies.record(catalog_proc, ts.profiler);
+            if (this.status_monitor != null) this.status_monitor.addTxnProfile(catalog_proc, ts.profiler);
         }
         
         // Clean-up any extra information that we may have for the txn
@@ -1915,34 +2407,41 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
         final Site catalog_site = hstore_site.getSite();
         
         // ----------------------------------------------------------------------------
-        // (1) Procedure Request Listener Thread (one per Site)
+        // (1) Procedure Request Listener Threads
         // ----------------------------------------------------------------------------
-        runnables.add(new Runnable() {
-            public void run() {
-                final Thread self = Thread.currentThread();
-                self.setName(HStoreSite.getThreadName(hstore_site, "listen"));
-                if (hstore_site.getHStoreConf().site.cpu_affinity)
-                    hstore_site.getThreadManager().registerProcessingThread();
-                
-                // Then fire off this thread to have it do some work as it comes in 
-                Throwable error = null;
-                try {
-                    hstore_site.voltListener.bind(catalog_site.getProc_port());
-                    hstore_site.procEventLoop.setExitOnSigInt(true);
-                    hstore_site.ready_latch.countDown();
-                    hstore_site.procEventLoop.run();
-                } catch (Throwable ex) {
-                    if (ex != null && ex.getMessage() != null && ex.getMessage().contains("Connection closed") == false) {
-                        error = ex;
+        for (int i = 0; i < hstore_site.procEventLoops.length; i++) {
+            final int id = i;
+            runnables.add(new Runnable() {
+                public void run() {
+                    final Thread self = Thread.currentThread();
+                    self.setName(HStoreSite.getThreadName(hstore_site, (id == 0 ? "listen" : "listen" + id)));
+                    if (hstore_site.getHStoreConf().site.cpu_affinity)
+                        hstore_site.getThreadManager().registerProcessingThread();
+                    
+                    // Then fire off this thread to have it do some work as it comes in
+                    // Only the first listener thread accepts new connections
+                    final NIOEventLoop procEventLoop = hstore_site.procEventLoops[id];
+                    Throwable error = null;
+                    try {
+                        if (id == 0) {
+                            hstore_site.voltListener.bind(catalog_site.getProc_port());
+                            procEventLoop.setExitOnSigInt(true);
+                        }
+                        hstore_site.ready_latch.countDown();
+                        procEventLoop.run();
+                    } catch (Throwable ex) {
+                        if (ex != null && ex.getMessage() != null && ex.getMessage().contains("Connection closed") == false) {
+                            error = ex;
+                        }
                     }
-                }
-                if (error != null && hstore_site.isShuttingDown() == false) {
-                    LOG.warn(String.format("Procedure Listener is stopping! [error=%s, hstore_shutdown=%s]",
-                                           (error != null ? error.getMessage() : null), hstore_site.shutdown_state), error);
-                    hstore_site.hstore_coordinator.shutdownCluster(error);
-                }
-            };
-        });
+                    if (error != null && hstore_site.isShuttingDown() == false) {
+                        LOG.warn(String.format("Procedure Listener is stopping! [error=%s, hstore_shutdown=%s]",
+                                               (error != null ? error.getMessage() : null), hstore_site.shutdown_state), error);
+                        hstore_site.hstore_coordinator.shutdownCluster(error);
+                    }
+                };
+            });
+        } // FOR
         
         // ----------------------------------------------------------------------------
         // (5) HStoreSite Setup Thread
@@ -1971,6 +2470,7 @@ public class HStoreSite implements VoltProcedureListener.Handler, Shutdownable,
                         hstore_site.hstore_coordinator.shutdownCluster(ex);
                     }
                 }
+                hstore_site.initCommandLog();
                 hstore_site.start();
             }
         });
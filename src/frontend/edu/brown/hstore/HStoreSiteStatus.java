@@ -18,7 +18,6 @@ import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections15.map.ListOrderedMap;
-import org.apache.commons.pool.impl.StackObjectPool;
 import org.apache.log4j.Logger;
 import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Procedure;
@@ -32,18 +31,21 @@ import edu.brown.hstore.interfaces.Shutdownable;
 import edu.brown.hstore.util.PartitionExecutorPostProcessor;
 import edu.brown.hstore.util.ThrottlingQueue;
 import edu.brown.hstore.util.TxnCounter;
+import edu.brown.hstore.util.TxnLatencyStats;
+import edu.brown.hstore.wal.CommandLogRecovery;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.logging.RingBufferAppender;
 import edu.brown.markov.TransactionEstimator;
 import edu.brown.statistics.Histogram;
+import edu.brown.statistics.LatencyHistogram;
 import edu.brown.utils.CollectionUtil;
 import edu.brown.utils.EventObservable;
 import edu.brown.utils.EventObserver;
 import edu.brown.utils.ProfileMeasurement;
 import edu.brown.utils.StringUtil;
 import edu.brown.utils.TableUtil;
-import edu.brown.utils.TypedPoolableObjectFactory;
+import edu.brown.utils.TypedObjectPool;
 
 /**
  * 
@@ -57,7 +59,7 @@ public class HStoreSiteStatus implements Runnable, Shutdownable {
         LoggerUtil.attachObserver(LOG, debug, trace);
     }
     
-    private static final String POOL_FORMAT = "Active:%-5d / Idle:%-5d / Created:%-5d / Destroyed:%-5d / Passivated:%-7d";
+    private static final String POOL_FORMAT = "Active:%-5d / Idle:%-5d / Borrowed:%-7d / Returned:%-7d / Misses:%-5d / Dropped:%-5d";
     
     
 //    private static final Pattern THREAD_REGEX = Pattern.compile("(edu\\.brown|edu\\.mit|org\\.voltdb)");
@@ -286,7 +288,29 @@ public class HStoreSiteStatus implements Runnable, Shutdownable {
                         pm.getAverageThinkTimeMS()
         ));
         
+        m_exec.put("InFlight Table", hstore_site.getInflightTxnTable().toString());
         m_exec.put("Completed Txns", TxnCounter.COMPLETED.get());
+        m_exec.put("Coordinator Threads", hstore_site.getCoordinator().getEventLoopCount());
+        m_exec.put("Listener Threads", hstore_site.getListenerCount());
+        if (hstore_site.getTransactionRouters().isEmpty() == false) {
+            m_exec.put("Router Threads", String.format("%d [queued=%d]",
+                                                       hstore_site.getTransactionRouters().size(),
+                                                       hstore_site.getIncomingRequestCount()));
+        }
+        if (hstore_site.getBatchPlanCache() != null) {
+            m_exec.put("Plan Cache", hstore_site.getBatchPlanCache().toString());
+        }
+        
+        CommandLogRecovery recovery = hstore_site.getCommandLogRecovery();
+        if (recovery != null) {
+            m_exec.put("Recovery", String.format("%s %d txns / %d distributed / %.1f%% of log / %.2f txn/s",
+                            (recovery.isFinished() ? "Finished" : "Replayed"),
+                            recovery.getReplayedCount(),
+                            recovery.getDistributedCount(),
+                            recovery.getProgress() * 100d,
+                            recovery.getRecoveryRate()
+            ));
+        }
         
         if (hstore_conf.site.exec_postprocessing_thread) {
             int processing_cur = hstore_site.getQueuedResponseCount();
@@ -732,6 +756,30 @@ public class HStoreSiteStatus implements Runnable, Shutdownable {
         return (TableUtil.tableMap(this.txn_profile_format, this.txn_profiler_header, rows));
     }
     
+    /**
+     * Latency percentiles for each part of the system over all procedures,
+     * followed by the total latency percentiles for each procedure
+     * @return
+     */
+    public Map<String, Object> txnLatencyInfo() {
+        TxnLatencyStats stats = hstore_site.getTxnLatencyStats();
+        if (stats == null) return (null);
+        List<Procedure> procs = stats.getProcedures();
+        if (procs.isEmpty()) return (null);
+        
+        Map<String, Object> m = new ListOrderedMap<String, Object>();
+        String phases[] = TxnLatencyStats.getPhases();
+        LatencyHistogram merged[] = stats.getMergedSnapshot();
+        for (int i = 0; i < phases.length; i++) {
+            if (merged[i].isEmpty()) continue;
+            m.put(phases[i], merged[i].toString());
+        } // FOR
+        for (Procedure catalog_proc : procs) {
+            m.put(catalog_proc.getName(), stats.getSnapshot(catalog_proc)[TxnLatencyStats.TOTAL_IDX].toString());
+        } // FOR
+        return (m);
+    }
+    
     public String txnProfileCSV() {
         Object rows[][] = this.generateTxnProfileSnapshot();
         if (rows == null) return (null);
@@ -754,19 +802,18 @@ public class HStoreSiteStatus implements Runnable, Shutdownable {
     private Map<String, Object> poolInfo() {
         
         // HStoreObjectPools
-        Map<String, StackObjectPool> pools = HStoreObjectPools.getAllPools(); 
+        Map<String, TypedObjectPool<?>> pools = HStoreObjectPools.getAllPools(); 
         
         // MarkovPathEstimators
-        pools.put("Estimators", (StackObjectPool)TransactionEstimator.POOL_ESTIMATORS); 
+        pools.put("Estimators", TransactionEstimator.POOL_ESTIMATORS); 
 
         // TransactionEstimator.States
-        pools.put("EstimationStates", (StackObjectPool)TransactionEstimator.POOL_STATES);
+        pools.put("EstimationStates", TransactionEstimator.POOL_STATES);
         
         final Map<String, Object> m_pool = new ListOrderedMap<String, Object>();
         for (String key : pools.keySet()) {
-            StackObjectPool pool = pools.get(key);
-            TypedPoolableObjectFactory<?> factory = (TypedPoolableObjectFactory<?>)pool.getFactory();
-            if (factory.getCreatedCount() > 0) m_pool.put(key, this.formatPoolCounts(pool, factory));
+            TypedObjectPool<?> pool = pools.get(key);
+            if (pool != null && pool.getBorrowCount() > 0) m_pool.put(key, this.formatPoolCounts(pool));
         } // FOR
 
 //        // Partition Specific
@@ -841,6 +888,7 @@ public class HStoreSiteStatus implements Runnable, Shutdownable {
         // Transaction Profiling
         // ----------------------------------------------------------------------------
         Map<String, String> txnProfiles = (hstore_conf.site.txn_profiling ? this.txnProfileInfo() : null);
+        Map<String, Object> txnLatencies = (hstore_conf.site.txn_profiling ? this.txnLatencyInfo() : null);
         
         // ----------------------------------------------------------------------------
         // Object Pool Information
@@ -848,7 +896,7 @@ public class HStoreSiteStatus implements Runnable, Shutdownable {
         Map<String, Object> poolInfo = null;
         if (show_poolinfo) poolInfo = this.poolInfo();
         
-        String top = StringUtil.formatMaps(header, m_exec, m_txn, threadInfo, cpuThreads, txnProfiles, plannerInfo, poolInfo);
+        String top = StringUtil.formatMaps(header, m_exec, m_txn, threadInfo, cpuThreads, txnProfiles, txnLatencies, plannerInfo, poolInfo);
         String bot = "";
         Histogram<Integer> blockedDtxns = hstore_site.getTransactionQueueManager().getBlockedDtxnHistogram(); 
         if (hstore_conf.site.status_show_txn_info && blockedDtxns != null && blockedDtxns.isEmpty() == false) {
@@ -857,11 +905,12 @@ public class HStoreSiteStatus implements Runnable, Shutdownable {
         return (top + bot);
     }
     
-    private String formatPoolCounts(StackObjectPool pool, TypedPoolableObjectFactory<?> factory) {
+    private String formatPoolCounts(TypedObjectPool<?> pool) {
         return (String.format(POOL_FORMAT, pool.getNumActive(),
                                            pool.getNumIdle(),
-                                           factory.getCreatedCount(),
-                                           factory.getDestroyedCount(),
-                                           factory.getPassivatedCount()));
+                                           pool.getBorrowCount(),
+                                           pool.getReturnCount(),
+                                           pool.getMissCount(),
+                                           pool.getDropCount()));
     }
 } // END CLASS
\ No newline at end of file
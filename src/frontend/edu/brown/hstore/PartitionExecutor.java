@@ -42,11 +42,11 @@
 
 package edu.brown.hstore;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -55,12 +55,10 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
-import org.apache.commons.collections15.CollectionUtils;
 import org.apache.commons.collections15.map.ListOrderedMap;
 import org.apache.log4j.Logger;
 import org.voltdb.BackendTarget;
@@ -81,7 +79,6 @@ import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Partition;
 import org.voltdb.catalog.PlanFragment;
 import org.voltdb.catalog.Procedure;
-import org.voltdb.catalog.Replica;
 import org.voltdb.catalog.Site;
 import org.voltdb.catalog.Statement;
 import org.voltdb.catalog.Table;
@@ -126,7 +123,11 @@ import edu.brown.hstore.dtxn.MapReduceTransaction;
 import edu.brown.hstore.dtxn.RemoteTransaction;
 import edu.brown.hstore.interfaces.Loggable;
 import edu.brown.hstore.interfaces.Shutdownable;
+import edu.brown.hstore.replication.ReplicationStream;
+import edu.brown.hstore.snapshot.SnapshotWriter;
+import edu.brown.hstore.util.PartitionWorkQueue;
 import edu.brown.hstore.util.ThrottlingQueue;
+import edu.brown.hstore.wal.CommandLogWriter;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.markov.EstimationThresholds;
@@ -135,6 +136,7 @@ import edu.brown.markov.TransactionEstimator;
 import edu.brown.utils.CollectionUtil;
 import edu.brown.utils.EventObservable;
 import edu.brown.utils.PartitionEstimator;
+import edu.brown.utils.PartitionSet;
 import edu.brown.utils.ProfileMeasurement;
 import edu.brown.utils.StringUtil;
 import edu.brown.utils.TypedPoolableObjectFactory;
@@ -299,6 +301,24 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 
 	protected HStoreSite hstore_site;
 	protected HStoreCoordinator hstore_coordinator;
+
+	/**
+	 * Ordered stream of the work executed at this partition that gets shipped
+	 * to our replicas. This will be null if this site does not have replicas
+	 */
+	protected ReplicationStream replication_stream;
+
+	/**
+	 * The snapshot that we are currently streaming out of the EE in between
+	 * txns. This will be null if there is no snapshot in progress
+	 */
+	private SnapshotWriter snapshot_writer;
+
+	/**
+	 * The snapshot that was taken by a txn that has not committed yet at this
+	 * partition. It is only streamed out once that txn commits
+	 */
+	private SnapshotWriter pending_snapshot;
 	protected HStoreConf hstore_conf;
 
 	// ----------------------------------------------------------------------------
@@ -355,69 +375,9 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 	 * procedure) or FragmentTaskMessage (i.e., execute some fragments on behalf
 	 * of another transaction)
 	 */
-	private final PriorityBlockingQueue<TransactionInfoBaseMessage> work_queue = new PriorityBlockingQueue<TransactionInfoBaseMessage>(
-			10000, work_comparator) {
-		private static final long serialVersionUID = 1L;
-		private final List<TransactionInfoBaseMessage> swap = new ArrayList<TransactionInfoBaseMessage>();
-
-		@Override
-		public int drainTo(Collection<? super TransactionInfoBaseMessage> c) {
-			assert (c != null);
-			TransactionInfoBaseMessage msg = null;
-			int ctr = 0;
-			this.swap.clear();
-			while ((msg = this.poll()) != null) {
-				// All new transaction requests must be put in the new
-				// collection
-				if (msg instanceof InitiateTaskMessage) {
-					c.add(msg);
-					ctr++;
-					// Everything else will get added back in afterwards
-				} else {
-					this.swap.add(msg);
-				}
-			} // WHILE
-			if (this.swap.isEmpty() == false)
-				this.addAll(this.swap);
-			return (ctr);
-		}
-	};
+	private final PartitionWorkQueue work_queue;
 	private final ThrottlingQueue<TransactionInfoBaseMessage> work_throttler;
 
-	private static final Comparator<TransactionInfoBaseMessage> work_comparator = new Comparator<TransactionInfoBaseMessage>() {
-		@Override
-		public int compare(TransactionInfoBaseMessage msg0,
-				TransactionInfoBaseMessage msg1) {
-			assert (msg0 != null);
-			assert (msg1 != null);
-
-			Class<? extends TransactionInfoBaseMessage> class0 = msg0
-					.getClass();
-			Class<? extends TransactionInfoBaseMessage> class1 = msg1
-					.getClass();
-
-			if (class0.equals(class1))
-				return (msg0.getTxnId().compareTo(msg1.getTxnId()));
-
-			boolean isFinish0 = class0.equals(FinishTaskMessage.class);
-			boolean isFinish1 = class1.equals(FinishTaskMessage.class);
-			if (isFinish0 && !isFinish1)
-				return (-1);
-			else if (!isFinish0 && isFinish1)
-				return (1);
-
-			boolean isWork0 = class0.equals(FragmentTaskMessage.class);
-			boolean isWork1 = class1.equals(FragmentTaskMessage.class);
-			if (isWork0 && !isWork1)
-				return (-1);
-			else if (!isWork0 && isWork1)
-				return (1);
-
-			assert (false) : String.format("%s <-> %s", class0, class1);
-			return 0;
-		}
-	};
-
 	// ----------------------------------------------------------------------------
 	// TEMPORARY DATA COLLECTIONS
 	// ----------------------------------------------------------------------------
@@ -465,6 +425,11 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 	 */
 	private final Map<Integer, ParameterSet[]> tmp_parameterSets = new HashMap<Integer, ParameterSet[]>();
 
+	/**
+	 * The partitions that we need to send a 2PC:PREPARE message to
+	 */
+	private final PartitionSet tmp_preparePartitions = new PartitionSet();
+
 	// ----------------------------------------------------------------------------
 	// PROFILING OBJECTS
 	// ----------------------------------------------------------------------------
@@ -603,6 +568,8 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 	 * Dummy constructor...
 	 */
 	protected PartitionExecutor() {
+		this.work_queue = new PartitionWorkQueue(
+				PartitionWorkQueue.WaitStrategy.PARK);
 		this.work_throttler = null;
 		this.ee = null;
 		this.hsql = null;
@@ -637,6 +604,13 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 			TransactionEstimator t_estimator) {
 		this.hstore_conf = HStoreConf.singleton();
 
+		PartitionWorkQueue.WaitStrategy wait_strategy = PartitionWorkQueue.WaitStrategy
+				.get(hstore_conf.site.exec_queue_wait_strategy);
+		if (wait_strategy == null) {
+			throw new IllegalArgumentException("Invalid queue wait strategy '"
+					+ hstore_conf.site.exec_queue_wait_strategy + "'");
+		}
+		this.work_queue = new PartitionWorkQueue(wait_strategy);
 		this.work_throttler = new ThrottlingQueue<TransactionInfoBaseMessage>(
 				this.work_queue,
 				hstore_conf.site.queue_incoming_max_per_partition,
@@ -815,6 +789,8 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 		this.thresholds = (hstore_site != null ? hstore_site.getThresholds()
 				: null);
 		this.localPartitionIds = hstore_site.getLocalPartitionIds();
+		this.replication_stream = hstore_site
+				.getReplicationStream(this.partitionId);
 
 		if (hstore_conf.site.exec_profiling) {
 			EventObservable<AbstractTransaction> eo = this.hstore_site
@@ -877,6 +853,12 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 				try {
 					work = this.work_queue.poll();
 					if (work == null) {
+						// If we're in the middle of writing a snapshot, then
+						// use this idle time to write out the next block
+						if (this.snapshot_writer != null) {
+							this.tick();
+							continue;
+						}
 						if (t)
 							LOG.trace("Partition " + this.partitionId
 									+ " queue is empty. Waiting...");
@@ -910,7 +892,6 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 				// Execute Query Plan Fragments
 				// -------------------------------
 				if (work instanceof FragmentTaskMessage) {
-					LOG.info(String.format("(kowshik/vijay) Processing FragmentTaskMessage for txn: %s", current_txn));
 					FragmentTaskMessage ftask = (FragmentTaskMessage) work;
 					WorkFragment fragment = ftask.getWorkFragment();
 					assert (fragment != null);
@@ -950,31 +931,10 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 
 					this.processWorkFragment(current_txn, fragment, parameters);
 
-					// (kowshik) Send this transaction to replicas of this site
-					/***** FOR REPLICATION *****/
-					// (kowshik) Generate builders map for replicas
-					Map<Integer, TransactionWorkRequest.Builder> replicaRequestBuildersMap = new HashMap<Integer, TransactionWorkRequest.Builder>();
-					List<Integer> replicaIds = new ArrayList<Integer>();
-					for (Replica r : this.site.getReplicas()) {
-						replicaIds.add(r.getId());
-						TransactionWorkRequest.Builder replicaRequest = TransactionWorkRequest
-								.newBuilder().setTransactionId(txn_id)
-								.setSourcePartition(this.partitionId)
-								.setSysproc(current_txn.isSysProc());
-					}					
-					
-					LOG.info(String.format("(kowshik/vijay) Sending FragmentTaskMessage for txn: %s to all replicas: %s", current_txn, replicaIds));
-					this.hstore_coordinator.transactionWork(
-							(LocalTransaction) current_txn,
-							replicaRequestBuildersMap,
-							this.request_work_callback);
-					/***************************/
-
 					// -------------------------------
 					// Invoke Stored Procedure
 					// -------------------------------
 				} else if (work instanceof InitiateTaskMessage) {
-					LOG.info(String.format("(kowshik/vijay) Processing InitiateTaskMessage for txn: %s", current_txn));
 					if (hstore_conf.site.exec_profiling)
 						this.work_exec_time.start();
 					InitiateTaskMessage itask = (InitiateTaskMessage) work;
@@ -997,25 +957,10 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 					if (hstore_conf.site.exec_profiling)
 						this.work_exec_time.stop();
 
-					// (kowshik) Send this transaction to replicas of this site
-					/******** FOR REPLICATION ***********/
-					List<Integer> replicaIds = new ArrayList<Integer>();
-					for (Replica r : this.site.getReplicas()) {
-						replicaIds.add(r.getId());
-					}
-
-					LOG.info(String.format("(kowshik/vijay) Sending InitiateTaskMessage for txn: %s to all replicas: %s", current_txn, replicaIds));
-					LocalTransaction ts = (LocalTransaction) current_txn;
-					this.hstore_coordinator.transactionInitForReplicas(ts,
-							ts.getTransactionInitCallback(), this.partitionId,
-							replicaIds);
-					/************************************/
-
 					// -------------------------------
 					// Finish Transaction
 					// -------------------------------
 				} else if (work instanceof FinishTaskMessage) {
-					LOG.info(String.format("(kowshik/vijay) Processing FinishTaskMessage for txn: %s", current_txn));					
 					// if (hstore_conf.site.exec_profiling)
 					// this.work_exec_time.start();					
 					// if (current_txn instanceof MapReduceTransaction) {
@@ -1035,32 +980,6 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 					FinishTaskMessage ftask = (FinishTaskMessage) work;
 					this.finishTransaction(current_txn,
 							(ftask.getStatus() == Hstoreservice.Status.OK));
-
-					// (kowshik) Send this transaction to replicas of this site
-					/******** FOR REPLICATION ***********/
-					List<Integer> replicaIds = new ArrayList<Integer>();
-					for (Replica r : this.site.getReplicas()) {
-						replicaIds.add(r.getId());
-					}
-
-					Status status = ftask.getStatus();
-					LocalTransaction ts = (LocalTransaction) current_txn;
-
-					if (ts.getTransactionId() == null) {
-						ts.setTransactionId(txn_id);
-					}
-
-					if (ts.getPredictTouchedPartitions() == null) {
-						List<Integer> predictTouchedPartitions = new ArrayList<Integer>();
-						predictTouchedPartitions.add(partitionId);
-						ts.setPredictTouchedPartitions(predictTouchedPartitions);
-					}
-
-					LOG.info(String.format("(kowshik/vijay) Sending FinishTaskMessage for txn: %s to all replicas: %s", current_txn, replicaIds));
-					this.hstore_coordinator.transactionFinishForReplicas(ts,
-							status, this.partitionId, replicaIds);
-
-					/************************************/
 					// if (hstore_conf.site.exec_profiling)
 					// this.work_exec_time.stop();
 
@@ -1075,6 +994,8 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 				// Is there a better way to do this?
 				this.work_throttler.checkThrottling(false);
 
+				this.tick();
+
 				if (hstore_conf.site.exec_profiling
 						&& this.currentTxnId != null) {
 					this.lastExecutedTxnId = this.currentTxnId;
@@ -1117,6 +1038,11 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 	}
 
 	public void tick() {
+		// write out the next block of the snapshot that we're working on
+		if (this.snapshot_writer != null) {
+			this.writeSnapshotBlock();
+		}
+
 		// invoke native ee tick if at least one second has passed
 		final long time = EstTime.currentTimeMillis();
 		if ((time - lastTickTime) >= 1000) {
@@ -1127,6 +1053,87 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 		}
 	}
 
+	// ----------------------------------------------------------------------------
+	// SNAPSHOTS
+	// ----------------------------------------------------------------------------
+
+	/**
+	 * Register a snapshot of this partition's tables for the given writer's txn.
+	 * The tables must have already been put into copy-on-write mode by the
+	 * SnapshotWriter. We don't start streaming it out until the txn commits at
+	 * this partition. If the txn aborts, then the snapshot is aborted too so that
+	 * the tables are taken back out of copy-on-write mode.
+	 * This can only be invoked from this PartitionExecutor's thread.
+	 *
+	 * @param writer
+	 */
+	public void prepareSnapshot(SnapshotWriter writer) {
+		assert (this.isSnapshotInProgress() == false) : "Trying to start a new snapshot at partition "
+				+ this.partitionId + " while another is still in progress";
+		if (d)
+			LOG.debug(String.format(
+					"Prepared snapshot for txn #%d at partition %d [file=%s]",
+					writer.getTransactionId(), this.partitionId,
+					writer.getFile()));
+		this.pending_snapshot = writer;
+	}
+
+	/**
+	 * Returns true if this partition is in the middle of writing a snapshot
+	 */
+	public boolean isSnapshotInProgress() {
+		return (this.snapshot_writer != null || this.pending_snapshot != null);
+	}
+
+	/**
+	 * Start or abort the pending snapshot if it was taken by the given txn
+	 * 
+	 * @param ts
+	 * @param commit
+	 */
+	private void finishSnapshot(AbstractTransaction ts, boolean commit) {
+		SnapshotWriter writer = this.pending_snapshot;
+		if (writer == null
+				|| writer.getTransactionId() != ts.getTransactionId().longValue())
+			return;
+		this.pending_snapshot = null;
+		if (commit) {
+			if (d)
+				LOG.debug(String.format(
+						"Starting snapshot for txn #%d at partition %d [file=%s]",
+						writer.getTransactionId(), this.partitionId,
+						writer.getFile()));
+			this.snapshot_writer = writer;
+		} else {
+			writer.abort();
+		}
+	}
+
+	private void writeSnapshotBlock() {
+		boolean finished = false;
+		try {
+			finished = this.snapshot_writer.writeMore();
+		} catch (IOException ex) {
+			LOG.error(String.format(
+					"Failed to write snapshot for txn #%d at partition %d",
+					this.snapshot_writer.getTransactionId(), this.partitionId),
+					ex);
+			this.snapshot_writer.abort();
+			finished = true;
+		}
+		if (finished) {
+			if (d)
+				LOG.debug(String.format(
+						"Finished snapshot for txn #%d at partition %d [blocks=%d, bytes=%d, time=%dms]",
+						this.snapshot_writer.getTransactionId(),
+						this.partitionId,
+						this.snapshot_writer.getBlockCount(),
+						this.snapshot_writer.getByteCount(),
+						this.snapshot_writer.getElapsedTime()));
+			this.snapshot_writer = null;
+		}
+	}
+
 	@Override
 	public void updateLogging() {
 		d = debug.get();
@@ -1475,6 +1482,18 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 	 * @param callback
 	 */
 	public boolean queueNewTransaction(LocalTransaction ts) {
+		return (this.queueNewTransaction(ts, false));
+	}
+
+	/**
+	 * New work for a local transaction
+	 * 
+	 * @param ts
+	 * @param force
+	 *            if true, then the txn will not get throttled (used when
+	 *            replaying txns at a replica)
+	 */
+	public boolean queueNewTransaction(LocalTransaction ts, boolean force) {
 		assert (ts != null) : "Unexpected null transaction handle!";
 		final InitiateTaskMessage task = ts.getInitiateTaskMessage();
 		final boolean singlePartitioned = ts.isPredictSinglePartition();
@@ -1494,7 +1513,7 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 				LOG.debug(String.format(
 						"%s - Adding to work queue at partition %d [size=%d]",
 						ts, this.partitionId, this.work_queue.size()));
-			success = this.work_throttler.offer(task, false);
+			success = this.work_throttler.offer(task, force);
 
 			// Otherwise figure out whether this txn needs to be blocked or not
 		} else {
@@ -1516,7 +1535,7 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 								this.work_queue.size()));
 					// Only use the throttler for single-partition txns
 					if (singlePartitioned) {
-						success = this.work_throttler.offer(task, false);
+						success = this.work_throttler.offer(task, force);
 					} else {
 						// this.work_queue.addFirst(task);
 						this.work_queue.add(task);
@@ -1784,6 +1803,16 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 			} // SYNCH
 		}
 
+		// The INIT record has to go into the ReplicationStream before we
+		// execute so that it comes before the FINISH record. Replicas replay
+		// single-partition txns from their INIT records. Distributed txns are
+		// replayed from the WORK records at each partition that they touched.
+		if (this.replication_stream != null && predict_singlePartition) {
+			ts.setReplicationSequence(this.replication_stream.appendInit(ts
+					.getTransactionId(), ts.getProcedure().getId(), ts
+					.getInvocation().getParams()));
+		}
+
 		// Always reset the ExecutionState
 		this.execState.clear();
 		ts.setExecutionState(this.execState);
@@ -2051,6 +2080,16 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 			ts.finishRound(this.partitionId);
 		}
 
+		// Hand this fragment off to our replicas if it modified anything here.
+		// This does not block on the network. Sysproc fragments are not
+		// replicated because they have to be executed by their VoltSystemProcedure
+		if (this.replication_stream != null
+				&& status == Hstoreservice.Status.OK
+				&& wfrag.getReadOnly() == false && ts.isSysProc() == false) {
+			this.replication_stream.appendWork(ts.getTransactionId()
+					.longValue(), wfrag, parameters);
+		}
+
 		// -------------------------------
 		// LOCAL TRANSACTION
 		// -------------------------------
@@ -2298,6 +2337,73 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 		return (result.dependencies);
 	}
 
+	/**
+	 * Execute the WorkFragments attached to a txn that is being replayed at a
+	 * replica. These are the fragments that a dtxn executed at this partition on
+	 * the primary. Read-only fragments are skipped because nobody is going to
+	 * look at their results.
+	 * 
+	 * @param ts
+	 * @return the number of PlanFragments that were executed
+	 */
+	public int executeReplayWork(LocalTransaction ts) {
+		assert (ts.isReplay());
+		List<WorkFragment> fragments = ts.getReplayFragments();
+		List<ParameterSet[]> parameters = ts.getReplayParameters();
+
+		long undoToken = this.getNextUndoToken();
+		ts.fastInitRound(this.partitionId, undoToken);
+
+		int executed = 0;
+		long tmp_fragmentId[] = new long[1];
+		for (int i = 0, cnt = fragments.size(); i < cnt; i++) {
+			WorkFragment wfrag = fragments.get(i);
+			ParameterSet wparams[] = parameters.get(i);
+			assert (wfrag.getPartitionId() == this.partitionId) : String
+					.format("Trying to replay WorkFragment for partition %d at partition %d",
+							wfrag.getPartitionId(), this.partitionId);
+
+			int fragmentCount = wfrag.getFragmentIdCount();
+			long fragmentIds[] = new long[fragmentCount];
+			int outputDepIds[] = new int[fragmentCount];
+			int inputDepIds[] = new int[fragmentCount];
+			ParameterSet fragmentParams[] = new ParameterSet[fragmentCount];
+			int batchSize = 0;
+			for (int j = 0; j < fragmentCount; j++) {
+				tmp_fragmentId[0] = wfrag.getFragmentId(j);
+				if (CatalogUtil.areFragmentsReadOnly(this.database,
+						tmp_fragmentId, 1))
+					continue;
+				// We don't have the results from the other partitions
+				if (wfrag.getInputDepId(j).getIdsCount() > 0) {
+					throw new VoltAbortException(String.format(
+							"Unable to replay PlanFragment #%d for %s at partition %d because it needs input",
+							tmp_fragmentId[0], ts, this.partitionId));
+				}
+				fragmentIds[batchSize] = tmp_fragmentId[0];
+				outputDepIds[batchSize] = wfrag.getOutputDepId(j);
+				inputDepIds[batchSize] = HStoreConstants.NULL_DEPENDENCY_ID;
+				fragmentParams[batchSize] = wparams[j];
+				batchSize++;
+			} // FOR
+			if (batchSize == 0)
+				continue;
+
+			DependencySet result = this.executePlanFragments(ts, undoToken,
+					batchSize, fragmentIds, fragmentParams, outputDepIds,
+					inputDepIds, null);
+			if (result == null) {
+				throw new VoltAbortException(String.format(
+						"Failed to replay PlanFragments %s for %s at partition %d",
+						Arrays.toString(fragmentIds), ts, this.partitionId));
+			}
+			executed += batchSize;
+		} // FOR
+
+		ts.fastFinishRound(this.partitionId);
+		return (executed);
+	}
+
 	/**
 	 * Execute the given fragment tasks on this site's underlying EE
 	 * 
@@ -3289,11 +3395,10 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 			// HStoreSites
 			// We want to make sure that we don't go back to ones that we've
 			// already told
-			Collection<Integer> predictPartitions = ts
-					.getPredictTouchedPartitions();
-			Collection<Integer> donePartitions = ts.getDonePartitions();
-			Collection<Integer> partitions = CollectionUtils.subtract(
-					predictPartitions, donePartitions);
+			PartitionSet partitions = this.tmp_preparePartitions;
+			partitions.clear();
+			partitions.addAll(ts.getPredictTouchedPartitions());
+			partitions.removeAll(ts.getDonePartitions());
 
 			if (hstore_conf.site.txn_profiling)
 				ts.profiler.startPostPrepare();
@@ -3411,6 +3516,32 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 		if (commit)
 			this.lastCommittedTxnId = ts.getTransactionId();
 		ts.setFinishedEE(this.partitionId);
+		if (this.pending_snapshot != null)
+			this.finishSnapshot(ts, commit);
+
+		if (this.replication_stream != null) {
+			long seq = this.replication_stream.appendFinish(ts
+					.getTransactionId(),
+					(commit ? Hstoreservice.Status.OK
+							: Hstoreservice.Status.ABORT_GRACEFUL));
+			if (ts instanceof LocalTransaction
+					&& ts.getBasePartition() == this.partitionId) {
+				((LocalTransaction) ts).setReplicationSequence(seq);
+			}
+		}
+
+		// This is the commit point for a single-partition txn, so this is where
+		// it has to go into the command log. Distributed txns are added by the
+		// HStoreSite when it decides to commit them
+		CommandLogWriter commandLogger = hstore_site.getCommandLogWriter();
+		if (commit && commandLogger != null && ts instanceof LocalTransaction
+				&& ts.getBasePartition() == this.partitionId) {
+			LocalTransaction local_ts = (LocalTransaction) ts;
+			if (local_ts.isPredictSinglePartition()
+					&& local_ts.getProcedure().getReadonly() == false) {
+				commandLogger.appendToLog(local_ts);
+			}
+		}
 	}
 
 	/**
@@ -3684,7 +3815,8 @@ public class PartitionExecutor implements Runnable, Shutdownable, Loggable {
 					"Shutting down PartitionExecutor for Partition #%d",
 					this.partitionId));
 
-		// Clear the queue
+		// Clear the queue. This is safe even though our thread may still be
+		// polling it until it sees the interrupt below.
 		this.work_queue.clear();
 
 		// Make sure we shutdown our threadpool
@@ -0,0 +1,463 @@
+package edu.brown.hstore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.voltdb.exceptions.SerializableException;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.RpcCallback;
+import com.google.protobuf.RpcController;
+
+import edu.brown.hstore.Hstoreservice.HStoreService;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.hstore.Hstoreservice.TransactionBatchMessage;
+import edu.brown.hstore.Hstoreservice.TransactionBatchRequest;
+import edu.brown.hstore.Hstoreservice.TransactionBatchResponse;
+import edu.brown.hstore.Hstoreservice.TransactionFinishRequest;
+import edu.brown.hstore.Hstoreservice.TransactionFinishResponse;
+import edu.brown.hstore.Hstoreservice.TransactionInitRequest;
+import edu.brown.hstore.Hstoreservice.TransactionInitResponse;
+import edu.brown.hstore.Hstoreservice.TransactionPrepareRequest;
+import edu.brown.hstore.Hstoreservice.TransactionPrepareResponse;
+import edu.brown.hstore.Hstoreservice.TransactionWorkRequest;
+import edu.brown.hstore.Hstoreservice.TransactionWorkResponse;
+import edu.brown.hstore.Hstoreservice.WorkFragment;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.protorpc.EventLoop;
+import edu.brown.protorpc.ProtoRpcController;
+
+/**
+ * Coalesces the txn messages that the HStoreCoordinator sends to each remote HStoreSite
+ * so that they go out in a single TransactionBatch RPC instead of one RPC apiece.
+ * <p>
+ * When a message is queued for a site that has nothing pending, we schedule a flush
+ * in the HStoreCoordinator event loop thread that handles that site's channel. Everything else that gets queued for that
+ * site before the event loop gets to it goes out in the same batch. If the batch fills up
+ * before then, the thread that queued the last message sends it right away.
+ * <p>
+ * The envelope's own RPC response is just an acknowledgement. The responses to the
+ * individual requests are queued up at the remote site and come back to us in
+ * its own batches, where we match them to their callbacks by their message ids.
+ * If the envelope itself fails, then every request in it gets an error response
+ * right away so that the txns waiting on them can abort instead of hanging.
+ * The responses that were in it are put back into the next batch to that site, since
+ * the remote site's txns are waiting on them. We give up on a response once it has been
+ * resent MAX_RESPONSE_RETRIES times.
+ */
+public class TransactionBatcher {
+    private static final Logger LOG = Logger.getLogger(TransactionBatcher.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    private final HStoreCoordinator hstore_coord;
+    private final int local_site_id;
+    private final HStoreService handler;
+    /** If this is null, then we use the HStoreCoordinator's event loop for each site */
+    private final EventLoop eventLoop;
+    private final int batch_size;
+
+    /**
+     * SiteId -> Outgoing Batch
+     */
+    private final ConcurrentHashMap<Integer, Destination> destinations = new ConcurrentHashMap<Integer, Destination>();
+
+    /**
+     * MessageId -> Callback for the requests that we are still waiting for responses for
+     */
+    private final ConcurrentHashMap<Integer, RpcCallback<?>> pending = new ConcurrentHashMap<Integer, RpcCallback<?>>();
+    private final AtomicInteger next_message_id = new AtomicInteger(0);
+
+    /**
+     * How many times we will resend a response after the batch that it was in failed
+     */
+    protected static final int MAX_RESPONSE_RETRIES = 3;
+
+    private final AtomicInteger num_batches = new AtomicInteger(0);
+    private final AtomicInteger num_messages = new AtomicInteger(0);
+
+    /**
+     * The messages waiting to be sent to a single remote site
+     */
+    private class Destination implements Runnable {
+        private final int site_id;
+        private final EventLoop eventLoop;
+        private final List<TransactionBatchMessage> messages = new ArrayList<TransactionBatchMessage>();
+        /** MessageId -> Number of times that we have resent that response */
+        private final Map<Integer, Integer> retries = new HashMap<Integer, Integer>();
+        private boolean scheduled = false;
+
+        Destination(int site_id) {
+            this.site_id = site_id;
+            this.eventLoop = (TransactionBatcher.this.eventLoop != null ?
+                                    TransactionBatcher.this.eventLoop : hstore_coord.getEventLoop(site_id));
+        }
+
+        void add(TransactionBatchMessage msg) {
+            boolean schedule = false;
+            synchronized (this) {
+                this.messages.add(msg);
+                if (this.messages.size() >= batch_size) {
+                    this.flush();
+                } else if (this.scheduled == false) {
+                    this.scheduled = schedule = true;
+                }
+            } // SYNCH
+            if (schedule) this.eventLoop.runInEventThread(this);
+        }
+
+        /**
+         * Put the responses from a batch that failed back into the next batch.
+         * We always wait for the event loop instead of sending them right away
+         * so that we don't just turn around and fail again in the same call stack.
+         */
+        void requeue(TransactionBatchRequest request) {
+            boolean schedule = false;
+            synchronized (this) {
+                for (TransactionBatchMessage msg : request.getMessagesList()) {
+                    if (isRequest(msg)) continue;
+                    int message_id = msg.getMessageId();
+                    Integer attempts = this.retries.get(message_id);
+                    attempts = (attempts == null ? 1 : attempts + 1);
+                    if (attempts > MAX_RESPONSE_RETRIES) {
+                        LOG.warn(String.format("Dropping response #%d to %s after %d failed attempts",
+                                               message_id, HStoreSite.formatSiteName(this.site_id), attempts));
+                        this.retries.remove(message_id);
+                        continue;
+                    }
+                    this.retries.put(message_id, attempts);
+                    this.messages.add(msg);
+                } // FOR
+                if (this.messages.isEmpty() == false && this.scheduled == false) {
+                    this.scheduled = schedule = true;
+                }
+            } // SYNCH
+            if (schedule) this.eventLoop.runInEventThread(this);
+        }
+
+        /**
+         * Forget about the retries for the responses in a batch that made it
+         */
+        synchronized void delivered(TransactionBatchRequest request) {
+            if (this.retries.isEmpty()) return;
+            for (TransactionBatchMessage msg : request.getMessagesList()) {
+                this.retries.remove(msg.getMessageId());
+            } // FOR
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                this.scheduled = false;
+                this.flush();
+            } // SYNCH
+        }
+
+        /**
+         * We have to send the batch while holding the lock so that
+         * two batches for the same site can never pass each other
+         */
+        private void flush() {
+            if (this.messages.isEmpty()) return;
+            TransactionBatchRequest request = TransactionBatchRequest.newBuilder()
+                                                    .setSenderId(local_site_id)
+                                                    .addAllMessages(this.messages)
+                                                    .build();
+            if (trace.get())
+                LOG.trace(String.format("Sending batch of %d messages to %s",
+                                        this.messages.size(), HStoreSite.formatSiteName(this.site_id)));
+            num_batches.incrementAndGet();
+            num_messages.addAndGet(this.messages.size());
+            this.messages.clear();
+            sendBatch(this.site_id, request, new BatchCallback(this.site_id, request));
+        }
+    } // END CLASS
+
+    /**
+     * The acknowledgement for a batch that we sent out. The response is null if the RPC failed,
+     * in which case none of the requests in it are ever going to get a response from the remote site.
+     */
+    private class BatchCallback implements RpcCallback<TransactionBatchResponse> {
+        private final int site_id;
+        private final TransactionBatchRequest request;
+
+        BatchCallback(int site_id, TransactionBatchRequest request) {
+            this.site_id = site_id;
+            this.request = request;
+        }
+
+        @Override
+        public void run(TransactionBatchResponse response) {
+            if (response != null) {
+                getDestination(this.site_id).delivered(this.request);
+                return;
+            }
+            LOG.warn(String.format("Failed to send batch of %d messages to %s",
+                                   this.request.getMessagesCount(), HStoreSite.formatSiteName(this.site_id)));
+            failBatch(this.site_id, this.request);
+        }
+    } // END CLASS
+
+    /**
+     * Queues up the response to a request that we received from a remote site
+     * so that it gets sent back in the next batch to that site
+     */
+    private class ResponseCallback<T> implements RpcCallback<T> {
+        private final int site_id;
+        private final int message_id;
+
+        ResponseCallback(int site_id, int message_id) {
+            this.site_id = site_id;
+            this.message_id = message_id;
+        }
+
+        @Override
+        public void run(T response) {
+            TransactionBatchMessage.Builder builder = TransactionBatchMessage.newBuilder()
+                                                            .setMessageId(this.message_id);
+            if (response instanceof TransactionInitResponse) {
+                builder.setInitResponse((TransactionInitResponse)response);
+            } else if (response instanceof TransactionWorkResponse) {
+                builder.setWorkResponse((TransactionWorkResponse)response);
+            } else if (response instanceof TransactionPrepareResponse) {
+                builder.setPrepareResponse((TransactionPrepareResponse)response);
+            } else if (response instanceof TransactionFinishResponse) {
+                builder.setFinishResponse((TransactionFinishResponse)response);
+            } else {
+                throw new IllegalArgumentException("Unexpected response " + response);
+            }
+            getDestination(this.site_id).add(builder.build());
+        }
+    } // END CLASS
+
+    public TransactionBatcher(HStoreCoordinator hstore_coord, int batch_size) {
+        this(hstore_coord, hstore_coord.getLocalSiteId(), hstore_coord.getHandler(), null, batch_size);
+    }
+
+    protected TransactionBatcher(HStoreCoordinator hstore_coord, int local_site_id, HStoreService handler, EventLoop eventLoop, int batch_size) {
+        this.hstore_coord = hstore_coord;
+        this.local_site_id = local_site_id;
+        this.handler = handler;
+        this.eventLoop = eventLoop;
+        this.batch_size = Math.max(1, batch_size);
+    }
+
+    /**
+     * Send a batch to a remote site over the network
+     * @param site_id
+     * @param request
+     * @param callback
+     */
+    protected void sendBatch(int site_id, TransactionBatchRequest request, RpcCallback<TransactionBatchResponse> callback) {
+        HStoreService channel = this.hstore_coord.getChannel(site_id);
+        assert(channel != null) : "Invalid site id " + site_id;
+        channel.transactionBatch(new ProtoRpcController(), request, callback);
+    }
+
+    /**
+     * Send an error response to the callback of every request in a batch that
+     * never made it to the remote site. Requests that already got their response
+     * are skipped. The responses that we were sending back in this batch are
+     * queued up again for the next batch to the same site.
+     * @param site_id
+     * @param request
+     */
+    @SuppressWarnings("unchecked")
+    protected void failBatch(int site_id, TransactionBatchRequest request) {
+        this.getDestination(site_id).requeue(request);
+
+        ByteString error = null;
+        for (TransactionBatchMessage msg : request.getMessagesList()) {
+            if (isRequest(msg) == false) continue;
+            RpcCallback<Object> callback = (RpcCallback<Object>)this.pending.remove(msg.getMessageId());
+            if (callback == null) continue;
+
+            if (msg.hasInitRequest()) {
+                TransactionInitRequest r = msg.getInitRequest();
+                callback.run(TransactionInitResponse.newBuilder()
+                                .setTransactionId(r.getTransactionId())
+                                .addAllPartitions(r.getPartitionsList())
+                                .setStatus(Status.ABORT_REJECT)
+                                .build());
+            } else if (msg.hasWorkRequest()) {
+                TransactionWorkRequest r = msg.getWorkRequest();
+                if (error == null) {
+                    SerializableException ex = new SerializableException(new RuntimeException(
+                            "Failed to send TransactionWorkRequest to " + HStoreSite.formatSiteName(site_id)));
+                    ByteBuffer b = ByteBuffer.allocate(ex.getSerializedSize());
+                    ex.serializeToBuffer(b);
+                    error = ByteString.copyFrom(b.array());
+                }
+                TransactionWorkResponse.Builder builder = TransactionWorkResponse.newBuilder()
+                                                                .setTransactionId(r.getTransactionId())
+                                                                .setStatus(Status.ABORT_UNEXPECTED);
+                for (WorkFragment fragment : r.getFragmentsList()) {
+                    builder.addResults(TransactionWorkResponse.WorkResult.newBuilder()
+                                            .setPartitionId(fragment.getPartitionId())
+                                            .setStatus(Status.ABORT_UNEXPECTED)
+                                            .setError(error));
+                } // FOR
+                callback.run(builder.build());
+            } else if (msg.hasPrepareRequest()) {
+                TransactionPrepareRequest r = msg.getPrepareRequest();
+                callback.run(TransactionPrepareResponse.newBuilder()
+                                .setTransactionId(r.getTransactionId())
+                                .addAllPartitions(r.getPartitionsList())
+                                .setStatus(Status.ABORT_UNEXPECTED)
+                                .build());
+            } else {
+                // There is nothing for us to do about a finish that didn't make it, but
+                // we still need to let the txn get cleaned up on our side
+                TransactionFinishRequest r = msg.getFinishRequest();
+                callback.run(TransactionFinishResponse.newBuilder()
+                                .setTransactionId(r.getTransactionId())
+                                .addAllPartitions(r.getPartitionsList())
+                                .build());
+            }
+        } // FOR
+    }
+
+    private static boolean isRequest(TransactionBatchMessage msg) {
+        return (msg.hasInitRequest() || msg.hasWorkRequest() ||
+                msg.hasPrepareRequest() || msg.hasFinishRequest());
+    }
+
+    private Destination getDestination(int site_id) {
+        Destination d = this.destinations.get(site_id);
+        if (d == null) {
+            d = new Destination(site_id);
+            Destination existing = this.destinations.putIfAbsent(site_id, d);
+            if (existing != null) d = existing;
+        }
+        return (d);
+    }
+
+    private int register(RpcCallback<?> callback) {
+        int message_id = this.next_message_id.getAndIncrement();
+        if (callback != null) this.pending.put(message_id, callback);
+        return (message_id);
+    }
+
+    // ----------------------------------------------------------------------------
+    // OUTGOING REQUESTS
+    // ----------------------------------------------------------------------------
+
+    public void addInitRequest(int site_id, TransactionInitRequest request, RpcCallback<TransactionInitResponse> callback) {
+        TransactionBatchMessage msg = TransactionBatchMessage.newBuilder()
+                                            .setMessageId(this.register(callback))
+                                            .setInitRequest(request)
+                                            .build();
+        this.getDestination(site_id).add(msg);
+    }
+
+    public void addWorkRequest(int site_id, TransactionWorkRequest request, RpcCallback<TransactionWorkResponse> callback) {
+        TransactionBatchMessage msg = TransactionBatchMessage.newBuilder()
+                                            .setMessageId(this.register(callback))
+                                            .setWorkRequest(request)
+                                            .build();
+        this.getDestination(site_id).add(msg);
+    }
+
+    public void addPrepareRequest(int site_id, TransactionPrepareRequest request, RpcCallback<TransactionPrepareResponse> callback) {
+        TransactionBatchMessage msg = TransactionBatchMessage.newBuilder()
+                                            .setMessageId(this.register(callback))
+                                            .setPrepareRequest(request)
+                                            .build();
+        this.getDestination(site_id).add(msg);
+    }
+
+    public void addFinishRequest(int site_id, TransactionFinishRequest request, RpcCallback<TransactionFinishResponse> callback) {
+        TransactionBatchMessage msg = TransactionBatchMessage.newBuilder()
+                                            .setMessageId(this.register(callback))
+                                            .setFinishRequest(request)
+                                            .build();
+        this.getDestination(site_id).add(msg);
+    }
+
+    // ----------------------------------------------------------------------------
+    // INCOMING BATCHES
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Demultiplex a batch that we received from a remote site. Requests are handed
+     * off to the HStoreCoordinator's regular handlers and responses are passed
+     * to the callbacks of the requests that we sent out earlier.
+     * @param controller the controller of the envelope's RPC
+     * @param request
+     */
+    @SuppressWarnings("unchecked")
+    public void receive(RpcController controller, TransactionBatchRequest request) {
+        int sender_id = request.getSenderId();
+        if (trace.get())
+            LOG.trace(String.format("Received batch of %d messages from %s",
+                                    request.getMessagesCount(), HStoreSite.formatSiteName(sender_id)));
+        for (TransactionBatchMessage msg : request.getMessagesList()) {
+            int message_id = msg.getMessageId();
+
+            // REQUESTS
+            if (msg.hasInitRequest()) {
+                this.handler.transactionInit(controller, msg.getInitRequest(),
+                                             new ResponseCallback<TransactionInitResponse>(sender_id, message_id));
+            } else if (msg.hasWorkRequest()) {
+                this.handler.transactionWork(controller, msg.getWorkRequest(),
+                                             new ResponseCallback<TransactionWorkResponse>(sender_id, message_id));
+            } else if (msg.hasPrepareRequest()) {
+                this.handler.transactionPrepare(controller, msg.getPrepareRequest(),
+                                                new ResponseCallback<TransactionPrepareResponse>(sender_id, message_id));
+            } else if (msg.hasFinishRequest()) {
+                this.handler.transactionFinish(controller, msg.getFinishRequest(),
+                                               new ResponseCallback<TransactionFinishResponse>(sender_id, message_id));
+            }
+            // RESPONSES
+            else {
+                RpcCallback<Object> callback = (RpcCallback<Object>)this.pending.remove(message_id);
+                if (callback == null) {
+                    if (debug.get())
+                        LOG.debug(String.format("No callback for message #%d from %s",
+                                                message_id, HStoreSite.formatSiteName(sender_id)));
+                    continue;
+                }
+                if (msg.hasInitResponse()) {
+                    callback.run(msg.getInitResponse());
+                } else if (msg.hasWorkResponse()) {
+                    callback.run(msg.getWorkResponse());
+                } else if (msg.hasPrepareResponse()) {
+                    callback.run(msg.getPrepareResponse());
+                } else if (msg.hasFinishResponse()) {
+                    callback.run(msg.getFinishResponse());
+                } else {
+                    LOG.warn(String.format("Empty message #%d in batch from %s",
+                                           message_id, HStoreSite.formatSiteName(sender_id)));
+                }
+            }
+        } // FOR
+    }
+
+    // ----------------------------------------------------------------------------
+    // UTILITY METHODS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Returns the number of requests that we have sent out but
+     * have not received a response for yet
+     */
+    public int getPendingCount() {
+        return (this.pending.size());
+    }
+    public int getBatchCount() {
+        return (this.num_batches.get());
+    }
+    public int getMessageCount() {
+        return (this.num_messages.get());
+    }
+}
@@ -8,6 +8,8 @@ import java.nio.ByteOrder;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 import org.voltdb.ClientResponseImpl;
@@ -18,7 +20,6 @@ import org.voltdb.messaging.FastSerializer;
 
 import com.google.protobuf.RpcCallback;
 
-import edu.brown.net.MessageConnection;
 import edu.brown.net.NIOMessageConnection;
 import edu.brown.protorpc.AbstractEventHandler;
 import edu.brown.protorpc.EventLoop;
@@ -29,17 +30,30 @@ public class VoltProcedureListener extends AbstractEventHandler {
     private static final Logger LOG = Logger.getLogger(VoltProcedureListener.class);
     
     private final EventLoop eventLoop;
+    private final EventLoop[] connectionLoops;
+    private int nextConnectionLoop = 0;
     private final Handler handler;
     private ServerSocketChannel serverSocket;
+    /** If true, responses are queued up and written out once per event loop pass */
+    private boolean batchResponses = false;
 //    private AtomicBoolean throttle = new AtomicBoolean(false);
-    private final FastDeserializer incomingDeserializer = new FastDeserializer(new byte[0]);
     
 //    private final HStoreSite hstore_site;
 
     public VoltProcedureListener(EventLoop eventLoop, Handler handler) {
+        this(eventLoop, new EventLoop[] { eventLoop }, handler);
+    }
+
+    /**
+     * Accepts connections in eventLoop, but hands each accepted connection off to one of
+     * connectionLoops (round-robin). All reads for a connection happen in its loop.
+     */
+    public VoltProcedureListener(EventLoop eventLoop, EventLoop[] connectionLoops, Handler handler) {
         this.eventLoop = eventLoop;
+        this.connectionLoops = connectionLoops;
         this.handler = handler;
         assert this.eventLoop != null;
+        assert this.connectionLoops.length > 0;
         assert this.handler != null;
         
         // HACK
@@ -60,14 +74,29 @@ public class VoltProcedureListener extends AbstractEventHandler {
         // wrap it in a message connection and register with event loop
         NIOMessageConnection connection = new NIOMessageConnection(client);
         connection.setBigEndian();
-
-        eventLoop.registerRead(client, new ClientConnectionHandler(connection));
+        final EventLoop connectionLoop = connectionLoops[nextConnectionLoop];
+        nextConnectionLoop = (nextConnectionLoop + 1) % connectionLoops.length;
+        final SocketChannel connectionChannel = client;
+        final ClientConnectionHandler clientHandler = new ClientConnectionHandler(connection, connectionLoop);
+
+        if (connectionLoop == eventLoop) {
+            eventLoop.registerRead(client, clientHandler);
+        } else {
+            // Registering with another loop's selector would block until that loop wakes up
+            connectionLoop.runInEventThread(new Runnable() {
+                @Override
+                public void run() {
+                    connectionLoop.registerRead(connectionChannel, clientHandler);
+                }
+            });
+        }
     }
 
     // Not private so it can be used in a JUnit test. Gross, but it makes the test a bit easier
     class ClientConnectionHandler extends AbstractEventHandler implements RpcCallback<byte[]> {
-        public ClientConnectionHandler(MessageConnection connection) {
+        public ClientConnectionHandler(NIOMessageConnection connection, EventLoop eventLoop) {
             this.connection = connection;
+            this.eventLoop = eventLoop;
         }
 
         @Override
@@ -113,8 +142,34 @@ public class VoltProcedureListener extends AbstractEventHandler {
         }
 
         @Override
-        public synchronized void run(byte[] serializedResult) {
-            boolean blocked = connection.write(serializedResult);
+        public void run(byte[] serializedResult) {
+            if (batchResponses) {
+                boolean schedule = false;
+                synchronized (this) {
+                    pendingResponses.add(serializedResult);
+                    if (flushScheduled == false) flushScheduled = schedule = true;
+                } // SYNCH
+                if (schedule) eventLoop.runInEventThread(this.flushCallback);
+                return;
+            }
+            synchronized (this) {
+                this.writeResponse(connection.write(serializedResult));
+            } // SYNCH
+        }
+
+        /**
+         * Write out all of the responses that were completed since the last time that
+         * the event loop flushed this connection in a single gathering write
+         */
+        synchronized void flushResponses() {
+            flushScheduled = false;
+            if (pendingResponses.isEmpty()) return;
+            boolean blocked = connection.write(pendingResponses);
+            pendingResponses.clear();
+            this.writeResponse(blocked);
+        }
+
+        private void writeResponse(boolean blocked) {
             // Only register the write if being blocked is "new"
             // TODO: Use NonBlockingConnection which avoids attempting to write when blocked
             // NOTE: It is possible for the connection to become ready for writing before we run
@@ -126,46 +181,71 @@ public class VoltProcedureListener extends AbstractEventHandler {
             }
         }
 
-        private final MessageConnection connection;
+        private final NIOMessageConnection connection;
+        /** The event loop that reads from this connection */
+        private final EventLoop eventLoop;
+        private final FastDeserializer incomingDeserializer = new FastDeserializer(new byte[0]);
         boolean connectionBlocked = false;
 
+        /** Responses waiting for the next flush. Only used if batchResponses is true */
+        private final List<byte[]> pendingResponses = new ArrayList<byte[]>();
+        private boolean flushScheduled = false;
+        private final Runnable flushCallback = new Runnable() {
+            @Override
+            public void run() {
+                flushResponses();
+            }
+        };
+
         public String user = null;
         public byte[] passwordHash = null;
     }
 
     private void read(ClientConnectionHandler eventLoopCallback) {
 //        final boolean d = LOG.isDebugEnabled();
-        byte[] request;
-        while ((request = eventLoopCallback.connection.tryRead()) != null) {
-            if (request.length == 0) {
+        if (eventLoopCallback.user == null) {
+            byte[] login = eventLoopCallback.connection.tryRead();
+            if (login == null) return;
+            if (login.length == 0) {
                 // connection closed
                 LOG.debug("Connection closed");
                 eventLoopCallback.connection.close();
                 return;
             }
 
-            if (eventLoopCallback.user == null) {
-                ByteBuffer input = ByteBuffer.wrap(request);
-                input.order(ByteOrder.BIG_ENDIAN);
-                try {
-                    @SuppressWarnings("unused")
-                    byte version = input.get();
-                    int length = input.getInt();
-                    byte[] m = new byte[length];
-                    input.get(m);
-                    @SuppressWarnings("unused")
-                    String dataService = new String(m, "UTF-8");
-                    length = input.getInt();
-                    m = new byte[length];
-                    eventLoopCallback.user = new String(m, "UTF-8");
-                    eventLoopCallback.passwordHash = new byte[input.remaining()];
-                    input.get(eventLoopCallback.passwordHash);
-                } catch (UnsupportedEncodingException e) {
-                    throw new RuntimeException(e);
-                }
+            ByteBuffer input = ByteBuffer.wrap(login);
+            input.order(ByteOrder.BIG_ENDIAN);
+            try {
+                @SuppressWarnings("unused")
+                byte version = input.get();
+                int length = input.getInt();
+                byte[] m = new byte[length];
+                input.get(m);
+                @SuppressWarnings("unused")
+                String dataService = new String(m, "UTF-8");
+                length = input.getInt();
+                m = new byte[length];
+                eventLoopCallback.user = new String(m, "UTF-8");
+                eventLoopCallback.passwordHash = new byte[input.remaining()];
+                input.get(eventLoopCallback.passwordHash);
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e);
+            }
+
+            // write to say "okay": BIG HACK
+            eventLoopCallback.hackWritePasswordOk();
+        }
 
-                // write to say "okay": BIG HACK
-                eventLoopCallback.hackWritePasswordOk();
+        // Decode every request that the client has pipelined to us straight out of the
+        // connection's read buffer. We don't pass along the serialized bytes because
+        // that would require a copy. The handler has to serialize the invocation again
+        // if it needs them.
+        ByteBuffer request;
+        while ((request = eventLoopCallback.connection.tryReadFrame()) != null) {
+            if (request.remaining() == 0) {
+                // connection closed
+                LOG.debug("Connection closed");
+                eventLoopCallback.connection.close();
                 return;
             }
             
@@ -173,9 +253,9 @@ public class VoltProcedureListener extends AbstractEventHandler {
 //            if (d) LOG.debug(String.format("Got request [sysproc=%s, bytes=%d]", is_sysproc, request.length));
             try {
                 // RpcCallback<byte[]> callback = RpcUtil.newOneTimeCallback(eventLoopCallback);
-                this.incomingDeserializer.setBuffer(ByteBuffer.wrap(request));
-                StoredProcedureInvocation invocation = this.incomingDeserializer.readObject(StoredProcedureInvocation.class);
-                handler.procedureInvocation(invocation, request, eventLoopCallback);
+                eventLoopCallback.incomingDeserializer.setBuffer(request);
+                StoredProcedureInvocation invocation = eventLoopCallback.incomingDeserializer.readObject(StoredProcedureInvocation.class);
+                handler.procedureInvocation(invocation, null, eventLoopCallback);
             } catch (Exception ex) {
                 LOG.fatal("Unexpected error when calling procedureInvocation!", ex);
                 throw new RuntimeException(ex);
@@ -240,11 +320,27 @@ public class VoltProcedureListener extends AbstractEventHandler {
         bind(org.voltdb.client.Client.VOLTDB_SERVER_PORT);
     }
 
+    /**
+     * If enabled, the responses for a connection are not written out as soon as they are ready.
+     * Instead they are collected until the connection's event loop gets around to them and
+     * then they are all sent with a single gathering write.
+     * @param batchResponses
+     */
+    public void setResponseBatching(boolean batchResponses) {
+        this.batchResponses = batchResponses;
+    }
+
     public void setServerSocketForTest(ServerSocketChannel serverSocket) {
         this.serverSocket = serverSocket;
     }
 
     public static interface Handler {
+        /**
+         * @param request
+         * @param serializedRequest The raw bytes of the request. This may be null if the
+         *                          request was decoded without copying it out of its buffer.
+         * @param done
+         */
         public void procedureInvocation(StoredProcedureInvocation request,
                                         byte[] serializedRequest,
                                         RpcCallback<byte[]> done);
@@ -259,6 +259,16 @@ public final class HStoreConf {
         )
         public boolean exec_validate_work;
         
+        @ConfigProperty(
+            description="If this parameter is enabled, then each PartitionExecutor will call a stored procedure's " +
+                        "run() method through a ProcedureInvoker that is generated when the procedure is first loaded " +
+                        "instead of through Java reflection. Procedures that cannot be invoked this way (e.g., because " +
+                        "their class is not public) always fall back to reflection.",
+            defaultBoolean=true,
+            experimental=true
+        )
+        public boolean exec_procedure_invokers;
+        
         @ConfigProperty(
                 description="the way to execute reduce job, blocking or non-blocking by MapReduceHelperThread",
                 defaultBoolean=true,
@@ -278,13 +288,51 @@ public final class HStoreConf {
         )
         public boolean txn_profiling;
         
+        @ConfigProperty(
+            description="If this and ${site.txn_profiling} are enabled, then each HStoreSite will write out its " +
+                        "per-procedure latency histograms as JSON to ${site.log_dir} when it shuts down.",
+            defaultBoolean=false,
+            experimental=false
+        )
+        public boolean txn_profiling_dump;
+        
         @ConfigProperty(
             description="", // TODO
             defaultInt=10,
             experimental=true
         )
         public int txn_incoming_delay;
-        
+
+        @ConfigProperty(
+            description="The number of event loop threads that the HStoreSite will use to read requests from " +
+                        "client connections. New connections are spread across these threads round-robin. " +
+                        "The first thread also accepts the new connections.",
+            defaultInt=1,
+            experimental=false
+        )
+        public int txn_incoming_listeners;
+
+        @ConfigProperty(
+            description="The number of threads that the HStoreSite will use to route new txn requests. " +
+                        "These threads build the txn's parameters, estimate its base partition and " +
+                        "what partitions it will touch, and then dispatch it to its PartitionExecutor. " +
+                        "If this is set to zero, then the listener threads will route requests themselves " +
+                        "when they read them off of the client's connection.",
+            defaultInt=0,
+            experimental=false
+        )
+        public int txn_incoming_routers;
+
+        @ConfigProperty(
+            description="If enabled, the HStoreSite will not write each txn's response back to its client " +
+                        "as soon as the txn finishes. Instead, the listener thread that handles the client's " +
+                        "connection will send all of the responses that finished since its last pass " +
+                        "in a single gathering write.",
+            defaultBoolean=true,
+            experimental=false
+        )
+        public boolean txn_response_batching;
+
         @ConfigProperty(
             description="", // TODO
             defaultInt=10,
@@ -299,6 +347,16 @@ public final class HStoreConf {
         )
         public int txn_restart_limit_sysproc;
         
+        @ConfigProperty(
+            description="The number of slots in the table of in-flight transaction handles at each HStoreSite. " +
+                        "This should be a few times larger than the maximum number of transactions that can be " +
+                        "in-flight at a site at once. Transactions that do not fit into the table are stored in " +
+                        "a slower overflow map.",
+            defaultInt=16384,
+            experimental=false
+        )
+        public int txn_inflight_table_size;
+        
         // ----------------------------------------------------------------------------
         // Distributed Transaction Queue Options
         // ----------------------------------------------------------------------------
@@ -342,6 +400,16 @@ public final class HStoreConf {
             experimental=false
         )
         public int queue_incoming_increase_max;
+
+        @ConfigProperty(
+            description="How a PartitionExecutor waits for new work when its queue is empty. " +
+                        "In 'spin' mode it checks the queue in a tight loop, in 'yield' mode it yields its " +
+                        "thread in between checks, and in 'park' mode it sleeps until new work arrives. " +
+                        "The first two modes have lower latency but use up an entire core for each partition.",
+            defaultString="park",
+            experimental=true
+        )
+        public String exec_queue_wait_strategy;
         
         @ConfigProperty(
             description="If a transaction is rejected by an PartitionExecutor because its queue is full, then " +
@@ -501,6 +569,16 @@ public final class HStoreConf {
         )
         public boolean planner_unique_dependency_ids;
         
+        @ConfigProperty(
+            description="The maximum number of fully built BatchPlans that an HStoreSite will keep in the cache that " +
+                        "is shared by all of its BatchPlanners. A batch of queries that goes to the same partitions " +
+                        "as a previous batch will reuse its WorkFragments instead of building new ones. " +
+                        "Set this to zero to disable the cache.",
+            defaultInt=1000,
+            experimental=true
+        )
+        public int planner_plan_cache_size;
+        
         // ----------------------------------------------------------------------------
         // HStoreCoordinator
         // ----------------------------------------------------------------------------
@@ -537,6 +615,170 @@ public final class HStoreConf {
         )
         public boolean coordinator_sync_time;
 
+        @ConfigProperty(
+            description="If this enabled, HStoreCoordinator will combine all of the txn init, work, prepare, and " +
+                        "finish messages (and their responses) that it needs to send to the same remote HStoreSite " +
+                        "into a single RPC. Messages are held until the end of the current iteration of the " +
+                        "HStoreCoordinator's event loop or until there are ${site.coordinator_batch_size} of them.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean coordinator_batching;
+
+        @ConfigProperty(
+            description="The maximum number of txn messages that the HStoreCoordinator will pack into a " +
+                        "single RPC to a remote HStoreSite. Only used if ${site.coordinator_batching} is enabled.",
+            defaultInt=128,
+            experimental=true
+        )
+        public int coordinator_batch_size;
+
+        @ConfigProperty(
+            description="The number of event loop threads that the HStoreCoordinator will use for its network " +
+                        "traffic with the other HStoreSites. Each remote HStoreSite's connections are always " +
+                        "handled by the same thread, so the messages to and from a single site stay in order.",
+            defaultInt=1,
+            experimental=false
+        )
+        public int coordinator_event_loops;
+
+        // ----------------------------------------------------------------------------
+        // Replication
+        // ----------------------------------------------------------------------------
+        
+        @ConfigProperty(
+            description="The number of records that each partition's ReplicationStream can buffer before its " +
+                        "PartitionExecutor blocks waiting for the sender thread to catch up. " +
+                        "This will be rounded up to the next power of two.",
+            defaultInt=4096,
+            experimental=true
+        )
+        public int replication_stream_buffer_size;
+        
+        @ConfigProperty(
+            description="The maximum number of records that a ReplicationStream sender thread will pack into " +
+                        "a single message to a replica.",
+            defaultInt=128,
+            experimental=true
+        )
+        public int replication_stream_batch_size;
+        
+        @ConfigProperty(
+            description="Controls when the HStoreSite sends a transaction's ClientResponse back to the client " +
+                        "relative to the acknowledgements from its replicas. In 'async' mode the response is " +
+                        "sent right away. In 'semisync' mode it is held until at least one replica has " +
+                        "acknowledged the txn's records. In 'sync' mode it is held until " +
+                        "${site.replication_sync_quorum} replicas have acknowledged them.",
+            defaultString="async",
+            experimental=true
+        )
+        public String replication_mode;
+        
+        @ConfigProperty(
+            description="The number of replicas that must acknowledge a txn before its ClientResponse is released " +
+                        "when ${site.replication_mode} is set to 'sync'. A value less than one means that all of the " +
+                        "replicas must acknowledge it.",
+            defaultInt=-1,
+            experimental=true
+        )
+        public int replication_sync_quorum;
+        
+        @ConfigProperty(
+            description="The maximum amount of time (in ms) that a ClientResponse will be held back waiting " +
+                        "for the replicas when ${site.replication_mode} is not 'async'. If the replicas have not " +
+                        "acknowledged the txn by then, the client gets an ABORT_UNEXPECTED response instead, even " +
+                        "though the txn committed at the primary. A value less than one means wait forever.",
+            defaultInt=10000,
+            experimental=true
+        )
+        public int replication_response_timeout;
+
+        // ----------------------------------------------------------------------------
+        // Command Logging
+        // ----------------------------------------------------------------------------
+        
+        @ConfigProperty(
+            description="If set to true, then the HStoreSite will write every committed, non-read-only transaction " +
+                        "request into its command log before sending the ClientResponse back to the client.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean commandlog_enable;
+        
+        @ConfigProperty(
+            description="The directory that each HStoreSite will write its command log file into.",
+            defaultString="${global.temp_dir}/cmdlog",
+            experimental=true
+        )
+        public String commandlog_dir = HStoreConf.this.global.temp_dir + "/cmdlog";
+        
+        @ConfigProperty(
+            description="The maximum amount of time (in ms) that the command log writer thread will wait to " +
+                        "collect entries for a group commit before it flushes them to disk with a single fsync.",
+            defaultInt=10,
+            experimental=true
+        )
+        public int commandlog_timeout;
+        
+        @ConfigProperty(
+            description="The maximum number of entries that the command log writer thread will include in " +
+                        "a single group commit.",
+            defaultInt=1000,
+            experimental=true
+        )
+        public int commandlog_batch_size;
+        
+        @ConfigProperty(
+            description="The size (in bytes) of the direct buffer that the command log writer thread copies " +
+                        "entries into before writing them out to the log file.",
+            defaultInt=1048576,
+            experimental=true
+        )
+        public int commandlog_buffer_size;
+        
+        @ConfigProperty(
+            description="The amount of space (in MB) that the command log writer thread will preallocate for the " +
+                        "log file at a time. Preallocating the file means that an fsync does not also have to " +
+                        "update the file's metadata.",
+            defaultInt=64,
+            experimental=true
+        )
+        public int commandlog_prealloc_size;
+        
+        @ConfigProperty(
+            description="If this parameter and ${site.commandlog_enable} are both set to true, then when the HStoreSite " +
+                        "starts up it will replay all of the txns in its existing command log before it accepts " +
+                        "any new requests. Otherwise the existing log file is overwritten.",
+            defaultBoolean=false,
+            experimental=true
+        )
+        public boolean commandlog_recover;
+
+        @ConfigProperty(
+            description="If set to true, then command log recovery will also replay the distributed transactions " +
+                        "that touched partitions at other sites. This is only correct when every site in the " +
+                        "cluster is recovering from its own command log at the same time. Set this to false when " +
+                        "restarting a single site while the rest of the cluster is still running, since the " +
+                        "other sites already have those transactions' writes.",
+            defaultBoolean=true,
+            experimental=true
+        )
+        public boolean commandlog_recover_distributed;
+
+        // ----------------------------------------------------------------------------
+        // Snapshots
+        // ----------------------------------------------------------------------------
+
+        @ConfigProperty(
+            description="The size (in bytes) of each block of tuples that a PartitionExecutor will serialize " +
+                        "out of its tables when it is writing a snapshot. The PartitionExecutor writes one " +
+                        "block in between txns, so smaller blocks will delay txns less but will take longer " +
+                        "to write out the entire snapshot. This must be larger than the largest tuple in the database.",
+            defaultInt=2097152,
+            experimental=true
+        )
+        public int snapshot_block_size;
+
         // ----------------------------------------------------------------------------
         // PartitionExecutorHelper
         // ----------------------------------------------------------------------------
@@ -660,6 +902,15 @@ public final class HStoreConf {
         )
         public boolean pool_profiling;
         
+        @ConfigProperty(
+            description="The max number of idle objects that each thread keeps in its own cache for each object pool. " +
+                        "Objects returned when a thread's cache is full go to the pool's shared stack, " +
+                        "which is bounded by that pool's idle size.",
+            defaultInt=64,
+            experimental=false
+        )
+        public int pool_threadlocal_idle;
+        
         @ConfigProperty(
             description="The max number of LocalTransactionStates to keep in the pool",
             defaultInt=5000,
@@ -848,7 +1099,27 @@ public final class HStoreConf {
             experimental=false
         )
         public int blocking_concurrent;
-        
+
+        @ConfigProperty(
+            description="Whether each client process should submit transactions open-loop. Instead of sending " +
+                        "out bursts of transactions to catch up with ${client.txnrate}, the client schedules " +
+                        "each transaction at its own arrival time and keeps to that schedule no matter how long " +
+                        "the previous transactions take to complete. The latency of each transaction is measured " +
+                        "from the time that it was scheduled to be sent, so any queuing at the client is included.",
+            defaultBoolean=false,
+            experimental=false
+        )
+        public boolean open_loop;
+
+        @ConfigProperty(
+            description="When ${client.open_loop} is enabled, the transaction arrival times follow a Poisson " +
+                        "process (i.e., exponentially distributed gaps) with an average rate of ${client.txnrate}. " +
+                        "If this is disabled, then transactions are scheduled at a fixed interval.",
+            defaultBoolean=true,
+            experimental=false
+        )
+        public boolean open_loop_poisson;
+
         @ConfigProperty(
             description="When this parameter is enabled, the benchmark's loaders will only be " +
                         "allowed to load tables into the database cluster one at a time. This is " +
@@ -858,6 +1129,16 @@ public final class HStoreConf {
         )
         public boolean blocking_loader;
 
+        @ConfigProperty(
+            description="When this parameter is enabled, the benchmark's loaders will split up the rows " +
+                        "for partitioned tables on the client side and send them directly to each partition " +
+                        "as separate single-partition txns. Otherwise all tables are loaded with multi-partition " +
+                        "@LoadMultipartitionTable txns. Replicated tables are always loaded that way.",
+            defaultBoolean=false,
+            experimental=false
+        )
+        public boolean bulk_loader;
+
         @ConfigProperty(
             description="The scaling factor determines how large to make the target benchmark's data set. " +
                         "A scalefactor greater than one makes the data set larger, while less than one " +
@@ -43,6 +43,7 @@ import java.util.concurrent.LinkedBlockingDeque;
 import org.apache.commons.collections15.map.ListOrderedMap;
 import org.apache.log4j.Logger;
 import org.voltdb.ClientResponseImpl;
+import org.voltdb.ParameterSet;
 import org.voltdb.SQLStmt;
 import org.voltdb.StoredProcedureInvocation;
 import org.voltdb.VoltProcedure;
@@ -70,6 +71,7 @@ import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.markov.TransactionEstimator;
 import edu.brown.protorpc.ProtoRpcController;
 import edu.brown.statistics.Histogram;
+import edu.brown.utils.PartitionSet;
 import edu.brown.utils.StringUtil;
 
 /**
@@ -104,13 +106,14 @@ public class LocalTransaction extends AbstractTransaction {
 
 	/**
 	 * The set of partitions that we expected this partition to touch.
+	 * This is our own copy, so it is safe to modify it.
 	 */
-	protected Collection<Integer> predict_touchedPartitions;
+	protected final PartitionSet predict_touchedPartitions = new PartitionSet();
 
 	/**
 	 * The partitions that we told the Dtxn.Coordinator that we were done with
 	 */
-	protected final Collection<Integer> done_partitions = new HashSet<Integer>();
+	protected final PartitionSet done_partitions = new PartitionSet();
 
 	/**
 	 * A handle to the execution state of this transaction This will only get
@@ -140,6 +143,33 @@ public class LocalTransaction extends AbstractTransaction {
 	 */
 	private boolean exec_speculative = false;
 
+	/**
+	 * The sequence number of the last record that our base partition's
+	 * ReplicationStream generated for this txn. If the site is not running in
+	 * async replication mode, then the ClientResponse will not be released
+	 * until the replicas have acknowledged this record.
+	 */
+	private long replication_sequence = -1;
+
+	/**
+	 * The serialized ClientResponse of a distributed txn that is waiting for its
+	 * FINISH record to go into the base partition's ReplicationStream
+	 */
+	private byte held_response[] = null;
+
+	/**
+	 * True if this txn was already committed at a primary and is only being
+	 * replayed here at one of its replicas. Replayed txns are never restarted.
+	 */
+	private boolean replay = false;
+
+	/**
+	 * The WorkFragments (and their ParameterSets) that a replayed dtxn executed
+	 * at our base partition on the primary. These are executed by @ReplayWork.
+	 */
+	private final List<WorkFragment> replay_fragments = new ArrayList<WorkFragment>();
+	private final List<ParameterSet[]> replay_parameters = new ArrayList<ParameterSet[]>();
+
 	/**
 	 * TransctionEstimator State Handle
 	 */
@@ -229,7 +259,8 @@ public class LocalTransaction extends AbstractTransaction {
 		assert (predict_touchedPartitions != null && predict_touchedPartitions
 				.isEmpty() == false);
 
-		this.predict_touchedPartitions = predict_touchedPartitions;
+		this.predict_touchedPartitions.clear();
+		this.predict_touchedPartitions.addAll(predict_touchedPartitions);
 		this.catalog_proc = catalog_proc;
 
 		this.invocation = invocation;
@@ -287,7 +318,8 @@ public class LocalTransaction extends AbstractTransaction {
 	public LocalTransaction testInit(Long txn_id, int base_partition,
 			Collection<Integer> predict_touchedPartitions,
 			Procedure catalog_proc) {
-		this.predict_touchedPartitions = predict_touchedPartitions;
+		this.predict_touchedPartitions.clear();
+		this.predict_touchedPartitions.addAll(predict_touchedPartitions);
 		this.catalog_proc = catalog_proc;
 		boolean predict_singlePartition = (this.predict_touchedPartitions
 				.size() == 1);
@@ -367,7 +399,12 @@ public class LocalTransaction extends AbstractTransaction {
 		this.catalog_proc = null;
 
 		this.exec_speculative = false;
-		this.predict_touchedPartitions = null;
+		this.replication_sequence = -1;
+		this.held_response = null;
+		this.replay = false;
+		this.replay_fragments.clear();
+		this.replay_parameters.clear();
+		this.predict_touchedPartitions.clear();
 		this.done_partitions.clear();
 		this.restart_ctr = 0;
 		this.cresponse = null;
@@ -676,7 +713,7 @@ public class LocalTransaction extends AbstractTransaction {
 		this.restart_ctr = (short) val;
 	}
 
-	public Collection<Integer> getDonePartitions() {
+	public PartitionSet getDonePartitions() {
 		return (this.done_partitions);
 	}
 
@@ -734,6 +771,62 @@ public class LocalTransaction extends AbstractTransaction {
 		return (this.state.unblocked_tasks);
 	}
 
+	public void setReplicationSequence(long sequence) {
+		this.replication_sequence = sequence;
+	}
+
+	/**
+	 * Returns the sequence number of the last replication record for this txn
+	 * at its base partition. Returns -1 if nothing was replicated.
+	 */
+	public long getReplicationSequence() {
+		return (this.replication_sequence);
+	}
+
+	public void holdClientResponse(byte output[]) {
+		assert (this.held_response == null) : "Already holding a ClientResponse for " + this;
+		this.held_response = output;
+	}
+
+	/**
+	 * Returns the serialized ClientResponse that is waiting for this txn
+	 * to finish, or null if there isn't one
+	 */
+	public byte[] getHeldClientResponse() {
+		return (this.held_response);
+	}
+
+	public void markReplay() {
+		this.replay = true;
+	}
+
+	/**
+	 * Returns true if this txn is being replayed from a primary's replication stream
+	 */
+	public boolean isReplay() {
+		return (this.replay);
+	}
+
+	/**
+	 * Attach a WorkFragment that this replayed txn needs to execute at its base partition
+	 * 
+	 * @param fragment
+	 * @param parameters
+	 */
+	public void addReplayWork(WorkFragment fragment, ParameterSet parameters[]) {
+		assert (this.replay);
+		this.replay_fragments.add(fragment);
+		this.replay_parameters.add(parameters);
+	}
+
+	public List<WorkFragment> getReplayFragments() {
+		return (this.replay_fragments);
+	}
+
+	public List<ParameterSet[]> getReplayParameters() {
+		return (this.replay_parameters);
+	}
+
 	public TransactionEstimator.State getEstimatorState() {
 		return (this.estimator_state);
 	}
@@ -822,12 +915,13 @@ public class LocalTransaction extends AbstractTransaction {
 		return (this.state.blocked_tasks.contains(ftask));
 	}
 
-	public Collection<Integer> getPredictTouchedPartitions() {
+	public PartitionSet getPredictTouchedPartitions() {
 		return (this.predict_touchedPartitions);
 	}
 
 	public void setPredictTouchedPartitions(Collection<Integer> partitions) {
-		predict_touchedPartitions = partitions; 
+		this.predict_touchedPartitions.clear();
+		this.predict_touchedPartitions.addAll(partitions);
 	}
 	
 	// ----------------------------------------------------------------------------
@@ -1372,7 +1466,7 @@ public class LocalTransaction extends AbstractTransaction {
 		// Predictions
 		m = new ListOrderedMap<String, Object>();
 		m.put("Predict Single-Partitioned",
-				(this.predict_touchedPartitions != null ? this
+				(this.predict_touchedPartitions.isEmpty() == false ? this
 						.isPredictSinglePartition() : "???"));
 		m.put("Predict Touched Partitions", this.getPredictTouchedPartitions());
 		m.put("Predict Read Only", this.isPredictReadOnly());
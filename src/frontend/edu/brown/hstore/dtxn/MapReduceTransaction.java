@@ -26,6 +26,7 @@ import edu.brown.hstore.callbacks.TransactionReduceCallback;
 import edu.brown.hstore.callbacks.TransactionReduceWrapperCallback;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.utils.PartitionSet;
 import edu.brown.utils.StringUtil;
 
 /**
@@ -330,7 +331,8 @@ public class MapReduceTransaction extends LocalTransaction {
         return (this.catalog_proc != null ? this.catalog_proc.getName() : null);
     }
 
-    public Collection<Integer> getPredictTouchedPartitions() {
+    @Override
+    public PartitionSet getPredictTouchedPartitions() {
         return (this.hstore_site.getAllPartitionIds());
     }
 
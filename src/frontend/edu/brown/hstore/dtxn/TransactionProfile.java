@@ -11,6 +11,7 @@ import org.apache.log4j.Logger;
 
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.statistics.LatencyHistogram;
 import edu.brown.utils.Poolable;
 import edu.brown.utils.ProfileMeasurement;
 import edu.brown.utils.StringUtil;
@@ -44,6 +45,18 @@ public class TransactionProfile implements Poolable {
         }
     } // STATIC
     
+    /**
+     * The type names of the ProfileMeasurements in the same order as PROFILE_FIELDS
+     */
+    public static final String PROFILE_TYPES[];
+    static {
+        ProfileMeasurement pms[] = new TransactionProfile().measurements;
+        PROFILE_TYPES = new String[pms.length];
+        for (int i = 0; i < PROFILE_TYPES.length; i++) {
+            PROFILE_TYPES[i] = pms[i].getType();
+        }
+    } // STATIC
+    
     // ---------------------------------------------------------------
     // INTERNAL STATE
     // ---------------------------------------------------------------
@@ -55,6 +68,22 @@ public class TransactionProfile implements Poolable {
     
     private transient boolean disabled = false;
     
+    /**
+     * All of our ProfileMeasurements in the same order as PROFILE_FIELDS
+     */
+    private final ProfileMeasurement measurements[];
+    
+    public TransactionProfile() {
+        this.measurements = new ProfileMeasurement[PROFILE_FIELDS.length];
+        for (int i = 0; i < this.measurements.length; i++) {
+            try {
+                this.measurements[i] = (ProfileMeasurement)PROFILE_FIELDS[i].get(this);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        } // FOR
+    }
+    
     /**
      * 
      * @param parent - The expected parent
@@ -424,6 +453,20 @@ public class TransactionProfile implements Poolable {
         return true;
     }
     
+    /**
+     * Record the time that this txn spent in each part of the system into the
+     * given histograms. The histograms must be in the same order as PROFILE_FIELDS.
+     * Parts of the system that the txn never went through are skipped.
+     * @param histograms
+     */
+    public void recordLatencies(LatencyHistogram histograms[]) {
+        assert(histograms.length == this.measurements.length);
+        for (int i = 0; i < this.measurements.length; i++) {
+            ProfileMeasurement pm = this.measurements[i];
+            if (pm.getInvocations() > 0) histograms[i].record(pm.getTotalThinkTime());
+        } // FOR
+    }
+    
     public long[] getTuple() {
         long tuple[] = new long[PROFILE_FIELDS.length];
         for (int i = 0; i < tuple.length; i++) {
@@ -1,6 +1,6 @@
 package edu.brown.hstore.handlers;
 
-import java.util.Collection;
+import java.util.Arrays;
 
 import org.apache.log4j.Logger;
 
@@ -11,11 +11,13 @@ import com.google.protobuf.RpcController;
 import edu.brown.catalog.CatalogUtil;
 import edu.brown.hstore.HStoreCoordinator;
 import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.TransactionBatcher;
 import edu.brown.hstore.Hstoreservice.HStoreService;
 import edu.brown.hstore.dtxn.LocalTransaction;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.protorpc.ProtoRpcController;
+import edu.brown.utils.PartitionSet;
 
 /**
  * AbstractTransactionHandler is a wrapper around the invocation methods for some action
@@ -39,29 +41,30 @@ public abstract class AbstractTransactionHandler<T extends GeneratedMessage, U e
     protected final int num_sites;
     protected final int local_site_id;
     
+    /**
+     * If this is not null, then messages to remote sites will be added to
+     * this instead of being sent out in their own RPCs
+     */
+    protected final TransactionBatcher batcher;
+    
+    /**
+     * Reusable flags for the sites that sendMessages() has already sent to
+     */
+    private final ThreadLocal<boolean[]> site_sent = new ThreadLocal<boolean[]>() {
+        protected boolean[] initialValue() {
+            return (new boolean[num_sites]);
+        };
+    };
+    
     public AbstractTransactionHandler(HStoreSite hstore_site, HStoreCoordinator hstore_coord) {
         this.hstore_site = hstore_site;
         this.hstore_coord = hstore_coord;
         this.handler = this.hstore_coord.getHandler();
         this.num_sites = CatalogUtil.getNumberOfSites(hstore_site.getSite());
         this.local_site_id = hstore_site.getSiteId();
+        this.batcher = this.hstore_coord.getTransactionBatcher();
     }
     
-    // (kowshik) Added extra method to send messages to replicas
-    /****** FOR REPLICATION ****************/
-    public void sendMessagesToReplicas(LocalTransaction ts, T request, RpcCallback<U> callback, int partitionId, Collection<Integer> replicaIds) {
-    	for (Integer replicaId : replicaIds) {
-    		HStoreService channel = hstore_coord.getChannel(replicaId);
-            assert(channel != null) : "Invalid partition id '" + partitionId + "'";
-            ProtoRpcController controller = this.getProtoRpcController(ts, replicaId);
-            assert(controller != null) : "Invalid " + request.getClass().getSimpleName() + " ProtoRpcController for site #" + replicaId;
-            this.sendRemote(channel, controller, request, callback);
-            LOG.info(String.format("(kowshik/vijay) Sent request: %s to replica ID: %s for partition: %d for transaction: %s",
-                    request, replicaId, partitionId, ts));
-    	}
-    }
-    /***********************************/
-    
     /**
      * Send a copy of a single message request to the partitions given as input
      * If a partition is managed by the local HStoreSite, then we will invoke
@@ -72,14 +75,15 @@ public abstract class AbstractTransactionHandler<T extends GeneratedMessage, U e
      * @param callback
      * @param partitions
      */
-    public void sendMessages(LocalTransaction ts, T request, RpcCallback<U> callback, Collection<Integer> partitions) {
+    public void sendMessages(LocalTransaction ts, T request, RpcCallback<U> callback, PartitionSet partitions) {
         // If this flag is true, then we'll invoke the local method
         // We want to do this *after* we send out all the messages to the remote sites
         // so that we don't have to wait as long for the responses to come back over the network
         boolean send_local = false;
-        boolean site_sent[] = new boolean[this.num_sites];
+        boolean site_sent[] = this.site_sent.get();
+        Arrays.fill(site_sent, false);
         int ctr = 0;
-        for (Integer p : partitions) {
+        for (int p = partitions.next(0); p != -1; p = partitions.next(p + 1)) {
             int dest_site_id = hstore_site.getSiteIdForPartitionId(p);
 
             // Skip this HStoreSite if we're already sent it a message 
@@ -94,11 +98,13 @@ public abstract class AbstractTransactionHandler<T extends GeneratedMessage, U e
                 send_local = true;
             // Remote Partition
             } else {
-                HStoreService channel = hstore_coord.getChannel(dest_site_id);
-                assert(channel != null) : "Invalid partition id '" + p + "'";
-                ProtoRpcController controller = this.getProtoRpcController(ts, dest_site_id);
-                assert(controller != null) : "Invalid " + request.getClass().getSimpleName() + " ProtoRpcController for site #" + dest_site_id;
-                this.sendRemote(channel, controller, request, callback);
+                if (this.batcher == null || this.sendBatched(dest_site_id, request, callback) == false) {
+                    HStoreService channel = hstore_coord.getChannel(dest_site_id);
+                    assert(channel != null) : "Invalid partition id '" + p + "'";
+                    ProtoRpcController controller = this.getProtoRpcController(ts, dest_site_id);
+                    assert(controller != null) : "Invalid " + request.getClass().getSimpleName() + " ProtoRpcController for site #" + dest_site_id;
+                    this.sendRemote(channel, controller, request, callback);
+                }
             }
             site_sent[dest_site_id] = true;
             ctr++;
@@ -121,7 +127,7 @@ public abstract class AbstractTransactionHandler<T extends GeneratedMessage, U e
      * @param partitions
      * @param callback
      */
-    public abstract void sendLocal(long txn_id, T request, Collection<Integer> partitions, RpcCallback<U> callback);
+    public abstract void sendLocal(long txn_id, T request, PartitionSet partitions, RpcCallback<U> callback);
     
     /**
      * The processing method that is invoked if the outgoing message needs
@@ -135,6 +141,19 @@ public abstract class AbstractTransactionHandler<T extends GeneratedMessage, U e
      */
     public abstract void sendRemote(HStoreService channel, ProtoRpcController controller, T request, RpcCallback<U> callback);
     
+    /**
+     * Add the outgoing message for a remote HStoreSite to the TransactionBatcher
+     * instead of sending it in its own RPC. Returns false if this type of
+     * message cannot be batched, in which case sendRemote() will be used instead.
+     * @param site_id
+     * @param request
+     * @param callback
+     * @return
+     */
+    protected boolean sendBatched(int site_id, T request, RpcCallback<U> callback) {
+        return (false);
+    }
+    
     /**
      * This is the method that is invoked on the remote HStoreSite for each incoming
      * message request. This will then determine whether the message should be queued up
@@ -18,6 +18,7 @@ import edu.brown.hstore.dtxn.LocalTransaction;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.protorpc.ProtoRpcController;
+import edu.brown.utils.PartitionSet;
 
 public class TransactionFinishHandler extends AbstractTransactionHandler<TransactionFinishRequest, TransactionFinishResponse> {
     private static final Logger LOG = Logger.getLogger(TransactionFinishHandler.class);
@@ -35,7 +36,7 @@ public class TransactionFinishHandler extends AbstractTransactionHandler<Transac
     }
     
     @Override
-    public void sendLocal(long txn_id, TransactionFinishRequest request, Collection<Integer> partitions, RpcCallback<TransactionFinishResponse> callback) {
+    public void sendLocal(long txn_id, TransactionFinishRequest request, PartitionSet partitions, RpcCallback<TransactionFinishResponse> callback) {
         hstore_site.transactionFinish(txn_id, request.getStatus(), partitions);
     }
     @Override
@@ -43,6 +44,11 @@ public class TransactionFinishHandler extends AbstractTransactionHandler<Transac
         channel.transactionFinish(controller, request, callback);
     }
     @Override
+    protected boolean sendBatched(int site_id, TransactionFinishRequest request, RpcCallback<TransactionFinishResponse> callback) {
+        this.batcher.addFinishRequest(site_id, request, callback);
+        return (true);
+    }
+    @Override
     public void remoteQueue(RpcController controller, TransactionFinishRequest request, 
             RpcCallback<TransactionFinishResponse> callback) {
         if (finishDispatcher != null && request.getStatus() == Hstoreservice.Status.ABORT_RESTART) {
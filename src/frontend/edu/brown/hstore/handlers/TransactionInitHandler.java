@@ -1,7 +1,5 @@
 package edu.brown.hstore.handlers;
 
-import java.util.Collection;
-
 import org.apache.log4j.Logger;
 
 import com.google.protobuf.RpcCallback;
@@ -20,6 +18,7 @@ import edu.brown.hstore.dtxn.LocalTransaction;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.protorpc.ProtoRpcController;
+import edu.brown.utils.PartitionSet;
 
 public class TransactionInitHandler extends AbstractTransactionHandler<TransactionInitRequest, TransactionInitResponse> {
     private static final Logger LOG = Logger.getLogger(TransactionInitHandler.class);
@@ -37,7 +36,7 @@ public class TransactionInitHandler extends AbstractTransactionHandler<Transacti
     }
     
     @Override
-    public void sendLocal(long txn_id, TransactionInitRequest request, Collection<Integer> partitions, RpcCallback<TransactionInitResponse> callback) {
+    public void sendLocal(long txn_id, TransactionInitRequest request, PartitionSet partitions, RpcCallback<TransactionInitResponse> callback) {
         handler.transactionInit(null, request, callback);
     }
     @Override
@@ -45,6 +44,11 @@ public class TransactionInitHandler extends AbstractTransactionHandler<Transacti
         channel.transactionInit(controller, request, callback);
     }
     @Override
+    protected boolean sendBatched(int site_id, TransactionInitRequest request, RpcCallback<TransactionInitResponse> callback) {
+        this.batcher.addInitRequest(site_id, request, callback);
+        return (true);
+    }
+    @Override
     public void remoteQueue(RpcController controller, TransactionInitRequest request,
             RpcCallback<TransactionInitResponse> callback) {
         if (initDispatcher != null) {
@@ -1,7 +1,5 @@
 package edu.brown.hstore.handlers;
 
-import java.util.Collection;
-
 import org.apache.log4j.Logger;
 import org.voltdb.StoredProcedureInvocation;
 import org.voltdb.messaging.FastDeserializer;
@@ -19,6 +17,7 @@ import edu.brown.hstore.dtxn.MapReduceTransaction;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.protorpc.ProtoRpcController;
+import edu.brown.utils.PartitionSet;
 
 public class TransactionMapHandler extends AbstractTransactionHandler<TransactionMapRequest, TransactionMapResponse> {
     private static final Logger LOG = Logger.getLogger(TransactionMapHandler.class);
@@ -35,7 +34,7 @@ public class TransactionMapHandler extends AbstractTransactionHandler<Transactio
     }
     
     @Override
-    public void sendLocal(long txn_id, TransactionMapRequest request, Collection<Integer> partitions, RpcCallback<TransactionMapResponse> callback) {
+    public void sendLocal(long txn_id, TransactionMapRequest request, PartitionSet partitions, RpcCallback<TransactionMapResponse> callback) {
         // This is for MapReduce Transaction, the local task is still passed to the remoteHandler to be invoked the TransactionStart
         // as the a LocalTransaction. This LocalTransaction in this partition is the base partition for MR transaction.
         if (debug.get()) LOG.debug("Send to remoteHandler from sendLocal");
@@ -18,6 +18,7 @@ import edu.brown.hstore.dtxn.LocalTransaction;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.protorpc.ProtoRpcController;
+import edu.brown.utils.PartitionSet;
 
 public class TransactionPrepareHandler extends AbstractTransactionHandler<TransactionPrepareRequest, TransactionPrepareResponse> {
     private static final Logger LOG = Logger.getLogger(TransactionPrepareHandler.class);
@@ -32,7 +33,7 @@ public class TransactionPrepareHandler extends AbstractTransactionHandler<Transa
     }
     
     @Override
-    public void sendLocal(long txn_id, TransactionPrepareRequest request, Collection<Integer> partitions, RpcCallback<TransactionPrepareResponse> callback) {
+    public void sendLocal(long txn_id, TransactionPrepareRequest request, PartitionSet partitions, RpcCallback<TransactionPrepareResponse> callback) {
         // We don't care whether we actually updated anybody locally, so we don't need to
         // pass in a set to get the partitions that were updated here.
         hstore_site.transactionPrepare(txn_id, partitions, null);
@@ -42,6 +43,11 @@ public class TransactionPrepareHandler extends AbstractTransactionHandler<Transa
         channel.transactionPrepare(controller, request, callback);
     }
     @Override
+    protected boolean sendBatched(int site_id, TransactionPrepareRequest request, RpcCallback<TransactionPrepareResponse> callback) {
+        this.batcher.addPrepareRequest(site_id, request, callback);
+        return (true);
+    }
+    @Override
     public void remoteQueue(RpcController controller, TransactionPrepareRequest request, 
             RpcCallback<TransactionPrepareResponse> callback) {
         if (debug.get())
@@ -1,7 +1,5 @@
 package edu.brown.hstore.handlers;
 
-import java.util.Collection;
-
 import org.apache.log4j.Logger;
 
 import com.google.protobuf.RpcCallback;
@@ -17,6 +15,7 @@ import edu.brown.hstore.dtxn.MapReduceTransaction;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.protorpc.ProtoRpcController;
+import edu.brown.utils.PartitionSet;
 
 public class TransactionReduceHandler extends AbstractTransactionHandler<TransactionReduceRequest, TransactionReduceResponse> {
     private static final Logger LOG = Logger.getLogger(TransactionReduceHandler.class);
@@ -33,7 +32,7 @@ public class TransactionReduceHandler extends AbstractTransactionHandler<Transac
 
     @Override
     public void sendLocal(long txn_id, TransactionReduceRequest request,
-            Collection<Integer> partitions,
+            PartitionSet partitions,
             RpcCallback<TransactionReduceResponse> callback) {
         // this should think about where to send it 
         // handler.transactionReduce(null, request, callback);
@@ -1,7 +1,5 @@
 package edu.brown.hstore.handlers;
 
-import java.util.Collection;
-
 import org.apache.log4j.Logger;
 import org.voltdb.ParameterSet;
 import org.voltdb.VoltTable;
@@ -24,6 +22,7 @@ import edu.brown.hstore.dtxn.RemoteTransaction;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.protorpc.ProtoRpcController;
+import edu.brown.utils.PartitionSet;
 
 public class TransactionWorkHandler extends AbstractTransactionHandler<TransactionWorkRequest, TransactionWorkResponse> {
     private static final Logger LOG = Logger.getLogger(TransactionWorkHandler.class);
@@ -38,7 +37,7 @@ public class TransactionWorkHandler extends AbstractTransactionHandler<Transacti
     }
     
     @Override
-    public void sendLocal(long txn_id, TransactionWorkRequest request, Collection<Integer> partitions, RpcCallback<TransactionWorkResponse> callback) {
+    public void sendLocal(long txn_id, TransactionWorkRequest request, PartitionSet partitions, RpcCallback<TransactionWorkResponse> callback) {
         // TODO
     }
     @Override
@@ -82,6 +81,9 @@ public class TransactionWorkHandler extends AbstractTransactionHandler<Transacti
                                                                   txn_id, i, fds.buffer()));
                 try {
                     parameterSets[i] = fds.readObject(ParameterSet.class);
+                    // ByteStrings are immutable, so the EE can copy these bytes directly
+                    // instead of serializing the parameters all over again
+                    parameterSets[i].setSerializedBytes(paramData.asReadOnlyByteBuffer());
                 } catch (Exception ex) {
                     LOG.fatal("__FILE__:__LINE__ " + String.format("Failed to deserialize ParameterSet[%d] for txn #%d TransactionRequest", i, txn_id), ex);
                     throw new RuntimeException(ex);
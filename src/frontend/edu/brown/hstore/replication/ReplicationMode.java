@@ -0,0 +1,35 @@
+package edu.brown.hstore.replication;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How long an HStoreSite waits for its replicas before it releases
+ * the ClientResponse for a transaction.
+ */
+public enum ReplicationMode {
+    /**
+     * Send the ClientResponse right away without waiting for any replica
+     */
+    ASYNC,
+    /**
+     * Wait until at least one replica has acknowledged the txn
+     */
+    SEMISYNC,
+    /**
+     * Wait until ${site.replication_sync_quorum} replicas have acknowledged the txn
+     */
+    SYNC;
+
+    protected static final Map<String, ReplicationMode> name_lookup = new HashMap<String, ReplicationMode>();
+    static {
+        for (ReplicationMode vt : EnumSet.allOf(ReplicationMode.class)) {
+            ReplicationMode.name_lookup.put(vt.name().toLowerCase().intern(), vt);
+        } // FOR
+    }
+
+    public static ReplicationMode get(String name) {
+        return (ReplicationMode.name_lookup.get(name.toLowerCase().intern()));
+    }
+}
@@ -0,0 +1,752 @@
+package edu.brown.hstore.replication;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.ParameterSet;
+import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.messaging.FastSerializer;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.RpcCallback;
+
+import edu.brown.hstore.HStoreCoordinator;
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.Hstoreservice.ReplicationRecord;
+import edu.brown.hstore.Hstoreservice.ReplicationStreamRequest;
+import edu.brown.hstore.Hstoreservice.ReplicationStreamResponse;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.hstore.Hstoreservice.WorkFragment;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.hstore.interfaces.Shutdownable;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.utils.ProfileMeasurement;
+
+/**
+ * Ordered stream of replication records for a single partition.
+ * The PartitionExecutor appends records into a bounded ring buffer without
+ * touching the network. A dedicated sender thread drains whatever has
+ * accumulated (up to ${site.replication_stream_batch_size} records), packs it into
+ * a single ReplicationStreamRequest, and pipelines it to every replica without
+ * waiting for the previous batch to be acknowledged. Replicas send back a
+ * cumulative acknowledgement of the last sequence number that they have received.
+ * <p>
+ * Records stay in the ring buffer until every replica has acknowledged them.
+ * If a replica rejects a batch because it found a gap in the stream, or if the
+ * RPC fails, then the sender rewinds to the lowest acknowledged sequence number
+ * and sends everything after it again. Replicas skip records they already have.
+ * <p>
+ * If ${site.replication_mode} is not async, then ClientResponses are held back in
+ * this stream until enough replicas have acknowledged the txn's last record. If that
+ * takes longer than ${site.replication_response_timeout}, the client gets an error instead.
+ */
+public class ReplicationStream implements Runnable, Shutdownable {
+    private static final Logger LOG = Logger.getLogger(ReplicationStream.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    /**
+     * How long the sender thread will park for when the stream is empty
+     * before it checks again (in nanoseconds)
+     */
+    private static final long SENDER_PARK_NANOS = 1000000l;
+
+    /**
+     * How long the PartitionExecutor will park for when the ring buffer
+     * is full before it checks again (in nanoseconds)
+     */
+    private static final long PRODUCER_PARK_NANOS = 50000l;
+
+    /**
+     * A pre-allocated slot in the ring buffer. These are only written by the
+     * PartitionExecutor thread and only read by the sender thread.
+     */
+    private static final class Entry {
+        ReplicationRecord.Type type;
+        long txn_id;
+        int proc_id;
+        ParameterSet params;
+        WorkFragment fragment;
+        ParameterSet fragment_params[];
+        Status status;
+
+        void clear() {
+            this.type = null;
+            this.params = null;
+            this.fragment = null;
+            this.fragment_params = null;
+            this.status = null;
+        }
+    } // END CLASS
+
+    /**
+     * A serialized ClientResponse that is waiting for the replicas
+     */
+    private static final class PendingResponse implements Comparable<PendingResponse> {
+        final long sequence;
+        final RpcCallback<byte[]> callback;
+        final byte output[];
+        final long deadline;
+
+        PendingResponse(long sequence, RpcCallback<byte[]> callback, byte output[], long deadline) {
+            this.sequence = sequence;
+            this.callback = callback;
+            this.output = output;
+            this.deadline = deadline;
+        }
+        @Override
+        public int compareTo(PendingResponse o) {
+            return (this.sequence < o.sequence ? -1 : (this.sequence == o.sequence ? 0 : 1));
+        }
+    } // END CLASS
+
+    private final HStoreSite hstore_site;
+    private final int local_site_id;
+    private final int partition_id;
+
+    /**
+     * The ids of the replicas that we will send our records to
+     */
+    private final int replica_ids[];
+
+    private final Entry ring[];
+    private final int ring_mask;
+    private final int batch_size;
+
+    /**
+     * The sequence number of the last record that was appended to the stream.
+     * Only the PartitionExecutor thread reads or writes this
+     */
+    private long next_sequence = 0;
+
+    /**
+     * The sequence number of the last record that the sender thread is allowed to read
+     */
+    private final AtomicLong published = new AtomicLong(0);
+
+    /**
+     * The sequence number of the last record that the sender thread sent out.
+     * This goes backwards when the sender has to retransmit records.
+     */
+    private final AtomicLong sent = new AtomicLong(0);
+
+    /**
+     * The sequence number of the last record that every replica has acknowledged.
+     * Every slot up to this point can be reused by the PartitionExecutor
+     */
+    private final AtomicLong released = new AtomicLong(0);
+
+    /**
+     * Incremented by the sender thread every time that it rewinds the stream.
+     * Failures for batches sent before the last rewind are ignored, so that
+     * one lost batch does not cause a retransmit for every batch behind it.
+     */
+    private volatile int epoch = 0;
+
+    /**
+     * Set by an AckCallback when the sender needs to rewind the stream
+     */
+    private final AtomicBoolean resend = new AtomicBoolean(false);
+
+    /**
+     * The cumulative acknowledged sequence number for each replica
+     */
+    private final AtomicLongArray acked;
+
+    /**
+     * The number of replicas that need to acknowledge a record before
+     * we can release the ClientResponses that are waiting on it
+     */
+    private final int required_acks;
+
+    /**
+     * The highest sequence number that at least required_acks replicas have acknowledged.
+     * This only moves forward, and it is updated by the AckCallbacks as they come in.
+     */
+    private final AtomicLong watermark = new AtomicLong(0);
+
+    /**
+     * How long a ClientResponse can wait for the replicas before
+     * we give up and send back an error instead (in ms)
+     */
+    private final long response_timeout;
+
+    /**
+     * ClientResponses waiting for the acknowledged watermark to pass their sequence number
+     */
+    private final PriorityQueue<PendingResponse> pending_responses = new PriorityQueue<PendingResponse>();
+
+    private final FastSerializer fs = new FastSerializer();
+
+    private final ProfileMeasurement idleTime = new ProfileMeasurement("IDLE");
+    private final ProfileMeasurement blockedTime = new ProfileMeasurement("BLOCKED");
+    private final AtomicLong num_batches = new AtomicLong(0);
+    private final AtomicLong num_resends = new AtomicLong(0);
+    private final AtomicLong num_timeouts = new AtomicLong(0);
+
+    private volatile boolean stop = false;
+    private volatile boolean sender_parked = false;
+    private volatile Thread self = null;
+
+    /**
+     * Constructor
+     * @param hstore_site
+     * @param partition_id
+     * @param replica_ids
+     */
+    public ReplicationStream(HStoreSite hstore_site, int partition_id, Collection<Integer> replica_ids) {
+        this.hstore_site = hstore_site;
+        this.local_site_id = hstore_site.getSiteId();
+        this.partition_id = partition_id;
+
+        this.replica_ids = new int[replica_ids.size()];
+        int i = 0;
+        for (Integer replica_id : replica_ids) {
+            this.replica_ids[i++] = replica_id.intValue();
+        } // FOR
+        this.acked = new AtomicLongArray(this.replica_ids.length);
+
+        HStoreConf hstore_conf = hstore_site.getHStoreConf();
+        int capacity = 1;
+        while (capacity < hstore_conf.site.replication_stream_buffer_size) {
+            capacity <<= 1;
+        } // WHILE
+        this.ring = new Entry[capacity];
+        for (i = 0; i < capacity; i++) {
+            this.ring[i] = new Entry();
+        } // FOR
+        this.ring_mask = capacity - 1;
+        this.batch_size = Math.max(1, hstore_conf.site.replication_stream_batch_size);
+
+        ReplicationMode mode = ReplicationMode.get(hstore_conf.site.replication_mode);
+        if (mode == null) {
+            throw new IllegalArgumentException("Invalid replication mode '" + hstore_conf.site.replication_mode + "'");
+        }
+        switch (mode) {
+            case ASYNC:
+                this.required_acks = 0;
+                break;
+            case SEMISYNC:
+                this.required_acks = Math.min(1, this.replica_ids.length);
+                break;
+            case SYNC:
+                int quorum = hstore_conf.site.replication_sync_quorum;
+                this.required_acks = (quorum < 1 ? this.replica_ids.length : Math.min(quorum, this.replica_ids.length));
+                break;
+            default:
+                throw new RuntimeException("Unexpected replication mode " + mode);
+        } // SWITCH
+        this.response_timeout = hstore_conf.site.replication_response_timeout;
+    }
+
+    // ----------------------------------------------------------------------------
+    // APPEND METHODS (PARTITIONEXECUTOR THREAD ONLY)
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Append a record that the given txn started executing at this partition
+     * @param txn_id
+     * @param proc_id
+     * @param params
+     * @return the sequence number assigned to this record
+     */
+    public long appendInit(long txn_id, int proc_id, ParameterSet params) {
+        Entry e = this.claim();
+        e.type = ReplicationRecord.Type.INIT;
+        e.txn_id = txn_id;
+        e.proc_id = proc_id;
+        e.params = params;
+        return (this.publish());
+    }
+
+    /**
+     * Append a record that a distributed txn executed the given WorkFragment at this
+     * partition. Replicas re-execute these instead of the txn's stored procedure.
+     * @param txn_id
+     * @param fragment
+     * @param parameters
+     * @return the sequence number assigned to this record
+     */
+    public long appendWork(long txn_id, WorkFragment fragment, ParameterSet parameters[]) {
+        Entry e = this.claim();
+        e.type = ReplicationRecord.Type.WORK;
+        e.txn_id = txn_id;
+        e.fragment = fragment;
+        e.fragment_params = parameters;
+        return (this.publish());
+    }
+
+    /**
+     * Append a record that the given txn was committed or aborted at this partition
+     * @param txn_id
+     * @param status
+     * @return the sequence number assigned to this record
+     */
+    public long appendFinish(long txn_id, Status status) {
+        Entry e = this.claim();
+        e.type = ReplicationRecord.Type.FINISH;
+        e.txn_id = txn_id;
+        e.status = status;
+        return (this.publish());
+    }
+
+    /**
+     * Grab the next free slot in the ring buffer. If the replicas have fallen
+     * too far behind, then we will block until they acknowledge enough records.
+     */
+    private Entry claim() {
+        long seq = this.next_sequence + 1;
+        if (seq - this.released.get() > this.ring.length) {
+            if (trace.get())
+                LOG.trace(String.format("ReplicationStream for partition %d is full. Waiting for replicas...", this.partition_id));
+            this.blockedTime.start();
+            while (seq - this.released.get() > this.ring.length && this.stop == false) {
+                if (this.sender_parked) LockSupport.unpark(this.self);
+                LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+            } // WHILE
+            this.blockedTime.stop();
+        }
+        this.next_sequence = seq;
+        Entry e = this.ring[(int)(seq & this.ring_mask)];
+        e.clear();
+        return (e);
+    }
+
+    private long publish() {
+        long seq = this.next_sequence;
+        // If the sender misses this wake-up, it will still see the record
+        // once its park times out
+        this.published.lazySet(seq);
+        if (this.sender_parked) LockSupport.unpark(this.self);
+        return (seq);
+    }
+
+    // ----------------------------------------------------------------------------
+    // SENDER THREAD
+    // ----------------------------------------------------------------------------
+
+    @Override
+    public void run() {
+        this.self = Thread.currentThread();
+        this.self.setName(HStoreSite.getThreadName(hstore_site, "repl", this.partition_id));
+        if (hstore_site.getHStoreConf().site.cpu_affinity) {
+            hstore_site.getThreadManager().registerProcessingThread();
+        }
+        if (debug.get())
+            LOG.debug(String.format("Starting ReplicationStream for partition %d [replicas=%d, capacity=%d]",
+                                    this.partition_id, this.replica_ids.length, this.ring.length));
+
+        while (this.stop == false) {
+            if (this.sendNextBatch() == false) {
+                this.idleTime.start();
+                this.sender_parked = true;
+                if (this.published.get() == this.sent.get() && this.resend.get() == false && this.stop == false) {
+                    LockSupport.parkNanos(SENDER_PARK_NANOS);
+                }
+                this.sender_parked = false;
+                this.idleTime.stop();
+            }
+            if (this.response_timeout > 0) this.expireClientResponses();
+        } // WHILE
+    }
+
+    /**
+     * Pack up to batch_size records into a single request and send it to all of
+     * our replicas. Returns false if there was nothing to send.
+     * @return
+     */
+    protected boolean sendNextBatch() {
+        if (this.resend.compareAndSet(true, false)) this.rewind();
+        final long start = this.sent.get();
+        long end = this.published.get();
+        if (end == start) return (false);
+        if (end - start > this.batch_size) end = start + this.batch_size;
+
+        ReplicationStreamRequest.Builder builder = ReplicationStreamRequest.newBuilder()
+                                                        .setSenderId(this.local_site_id)
+                                                        .setPartitionId(this.partition_id);
+        for (long seq = start + 1; seq <= end; seq++) {
+            Entry e = this.ring[(int)(seq & this.ring_mask)];
+            builder.addRecords(this.buildRecord(seq, e));
+        } // FOR
+        this.sent.lazySet(end);
+
+        ReplicationStreamRequest request = builder.build();
+        if (trace.get())
+            LOG.trace(String.format("Sending records [%d, %d] for partition %d to %d replicas",
+                                    start + 1, end, this.partition_id, this.replica_ids.length));
+        final int cur_epoch = this.epoch;
+        for (int i = 0; i < this.replica_ids.length; i++) {
+            this.sendBatch(this.replica_ids[i], request, new AckCallback(i, cur_epoch));
+        } // FOR
+        if (this.replica_ids.length == 0) this.updateReleased();
+        this.num_batches.incrementAndGet();
+        return (true);
+    }
+
+    /**
+     * Move the sender back to the last record that every replica has acknowledged
+     * so that everything after it will be sent again. Only the sender thread calls this.
+     */
+    private void rewind() {
+        long seq = this.released.get();
+        if (seq >= this.sent.get()) return;
+        if (debug.get())
+            LOG.debug(String.format("Resending records [%d, %d] for partition %d",
+                                    seq + 1, this.sent.get(), this.partition_id));
+        this.epoch++;
+        this.sent.set(seq);
+        this.num_resends.incrementAndGet();
+    }
+
+    private ReplicationRecord buildRecord(long seq, Entry e) {
+        ReplicationRecord.Builder builder = ReplicationRecord.newBuilder()
+                                                .setSequence(seq)
+                                                .setTransactionId(e.txn_id)
+                                                .setType(e.type);
+        try {
+            switch (e.type) {
+                case INIT:
+                    builder.setProcedureId(e.proc_id);
+                    if (e.params != null) builder.setParameters(this.serialize(e.params));
+                    break;
+                case WORK:
+                    builder.setFragment(e.fragment);
+                    for (ParameterSet ps : e.fragment_params) {
+                        builder.addParameterSets(this.serialize(ps));
+                    } // FOR
+                    break;
+                case FINISH:
+                    builder.setStatus(e.status);
+                    break;
+                default:
+                    assert(false) : "Unexpected record type " + e.type;
+            } // SWITCH
+        } catch (IOException ex) {
+            throw new RuntimeException(String.format("Failed to serialize %s record for txn #%d at partition %d",
+                                                     e.type, e.txn_id, this.partition_id), ex);
+        }
+        return (builder.build());
+    }
+
+    private ByteString serialize(ParameterSet params) throws IOException {
+        this.fs.clear();
+        this.fs.writeObject(params);
+        return (ByteString.copyFrom(this.fs.getBuffer()));
+    }
+
+    /**
+     * Send a batch of records to the given replica
+     * @param replica_id
+     * @param request
+     * @param callback
+     */
+    protected void sendBatch(int replica_id, ReplicationStreamRequest request, RpcCallback<ReplicationStreamResponse> callback) {
+        HStoreCoordinator hstore_coord = this.hstore_site.getCoordinator();
+        hstore_coord.replicationStream(replica_id, request, callback);
+    }
+
+    /**
+     * Advances the acknowledged sequence number for a single replica.
+     * Acknowledgements are cumulative, so we only ever move forward.
+     * The response is null if the RPC failed.
+     */
+    private class AckCallback implements RpcCallback<ReplicationStreamResponse> {
+        private final int offset;
+        private final int epoch;
+
+        public AckCallback(int offset, int epoch) {
+            this.offset = offset;
+            this.epoch = epoch;
+        }
+
+        @Override
+        public void run(ReplicationStreamResponse response) {
+            if (response == null || response.getStatus() != Status.OK) {
+                if (response == null) {
+                    LOG.warn(String.format("Failed to send records for partition %d to replica %d",
+                                           partition_id, replica_ids[this.offset]));
+                } else {
+                    LOG.warn(String.format("Replica %d rejected records for partition %d [status=%s, lastSequence=%d]",
+                                           replica_ids[this.offset], partition_id, response.getStatus(), response.getLastSequence()));
+                }
+                if (this.epoch == ReplicationStream.this.epoch && resend.compareAndSet(false, true)) {
+                    if (sender_parked) LockSupport.unpark(self);
+                }
+                if (response == null) return;
+            }
+            long seq = response.getLastSequence();
+            long prev;
+            while (true) {
+                prev = acked.get(this.offset);
+                if (seq <= prev) return;
+                if (acked.compareAndSet(this.offset, prev, seq)) break;
+            } // WHILE
+            updateReleased();
+            if (required_acks > 0 && updateWatermark(prev)) releaseClientResponses();
+        }
+    } // END CLASS
+
+    /**
+     * Move the released sequence number up to the lowest acknowledged
+     * sequence number across all of the replicas
+     */
+    private void updateReleased() {
+        long min = this.getAckedSequence();
+        while (true) {
+            long cur = this.released.get();
+            if (min <= cur) return;
+            if (this.released.compareAndSet(cur, min)) break;
+        } // WHILE
+    }
+
+    // ----------------------------------------------------------------------------
+    // CLIENT RESPONSE GATING
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Returns true if ClientResponses need to wait for acknowledgements from the replicas
+     */
+    public boolean isSynchronous() {
+        return (this.required_acks > 0);
+    }
+
+    /**
+     * Returns the highest sequence number that has been acknowledged by
+     * at least the number of replicas required by our replication mode.
+     */
+    public long getWatermark() {
+        if (this.required_acks == 0) return (this.published.get());
+        return (this.watermark.get());
+    }
+
+    /**
+     * Move the watermark forward after a replica's acknowledged sequence number went up
+     * from prev. The watermark is the required_acks-th largest acknowledged sequence number.
+     * If the replica was already past it, then the watermark can't change. Otherwise we step
+     * it up to the next acknowledged sequence number for as long as enough replicas are past it.
+     * Acknowledgements only ever go up, so it is safe to do this from multiple threads.
+     * Returns true if the watermark moved.
+     * @param prev
+     */
+    private boolean updateWatermark(long prev) {
+        final long orig = this.watermark.get();
+        if (prev > orig) return (false);
+        long w = orig;
+        while (true) {
+            int count = 0;
+            long next = Long.MAX_VALUE;
+            for (int i = 0; i < this.replica_ids.length; i++) {
+                long seq = this.acked.get(i);
+                if (seq > w) {
+                    count++;
+                    if (seq < next) next = seq;
+                }
+            } // FOR
+            if (count < this.required_acks) break;
+            w = next;
+        } // WHILE
+        if (w == orig) return (false);
+        while (true) {
+            long cur = this.watermark.get();
+            if (w <= cur) break;
+            if (this.watermark.compareAndSet(cur, w)) break;
+        } // WHILE
+        return (true);
+    }
+
+    /**
+     * Send the serialized ClientResponse to the client once the watermark
+     * has reached the given sequence number. If it already has, then the
+     * response is sent immediately in the caller's thread.
+     * @param sequence
+     * @param callback
+     * @param output
+     */
+    public void queueClientResponse(long sequence, RpcCallback<byte[]> callback, byte output[]) {
+        if (this.getWatermark() >= sequence) {
+            callback.run(output);
+            return;
+        }
+        long deadline = (this.response_timeout > 0 ? System.currentTimeMillis() + this.response_timeout : Long.MAX_VALUE);
+        synchronized (this.pending_responses) {
+            this.pending_responses.add(new PendingResponse(sequence, callback, output, deadline));
+        } // SYNCH
+        if (trace.get())
+            LOG.trace(String.format("Holding ClientResponse until partition %d watermark reaches %d",
+                                    this.partition_id, sequence));
+        // The ack may have come back while we were adding ourselves
+        this.releaseClientResponses();
+    }
+
+    private void releaseClientResponses() {
+        long watermark = this.getWatermark();
+        while (true) {
+            PendingResponse pr = null;
+            synchronized (this.pending_responses) {
+                pr = this.pending_responses.peek();
+                if (pr == null || pr.sequence > watermark) break;
+                this.pending_responses.poll();
+            } // SYNCH
+            pr.callback.run(pr.output);
+        } // WHILE
+    }
+
+    /**
+     * Send back an error for every held ClientResponse whose deadline has passed.
+     * The txn did commit here, but we can't tell the client that it is on the replicas.
+     * Responses are checked in sequence order, so a response can wait a little past its
+     * deadline if it is behind one with a lower sequence number that was queued after it.
+     * Only the sender thread calls this.
+     */
+    private void expireClientResponses() {
+        long now = -1;
+        while (true) {
+            PendingResponse pr = null;
+            synchronized (this.pending_responses) {
+                pr = this.pending_responses.peek();
+                if (pr == null) break;
+                if (now < 0) now = System.currentTimeMillis();
+                if (pr.deadline > now) break;
+                this.pending_responses.poll();
+            } // SYNCH
+            LOG.warn(String.format("Timed out after %dms waiting for %d replicas to acknowledge sequence %d at partition %d [watermark=%d]",
+                                   this.response_timeout, this.required_acks, pr.sequence, this.partition_id, this.getWatermark()));
+            this.num_timeouts.incrementAndGet();
+            byte error[] = null;
+            try {
+                ClientResponseImpl cresponse = new FastDeserializer(pr.output).readObject(ClientResponseImpl.class);
+                cresponse.setStatus(Status.ABORT_UNEXPECTED);
+                error = FastSerializer.serialize(cresponse);
+            } catch (IOException ex) {
+                throw new RuntimeException("Failed to rewrite held ClientResponse at partition " + this.partition_id, ex);
+            }
+            pr.callback.run(error);
+        } // WHILE
+    }
+
+    /**
+     * Returns the number of ClientResponses that are waiting for the replicas
+     */
+    public int getPendingResponseCount() {
+        synchronized (this.pending_responses) {
+            return (this.pending_responses.size());
+        } // SYNCH
+    }
+
+    // ----------------------------------------------------------------------------
+    // UTILITY METHODS
+    // ----------------------------------------------------------------------------
+
+    public int getPartitionId() {
+        return (this.partition_id);
+    }
+
+    /**
+     * Returns the sequence number of the last record appended to this stream
+     */
+    public long getLastSequence() {
+        return (this.published.get());
+    }
+
+    /**
+     * Returns the sequence number of the last record sent to the replicas
+     */
+    public long getSentSequence() {
+        return (this.sent.get());
+    }
+
+    /**
+     * Returns the sequence number that every replica has acknowledged
+     */
+    public long getAckedSequence() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < this.replica_ids.length; i++) {
+            min = Math.min(min, this.acked.get(i));
+        } // FOR
+        return (this.replica_ids.length == 0 ? this.sent.get() : min);
+    }
+
+    /**
+     * Returns the sequence number acknowledged by the given replica
+     * @param replica_id
+     */
+    public long getAckedSequence(int replica_id) {
+        for (int i = 0; i < this.replica_ids.length; i++) {
+            if (this.replica_ids[i] == replica_id) return (this.acked.get(i));
+        } // FOR
+        throw new IllegalArgumentException(String.format("Invalid replica id %d for partition %d", replica_id, this.partition_id));
+    }
+
+    /**
+     * Returns the sequence number of the last record that every replica has
+     * acknowledged and whose slot can be reused
+     */
+    public long getReleasedSequence() {
+        return (this.released.get());
+    }
+
+    /**
+     * Returns the number of records that are waiting to be sent out
+     */
+    public int getQueueSize() {
+        return ((int)(this.published.get() - this.sent.get()));
+    }
+
+    public long getBatchCount() {
+        return (this.num_batches.get());
+    }
+    /**
+     * Returns the number of times that the sender had to go back and resend records
+     */
+    public long getResendCount() {
+        return (this.num_resends.get());
+    }
+    /**
+     * Returns the number of ClientResponses that were sent back as errors because
+     * the replicas did not acknowledge them within ${site.replication_response_timeout}
+     */
+    public long getResponseTimeoutCount() {
+        return (this.num_timeouts.get());
+    }
+    public ProfileMeasurement getIdleTime() {
+        return (this.idleTime);
+    }
+    public ProfileMeasurement getBlockedTime() {
+        return (this.blockedTime);
+    }
+
+    // ----------------------------------------------------------------------------
+    // SHUTDOWN METHODS
+    // ----------------------------------------------------------------------------
+
+    @Override
+    public boolean isShuttingDown() {
+        return (this.stop);
+    }
+
+    @Override
+    public void prepareShutdown(boolean error) {
+        // Nothing to do...
+    }
+
+    @Override
+    public void shutdown() {
+        if (debug.get())
+            LOG.debug(String.format("ReplicationStream for partition %d: %d batches / %d records sent / %.2fms idle",
+                                    this.partition_id, this.num_batches.get(), this.sent.get(), this.idleTime.getTotalThinkTimeMS()));
+        this.stop = true;
+        if (this.self != null) LockSupport.unpark(this.self);
+    }
+}
@@ -0,0 +1,267 @@
+package edu.brown.hstore.replication;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+import org.voltdb.ParameterSet;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.messaging.FastDeserializer;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.RpcCallback;
+import com.google.protobuf.RpcController;
+
+import edu.brown.hstore.HStoreCoordinator;
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.Hstoreservice.ReplicationRecord;
+import edu.brown.hstore.Hstoreservice.ReplicationStreamRequest;
+import edu.brown.hstore.Hstoreservice.ReplicationStreamResponse;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.hstore.Hstoreservice.WorkFragment;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * Replica-side handler for incoming ReplicationStreamRequests. Records are
+ * applied in sequence order per source partition and then acknowledged
+ * back to the primary with the last sequence number that we have received.
+ * <p>
+ * The replica does not go through the regular init/work/finish protocol.
+ * Once a txn's FINISH record arrives with a commit status, we replay it serially
+ * at our copy of the partition. A single-partition txn is replayed by executing its
+ * stored procedure again with the (txnId, procId, params) from its INIT record.
+ * A distributed txn does not have an INIT record. Instead, every partition that it
+ * modified sends WORK records with the WorkFragments that it executed there, and we
+ * execute just those fragments at our copy of that partition.
+ * <p>
+ * We remember the ids of the txns that we recently replayed at each partition so that
+ * the same txn is never replayed twice, even if the primary sends its records again.
+ */
+public class ReplicationStreamHandler {
+    private static final Logger LOG = Logger.getLogger(ReplicationStreamHandler.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    private final HStoreSite hstore_site;
+    private final int local_site_id;
+
+    /**
+     * ProcedureId -> Procedure
+     */
+    private final Procedure procedures[];
+
+    /**
+     * How many replayed txn ids we remember for each partition
+     */
+    private static final int REPLAYED_HISTORY = 10000;
+
+    /**
+     * Everything that we keep track of for a single partition's stream.
+     * The PartitionState's lock must be held while using it.
+     */
+    private static class PartitionState {
+        /**
+         * Last Sequence Number Received
+         */
+        long last_sequence = 0;
+        /**
+         * TxnId -> INIT record for single-partition txns that have not finished yet
+         */
+        final Map<Long, ReplicationRecord> inits = new HashMap<Long, ReplicationRecord>();
+        /**
+         * TxnId -> WORK records for distributed txns that have not finished yet
+         */
+        final Map<Long, List<ReplicationRecord>> work = new HashMap<Long, List<ReplicationRecord>>();
+        /**
+         * The ids of the last REPLAYED_HISTORY txns that we replayed
+         */
+        final Set<Long> replayed = Collections.newSetFromMap(new LinkedHashMap<Long, Boolean>() {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return (this.size() > REPLAYED_HISTORY);
+            }
+        });
+    } // END CLASS
+
+    /**
+     * PartitionId -> PartitionState
+     */
+    private final Map<Integer, PartitionState> partitions = new ConcurrentHashMap<Integer, PartitionState>();
+
+    public ReplicationStreamHandler(HStoreSite hstore_site, HStoreCoordinator hstore_coord) {
+        this.hstore_site = hstore_site;
+        this.local_site_id = hstore_site.getSiteId();
+
+        int max_id = 0;
+        for (Procedure catalog_proc : hstore_site.getDatabase().getProcedures()) {
+            max_id = Math.max(max_id, catalog_proc.getId());
+        } // FOR
+        this.procedures = new Procedure[max_id + 1];
+        for (Procedure catalog_proc : hstore_site.getDatabase().getProcedures()) {
+            this.procedures[catalog_proc.getId()] = catalog_proc;
+        } // FOR
+    }
+
+    private PartitionState getPartitionState(int partition) {
+        PartitionState state = this.partitions.get(partition);
+        if (state == null) {
+            synchronized (this.partitions) {
+                state = this.partitions.get(partition);
+                if (state == null) {
+                    state = new PartitionState();
+                    this.partitions.put(partition, state);
+                }
+            } // SYNCH
+        }
+        return (state);
+    }
+
+    public void remoteHandler(RpcController controller, ReplicationStreamRequest request,
+            RpcCallback<ReplicationStreamResponse> callback) {
+        final int partition = request.getPartitionId();
+        final PartitionState state = this.getPartitionState(partition);
+        Status status = Status.OK;
+        long last_seq;
+        synchronized (state) {
+            last_seq = state.last_sequence;
+            if (debug.get())
+                LOG.debug(String.format("Got %d replication records for partition %d from %s [lastSequence=%d]",
+                                        request.getRecordsCount(), partition,
+                                        HStoreSite.formatSiteName(request.getSenderId()), last_seq));
+
+            for (ReplicationRecord record : request.getRecordsList()) {
+                long seq = record.getSequence();
+                // Duplicate record that we have already seen
+                if (seq <= last_seq) continue;
+                // We missed something! Don't apply anything else until the
+                // primary sends us the missing records
+                if (seq != last_seq + 1) {
+                    LOG.warn(String.format("Gap in replication stream for partition %d [expected=%d, received=%d]",
+                                           partition, last_seq + 1, seq));
+                    status = Status.ABORT_REJECT;
+                    break;
+                }
+                this.apply(partition, record);
+                last_seq = seq;
+            } // FOR
+            state.last_sequence = last_seq;
+        } // SYNCH
+
+        ReplicationStreamResponse response = ReplicationStreamResponse.newBuilder()
+                                                    .setSenderId(this.local_site_id)
+                                                    .setPartitionId(partition)
+                                                    .setLastSequence(last_seq)
+                                                    .setStatus(status)
+                                                    .build();
+        callback.run(response);
+    }
+
+    protected void apply(int partition, ReplicationRecord record) {
+        if (trace.get())
+            LOG.trace(String.format("Applying %s record #%d for txn #%d at partition %d",
+                                    record.getType(), record.getSequence(), record.getTransactionId(), partition));
+        final PartitionState state = this.getPartitionState(partition);
+        final Long txn_id = record.getTransactionId();
+        switch (record.getType()) {
+            case INIT: {
+                // Hold on to the invocation until we know whether the txn committed
+                state.inits.put(txn_id, record);
+                break;
+            }
+            case WORK: {
+                List<ReplicationRecord> work = state.work.get(txn_id);
+                if (work == null) {
+                    work = new ArrayList<ReplicationRecord>();
+                    state.work.put(txn_id, work);
+                }
+                work.add(record);
+                break;
+            }
+            case FINISH: {
+                ReplicationRecord init = state.inits.remove(txn_id);
+                List<ReplicationRecord> work = state.work.remove(txn_id);
+                // Nothing to do if the txn did not modify anything at this partition
+                if (init == null && work == null) break;
+                if (record.getStatus() != Status.OK) {
+                    if (debug.get())
+                        LOG.debug(String.format("Skipping txn #%d at partition %d because it finished with %s",
+                                                txn_id, partition, record.getStatus()));
+                    break;
+                }
+                if (state.replayed.add(txn_id) == false) {
+                    LOG.warn(String.format("Ignoring txn #%d at partition %d because it was already replayed",
+                                           txn_id, partition));
+                    break;
+                }
+
+                // DISTRIBUTED TXN
+                if (work != null) {
+                    List<WorkFragment> fragments = new ArrayList<WorkFragment>();
+                    List<ParameterSet[]> parameters = new ArrayList<ParameterSet[]>();
+                    for (ReplicationRecord w : work) {
+                        fragments.add(w.getFragment());
+                        ParameterSet params[] = new ParameterSet[w.getParameterSetsCount()];
+                        for (int i = 0; i < params.length; i++) {
+                            params[i] = this.deserialize(txn_id, w.getParameterSets(i));
+                        } // FOR
+                        parameters.add(params);
+                    } // FOR
+                    this.replayWork(txn_id, fragments, parameters, partition);
+                }
+                // SINGLE-PARTITION TXN
+                else {
+                    Procedure catalog_proc = this.procedures[init.getProcedureId()];
+                    assert(catalog_proc != null) : "Invalid procedure id " + init.getProcedureId();
+                    ParameterSet params = this.deserialize(txn_id, init.getParameters());
+                    this.replay(txn_id, catalog_proc, params, partition);
+                }
+                break;
+            }
+            default:
+                assert(false) : "Unexpected record type " + record.getType();
+        } // SWITCH
+    }
+
+    private ParameterSet deserialize(long txn_id, ByteString bytes) {
+        try {
+            FastDeserializer fds = new FastDeserializer(bytes.asReadOnlyByteBuffer());
+            return (fds.readObject(ParameterSet.class));
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed to deserialize replicated ParameterSet for txn #" + txn_id, ex);
+        }
+    }
+
+    /**
+     * Replay a committed single-partition txn at the given local partition
+     * @param txn_id
+     * @param catalog_proc
+     * @param params
+     * @param partition
+     */
+    protected void replay(long txn_id, Procedure catalog_proc, ParameterSet params, int partition) {
+        this.hstore_site.transactionReplay(txn_id, catalog_proc, params, partition);
+    }
+
+    /**
+     * Replay the WorkFragments that a committed distributed txn executed at the given local partition
+     * @param txn_id
+     * @param fragments
+     * @param parameters
+     * @param partition
+     */
+    protected void replayWork(long txn_id, List<WorkFragment> fragments, List<ParameterSet[]> parameters, int partition) {
+        this.hstore_site.transactionReplayWork(txn_id, fragments, parameters, partition);
+    }
+}
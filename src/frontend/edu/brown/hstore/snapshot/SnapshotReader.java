@@ -0,0 +1,205 @@
+package edu.brown.hstore.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.log4j.Logger;
+import org.voltdb.VoltTable;
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Table;
+import org.voltdb.utils.CatalogUtil;
+import org.voltdb.utils.DBBPool;
+
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * Reads back the blocks of a snapshot file written by {@link SnapshotWriter}.
+ * Every block is checked against its CRC and then converted into a VoltTable
+ * that can be loaded directly back into the EE.
+ */
+public class SnapshotReader {
+    private static final Logger LOG = Logger.getLogger(SnapshotReader.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    /**
+     * A block of tuples for a single table
+     */
+    public static final class Block {
+        public final Table catalog_tbl;
+        public final VoltTable data;
+
+        private Block(Table catalog_tbl, VoltTable data) {
+            this.catalog_tbl = catalog_tbl;
+            this.data = data;
+        }
+    } // END CLASS
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final int partition;
+    private final long txn_id;
+    private final int num_tables;
+
+    /**
+     * Catalog tables and the serialized header of an empty VoltTable for each
+     * of them, indexed by the table ids used by the EE
+     */
+    private final Table tables[];
+    private final ByteBuffer schemas[];
+
+    private final ByteBuffer header = ByteBuffer.allocate(SnapshotWriter.BLOCK_HEADER_SIZE);
+    private ByteBuffer buffer;
+    private long num_blocks = 0;
+    private boolean finished = false;
+
+    public SnapshotReader(File file, Database catalog_db) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "r");
+        this.channel = this.raf.getChannel();
+
+        ByteBuffer h = ByteBuffer.allocate(SnapshotWriter.HEADER_SIZE);
+        if (this.read(h) == false) {
+            this.close();
+            throw new IOException("Invalid snapshot file " + file + " [size=" + this.channel.size() + "]");
+        }
+        int magic = h.getInt();
+        int version = h.getInt();
+        if (magic != SnapshotWriter.SNAPSHOT_MAGIC || version != SnapshotWriter.SNAPSHOT_VERSION) {
+            this.close();
+            throw new IOException(String.format("Invalid snapshot header in %s [magic=%x, version=%d]",
+                                                file, magic, version));
+        }
+        this.partition = h.getInt();
+        this.txn_id = h.getLong();
+        this.num_tables = h.getInt();
+
+        int max_id = 0;
+        for (Table catalog_tbl : catalog_db.getTables()) {
+            max_id = Math.max(max_id, catalog_tbl.getRelativeIndex());
+        } // FOR
+        this.tables = new Table[max_id + 1];
+        this.schemas = new ByteBuffer[max_id + 1];
+        for (Table catalog_tbl : catalog_db.getTables()) {
+            this.tables[catalog_tbl.getRelativeIndex()] = catalog_tbl;
+        } // FOR
+        if (debug.get())
+            LOG.debug(String.format("Opened snapshot %s [partition=%d, txnId=%d, tables=%d]",
+                                    file, this.partition, this.txn_id, this.num_tables));
+    }
+
+    /**
+     * Read the next block of tuples from the snapshot. Returns null once we have
+     * read all of the blocks. An IOException is thrown if the snapshot was not
+     * completely written or if a block does not match its CRC.
+     * @return
+     * @throws IOException
+     */
+    public Block next() throws IOException {
+        if (this.finished) return (null);
+
+        this.header.clear();
+        if (this.read(this.header) == false) {
+            throw new IOException(String.format("Snapshot %s is incomplete [blocks=%d]", this.file, this.num_blocks));
+        }
+        int table_id = this.header.getInt();
+        int length = this.header.getInt();
+        int crc = this.header.getInt();
+        if (table_id == SnapshotWriter.END_OF_SNAPSHOT) {
+            this.finished = true;
+            return (null);
+        }
+        if (table_id < 0 || table_id >= this.tables.length || this.tables[table_id] == null) {
+            throw new IOException(String.format("Unknown table id %d in snapshot %s", table_id, this.file));
+        }
+        if (length < SnapshotWriter.BLOCK_PREFIX_SIZE + SnapshotWriter.BLOCK_SUFFIX_SIZE) {
+            throw new IOException(String.format("Invalid block length %d in snapshot %s", length, this.file));
+        }
+
+        // The block has to go into a direct buffer so that we can compute its CRC in native code
+        if (this.buffer == null || this.buffer.capacity() < length) {
+            this.buffer = ByteBuffer.allocateDirect(length);
+        }
+        ByteBuffer b = this.buffer;
+        b.clear();
+        b.limit(length);
+        if (this.read(b) == false) {
+            throw new IOException(String.format("Truncated block in snapshot %s [blocks=%d]", this.file, this.num_blocks));
+        }
+        if (DBBPool.getBufferCRC32(b, 0, length) != crc) {
+            throw new IOException(String.format("Invalid checksum for block #%d in snapshot %s", this.num_blocks, this.file));
+        }
+        this.num_blocks++;
+
+        Table catalog_tbl = this.tables[table_id];
+        if (trace.get())
+            LOG.trace(String.format("Read %d byte block for %s from snapshot %s", length, catalog_tbl.getName(), this.file));
+        return new Block(catalog_tbl, this.toVoltTable(table_id, b, length));
+    }
+
+    /**
+     * The EE writes the tuples in the same format as the rows of a serialized VoltTable,
+     * but the number of rows is at the end of the block. We just need to stick the
+     * table's header and the row count in front of the tuples.
+     */
+    private VoltTable toVoltTable(int table_id, ByteBuffer b, int length) {
+        ByteBuffer schema = this.schemas[table_id];
+        if (schema == null) {
+            schema = CatalogUtil.getVoltTable(this.tables[table_id]).getTableDataReference();
+            schema.limit(schema.getInt(0) + 4);
+            this.schemas[table_id] = schema;
+        }
+        int row_count = b.getInt(length - SnapshotWriter.BLOCK_SUFFIX_SIZE);
+        int rows_length = length - SnapshotWriter.BLOCK_PREFIX_SIZE - SnapshotWriter.BLOCK_SUFFIX_SIZE;
+
+        ByteBuffer vt_buffer = ByteBuffer.allocate(schema.limit() + 4 + rows_length);
+        vt_buffer.put(schema.duplicate());
+        vt_buffer.putInt(row_count);
+        b.position(SnapshotWriter.BLOCK_PREFIX_SIZE);
+        b.limit(length - SnapshotWriter.BLOCK_SUFFIX_SIZE);
+        vt_buffer.put(b);
+        vt_buffer.flip();
+        return new VoltTable(vt_buffer, true);
+    }
+
+    private boolean read(ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            if (this.channel.read(b) < 0) return (false);
+        } // WHILE
+        b.flip();
+        return (true);
+    }
+
+    public void close() throws IOException {
+        this.channel.close();
+        this.raf.close();
+    }
+
+    // ----------------------------------------------------------------------------
+    // UTILITY METHODS
+    // ----------------------------------------------------------------------------
+
+    public File getFile() {
+        return (this.file);
+    }
+    public int getPartitionId() {
+        return (this.partition);
+    }
+    public long getTransactionId() {
+        return (this.txn_id);
+    }
+    public int getTableCount() {
+        return (this.num_tables);
+    }
+    public long getBlockCount() {
+        return (this.num_blocks);
+    }
+}
@@ -0,0 +1,282 @@
+package edu.brown.hstore.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+
+import org.apache.log4j.Logger;
+import org.voltdb.catalog.Table;
+import org.voltdb.jni.ExecutionEngine;
+import org.voltdb.utils.DBBPool;
+import org.voltdb.utils.DBBPool.BBContainer;
+
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * Streams a consistent copy of a single partition's tables out to a snapshot file.
+ * <p>
+ * All of the tables are put into copy-on-write mode in the EE when the writer is created,
+ * so the snapshot contains the database as it was at that txn. After that, each call to
+ * {@link #writeMore()} serializes a single block of tuples out of the EE and appends it
+ * to the file. The PartitionExecutor invokes this in between txns, so taking a snapshot
+ * never blocks the partition for more than the time it takes to write one block.
+ * <p>
+ * File Layout:
+ * <pre>
+ * [magic int][version int][partitionId int][txnId long][numTables int]
+ * [tableId int][length int][crc int][block bytes]
+ * ...
+ * [-1][0][0]
+ * </pre>
+ * The block bytes are exactly what the EE's cowSerializeMore() wrote into our buffer.
+ * The last block header marks that the snapshot was completely written.
+ */
+public class SnapshotWriter {
+    private static final Logger LOG = Logger.getLogger(SnapshotWriter.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    public static final int SNAPSHOT_MAGIC = 0x48535350;
+    public static final int SNAPSHOT_VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+    public static final int BLOCK_HEADER_SIZE = 12;
+    public static final int END_OF_SNAPSHOT = -1;
+
+    /**
+     * The EE writes [partitionId int][partitionIdCRC int][crc int] at the beginning
+     * of every block and the number of rows in the block at the end
+     */
+    public static final int BLOCK_PREFIX_SIZE = 12;
+    public static final int BLOCK_SUFFIX_SIZE = 4;
+
+    private final ExecutionEngine ee;
+    private final int partition;
+    private final long txn_id;
+    private final File file;
+    private final Table tables[];
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+
+    /**
+     * The direct buffer that the EE serializes tuples into. The EE needs
+     * to know the native address of the buffer, so we can't use a heap buffer
+     */
+    private final BBContainer buffer;
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+    private final ByteBuffer output[] = new ByteBuffer[2];
+
+    private int table_idx = 0;
+    private boolean finished = false;
+    private long num_blocks = 0;
+    private long num_bytes = 0;
+    private final long start_time;
+    private long stop_time = -1;
+
+    /**
+     * Constructor
+     * Note that this will put all of the given tables into copy-on-write mode in the EE,
+     * so it must be invoked at the point where we want the snapshot to be consistent.
+     * @param ee
+     * @param partition
+     * @param txn_id
+     * @param tables
+     * @param file
+     * @param block_size
+     * @throws IOException
+     */
+    public SnapshotWriter(ExecutionEngine ee, int partition, long txn_id, Collection<Table> tables, File file, int block_size) throws IOException {
+        this.ee = ee;
+        this.partition = partition;
+        this.txn_id = txn_id;
+        this.file = file;
+        this.tables = tables.toArray(new Table[tables.size()]);
+
+        ByteBuffer b = ByteBuffer.allocateDirect(block_size);
+        this.buffer = new BBContainer(b, DBBPool.getBufferAddress(b)) {
+            @Override
+            public void discard() {
+                // Nothing to do...
+            }
+        };
+
+        File parent = file.getParentFile();
+        if (parent != null && parent.exists() == false) parent.mkdirs();
+        this.raf = new RandomAccessFile(file, "rw");
+        this.raf.setLength(0);
+        this.channel = this.raf.getChannel();
+
+        ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE);
+        h.putInt(SNAPSHOT_MAGIC);
+        h.putInt(SNAPSHOT_VERSION);
+        h.putInt(partition);
+        h.putLong(txn_id);
+        h.putInt(this.tables.length);
+        h.flip();
+        this.write(h);
+
+        // This is the consistent point of the snapshot
+        for (Table catalog_tbl : this.tables) {
+            if (this.ee.activateCopyOnWrite(catalog_tbl.getRelativeIndex()) == false) {
+                this.channel.close();
+                this.raf.close();
+                this.file.delete();
+                throw new RuntimeException(String.format("Failed to activate copy-on-write mode for %s at partition %d. " +
+                                                         "Is there another snapshot already in progress?",
+                                                         catalog_tbl.getName(), partition));
+            }
+        } // FOR
+        this.start_time = System.currentTimeMillis();
+        if (debug.get())
+            LOG.debug(String.format("Started snapshot of %d tables at partition %d for txn #%d [file=%s]",
+                                    this.tables.length, partition, txn_id, file));
+    }
+
+    /**
+     * Serialize the next block of tuples out of the EE and append it to the
+     * snapshot file. Returns true if there is nothing left to write.
+     * @return
+     * @throws IOException
+     */
+    public boolean writeMore() throws IOException {
+        while (this.finished == false) {
+            if (this.table_idx == this.tables.length) {
+                this.finish();
+                break;
+            }
+            Table catalog_tbl = this.tables[this.table_idx];
+            int table_id = catalog_tbl.getRelativeIndex();
+
+            ByteBuffer b = this.buffer.b;
+            b.clear();
+            int length = this.ee.cowSerializeMore(this.buffer, table_id);
+            if (length < 0) {
+                throw new IOException(String.format("Failed to serialize %s at partition %d: table is not in copy-on-write mode",
+                                                    catalog_tbl.getName(), this.partition));
+            }
+            // There is nothing left in this table, so we'll move on to the next one
+            // without writing anything out
+            else if (length == 0) {
+                if (trace.get())
+                    LOG.trace(String.format("Finished writing %s to snapshot at partition %d", catalog_tbl.getName(), this.partition));
+                this.table_idx++;
+                continue;
+            }
+
+            b.limit(length);
+            this.header.clear();
+            this.header.putInt(table_id);
+            this.header.putInt(length);
+            this.header.putInt(DBBPool.getBufferCRC32(b, 0, length));
+            this.header.flip();
+            this.write(this.header, b);
+            this.num_blocks++;
+            this.num_bytes += length;
+            if (trace.get())
+                LOG.trace(String.format("Wrote %d byte block for %s to snapshot at partition %d",
+                                        length, catalog_tbl.getName(), this.partition));
+            break;
+        } // WHILE
+        return (this.finished);
+    }
+
+    /**
+     * Stop writing the snapshot and remove the file.
+     * We still have to drain the remaining tuples out of the EE because that
+     * is the only way to take the tables out of copy-on-write mode.
+     */
+    public void abort() {
+        if (this.finished) return;
+        LOG.warn(String.format("Aborting snapshot at partition %d for txn #%d", this.partition, this.txn_id));
+        for (int i = this.table_idx; i < this.tables.length; i++) {
+            int table_id = this.tables[i].getRelativeIndex();
+            while (true) {
+                this.buffer.b.clear();
+                if (this.ee.cowSerializeMore(this.buffer, table_id) <= 0) break;
+            } // WHILE
+        } // FOR
+        this.table_idx = this.tables.length;
+        this.finished = true;
+        this.stop_time = System.currentTimeMillis();
+        try {
+            this.channel.close();
+            this.raf.close();
+        } catch (IOException ex) {
+            LOG.warn("Failed to close snapshot file " + this.file, ex);
+        }
+        this.file.delete();
+    }
+
+    private void finish() throws IOException {
+        this.header.clear();
+        this.header.putInt(END_OF_SNAPSHOT);
+        this.header.putInt(0);
+        this.header.putInt(0);
+        this.header.flip();
+        this.write(this.header);
+        this.channel.force(true);
+        this.channel.close();
+        this.raf.close();
+        this.finished = true;
+        this.stop_time = System.currentTimeMillis();
+        if (debug.get())
+            LOG.debug(String.format("Finished snapshot at partition %d for txn #%d [blocks=%d, bytes=%d, time=%.2fs]",
+                                    this.partition, this.txn_id, this.num_blocks, this.num_bytes,
+                                    (this.stop_time - this.start_time) / 1000d));
+    }
+
+    private void write(ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            this.channel.write(b);
+        } // WHILE
+    }
+
+    private void write(ByteBuffer h, ByteBuffer b) throws IOException {
+        this.output[0] = h;
+        this.output[1] = b;
+        while (b.hasRemaining()) {
+            this.channel.write(this.output);
+        } // WHILE
+    }
+
+    // ----------------------------------------------------------------------------
+    // UTILITY METHODS
+    // ----------------------------------------------------------------------------
+
+    public static File getSnapshotFile(File directory, String nonce, int partition) {
+        return new File(directory, String.format("%s-%02d.snapshot", nonce, partition));
+    }
+
+    public File getFile() {
+        return (this.file);
+    }
+    public int getPartitionId() {
+        return (this.partition);
+    }
+    public long getTransactionId() {
+        return (this.txn_id);
+    }
+    public boolean isFinished() {
+        return (this.finished);
+    }
+    public long getBlockCount() {
+        return (this.num_blocks);
+    }
+    public long getByteCount() {
+        return (this.num_bytes);
+    }
+    /**
+     * Returns how long (in ms) it took to write out the snapshot.
+     * If the snapshot is still in progress, then this is how long it has been running
+     */
+    public long getElapsedTime() {
+        long stop = (this.stop_time < 0 ? System.currentTimeMillis() : this.stop_time);
+        return (stop - this.start_time);
+    }
+}
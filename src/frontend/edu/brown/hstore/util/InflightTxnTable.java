@@ -0,0 +1,216 @@
+package edu.brown.hstore.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The table of in-flight transaction handles at an HStoreSite, keyed by the primitive
+ * txn id. This is looked up for every message that a PartitionExecutor processes, so it
+ * is built to avoid the boxing, hashing, and locking of a ConcurrentHashMap<Long, ?>.
+ * <p>
+ * The table is an open-addressing array of txn ids with a parallel array of handles.
+ * A txn id can only be stored in the MAX_PROBES slots that follow its home slot, so a
+ * look-up never checks more than a handful of adjacent longs. Inserting a txn claims an
+ * empty slot with a CAS, and removing it clears the slot again, so there are no
+ * tombstones for look-ups to skip over. If all of a txn's slots are taken, then it is
+ * stored in a small overflow map instead. That map is only checked when it is not empty.
+ * <p>
+ * Look-ups never lock. A reader that catches a txn while it is being inserted or removed
+ * will get back null, which is the same thing it would get if it had been a moment earlier
+ * or later. This assumes that a txn id is not inserted twice at the same time, which is
+ * true because every txn id at a site is unique.
+ * @param <T> the type of the transaction handle
+ */
+public class InflightTxnTable<T> {
+
+    /**
+     * The number of slots after a txn's home slot that it can be stored in
+     */
+    protected static final int MAX_PROBES = 16;
+
+    /**
+     * Marks a slot as free. No real txn id will ever be this value.
+     */
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final int mask;
+    private final int shift;
+    private final AtomicLongArray keys;
+    private final AtomicReferenceArray<T> values;
+    private final ConcurrentHashMap<Long, T> overflow = new ConcurrentHashMap<Long, T>();
+
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final AtomicInteger overflow_size = new AtomicInteger(0);
+    private final AtomicInteger peak_size = new AtomicInteger(0);
+    private final AtomicLong overflow_puts = new AtomicLong(0);
+
+    /**
+     * Constructor
+     * @param capacity the expected maximum number of in-flight txns. This is rounded up to a power of two.
+     */
+    public InflightTxnTable(int capacity) {
+        int num_slots = MAX_PROBES;
+        while (num_slots < capacity) num_slots <<= 1;
+        this.mask = num_slots - 1;
+        this.shift = 64 - Integer.numberOfTrailingZeros(num_slots);
+        this.keys = new AtomicLongArray(num_slots);
+        for (int i = 0; i < num_slots; i++) {
+            this.keys.set(i, EMPTY);
+        } // FOR
+        this.values = new AtomicReferenceArray<T>(num_slots);
+    }
+
+    /**
+     * The ids from one site only differ in a few of their middle bits, so we use
+     * fibonacci hashing to spread them out over the whole table
+     */
+    private int home(long txn_id) {
+        return ((int)((txn_id * 0x9E3779B97F4A7C15L) >>> this.shift));
+    }
+
+    /**
+     * Returns the handle for the given txn id, or null if it is not in the table
+     * @param txn_id
+     * @return
+     */
+    public T get(long txn_id) {
+        int home = this.home(txn_id);
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int idx = (home + i) & this.mask;
+            if (this.keys.get(idx) == txn_id) {
+                T value = this.values.get(idx);
+                // Make sure that the slot wasn't given to another txn while we were reading it
+                if (this.keys.get(idx) == txn_id) return (value);
+            }
+        } // FOR
+        if (this.overflow_size.get() > 0) {
+            return (this.overflow.get(txn_id));
+        }
+        return (null);
+    }
+
+    /**
+     * Store the handle for the given txn id.
+     * @param txn_id
+     * @param value
+     * @return the previous handle for this txn id, or null if there wasn't one
+     */
+    public T put(long txn_id, T value) {
+        assert(txn_id != EMPTY) : "Invalid txn id " + txn_id;
+        assert(value != null) : "Null handle for txn #" + txn_id;
+        int home = this.home(txn_id);
+
+        // Replace the existing entry if there is one
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int idx = (home + i) & this.mask;
+            if (this.keys.get(idx) == txn_id) {
+                return (this.values.getAndSet(idx, value));
+            }
+        } // FOR
+        if (this.overflow_size.get() > 0 && this.overflow.containsKey(txn_id)) {
+            return (this.overflow.put(txn_id, value));
+        }
+
+        // Otherwise grab the first empty slot
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int idx = (home + i) & this.mask;
+            if (this.keys.get(idx) == EMPTY && this.keys.compareAndSet(idx, EMPTY, txn_id)) {
+                this.values.set(idx, value);
+                this.incrementSize();
+                return (null);
+            }
+        } // FOR
+
+        // No room left for this txn, so it has to go into the overflow map
+        this.overflow_puts.incrementAndGet();
+        T prev = this.overflow.put(txn_id, value);
+        if (prev == null) {
+            this.overflow_size.incrementAndGet();
+            this.incrementSize();
+        }
+        return (prev);
+    }
+
+    /**
+     * Remove the handle for the given txn id
+     * @param txn_id
+     * @return the removed handle, or null if this txn id was not in the table
+     */
+    public T remove(long txn_id) {
+        int home = this.home(txn_id);
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int idx = (home + i) & this.mask;
+            if (this.keys.get(idx) == txn_id) {
+                T prev = this.values.getAndSet(idx, null);
+                if (this.keys.compareAndSet(idx, txn_id, EMPTY)) {
+                    this.size.decrementAndGet();
+                    return (prev);
+                }
+            }
+        } // FOR
+        if (this.overflow_size.get() > 0) {
+            T prev = this.overflow.remove(txn_id);
+            if (prev != null) {
+                this.overflow_size.decrementAndGet();
+                this.size.decrementAndGet();
+            }
+            return (prev);
+        }
+        return (null);
+    }
+
+    private void incrementSize() {
+        int new_size = this.size.incrementAndGet();
+        int peak = this.peak_size.get();
+        while (new_size > peak && this.peak_size.compareAndSet(peak, new_size) == false) {
+            peak = this.peak_size.get();
+        } // WHILE
+    }
+
+    // ----------------------------------------------------------------------------
+    // OCCUPANCY METRICS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Returns the number of txns in the table
+     */
+    public int size() {
+        return (this.size.get());
+    }
+    /**
+     * Returns the number of slots in the table
+     */
+    public int getCapacity() {
+        return (this.keys.length());
+    }
+    /**
+     * Returns the largest number of txns that were ever in the table at once
+     */
+    public int getPeakSize() {
+        return (this.peak_size.get());
+    }
+    /**
+     * Returns the number of txns that are currently in the overflow map
+     */
+    public int getOverflowSize() {
+        return (this.overflow_size.get());
+    }
+    /**
+     * Returns the total number of txns that had to be put into the overflow map
+     */
+    public long getOverflowCount() {
+        return (this.overflow_puts.get());
+    }
+
+    @Override
+    public String toString() {
+        int cur = this.size.get();
+        return String.format("%d / %d slots [peak=%d, overflow=%d, totalOverflow=%d, occupancy=%.1f%%]",
+                             cur, this.getCapacity(), this.peak_size.get(),
+                             this.overflow_size.get(), this.overflow_puts.get(),
+                             (cur / (double)this.getCapacity()) * 100d);
+    }
+}
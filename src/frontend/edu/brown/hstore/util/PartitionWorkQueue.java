@@ -0,0 +1,269 @@
+package edu.brown.hstore.util;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.voltdb.messaging.FinishTaskMessage;
+import org.voltdb.messaging.FragmentTaskMessage;
+import org.voltdb.messaging.InitiateTaskMessage;
+import org.voltdb.messaging.TransactionInfoBaseMessage;
+
+/**
+ * The queue of messages that a PartitionExecutor needs to process. Any number of threads
+ * can add messages to it, but only the PartitionExecutor's thread should block in take().
+ * <p>
+ * Messages are split into three lanes. FinishTaskMessages and FragmentTaskMessages go into
+ * lock-free FIFO lanes. InitiateTaskMessages go into a lock-free inbox, and they are moved
+ * into a heap ordered by txn id before the next one is taken. The heap's lock is only ever
+ * contended when another thread calls clear() or iterates over the queue.
+ * The lanes are always polled in that order, so finish messages come before work fragments,
+ * and work fragments come before new txns.
+ * <p>
+ * When the queue is empty, take() waits according to its {@link WaitStrategy}.
+ */
+public class PartitionWorkQueue extends AbstractQueue<TransactionInfoBaseMessage> {
+
+    /**
+     * What the consumer does while it waits for a message to arrive in an empty queue
+     */
+    public enum WaitStrategy {
+        /**
+         * Busy-wait on the queue. Lowest latency, but burns the whole core.
+         */
+        SPIN,
+        /**
+         * Call Thread.yield() in between checks of the queue.
+         */
+        YIELD,
+        /**
+         * Park the thread until a producer wakes it up.
+         */
+        PARK;
+
+        protected static final Map<String, WaitStrategy> name_lookup = new HashMap<String, WaitStrategy>();
+        static {
+            for (WaitStrategy vt : EnumSet.allOf(WaitStrategy.class)) {
+                WaitStrategy.name_lookup.put(vt.name().toLowerCase().intern(), vt);
+            } // FOR
+        }
+
+        public static WaitStrategy get(String name) {
+            return (WaitStrategy.name_lookup.get(name.toLowerCase().intern()));
+        }
+    }
+
+    private static final Comparator<TransactionInfoBaseMessage> txn_comparator = new Comparator<TransactionInfoBaseMessage>() {
+        @Override
+        public int compare(TransactionInfoBaseMessage msg0, TransactionInfoBaseMessage msg1) {
+            return (msg0.getTxnId().compareTo(msg1.getTxnId()));
+        }
+    };
+
+    private final WaitStrategy wait_strategy;
+
+    private final ConcurrentLinkedQueue<TransactionInfoBaseMessage> finish_lane = new ConcurrentLinkedQueue<TransactionInfoBaseMessage>();
+    private final ConcurrentLinkedQueue<TransactionInfoBaseMessage> work_lane = new ConcurrentLinkedQueue<TransactionInfoBaseMessage>();
+    private final ConcurrentLinkedQueue<TransactionInfoBaseMessage> txn_inbox = new ConcurrentLinkedQueue<TransactionInfoBaseMessage>();
+
+    /**
+     * New txns in txn id order. This is almost always only touched by the consumer
+     * thread, but it has to be safe for clear() and iterator() from other threads.
+     */
+    private final PriorityBlockingQueue<TransactionInfoBaseMessage> txn_lane = new PriorityBlockingQueue<TransactionInfoBaseMessage>(1000, txn_comparator);
+
+    /**
+     * Total number of messages in all of the lanes. ConcurrentLinkedQueue.size()
+     * has to walk the entire list, so we keep our own count.
+     */
+    private final AtomicInteger size = new AtomicInteger(0);
+
+    /**
+     * The consumer thread if it is parked waiting for a new message
+     */
+    private volatile Thread waiter = null;
+
+    public PartitionWorkQueue(WaitStrategy wait_strategy) {
+        assert(wait_strategy != null);
+        this.wait_strategy = wait_strategy;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return (this.wait_strategy);
+    }
+
+    // ----------------------------------------------------------------------------
+    // PRODUCER METHODS
+    // ----------------------------------------------------------------------------
+
+    @Override
+    public boolean offer(TransactionInfoBaseMessage msg) {
+        assert(msg != null);
+        if (msg instanceof FinishTaskMessage) {
+            this.finish_lane.offer(msg);
+        } else if (msg instanceof FragmentTaskMessage) {
+            this.work_lane.offer(msg);
+        } else {
+            assert(msg instanceof InitiateTaskMessage) : "Unexpected " + msg.getClass().getSimpleName();
+            this.txn_inbox.offer(msg);
+        }
+        this.size.incrementAndGet();
+
+        Thread t = this.waiter;
+        if (t != null) LockSupport.unpark(t);
+        return (true);
+    }
+
+    // ----------------------------------------------------------------------------
+    // CONSUMER METHODS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Move all of the new txns that producers have added since the last
+     * time that we checked into the ordered lane
+     */
+    private void drainInbox() {
+        TransactionInfoBaseMessage msg = null;
+        while ((msg = this.txn_inbox.poll()) != null) {
+            this.txn_lane.add(msg);
+        } // WHILE
+    }
+
+    @Override
+    public TransactionInfoBaseMessage poll() {
+        TransactionInfoBaseMessage msg = this.finish_lane.poll();
+        if (msg == null) msg = this.work_lane.poll();
+        if (msg == null) {
+            this.drainInbox();
+            msg = this.txn_lane.poll();
+        }
+        if (msg != null) this.size.decrementAndGet();
+        return (msg);
+    }
+
+    @Override
+    public TransactionInfoBaseMessage peek() {
+        TransactionInfoBaseMessage msg = this.finish_lane.peek();
+        if (msg == null) msg = this.work_lane.peek();
+        if (msg == null) {
+            this.drainInbox();
+            msg = this.txn_lane.peek();
+        }
+        return (msg);
+    }
+
+    /**
+     * Retrieve and remove the next message, waiting for one to arrive if necessary.
+     * @return
+     * @throws InterruptedException
+     */
+    public TransactionInfoBaseMessage take() throws InterruptedException {
+        TransactionInfoBaseMessage msg = null;
+        while ((msg = this.poll()) == null) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            switch (this.wait_strategy) {
+                case SPIN:
+                    break;
+                case YIELD:
+                    Thread.yield();
+                    break;
+                case PARK:
+                    // Check one more time after we advertise ourselves so that we can't
+                    // miss a producer that did its check before we set the waiter
+                    this.waiter = Thread.currentThread();
+                    if (this.size.get() == 0) LockSupport.park(this);
+                    this.waiter = null;
+                    break;
+                default:
+                    assert(false) : "Unexpected " + this.wait_strategy;
+            } // SWITCH
+        } // WHILE
+        return (msg);
+    }
+
+    /**
+     * Remove all of the new txn requests from this queue and add them to the given collection.
+     * Finish and work messages are left in the queue.
+     * @param c
+     * @return the number of txns that were moved into c
+     */
+    public int drainTo(Collection<? super TransactionInfoBaseMessage> c) {
+        assert(c != null);
+        this.drainInbox();
+        int ctr = 0;
+        TransactionInfoBaseMessage msg = null;
+        while ((msg = this.txn_lane.poll()) != null) {
+            c.add(msg);
+            ctr++;
+        } // WHILE
+        this.size.addAndGet(-ctr);
+        return (ctr);
+    }
+
+    // ----------------------------------------------------------------------------
+    // UTILITY METHODS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Returns the number of messages in the queue. This may be slightly
+     * out of date if other threads are adding messages at the same time.
+     */
+    @Override
+    public int size() {
+        return (Math.max(0, this.size.get()));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (this.size() == 0);
+    }
+
+    /**
+     * Remove all of the messages from the queue. This is safe to call from
+     * any thread, even while the consumer is still polling the queue.
+     */
+    @Override
+    public void clear() {
+        while (this.poll() != null) {
+            // Keep going...
+        } // WHILE
+    }
+
+    /**
+     * Returns a weakly-consistent iterator over a snapshot of the queue, in the
+     * same order that the messages would be polled. Messages that are added
+     * or removed after the snapshot is taken may or may not be included.
+     * The iterator does not support remove().
+     */
+    @Override
+    public Iterator<TransactionInfoBaseMessage> iterator() {
+        List<TransactionInfoBaseMessage> snapshot = new ArrayList<TransactionInfoBaseMessage>(this.size());
+        snapshot.addAll(this.finish_lane);
+        snapshot.addAll(this.work_lane);
+
+        // Read the ordered lane before the inbox. A txn that is being moved between
+        // them at the same time could be missed, but it will never be included twice.
+        List<TransactionInfoBaseMessage> txns = new ArrayList<TransactionInfoBaseMessage>(this.txn_lane);
+        txns.addAll(this.txn_inbox);
+        Collections.sort(txns, txn_comparator);
+        snapshot.addAll(txns);
+
+        return (Collections.unmodifiableList(snapshot).iterator());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[strategy=%s, size=%d]", this.getClass().getSimpleName(), this.wait_strategy, this.size());
+    }
+}
@@ -0,0 +1,151 @@
+package edu.brown.hstore.util;
+
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingDeque;
+
+import org.apache.log4j.Logger;
+import org.voltdb.StoredProcedureInvocation;
+
+import com.google.protobuf.RpcCallback;
+
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.hstore.interfaces.Shutdownable;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.utils.ProfileMeasurement;
+
+/**
+ * Takes new txn requests that the VoltProcedureListener threads have read off of the
+ * client connections and figures out where they need to go. This is where we build the
+ * txn's parameters, estimate its base partition and the partitions that it will touch,
+ * and then dispatch it to its PartitionExecutor.
+ * This keeps the listener threads free to go back to reading from their sockets.
+ */
+public final class TransactionRouter implements Runnable, Shutdownable {
+    private static final Logger LOG = Logger.getLogger(TransactionRouter.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    private final HStoreSite hstore_site;
+    private final int id;
+
+    private final ProfileMeasurement idleTime = new ProfileMeasurement("IDLE");
+    private final ProfileMeasurement execTime = new ProfileMeasurement("EXEC");
+
+    /**
+     * Whether we should stop processing our queue
+     */
+    private volatile boolean stop = false;
+
+    /**
+     * Incoming requests [StoredProcedureInvocation, byte[], RpcCallback<byte[]>, Long]
+     * This queue is shared by all of the TransactionRouters at a site. It is bounded, so the
+     * HStoreSite rejects new requests when it is full (see HStoreSite.procedureInvocation())
+     */
+    private final LinkedBlockingDeque<Object[]> queue;
+
+    /**
+     * Handle to ourselves
+     */
+    private Thread self = null;
+
+    /**
+     *
+     * @param hstore_site
+     * @param id
+     * @param queue
+     */
+    public TransactionRouter(HStoreSite hstore_site, int id, LinkedBlockingDeque<Object[]> queue) {
+        this.hstore_site = hstore_site;
+        this.id = id;
+        this.queue = queue;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void run() {
+        this.self = Thread.currentThread();
+        this.self.setName(HStoreSite.getThreadName(hstore_site, "route" + this.id));
+        if (hstore_site.getHStoreConf().site.cpu_affinity) {
+            hstore_site.getThreadManager().registerProcessingThread();
+        }
+        if (debug.get())
+            LOG.debug("Starting transaction routing thread");
+
+        HStoreConf hstore_conf = hstore_site.getHStoreConf();
+        Object request[] = null;
+        while (this.stop == false) {
+            try {
+                if (hstore_conf.site.status_show_executor_info) idleTime.start();
+                request = this.queue.takeFirst();
+                if (hstore_conf.site.status_show_executor_info) idleTime.stop();
+                assert(request != null);
+                assert(request.length == 4) : "Unexpected request: " + Arrays.toString(request);
+            } catch (InterruptedException ex) {
+                this.stop = true;
+                break;
+            }
+            if (hstore_conf.site.status_show_executor_info) execTime.start();
+            StoredProcedureInvocation invocation = (StoredProcedureInvocation)request[0];
+            if (trace.get()) LOG.trace(String.format("Routing new %s request [handle=%d]",
+                                                     invocation.getProcName(), invocation.getClientHandle()));
+            try {
+                hstore_site.initializeInvocation(invocation,
+                                                 (byte[])request[1],
+                                                 (RpcCallback<byte[]>)request[2],
+                                                 ((Long)request[3]).longValue());
+            } catch (Throwable ex) {
+                if (this.isShuttingDown()) break;
+                
+                // A bad request shouldn't take the whole router down with it, so we'll
+                // just tell the client what happened and move on to the next one.
+                // HStoreSite.initializeInvocation() only lets an error out if it happened
+                // before the txn was registered, so nobody else has answered the client yet
+                LOG.error(String.format("Failed to route new %s request [handle=%d]",
+                                        invocation.getProcName(), invocation.getClientHandle()), ex);
+                try {
+                    hstore_site.rejectInvocation(invocation,
+                                                 (RpcCallback<byte[]>)request[2],
+                                                 Status.ABORT_UNEXPECTED,
+                                                 ex.getClass().getSimpleName() + ": " + ex.getMessage());
+                } catch (Throwable ex2) {
+                    LOG.error(String.format("Failed to send error response for %s request [handle=%d]",
+                                            invocation.getProcName(), invocation.getClientHandle()), ex2);
+                }
+            } finally {
+                if (hstore_conf.site.status_show_executor_info) execTime.stop();
+            }
+        } // WHILE
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return (this.stop);
+    }
+
+    @Override
+    public void prepareShutdown(boolean error) {
+        this.queue.clear();
+    }
+
+    @Override
+    public void shutdown() {
+        if (debug.get())
+            LOG.debug(String.format("Transaction Routing Thread Idle Time: %.2fms", idleTime.getTotalThinkTimeMS()));
+        this.stop = true;
+        if (this.self != null) this.self.interrupt();
+    }
+
+    public ProfileMeasurement getIdleTime() {
+        return (this.idleTime);
+    }
+    public ProfileMeasurement getExecTime() {
+        return (this.execTime);
+    }
+
+}
@@ -0,0 +1,201 @@
+package edu.brown.hstore.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONStringer;
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Procedure;
+
+import edu.brown.hstore.dtxn.TransactionProfile;
+import edu.brown.statistics.LatencyHistogram;
+import edu.brown.utils.JSONSerializable;
+import edu.brown.utils.JSONUtil;
+
+/**
+ * Latency histograms for each non-sysproc Procedure and each part of the system that
+ * a txn goes through (i.e., each ProfileMeasurement in TransactionProfile).
+ * The HStoreSite records every completed txn's TransactionProfile in here when
+ * ${site.txn_profiling} is enabled. Recording never allocates or locks, so this can be
+ * shared by all of the threads at a site.
+ */
+public class TxnLatencyStats implements JSONSerializable {
+
+    private static final String PROCEDURES = "PROCEDURES";
+
+    /**
+     * The offset of the histogram for the total txn latency in each Procedure's histograms.
+     * We have to look this up by name because getDeclaredFields() does not return the
+     * ProfileMeasurement fields in any particular order.
+     */
+    public static final int TOTAL_IDX;
+    static {
+        int idx = -1;
+        for (int i = 0; i < TransactionProfile.PROFILE_FIELDS.length; i++) {
+            if (TransactionProfile.PROFILE_FIELDS[i].getName().equals("pm_total")) {
+                idx = i;
+                break;
+            }
+        } // FOR
+        // Fail here instead of with an ArrayIndexOutOfBoundsException when somebody asks for the stats
+        if (idx == -1) {
+            throw new IllegalStateException("Missing total ProfileMeasurement in " + TransactionProfile.class.getSimpleName());
+        }
+        TOTAL_IDX = idx;
+    } // STATIC
+
+    /** ProcedureId -> Procedure */
+    private final Procedure procedures[];
+    /** ProcedureId -> Phase -> Histogram */
+    private final LatencyHistogram histograms[][];
+
+    public TxnLatencyStats(Database catalog_db) {
+        int max_id = 0;
+        for (Procedure catalog_proc : catalog_db.getProcedures()) {
+            max_id = Math.max(max_id, catalog_proc.getId());
+        } // FOR
+        this.procedures = new Procedure[max_id + 1];
+        this.histograms = new LatencyHistogram[max_id + 1][];
+        for (Procedure catalog_proc : catalog_db.getProcedures()) {
+            if (catalog_proc.getSystemproc()) continue;
+            int proc_id = catalog_proc.getId();
+            this.procedures[proc_id] = catalog_proc;
+            this.histograms[proc_id] = new LatencyHistogram[TransactionProfile.PROFILE_TYPES.length];
+            for (int i = 0; i < this.histograms[proc_id].length; i++) {
+                this.histograms[proc_id][i] = new LatencyHistogram();
+            } // FOR
+        } // FOR
+    }
+
+    /**
+     * Record the latencies of a completed txn
+     * @param catalog_proc
+     * @param tp
+     */
+    public void record(Procedure catalog_proc, TransactionProfile tp) {
+        LatencyHistogram proc_histograms[] = this.histograms[catalog_proc.getId()];
+        if (proc_histograms != null) tp.recordLatencies(proc_histograms);
+    }
+
+    /**
+     * Returns the names of the phases in the same order as the histograms
+     */
+    public static String[] getPhases() {
+        return (TransactionProfile.PROFILE_TYPES);
+    }
+
+    /**
+     * Returns the Procedures that have had at least one txn recorded
+     */
+    public List<Procedure> getProcedures() {
+        List<Procedure> ret = new ArrayList<Procedure>();
+        for (int i = 0; i < this.procedures.length; i++) {
+            if (this.procedures[i] != null && this.histograms[i][TOTAL_IDX].isEmpty() == false) {
+                ret.add(this.procedures[i]);
+            }
+        } // FOR
+        return (ret);
+    }
+
+    /**
+     * Returns a snapshot of the histograms for the given Procedure, one per phase
+     * @param catalog_proc
+     */
+    public LatencyHistogram[] getSnapshot(Procedure catalog_proc) {
+        LatencyHistogram proc_histograms[] = this.histograms[catalog_proc.getId()];
+        if (proc_histograms == null) return (null);
+        LatencyHistogram ret[] = new LatencyHistogram[proc_histograms.length];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = proc_histograms[i].copy();
+        } // FOR
+        return (ret);
+    }
+
+    /**
+     * Returns a snapshot of the histograms for all of the Procedures merged together, one per phase
+     */
+    public LatencyHistogram[] getMergedSnapshot() {
+        LatencyHistogram ret[] = new LatencyHistogram[TransactionProfile.PROFILE_TYPES.length];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = new LatencyHistogram();
+        } // FOR
+        for (LatencyHistogram proc_histograms[] : this.histograms) {
+            if (proc_histograms == null) continue;
+            for (int i = 0; i < ret.length; i++) {
+                ret[i].merge(proc_histograms[i]);
+            } // FOR
+        } // FOR
+        return (ret);
+    }
+
+    public void clear() {
+        for (LatencyHistogram proc_histograms[] : this.histograms) {
+            if (proc_histograms == null) continue;
+            for (LatencyHistogram h : proc_histograms) {
+                h.clear();
+            } // FOR
+        } // FOR
+    }
+
+    // ----------------------------------------------------------------------------
+    // SERIALIZATION METHODS
+    // ----------------------------------------------------------------------------
+
+    @Override
+    public void load(String input_path, Database catalog_db) throws IOException {
+        JSONUtil.load(this, catalog_db, input_path);
+    }
+
+    @Override
+    public void save(String output_path) throws IOException {
+        JSONUtil.save(this, output_path);
+    }
+
+    @Override
+    public String toJSONString() {
+        return (JSONUtil.toJSONString(this));
+    }
+
+    @Override
+    public void toJSON(JSONStringer stringer) throws JSONException {
+        String phases[] = getPhases();
+        stringer.key(PROCEDURES).object();
+        for (Procedure catalog_proc : this.getProcedures()) {
+            LatencyHistogram proc_histograms[] = this.getSnapshot(catalog_proc);
+            stringer.key(catalog_proc.getName()).object();
+            for (int i = 0; i < phases.length; i++) {
+                if (proc_histograms[i].isEmpty()) continue;
+                stringer.key(phases[i]).object();
+                proc_histograms[i].toJSON(stringer);
+                stringer.endObject();
+            } // FOR
+            stringer.endObject();
+        } // FOR
+        stringer.endObject();
+    }
+
+    @Override
+    public void fromJSON(JSONObject json_object, Database catalog_db) throws JSONException {
+        this.clear();
+        String phases[] = getPhases();
+        JSONObject json_procs = json_object.getJSONObject(PROCEDURES);
+        @SuppressWarnings("unchecked")
+        Iterator<String> proc_names = json_procs.keys();
+        while (proc_names.hasNext()) {
+            String proc_name = proc_names.next();
+            Procedure catalog_proc = catalog_db.getProcedures().getIgnoreCase(proc_name);
+            if (catalog_proc == null || this.histograms[catalog_proc.getId()] == null) {
+                throw new JSONException("Unexpected Procedure '" + proc_name + "'");
+            }
+            JSONObject json_phases = json_procs.getJSONObject(proc_name);
+            for (int i = 0; i < phases.length; i++) {
+                if (json_phases.has(phases[i]) == false) continue;
+                this.histograms[catalog_proc.getId()][i].fromJSON(json_phases.getJSONObject(phases[i]), catalog_db);
+            } // FOR
+        } // WHILE
+    }
+}
@@ -0,0 +1,237 @@
+package edu.brown.hstore.wal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+import org.voltdb.ParameterSet;
+import org.voltdb.messaging.FastDeserializer;
+
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * Sequential reader for a command log file written by {@link CommandLogWriter}.
+ * The file is memory-mapped in large windows and the entries are deserialized
+ * in the order that they were written. Iteration stops at the first empty entry
+ * (the preallocated end of the log) or at the first entry that was only partially
+ * written before a crash.
+ */
+public class CommandLogReader implements Iterable<CommandLogReader.LogEntry> {
+    private static final Logger LOG = Logger.getLogger(CommandLogReader.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    /**
+     * How much of the file we will map at a time
+     */
+    private static final int MAP_WINDOW_SIZE = 256 * 1048576;
+
+    /**
+     * A single txn invocation from the command log
+     */
+    public static final class LogEntry {
+        public final long txn_id;
+        public final int base_partition;
+        public final boolean single_partition;
+        public final String proc_name;
+        public final ParameterSet params;
+
+        private LogEntry(long txn_id, int base_partition, boolean single_partition, String proc_name, ParameterSet params) {
+            this.txn_id = txn_id;
+            this.base_partition = base_partition;
+            this.single_partition = single_partition;
+            this.proc_name = proc_name;
+            this.params = params;
+        }
+        @Override
+        public String toString() {
+            return String.format("%s #%d [partition=%d, singlePartition=%s]",
+                                 this.proc_name, this.txn_id, this.base_partition, this.single_partition);
+        }
+    } // END CLASS
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final long size;
+    private final int site_id;
+    private final long created;
+
+    /**
+     * The offset in the file of the next entry to read
+     */
+    private long position;
+    private long num_entries = 0;
+
+    private MappedByteBuffer window;
+    private long window_offset;
+    private byte scratch[] = new byte[4096];
+    private final CRC32 checksum = new CRC32();
+    private final FastDeserializer fds = new FastDeserializer(new byte[0]);
+
+    public CommandLogReader(File file) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "r");
+        this.channel = this.raf.getChannel();
+        this.size = this.channel.size();
+        if (this.size < CommandLogWriter.HEADER_SIZE) {
+            this.close();
+            throw new IOException("Invalid command log file " + file + " [size=" + this.size + "]");
+        }
+
+        this.map(0);
+        ByteBuffer b = this.window;
+        int magic = b.getInt();
+        int version = b.getInt();
+        if (magic != CommandLogWriter.LOG_MAGIC || version != CommandLogWriter.LOG_VERSION) {
+            this.close();
+            throw new IOException(String.format("Invalid command log header in %s [magic=%x, version=%d]",
+                                                file, magic, version));
+        }
+        this.site_id = b.getInt();
+        this.created = b.getLong();
+        this.position = CommandLogWriter.HEADER_SIZE;
+        if (debug.get())
+            LOG.debug(String.format("Opened command log %s [siteId=%d, size=%d]", file, this.site_id, this.size));
+    }
+
+    private void map(long offset) throws IOException {
+        long length = Math.min(MAP_WINDOW_SIZE, this.size - offset);
+        this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        this.window_offset = offset;
+    }
+
+    /**
+     * Make sure that the next length bytes at the current position are in our window.
+     * Returns false if the file is not big enough.
+     */
+    private boolean ensure(int length) throws IOException {
+        if (this.position + length > this.size) return (false);
+        long window_end = this.window_offset + this.window.capacity();
+        if (this.position < this.window_offset || this.position + length > window_end) {
+            if (trace.get())
+                LOG.trace(String.format("Remapping %s at offset %d", this.file, this.position));
+            this.map(this.position);
+            if (this.window.capacity() < length) {
+                this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, this.position, length);
+            }
+        }
+        this.window.position((int)(this.position - this.window_offset));
+        return (true);
+    }
+
+    /**
+     * Read the next entry from the log. Returns null if there are no more entries.
+     * @return
+     * @throws IOException
+     */
+    public LogEntry next() throws IOException {
+        if (this.ensure(CommandLogWriter.ENTRY_HEADER_SIZE) == false) return (null);
+        int length = this.window.getInt();
+        int crc = this.window.getInt();
+        if (length <= 0) return (null);
+
+        this.position += CommandLogWriter.ENTRY_HEADER_SIZE;
+        if (this.ensure(length) == false) {
+            LOG.warn(String.format("Truncated command log entry at offset %d in %s", this.position, this.file));
+            this.position -= CommandLogWriter.ENTRY_HEADER_SIZE;
+            return (null);
+        }
+        if (this.scratch.length < length) {
+            this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+        }
+        this.window.get(this.scratch, 0, length);
+        this.checksum.reset();
+        this.checksum.update(this.scratch, 0, length);
+        if ((int)this.checksum.getValue() != crc) {
+            LOG.warn(String.format("Invalid checksum for command log entry at offset %d in %s", this.position, this.file));
+            this.position -= CommandLogWriter.ENTRY_HEADER_SIZE;
+            return (null);
+        }
+        this.position += length;
+
+        this.fds.setBuffer(ByteBuffer.wrap(this.scratch, 0, length));
+        LogEntry entry = new LogEntry(this.fds.readLong(),
+                                      this.fds.readInt(),
+                                      this.fds.readBoolean(),
+                                      this.fds.readString(),
+                                      this.fds.readObject(ParameterSet.class));
+        this.num_entries++;
+        return (entry);
+    }
+
+    @Override
+    public Iterator<LogEntry> iterator() {
+        return new Iterator<LogEntry>() {
+            private LogEntry next = null;
+            private boolean done = false;
+
+            @Override
+            public boolean hasNext() {
+                if (this.next == null && this.done == false) {
+                    try {
+                        this.next = CommandLogReader.this.next();
+                    } catch (IOException ex) {
+                        throw new RuntimeException("Failed to read from command log " + file, ex);
+                    }
+                    this.done = (this.next == null);
+                }
+                return (this.next != null);
+            }
+            @Override
+            public LogEntry next() {
+                if (this.hasNext() == false) throw new NoSuchElementException();
+                LogEntry ret = this.next;
+                this.next = null;
+                return (ret);
+            }
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    public void close() throws IOException {
+        this.window = null;
+        this.channel.close();
+        this.raf.close();
+    }
+
+    // ----------------------------------------------------------------------------
+    // UTILITY METHODS
+    // ----------------------------------------------------------------------------
+
+    public File getFile() {
+        return (this.file);
+    }
+    public int getSiteId() {
+        return (this.site_id);
+    }
+    public long getCreated() {
+        return (this.created);
+    }
+    /**
+     * Returns the offset in the file right after the last valid entry that we have read
+     */
+    public long getPosition() {
+        return (this.position);
+    }
+    public long getSize() {
+        return (this.size);
+    }
+    public long getEntryCount() {
+        return (this.num_entries);
+    }
+}
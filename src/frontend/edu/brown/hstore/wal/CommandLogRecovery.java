@@ -0,0 +1,304 @@
+package edu.brown.hstore.wal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.messaging.FastDeserializer;
+
+import com.google.protobuf.RpcCallback;
+
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * Replays the txns in an HStoreSite's command log when it starts up.
+ * <p>
+ * The log is read sequentially by a single thread. Single-partition entries are
+ * queued directly at their base partition's PartitionExecutor, so all of the
+ * partitions replay their txns in parallel. A multi-partition entry is a barrier:
+ * we wait for every txn queued before it to finish, execute it by itself as a regular
+ * distributed txn, and only then continue with the entries that come after it.
+ * <p>
+ * That barrier only covers our own partitions. When the cluster has more than one site,
+ * a distributed entry can also touch partitions whose single-partition txns are in
+ * another site's log. So recovery is split into two steps:
+ * <ol>
+ * <li>{@link #recoverLocal()} replays every entry that only touches our partitions.
+ *     Distributed entries are set aside in log order. The HStoreSite rejects any
+ *     txn from another site until this step is done.
+ * <li>{@link #recoverDistributed()} replays the distributed entries that we set aside,
+ *     one at a time. They keep getting rejected by the other sites until those sites
+ *     have finished their own local step, so every single-partition txn in the cluster
+ *     is replayed before any of them.
+ * </ol>
+ * This means that a distributed entry is no longer replayed in its original position
+ * relative to the single-partition txns at the other sites. It also assumes that every site
+ * in the cluster is recovering from its own log at the same time. If the other sites are still
+ * running then they already have these txns' writes, so ${site.commandlog_recover_distributed}
+ * should be set to false.
+ */
+public class CommandLogRecovery {
+    private static final Logger LOG = Logger.getLogger(CommandLogRecovery.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    private final HStoreSite hstore_site;
+    private final CommandLogReader reader;
+
+    /**
+     * If every partition in the cluster is at our site, then distributed
+     * txns can be replayed in their original position in the log
+     */
+    private final boolean all_local;
+    private final boolean replay_distributed;
+
+    /**
+     * Distributed entries that have to wait until recoverDistributed()
+     */
+    private final List<CommandLogReader.LogEntry> deferred = new ArrayList<CommandLogReader.LogEntry>();
+
+    /**
+     * The max number of single-partition txns that can be queued at our
+     * PartitionExecutors at the same time
+     */
+    private final int window;
+    private final Semaphore outstanding;
+
+    private final AtomicLong num_replayed = new AtomicLong(0);
+    private long num_distributed = 0;
+    private long num_skipped = 0;
+    private long num_read = 0;
+    private long start_time = -1;
+    private long stop_time = -1;
+    private volatile boolean local_finished = false;
+    private volatile boolean finished = false;
+
+    private final RpcCallback<byte[]> callback = new RpcCallback<byte[]>() {
+        @Override
+        public void run(byte[] parameter) {
+            num_replayed.incrementAndGet();
+            outstanding.release();
+        }
+    };
+
+    /**
+     * Distributed txns go through the regular HStoreSite entry point, so they can
+     * get rejected just like a txn from a client. We have to keep trying until they run.
+     */
+    private class DistributedCallback implements RpcCallback<byte[]> {
+        private final StoredProcedureInvocation invocation;
+
+        DistributedCallback(StoredProcedureInvocation invocation) {
+            this.invocation = invocation;
+        }
+        @Override
+        public void run(byte[] parameter) {
+            ClientResponseImpl cresponse = null;
+            try {
+                cresponse = new FastDeserializer(parameter).readObject(ClientResponseImpl.class);
+            } catch (IOException ex) {
+                throw new RuntimeException("Failed to deserialize ClientResponse for " + this.invocation.getProcName(), ex);
+            }
+            Status status = cresponse.getStatus();
+            if (status == Status.ABORT_REJECT || status == Status.ABORT_THROTTLED) {
+                if (debug.get())
+                    LOG.debug(String.format("Distributed %s was rejected during recovery [status=%s]. Retrying...",
+                                            this.invocation.getProcName(), status));
+                hstore_site.procedureInvocation(this.invocation, null, this);
+                return;
+            }
+            callback.run(parameter);
+        }
+    } // END CLASS
+
+    public CommandLogRecovery(HStoreSite hstore_site, CommandLogReader reader) {
+        this.hstore_site = hstore_site;
+        this.reader = reader;
+
+        HStoreConf hstore_conf = hstore_site.getHStoreConf();
+        this.window = Math.max(1, hstore_conf.site.queue_incoming_max_per_partition) *
+                      hstore_site.getLocalPartitionIds().size();
+        this.outstanding = new Semaphore(this.window);
+        this.all_local = (hstore_site.getLocalPartitionIds().size() == hstore_site.getAllPartitionIds().size());
+        this.replay_distributed = hstore_conf.site.commandlog_recover_distributed;
+    }
+
+    /**
+     * Replay every entry in the command log. This blocks until all of the
+     * txns have finished executing.
+     * @throws IOException
+     */
+    public void recover() throws IOException {
+        this.recoverLocal();
+        this.recoverDistributed();
+    }
+
+    /**
+     * Replay every entry in the command log that only touches our partitions.
+     * Distributed entries are set aside for recoverDistributed() unless all
+     * of the partitions in the cluster are at our site. This blocks until
+     * all of the txns that we replayed have finished executing.
+     * @throws IOException
+     */
+    public void recoverLocal() throws IOException {
+        this.start_time = System.currentTimeMillis();
+        LOG.info(String.format("Starting recovery from command log %s [size=%d bytes]",
+                               this.reader.getFile(), this.reader.getSize()));
+
+        CommandLogReader.LogEntry entry = null;
+        while ((entry = this.reader.next()) != null) {
+            this.num_read++;
+            Procedure catalog_proc = this.getProcedure(entry);
+            if (trace.get()) LOG.trace("Replaying " + entry);
+
+            // SINGLE-PARTITION
+            if (entry.single_partition && catalog_proc.getSystemproc() == false) {
+                this.acquire(1);
+                this.hstore_site.transactionReplay(entry.txn_id, catalog_proc, entry.params,
+                                                   entry.base_partition, this.callback);
+            }
+            // SINGLE-PARTITION SYSPROC
+            // These only run at their base partition, but we still want them to be a barrier
+            else if (entry.single_partition || this.all_local) {
+                this.replayDistributed(entry, catalog_proc);
+            }
+            // MULTI-PARTITION
+            // We can't execute these until the other sites have finished their local txns too
+            else if (this.replay_distributed) {
+                if (debug.get()) LOG.debug("Deferring distributed " + entry);
+                this.deferred.add(entry);
+            }
+            else {
+                LOG.warn(String.format("Skipping distributed %s because site.commandlog_recover_distributed is false", entry));
+                this.num_skipped++;
+            }
+        } // WHILE
+
+        // Wait for the stragglers
+        this.acquire(this.window);
+        this.outstanding.release(this.window);
+        this.local_finished = true;
+
+        LOG.info(String.format("Finished local recovery from command log %s [txns=%d, deferred=%d, skipped=%d, time=%.2fs]",
+                               this.reader.getFile(), this.num_replayed.get(), this.deferred.size(), this.num_skipped,
+                               (System.currentTimeMillis() - this.start_time) / 1000d));
+    }
+
+    /**
+     * Replay the distributed entries that recoverLocal() set aside, one at a time
+     * in log order. This must only be called after recoverLocal(), and after the
+     * HStoreSite is accepting txns from the other sites again.
+     * This blocks until all of them have finished executing.
+     */
+    public void recoverDistributed() {
+        assert(this.local_finished) : "Local recovery is not finished for " + this.reader.getFile();
+        if (this.deferred.isEmpty() == false) {
+            LOG.info(String.format("Replaying %d distributed txns from command log %s",
+                                   this.deferred.size(), this.reader.getFile()));
+        }
+        for (CommandLogReader.LogEntry entry : this.deferred) {
+            this.replayDistributed(entry, this.getProcedure(entry));
+        } // FOR
+        this.deferred.clear();
+        this.stop_time = System.currentTimeMillis();
+        this.finished = true;
+
+        LOG.info(String.format("Finished recovery from command log %s [txns=%d, distributed=%d, skipped=%d, time=%.2fs, rate=%.2f txn/s]",
+                               this.reader.getFile(), this.num_replayed.get(), this.num_distributed, this.num_skipped,
+                               (this.stop_time - this.start_time) / 1000d, this.getRecoveryRate()));
+    }
+
+    /**
+     * Wait for everything before this entry to finish, execute it as a regular
+     * txn, and then wait for it too
+     */
+    private void replayDistributed(CommandLogReader.LogEntry entry, Procedure catalog_proc) {
+        this.acquire(this.window);
+        this.outstanding.release(this.window - 1);
+        if (debug.get()) LOG.debug("Replaying distributed " + entry);
+        StoredProcedureInvocation invocation = new StoredProcedureInvocation(entry.txn_id, catalog_proc.getName(), entry.params.toArray());
+        invocation.setBasePartition(entry.base_partition);
+        this.hstore_site.procedureInvocation(invocation, null, new DistributedCallback(invocation));
+        this.num_distributed++;
+        this.acquire(this.window);
+        this.outstanding.release(this.window);
+    }
+
+    private Procedure getProcedure(CommandLogReader.LogEntry entry) {
+        Procedure catalog_proc = this.hstore_site.getDatabase().getProcedures().getIgnoreCase(entry.proc_name);
+        if (catalog_proc == null) {
+            throw new RuntimeException("Unknown procedure '" + entry.proc_name + "' in command log " + this.reader.getFile());
+        }
+        return (catalog_proc);
+    }
+
+    private void acquire(int permits) {
+        this.outstanding.acquireUninterruptibly(permits);
+    }
+
+    // ----------------------------------------------------------------------------
+    // PROGRESS METHODS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Returns true once recoverLocal() has replayed all of the
+     * entries that only touch our partitions
+     */
+    public boolean isLocalFinished() {
+        return (this.local_finished);
+    }
+    public boolean isFinished() {
+        return (this.finished);
+    }
+    public long getReplayedCount() {
+        return (this.num_replayed.get());
+    }
+    public long getReadCount() {
+        return (this.num_read);
+    }
+    public long getDistributedCount() {
+        return (this.num_distributed);
+    }
+    /**
+     * Returns the number of distributed entries that are waiting for recoverDistributed()
+     */
+    public int getDeferredCount() {
+        return (this.deferred.size());
+    }
+    public long getSkippedCount() {
+        return (this.num_skipped);
+    }
+    /**
+     * Returns the percentage of the log that we have read so far.
+     * Note that this is based on the size of the file, so it
+     * includes any space that was preallocated after the last entry
+     */
+    public double getProgress() {
+        return (this.reader.getPosition() / (double)this.reader.getSize());
+    }
+    /**
+     * Returns the number of txns per second that we have replayed
+     */
+    public double getRecoveryRate() {
+        if (this.start_time < 0) return (0d);
+        long stop = (this.stop_time < 0 ? System.currentTimeMillis() : this.stop_time);
+        if (stop == this.start_time) return (0d);
+        return (this.num_replayed.get() / ((stop - this.start_time) / 1000d));
+    }
+    public CommandLogReader getReader() {
+        return (this.reader);
+    }
+}
@@ -0,0 +1,519 @@
+package edu.brown.hstore.wal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.messaging.FastSerializer;
+import org.voltdb.utils.DBBPool;
+import org.voltdb.utils.DBBPool.BBContainer;
+
+import com.google.protobuf.RpcCallback;
+
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.hstore.dtxn.LocalTransaction;
+import edu.brown.hstore.interfaces.Shutdownable;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.utils.ProfileMeasurement;
+
+/**
+ * Write-ahead command log for an HStoreSite. Every committed txn's invocation
+ * (txnId, base partition, procedure name, parameters) is appended to the log
+ * before its ClientResponse is sent back to the client.
+ * <p>
+ * Entries are appended at the txn's commit point, so that the log has the txns in the
+ * same order that they committed at each partition. For a single-partition txn that is
+ * when its PartitionExecutor commits it. For a distributed txn it is when the base partition
+ * decides to commit it, which is before any of its partitions are released. The ClientResponse
+ * is attached to the entry later with queueClientResponse(), since it may be serialized by
+ * another thread after other txns have already committed.
+ * <p>
+ * All of the entries are written out by a single writer thread. It collects entries
+ * for up to ${site.commandlog_timeout} ms (or ${site.commandlog_batch_size} entries),
+ * writes them out together and then issues a single fsync for the whole group.
+ * Only then are the ClientResponses for those txns released.
+ * <p>
+ * Log File Layout:
+ * <pre>
+ * HEADER: [MAGIC:int][VERSION:int][SITE_ID:int][CREATED:long]
+ * ENTRY:  [LENGTH:int][CRC32:int][TXN_ID:long][BASE_PARTITION:int][SINGLE_PARTITION:boolean][PROC_NAME:String][PARAMS:ParameterSet]
+ * </pre>
+ * The file is preallocated with zeros, so an entry with a length of zero marks the end of the log.
+ */
+public class CommandLogWriter implements Runnable, Shutdownable {
+    private static final Logger LOG = Logger.getLogger(CommandLogWriter.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    public static final int LOG_MAGIC = 0x48534C47; // "HSLG"
+    public static final int LOG_VERSION = 1;
+    public static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+    public static final int ENTRY_HEADER_SIZE = 4 + 4;
+
+    /**
+     * A serialized log entry plus everything that we need to release
+     * the txn's ClientResponse once it is durable.
+     */
+    private static final class LogEntry {
+        final byte data[];
+        final int crc;
+        final int base_partition;
+
+        // These are all protected by the LogEntry's lock
+        long replication_sequence = -1;
+        RpcCallback<byte[]> callback = null;
+        byte output[] = null;
+        boolean durable = false;
+
+        LogEntry(byte data[], int crc, int base_partition) {
+            this.data = data;
+            this.crc = crc;
+            this.base_partition = base_partition;
+        }
+    } // END CLASS
+
+    private final HStoreSite hstore_site;
+    private final HStoreConf hstore_conf;
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final BBContainer buffer;
+    private final long prealloc_size;
+
+    /**
+     * Entries waiting to be written out by the writer thread
+     */
+    private final LinkedBlockingQueue<LogEntry> queue = new LinkedBlockingQueue<LogEntry>();
+
+    /**
+     * TxnId -> Entries that are waiting for their ClientResponse
+     */
+    private final ConcurrentHashMap<Long, LogEntry> waiting = new ConcurrentHashMap<Long, LogEntry>();
+
+    /**
+     * The entries in the current group commit
+     */
+    private final List<LogEntry> group = new ArrayList<LogEntry>();
+
+    /**
+     * The offset in the file where the next entry will be written
+     */
+    private long position;
+
+    /**
+     * How much of the file we have already preallocated
+     */
+    private long allocated = 0;
+
+    private volatile boolean stop = false;
+    private volatile Thread self = null;
+
+    private final ProfileMeasurement idleTime = new ProfileMeasurement("IDLE");
+    private final ProfileMeasurement writeTime = new ProfileMeasurement("WRITE");
+    private final ProfileMeasurement fsyncTime = new ProfileMeasurement("FSYNC");
+    private long num_groups = 0;
+    private long num_entries = 0;
+
+    /**
+     * Constructor
+     * @param hstore_site
+     * @param file the log file. Anything that is already in this file will be overwritten.
+     */
+    public CommandLogWriter(HStoreSite hstore_site, File file) {
+        this(hstore_site, file, -1);
+    }
+
+    /**
+     * Constructor
+     * @param hstore_site
+     * @param file the log file
+     * @param end_position if this is greater than zero, then the new entries will be appended
+     *                     to the existing log file starting at this offset. This must be the
+     *                     end of the last valid entry in the file (see CommandLogReader.getPosition())
+     */
+    public CommandLogWriter(HStoreSite hstore_site, File file, long end_position) {
+        this.hstore_site = hstore_site;
+        this.hstore_conf = hstore_site.getHStoreConf();
+        this.file = file;
+        this.prealloc_size = Math.max(1, hstore_conf.site.commandlog_prealloc_size) * 1048576l;
+        this.buffer = DBBPool.allocateDirect(Math.max(4096, hstore_conf.site.commandlog_buffer_size));
+
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && parent.exists() == false) parent.mkdirs();
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = this.raf.getChannel();
+            
+            // Pick up where the last log left off. We have to zero out anything
+            // after the last valid entry so that it doesn't get read back later
+            if (end_position >= HEADER_SIZE) {
+                this.position = end_position;
+                this.allocated = end_position;
+                long length = Math.max(this.channel.size(), end_position + this.prealloc_size);
+                this.preallocate(length - end_position);
+                if (debug.get())
+                    LOG.debug(String.format("Appending to existing command log %s at offset %d", file, this.position));
+                return;
+            }
+            
+            this.raf.setLength(0);
+            this.preallocate(this.prealloc_size);
+
+            // Write out our header
+            ByteBuffer b = this.buffer.b;
+            b.clear();
+            b.putInt(LOG_MAGIC);
+            b.putInt(LOG_VERSION);
+            b.putInt(hstore_site.getSiteId());
+            b.putLong(System.currentTimeMillis());
+            b.flip();
+            this.position = 0;
+            while (b.hasRemaining()) {
+                this.position += this.channel.write(b, this.position);
+            } // WHILE
+            this.channel.force(true);
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed to initialize command log file " + file, ex);
+        }
+        if (debug.get())
+            LOG.debug(String.format("Created command log %s [preallocated=%d bytes]", file, this.allocated));
+    }
+
+    public File getFile() {
+        return (this.file);
+    }
+
+    // ----------------------------------------------------------------------------
+    // APPEND METHODS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Serialize the txn's invocation into a new log entry and queue it for the
+     * next group commit. This must be called at the txn's commit point, and it
+     * must be followed by a call to queueClientResponse() for the same txn.
+     * @param ts
+     */
+    public void appendToLog(LocalTransaction ts) {
+        StoredProcedureInvocation invocation = ts.getInvocation();
+        FastSerializer fs = new FastSerializer();
+        try {
+            fs.writeLong(ts.getTransactionId().longValue());
+            fs.writeInt(ts.getBasePartition());
+            fs.writeBoolean(ts.isPredictSinglePartition());
+            fs.writeString(ts.getProcedure().getName());
+            fs.writeObject(invocation.getParams());
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed to serialize command log entry for " + ts, ex);
+        }
+        byte data[] = fs.getBytes();
+        CRC32 checksum = new CRC32();
+        checksum.update(data);
+
+        LogEntry entry = new LogEntry(data, (int)checksum.getValue(), ts.getBasePartition());
+        this.waiting.put(ts.getTransactionId(), entry);
+        this.queue.offer(entry);
+        if (trace.get())
+            LOG.trace(String.format("Queued command log entry for %s [size=%d, queueSize=%d]",
+                                    ts, data.length, this.queue.size()));
+    }
+
+    /**
+     * Send the txn's serialized ClientResponse back to the client once its log entry
+     * is durable. If appendToLog() was not called for this txn yet, then its entry is
+     * appended now. This must be called before the LocalTransaction handle is cleaned up.
+     * @param ts
+     * @param output the serialized ClientResponse
+     */
+    public void queueClientResponse(LocalTransaction ts, byte output[]) {
+        LogEntry entry = this.waiting.remove(ts.getTransactionId());
+        if (entry == null) {
+            this.appendToLog(ts);
+            entry = this.waiting.remove(ts.getTransactionId());
+        }
+        boolean release = false;
+        synchronized (entry) {
+            entry.replication_sequence = ts.getReplicationSequence();
+            entry.callback = ts.getClientCallback();
+            entry.output = output;
+            release = entry.durable;
+        } // SYNCH
+        if (release) {
+            this.releaseClientResponse(entry.base_partition, entry.replication_sequence, entry.callback, entry.output);
+        }
+    }
+
+    /**
+     * Append the txn to the log and send back its ClientResponse once it is durable
+     * @param ts
+     * @param output the serialized ClientResponse
+     */
+    public void appendToLog(LocalTransaction ts, byte output[]) {
+        this.appendToLog(ts);
+        this.queueClientResponse(ts, output);
+    }
+
+    // ----------------------------------------------------------------------------
+    // WRITER THREAD
+    // ----------------------------------------------------------------------------
+
+    @Override
+    public void run() {
+        this.self = Thread.currentThread();
+        this.self.setName(HStoreSite.getThreadName(hstore_site, "wal"));
+        if (hstore_conf.site.cpu_affinity) {
+            hstore_site.getThreadManager().registerProcessingThread();
+        }
+        if (debug.get())
+            LOG.debug("Starting command log writer thread for " + this.file);
+
+        while (this.stop == false) {
+            try {
+                this.collectGroup();
+            } catch (InterruptedException ex) {
+                if (this.stop) break;
+                continue;
+            }
+            if (this.group.isEmpty()) continue;
+            try {
+                this.flushGroup();
+            } catch (IOException ex) {
+                if (this.stop) break;
+                throw new RuntimeException("Failed to write to command log " + this.file, ex);
+            }
+        } // WHILE
+
+        // Make sure that anything that made it into the queue gets out
+        this.queue.drainTo(this.group);
+        if (this.group.isEmpty() == false) {
+            try {
+                this.flushGroup();
+            } catch (IOException ex) {
+                LOG.warn("Failed to flush final group of command log entries", ex);
+            }
+        }
+    }
+
+    /**
+     * Block until we have at least one entry and then keep collecting entries
+     * until either the batch is full or the group commit timeout passes
+     */
+    private void collectGroup() throws InterruptedException {
+        final int batch_size = Math.max(1, hstore_conf.site.commandlog_batch_size);
+        final long timeout = TimeUnit.MILLISECONDS.toNanos(hstore_conf.site.commandlog_timeout);
+
+        if (hstore_conf.site.status_show_executor_info) this.idleTime.start();
+        LogEntry first = null;
+        try {
+            first = this.queue.poll(100, TimeUnit.MILLISECONDS);
+        } finally {
+            if (hstore_conf.site.status_show_executor_info) this.idleTime.stop();
+        }
+        if (first == null) return;
+        this.group.add(first);
+
+        long deadline = System.nanoTime() + timeout;
+        while (this.group.size() < batch_size) {
+            this.queue.drainTo(this.group, batch_size - this.group.size());
+            if (this.group.size() >= batch_size) break;
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) break;
+            LogEntry next = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            this.group.add(next);
+        } // WHILE
+    }
+
+    /**
+     * Write out all of the entries in the current group, fsync the log file,
+     * and then release all of their ClientResponses.
+     */
+    private void flushGroup() throws IOException {
+        if (hstore_conf.site.status_show_executor_info) this.writeTime.start();
+        ByteBuffer b = this.buffer.b;
+        b.clear();
+        for (LogEntry entry : this.group) {
+            int size = ENTRY_HEADER_SIZE + entry.data.length;
+            if (b.remaining() < size) {
+                this.writeBuffer(b);
+                b.clear();
+            }
+            // This entry is bigger than our entire buffer, so just write it straight out
+            if (b.remaining() < size) {
+                ByteBuffer big = ByteBuffer.allocate(size);
+                big.putInt(entry.data.length);
+                big.putInt(entry.crc);
+                big.put(entry.data);
+                this.writeBuffer(big);
+                continue;
+            }
+            b.putInt(entry.data.length);
+            b.putInt(entry.crc);
+            b.put(entry.data);
+        } // FOR
+        this.writeBuffer(b);
+        if (hstore_conf.site.status_show_executor_info) this.writeTime.stop();
+
+        // We preallocated the file, so we don't need to flush the metadata
+        if (hstore_conf.site.status_show_executor_info) this.fsyncTime.start();
+        this.channel.force(false);
+        if (hstore_conf.site.status_show_executor_info) this.fsyncTime.stop();
+
+        this.num_groups++;
+        this.num_entries += this.group.size();
+        if (trace.get())
+            LOG.trace(String.format("Group commit #%d with %d entries [position=%d]",
+                                    this.num_groups, this.group.size(), this.position));
+
+        // If a txn's ClientResponse isn't here yet, then queueClientResponse() will release it
+        for (LogEntry entry : this.group) {
+            boolean release = false;
+            synchronized (entry) {
+                entry.durable = true;
+                release = (entry.output != null);
+            } // SYNCH
+            if (release) {
+                this.releaseClientResponse(entry.base_partition, entry.replication_sequence, entry.callback, entry.output);
+            }
+        } // FOR
+        this.group.clear();
+    }
+
+    /**
+     * Send the ClientResponse for a txn whose log entry is now durable
+     * @param base_partition
+     * @param replication_sequence
+     * @param callback
+     * @param output
+     */
+    protected void releaseClientResponse(int base_partition, long replication_sequence, RpcCallback<byte[]> callback, byte output[]) {
+        this.hstore_site.releaseClientResponse(base_partition, replication_sequence, callback, output);
+    }
+
+    private void writeBuffer(ByteBuffer b) throws IOException {
+        b.flip();
+        if (this.position + b.remaining() > this.allocated) {
+            this.preallocate(Math.max(this.prealloc_size, b.remaining()));
+        }
+        while (b.hasRemaining()) {
+            this.position += this.channel.write(b, this.position);
+        } // WHILE
+    }
+
+    /**
+     * Extend the log file with zeros. We actually write out the zeros
+     * so that the file system allocates the blocks now instead of
+     * when we are in the middle of a group commit.
+     * @param size
+     */
+    private void preallocate(long size) throws IOException {
+        ByteBuffer zeros = ByteBuffer.allocateDirect(65536);
+        long end = this.allocated + size;
+        long offset = this.allocated;
+        while (offset < end) {
+            zeros.clear();
+            if (end - offset < zeros.capacity()) zeros.limit((int)(end - offset));
+            offset += this.channel.write(zeros, offset);
+        } // WHILE
+        this.channel.force(true);
+        this.allocated = end;
+        if (debug.get())
+            LOG.debug(String.format("Preallocated command log %s to %d bytes", this.file, this.allocated));
+    }
+
+    // ----------------------------------------------------------------------------
+    // SHUTDOWN METHODS
+    // ----------------------------------------------------------------------------
+
+    @Override
+    public void prepareShutdown(boolean error) {
+        // Nothing to do...
+    }
+
+    @Override
+    public void shutdown() {
+        if (debug.get())
+            LOG.debug(String.format("Command Log Writer: %d entries in %d group commits [idle=%.2fms, fsync=%.2fms]",
+                                    this.num_entries, this.num_groups,
+                                    this.idleTime.getTotalThinkTimeMS(), this.fsyncTime.getTotalThinkTimeMS()));
+        this.stop = true;
+        
+        // The writer thread flushes whatever is left in the queue before it exits,
+        // so we have to wait for it before we can close the file out from under it.
+        // If it never started, then we have to flush them ourselves
+        Thread t = this.self;
+        if (t != null) {
+            while (t.isAlive()) {
+                try {
+                    t.join(1000);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (t.isAlive())
+                    LOG.warn("Waiting for the command log writer thread to finish writing to " + this.file);
+            } // WHILE
+        } else {
+            this.queue.drainTo(this.group);
+            if (this.group.isEmpty() == false) {
+                try {
+                    this.flushGroup();
+                } catch (IOException ex) {
+                    LOG.warn("Failed to flush final group of command log entries", ex);
+                }
+            }
+        }
+        try {
+            this.channel.close();
+            this.raf.close();
+        } catch (IOException ex) {
+            LOG.warn("Failed to close command log " + this.file, ex);
+        }
+        this.buffer.discard();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return (this.stop);
+    }
+
+    // ----------------------------------------------------------------------------
+    // UTILITY METHODS
+    // ----------------------------------------------------------------------------
+
+    public int getQueueSize() {
+        return (this.queue.size());
+    }
+    public long getGroupCommitCount() {
+        return (this.num_groups);
+    }
+    public long getEntryCount() {
+        return (this.num_entries);
+    }
+    public long getPosition() {
+        return (this.position);
+    }
+    public ProfileMeasurement getIdleTime() {
+        return (this.idleTime);
+    }
+    public ProfileMeasurement getWriteTime() {
+        return (this.writeTime);
+    }
+    public ProfileMeasurement getFsyncTime() {
+        return (this.fsyncTime);
+    }
+}
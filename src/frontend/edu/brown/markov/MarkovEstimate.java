@@ -1,14 +1,13 @@
 package edu.brown.markov;
 
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 import org.apache.commons.collections15.map.ListOrderedMap;
 import org.apache.log4j.Logger;
 
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.utils.PartitionSet;
 import edu.brown.utils.Poolable;
 import edu.brown.utils.StringUtil;
 import edu.brown.utils.TableUtil;
@@ -33,15 +32,15 @@ public class MarkovEstimate implements Poolable, Estimation {
     private final int touched[];
     
     private final float finished[];
-    private Set<Integer> finished_partitions;
-    private Set<Integer> touched_partitions;
-    private Set<Integer> most_touched_partitions;
+    private PartitionSet finished_partitions;
+    private PartitionSet touched_partitions;
+    private PartitionSet most_touched_partitions;
     
     private final float read[];
-    private Set<Integer> read_partitions;
+    private PartitionSet read_partitions;
     
     private final float write[];
-    private Set<Integer> write_partitions;
+    private PartitionSet write_partitions;
 
     private transient MarkovVertex vertex;
     private transient int batch;
@@ -372,7 +371,7 @@ public class MarkovEstimate implements Poolable, Estimation {
         return time;
     }
     
-    private void getPartitions(Set<Integer> partitions, float values[], float limit, boolean inverse) {
+    private void getPartitions(PartitionSet partitions, float values[], float limit, boolean inverse) {
         partitions.clear();
         for (int i = 0; i < values.length; i++) {
             if (inverse) {
@@ -388,9 +387,9 @@ public class MarkovEstimate implements Poolable, Estimation {
      * @param t
      * @return
      */
-    public Set<Integer> getReadOnlyPartitions(EstimationThresholds t) {
+    public PartitionSet getReadOnlyPartitions(EstimationThresholds t) {
         assert(t != null);
-        if (this.read_partitions == null) this.read_partitions = new HashSet<Integer>();
+        if (this.read_partitions == null) this.read_partitions = new PartitionSet();
         this.getPartitions(this.read_partitions, this.read, (float)t.getReadThreshold(), false);
         return (this.read_partitions);
     }
@@ -399,9 +398,9 @@ public class MarkovEstimate implements Poolable, Estimation {
      * @param t
      * @return
      */
-    public Set<Integer> getWritePartitions(EstimationThresholds t) {
+    public PartitionSet getWritePartitions(EstimationThresholds t) {
         assert(t != null);
-        if (this.write_partitions == null) this.write_partitions = new HashSet<Integer>();
+        if (this.write_partitions == null) this.write_partitions = new PartitionSet();
         this.getPartitions(this.write_partitions, this.write, (float)t.getWriteThreshold(), false);
         return (this.write_partitions);
     }
@@ -410,9 +409,9 @@ public class MarkovEstimate implements Poolable, Estimation {
      * @param t
      * @return
      */
-    public Set<Integer> getFinishedPartitions(EstimationThresholds t) {
+    public PartitionSet getFinishedPartitions(EstimationThresholds t) {
         assert(t != null);
-        if (this.finished_partitions == null) this.finished_partitions = new HashSet<Integer>();
+        if (this.finished_partitions == null) this.finished_partitions = new PartitionSet();
         this.getPartitions(this.finished_partitions, this.finished, (float)t.getFinishedThreshold(), false);
         return (this.finished_partitions);
     }
@@ -421,21 +420,21 @@ public class MarkovEstimate implements Poolable, Estimation {
      * @param t
      * @return
      */
-    public Set<Integer> getTouchedPartitions(EstimationThresholds t) {
+    public PartitionSet getTouchedPartitions(EstimationThresholds t) {
         assert(t != null);
-        if (this.touched_partitions == null) this.touched_partitions = new HashSet<Integer>();
+        if (this.touched_partitions == null) this.touched_partitions = new PartitionSet();
         this.getPartitions(this.touched_partitions, this.finished, t.getFinishedThreshold(), true);
         return (this.touched_partitions);
     }
     
-    public Set<Integer> getMostTouchedPartitions(EstimationThresholds t) {
+    public PartitionSet getMostTouchedPartitions(EstimationThresholds t) {
         assert(t != null);
-        if (this.touched_partitions == null) this.touched_partitions = new HashSet<Integer>();
+        if (this.touched_partitions == null) this.touched_partitions = new PartitionSet();
         this.getPartitions(this.touched_partitions, this.finished, t.getFinishedThreshold(), true);
         
-        if (this.most_touched_partitions == null) this.most_touched_partitions = new HashSet<Integer>();
+        if (this.most_touched_partitions == null) this.most_touched_partitions = new PartitionSet();
         int max_ctr = 0;
-        for (int p : this.touched_partitions) {
+        for (int p = this.touched_partitions.next(0); p != -1; p = this.touched_partitions.next(p + 1)) {
             if (this.touched[p] > 0 && max_ctr <= this.touched[p]) {
                 if (max_ctr == this.touched[p]) this.most_touched_partitions.add(p);
                 else {
@@ -5,7 +5,6 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -32,10 +31,11 @@ import edu.brown.mappings.ParameterMappingsSet;
 import edu.brown.markov.containers.MarkovGraphsContainer;
 import edu.brown.utils.CollectionUtil;
 import edu.brown.utils.PartitionEstimator;
+import edu.brown.utils.PartitionSet;
 import edu.brown.utils.Poolable;
 import edu.brown.utils.StringUtil;
 import edu.brown.utils.TypedPoolableObjectFactory;
-import edu.brown.utils.TypedStackObjectPool;
+import edu.brown.utils.TypedObjectPool;
 import edu.brown.workload.QueryTrace;
 import edu.brown.workload.TransactionTrace;
 
@@ -63,9 +63,9 @@ public class TransactionEstimator implements Loggable {
      */
     private static final double RECOMPUTE_TOLERANCE = (double) 0.5;
 
-    public static TypedStackObjectPool<MarkovPathEstimator> POOL_ESTIMATORS;
+    public static TypedObjectPool<MarkovPathEstimator> POOL_ESTIMATORS;
     
-    public static TypedStackObjectPool<TransactionEstimator.State> POOL_STATES;
+    public static TypedObjectPool<TransactionEstimator.State> POOL_STATES;
     
     
     // ----------------------------------------------------------------------------
@@ -98,7 +98,7 @@ public class TransactionEstimator implements Loggable {
     public static final class State implements Poolable {
         private final List<MarkovVertex> actual_path = new ArrayList<MarkovVertex>();
         private final List<MarkovEdge> actual_path_edges = new ArrayList<MarkovEdge>();
-        private final Set<Integer> touched_partitions = new HashSet<Integer>();
+        private final PartitionSet touched_partitions = new PartitionSet();
         private final Map<Statement, Integer> query_instance_cnts = new HashMap<Statement, Integer>();
         private final List<MarkovEstimate> estimates = new ArrayList<MarkovEstimate>();
         private final int num_partitions;
@@ -277,7 +277,7 @@ public class TransactionEstimator implements Loggable {
         public float getInitialPathConfidence() {
             return (this.initial_estimator.getConfidence());
         }
-        public Set<Integer> getTouchedPartitions() {
+        public PartitionSet getTouchedPartitions() {
             return (this.touched_partitions);
         }
         public void addTouchedPartitions(Collection<Integer> partitions) {
@@ -343,13 +343,15 @@ public class TransactionEstimator implements Loggable {
             if (POOL_STATES == null) {
                 if (d) LOG.debug("Creating TransactionEstimator.State Object Pool");
                 TypedPoolableObjectFactory<TransactionEstimator.State> s_factory = new State.Factory(this.num_partitions); 
-                POOL_STATES = new TypedStackObjectPool<TransactionEstimator.State>(s_factory,
-                        HStoreConf.singleton().site.pool_estimatorstates_idle);
+                POOL_STATES = new TypedObjectPool<TransactionEstimator.State>(s_factory,
+                        (int)(hstore_conf.site.pool_estimatorstates_idle * hstore_conf.site.pool_scale_factor),
+                        (int)(hstore_conf.site.pool_threadlocal_idle * hstore_conf.site.pool_scale_factor));
                 
                 if (d) LOG.debug("Creating MarkovPathEstimator Object Pool");
                 TypedPoolableObjectFactory<MarkovPathEstimator> m_factory = new MarkovPathEstimator.Factory(this.num_partitions);
-                POOL_ESTIMATORS = new TypedStackObjectPool<MarkovPathEstimator>(m_factory,
-                        HStoreConf.singleton().site.pool_pathestimators_idle);
+                POOL_ESTIMATORS = new TypedObjectPool<MarkovPathEstimator>(m_factory,
+                        (int)(hstore_conf.site.pool_pathestimators_idle * hstore_conf.site.pool_scale_factor),
+                        (int)(hstore_conf.site.pool_threadlocal_idle * hstore_conf.site.pool_scale_factor));
             }
         } // SYNC
     }
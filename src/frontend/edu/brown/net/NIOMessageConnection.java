@@ -26,13 +26,21 @@ package edu.brown.net;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.List;
 
 /** Sends and receives blocks of bytes. */
 public class NIOMessageConnection implements MessageConnection {
+    /** Size of the buffers that tryReadFrame() reads into. */
+    public static final int FRAME_BUFFER_SIZE = 64 * 1024;
+
+    /** Returned by tryReadFrame() when the connection is closed. */
+    private static final ByteBuffer CLOSED_FRAME = ByteBuffer.allocate(0);
+
     public NIOMessageConnection(SocketChannel channel) {
         this.channel = channel;
         try {
@@ -74,9 +82,135 @@ public class NIOMessageConnection implements MessageConnection {
         return result;
     }
 
+    /** Returns the next message as a view into this connection's read buffer, or null if a
+    complete message is not available. An empty buffer means that the connection was closed.
+    Unlike tryRead(), this does not copy the message. The region of the buffer that a view
+    points into is never reused, so it remains valid after later calls. Do not mix this with
+    tryRead() once a partial message may have been read. */
+    public ByteBuffer tryReadFrame() {
+        assert nextLength == 0 : "tryRead() is in the middle of a message";
+        while (true) {
+            int needed = Integer.SIZE/8;
+            if (frameBuffer != null && frameBuffer.remaining() >= Integer.SIZE/8) {
+                int length = frameBuffer.getInt(frameBuffer.position());
+                assert length > 0 : "Invalid message length " + length;
+                needed += length;
+                if (frameBuffer.remaining() >= needed) {
+                    int start = frameBuffer.position() + Integer.SIZE/8;
+                    frameBuffer.position(start + length);
+                    ByteBuffer view = frameBuffer.duplicate();
+                    view.limit(start + length);
+                    view.position(start);
+                    return view.slice();
+                }
+            }
+
+            int bytesRead = fillFrameBuffer(needed);
+            // connection closed
+            if (bytesRead == -1) return CLOSED_FRAME;
+            // Insufficient bytes
+            if (bytesRead == 0) return null;
+        }
+    }
+
+    /** Reads more data into the end of frameBuffer so that it can hold at least
+    needed unconsumed bytes. If there is not enough space left, the unconsumed bytes are moved
+    into a new buffer. We never compact the old one because there may still be views into it.
+    @returns number of bytes read, or -1 if the channel is closed. */
+    private int fillFrameBuffer(int needed) {
+        if (frameBuffer == null || frameBuffer.capacity() - frameBuffer.position() < needed) {
+            ByteBuffer next = ByteBuffer.allocate(Math.max(FRAME_BUFFER_SIZE, needed));
+            next.order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+            if (frameBuffer != null) next.put(frameBuffer);
+            next.flip();
+            frameBuffer = next;
+        }
+        final int position = frameBuffer.position();
+        final int limit = frameBuffer.limit();
+        assert limit < frameBuffer.capacity();
+
+        int bytesRead;
+        if (read.dataAvailable() > 0) {
+            // Anything that tryRead() buffered up comes first
+            bytesRead = Math.min(read.dataAvailable(), frameBuffer.capacity() - limit);
+            read.getBytes(frameBuffer.array(), frameBuffer.arrayOffset() + limit, bytesRead);
+        } else {
+            frameBuffer.position(limit);
+            frameBuffer.limit(frameBuffer.capacity());
+            try {
+                bytesRead = channel.read(frameBuffer);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                frameBuffer.position(position);
+            }
+        }
+        frameBuffer.limit(limit + Math.max(0, bytesRead));
+        return bytesRead;
+    }
+
     /** Writes message to the channel.
      * @return true if the entire message was written. */
     public boolean write(byte[] message) {
+        bufferMessage(message);
+        return tryWrite();
+    }
+
+    /** Writes all of the messages to the channel with a single gathering write. Anything that
+    does not fit in the socket is copied into the write buffers, as with write(). If the
+    connection is already blocked, all of the messages are just copied.
+    @return true if the write blocks and more data needs to be written. */
+    public boolean write(List<byte[]> messages) {
+        if (write.isEmpty() == false) {
+            for (byte[] message : messages) {
+                bufferMessage(message);
+            }
+            return tryWrite();
+        }
+
+        ByteBuffer[] buffers = new ByteBuffer[messages.size() * 2];
+        byte[] lengths = new byte[messages.size() * Integer.SIZE/8];
+        for (int i = 0; i < messages.size(); i++) {
+            byte[] message = messages.get(i);
+            if (message.length == 0) {
+                throw new IllegalArgumentException("message.length == 0: messages must contain data");
+            }
+            int offset = i * Integer.SIZE/8;
+            if (bigEndian) {
+                lengths[offset] = (byte)((message.length >> 24) & 0xff);
+                lengths[offset+1] = (byte)((message.length >> 16) & 0xff);
+                lengths[offset+2] = (byte)((message.length >> 8) & 0xff);
+                lengths[offset+3] = (byte)(message.length & 0xff);
+            } else {
+                lengths[offset] = (byte)(message.length & 0xff);
+                lengths[offset+1] = (byte)((message.length >> 8) & 0xff);
+                lengths[offset+2] = (byte)((message.length >> 16) & 0xff);
+                lengths[offset+3] = (byte)((message.length >> 24) & 0xff);
+            }
+            buffers[i*2] = ByteBuffer.wrap(lengths, offset, Integer.SIZE/8);
+            buffers[i*2 + 1] = ByteBuffer.wrap(message);
+        }
+
+        int next = 0;
+        try {
+            while (next < buffers.length) {
+                if (channel.write(buffers, next, buffers.length - next) == 0) break;
+                while (next < buffers.length && !buffers[next].hasRemaining()) next++;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (next == buffers.length) return false;
+
+        // write blocked: queue the rest for tryWrite()
+        for (int i = next; i < buffers.length; i++) {
+            copyBytes(buffers[i]);
+        }
+        return true;
+    }
+
+    /** Copies message and its length into the write buffers without writing it. */
+    private void bufferMessage(byte[] message) {
         if (message.length == 0) {
             throw new IllegalArgumentException("message.length == 0: messages must contain data");
         }
@@ -109,26 +243,29 @@ public class NIOMessageConnection implements MessageConnection {
             writeBuffer.put(intbytes, written, 4 - written);
         }
 
-        return rawWrite(message);
+        copyBytes(ByteBuffer.wrap(message));
     }
 
     /** Writes message directly to the connection, without prepending a length. Useful for
     communicating with other protocols. */
     // TODO: Add this to MessageConnection? Make an non-blocking stream interface?
     public boolean rawWrite(byte[] message) {
-        // Copy the message
-        int offset = 0;
-        while (offset < message.length) {
+        copyBytes(ByteBuffer.wrap(message));
+        return tryWrite();
+    }
+
+    /** Copies the remaining bytes of source into the write buffers. */
+    private void copyBytes(ByteBuffer source) {
+        while (source.hasRemaining()) {
             ByteBuffer writeBuffer = write.getNext();
             int bytesToWrite = writeBuffer.remaining();
-            int remaining = message.length - offset;
-            if (remaining < bytesToWrite) bytesToWrite = remaining;
+            if (source.remaining() < bytesToWrite) bytesToWrite = source.remaining();
 
-            writeBuffer.put(message, offset, bytesToWrite);
-            offset += bytesToWrite;
+            int limit = source.limit();
+            source.limit(source.position() + bytesToWrite);
+            writeBuffer.put(source);
+            source.limit(limit);
         }
-
-        return tryWrite();
     }
 
     /** @return true if the write blocks and more data may be written. */
@@ -168,4 +305,6 @@ public class NIOMessageConnection implements MessageConnection {
     private final NIOWriteStream write;
     private int nextLength = 0;
     private boolean bigEndian = false;
+    /** Read buffer for tryReadFrame(). Bytes between position and limit have not been consumed. */
+    private ByteBuffer frameBuffer = null;
 }
@@ -17,6 +17,11 @@ public class NIOWriteStream implements ZeroCopyOutputStream {
         return buffers.getWriteBuffer();
     }
 
+    /** @return true if there is no buffered data waiting to be written. */
+    public boolean isEmpty() {
+        return buffers.getReadBuffer() == null;
+    }
+
     /** @return true if there is more data to write and the write blocked. */
     public boolean flush() {
         ByteBuffer buffer;
@@ -24,6 +24,26 @@ public class ProtoConnection {
     private final CodedOutputStream codedOutput;
     private int nextMessageLength = -1;
 
+    /**
+     * Something that can serialize itself straight into the connection's output buffers,
+     * without first being built into a message object. This lets us write an envelope and the
+     * message that it wraps in one pass, rather than serializing the inner message to a
+     * ByteString and then copying it again when the envelope is serialized.
+     */
+    public interface Frame {
+        /** Returns the number of bytes that writeTo() will write. */
+        public int getSerializedSize();
+        public void writeTo(CodedOutputStream output) throws IOException;
+    }
+
+    /**
+     * Parses a single message straight out of the connection's input stream. The input is
+     * limited to the bytes of the message, so the parser should read until readTag() returns 0.
+     */
+    public interface FrameParser {
+        public void parseFrom(CodedInputStream input) throws IOException;
+    }
+
     public ProtoConnection(NonBlockingConnection connection) {
         this.connection = connection;
         input = connection.getInputStream();
@@ -54,35 +74,62 @@ public class ProtoConnection {
      */
     public boolean readBufferedMessage(MessageLite.Builder builder) {
         try {
-            if (nextMessageLength == -1) {
-                if (connection.available() < 4) {
-                    return false;
-                }
-    
-                input.setLimit(4);
-                nextMessageLength = codedInput.readRawLittleEndian32();
-            }
-            assert nextMessageLength >= 0;
-    
-            if (connection.available() < nextMessageLength) {
-                assert 0 <= connection.available() && connection.available() < nextMessageLength;
-                return false;
-            }
-    
-            // Parse the response for the next RPC
-            // TODO: Add .available() to CodedInputStream to avoid many copies to internal buffer?
-            // or make CodedInputStream wrap a non-blocking interface like C++?
-            input.setLimit(nextMessageLength);
+            if (!startBufferedMessage()) return false;
             builder.mergeFrom(codedInput);
-            assert codedInput.isAtEnd();
-            codedInput.resetSizeCounter();
-            nextMessageLength = -1;
+            finishBufferedMessage();
             return true;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /** Same as {@link #readBufferedMessage(MessageLite.Builder)}, except that the message is
+     * handed to parser instead of being merged into a builder.
+     * 
+     * @return true if a message was read, false if there is not enough buffered data to read a
+     *      message.
+     */
+    public boolean readBufferedMessage(FrameParser parser) {
+        try {
+            if (!startBufferedMessage()) return false;
+            parser.parseFrom(codedInput);
+            finishBufferedMessage();
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Returns true if the next message is completely buffered, and limits the input to it. */
+    private boolean startBufferedMessage() throws IOException {
+        if (nextMessageLength == -1) {
+            if (connection.available() < 4) {
+                return false;
+            }
+
+            input.setLimit(4);
+            nextMessageLength = codedInput.readRawLittleEndian32();
+        }
+        assert nextMessageLength >= 0;
+
+        if (connection.available() < nextMessageLength) {
+            assert 0 <= connection.available() && connection.available() < nextMessageLength;
+            return false;
+        }
+
+        // Parse the response for the next RPC
+        // TODO: Add .available() to CodedInputStream to avoid many copies to internal buffer?
+        // or make CodedInputStream wrap a non-blocking interface like C++?
+        input.setLimit(nextMessageLength);
+        return true;
+    }
+
+    private void finishBufferedMessage() throws IOException {
+        assert codedInput.isAtEnd();
+        codedInput.resetSizeCounter();
+        nextMessageLength = -1;
+    }
+
     public boolean tryWrite(MessageLite message) {
         try {
             codedOutput.writeRawLittleEndian32(message.getSerializedSize());
@@ -96,6 +143,23 @@ public class ProtoConnection {
         }
     }
 
+    /** Writes frame with the same length prefix as {@link #tryWrite(MessageLite)}. The frame is
+     * serialized directly into the connection's pooled direct ByteBuffers.
+     * 
+     * @return true if this connection blocked and now needs a write callback.
+     */
+    public boolean tryWrite(Frame frame) {
+        try {
+            codedOutput.writeRawLittleEndian32(frame.getSerializedSize());
+            frame.writeTo(codedOutput);
+            codedOutput.flush();
+
+            return connection.tryFlush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     // TODO: Only keep one of getConnection and getChannel?
     public NonBlockingConnection getConnection() {
         return connection;
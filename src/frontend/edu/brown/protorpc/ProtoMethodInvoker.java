@@ -1,6 +1,9 @@
 package edu.brown.protorpc;
 
+import java.io.IOException;
+
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.Descriptors.MethodDescriptor;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
@@ -26,4 +29,16 @@ public final class ProtoMethodInvoker {
 
         service.callMethod(method, controller, builder.build(), callback);
     }
+
+    /** Parse a request for this method directly out of input, which must be limited to the
+     * bytes of the request message. */
+    public Message parseRequest(CodedInputStream input) throws IOException {
+        Message.Builder builder = requestPrototype.newBuilderForType();
+        builder.mergeFrom(input);
+        return builder.build();
+    }
+
+    public void invoke(RpcController controller, Message request, RpcCallback<Message> callback) {
+        service.callMethod(method, controller, request, callback);
+    }
 }
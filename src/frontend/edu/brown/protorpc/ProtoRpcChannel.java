@@ -13,11 +13,16 @@ import ca.evanjones.protorpc.Protocol;
 import ca.evanjones.protorpc.Protocol.RpcRequest;
 import ca.evanjones.protorpc.Protocol.RpcResponse;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.Descriptors;
+import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import com.google.protobuf.RpcCallback;
 import com.google.protobuf.RpcChannel;
 import com.google.protobuf.RpcController;
+import com.google.protobuf.WireFormat;
 
 import edu.brown.net.NonBlockingConnection;
 
@@ -32,6 +37,14 @@ public class ProtoRpcChannel extends AbstractEventHandler implements RpcChannel
             new HashMap<Integer, ProtoRpcController>();
     private int reconnectIntervalSeconds;
 
+    /** Reused to write every request, protected by the lock on this. */
+    private final RequestFrame requestFrame = new RequestFrame();
+    /** Cache of the encoded method names, protected by the lock on this. */
+    private final HashMap<Descriptors.MethodDescriptor, ByteString> methodNames =
+            new HashMap<Descriptors.MethodDescriptor, ByteString>();
+    /** Reused to parse every response. Only used by the event loop thread. */
+    private final ResponseParser responseParser = new ResponseParser();
+
     /** A factory interface for connecting to an RPC server. */
     public interface ConnectFactory {
         /** Creates a new connection that is connecting. */
@@ -128,9 +141,15 @@ public class ProtoRpcChannel extends AbstractEventHandler implements RpcChannel
         synchronized (this) {
             pendingRpcs.put(sequence, rpc);
             // System.err.println("Sending RPC sequence " + sequence);
-            RpcRequest rpcRequest = makeRpcRequest(sequence, method, request);
+            ByteString methodName = methodNames.get(method);
+            if (methodName == null) {
+                methodName = ByteString.copyFromUtf8(method.getFullName());
+                methodNames.put(method, methodName);
+            }
+            requestFrame.set(sequence, methodName, request);
             sequence += 1;
-            boolean blocked = connection.tryWrite(rpcRequest);
+            boolean blocked = connection.tryWrite(requestFrame);
+            requestFrame.set(-1, null, null);
             if (blocked) {
                 // the write blocked: wait for write callbacks
                 if (debug) LOG.debug("registering write with eventLoop: " + eventLoop);
@@ -149,6 +168,90 @@ public class ProtoRpcChannel extends AbstractEventHandler implements RpcChannel
         return requestBuilder.build();
     }
 
+    /**
+     * Writes an RpcRequest with the request message serialized directly into it. The output is
+     * identical to makeRpcRequest(), but the request is not copied into a ByteString first.
+     */
+    private static final class RequestFrame implements ProtoConnection.Frame {
+        private int sequence;
+        private ByteString methodName;
+        private Message request;
+
+        public void set(int sequence, ByteString methodName, Message request) {
+            this.sequence = sequence;
+            this.methodName = methodName;
+            this.request = request;
+        }
+
+        @Override
+        public int getSerializedSize() {
+            return CodedOutputStream.computeInt32Size(RpcRequest.SEQUENCE_NUMBER_FIELD_NUMBER, sequence) +
+                   CodedOutputStream.computeBytesSize(RpcRequest.METHOD_NAME_FIELD_NUMBER, methodName) +
+                   CodedOutputStream.computeMessageSize(RpcRequest.REQUEST_FIELD_NUMBER, request);
+        }
+
+        @Override
+        public void writeTo(CodedOutputStream output) throws IOException {
+            output.writeInt32(RpcRequest.SEQUENCE_NUMBER_FIELD_NUMBER, sequence);
+            output.writeBytes(RpcRequest.METHOD_NAME_FIELD_NUMBER, methodName);
+            output.writeMessage(RpcRequest.REQUEST_FIELD_NUMBER, request);
+        }
+    }
+
+    /**
+     * Parses an RpcResponse without building it. The response message is merged straight
+     * into the builder of the pending RPC, so it is never copied into a ByteString.
+     */
+    private final class ResponseParser implements ProtoConnection.FrameParser {
+        private ProtoRpcController rpc;
+        private Protocol.Status status;
+        private String errorReason;
+
+        @Override
+        public void parseFrom(CodedInputStream input) throws IOException {
+            int sequence = -1;
+            rpc = null;
+            status = Protocol.Status.INVALID;
+            errorReason = null;
+
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                switch (WireFormat.getTagFieldNumber(tag)) {
+                    case RpcResponse.SEQUENCE_NUMBER_FIELD_NUMBER:
+                        sequence = input.readInt32();
+                        rpc = removePendingRpc(sequence);
+                        break;
+                    case RpcResponse.STATUS_FIELD_NUMBER:
+                        status = Protocol.Status.valueOf(input.readEnum());
+                        break;
+                    case RpcResponse.RESPONSE_FIELD_NUMBER: {
+                        // Fields are always serialized in order, so we know whose response this is
+                        if (rpc == null) {
+                            throw new InvalidProtocolBufferException(
+                                    "RpcResponse does not have a sequence number before its response");
+                        }
+                        int length = input.readRawVarint32();
+                        int oldLimit = input.pushLimit(length);
+                        rpc.mergeResponse(input);
+                        input.popLimit(oldLimit);
+                        break;
+                    }
+                    case RpcResponse.ERROR_REASON_FIELD_NUMBER:
+                        errorReason = input.readString();
+                        break;
+                    default:
+                        input.skipField(tag);
+                } // SWITCH
+            } // WHILE
+        }
+    }
+
+    private synchronized ProtoRpcController removePendingRpc(int sequence) {
+        ProtoRpcController rpc = pendingRpcs.remove(sequence);
+        assert rpc != null : "No ProtoRpcController for Sequence# " + sequence;
+        return rpc;
+    }
+
     @Override
     public void readCallback(SelectableChannel channel) {
         boolean isOpen = connection.readAllAvailable();
@@ -157,25 +260,16 @@ public class ProtoRpcChannel extends AbstractEventHandler implements RpcChannel
             throw new UnsupportedOperationException("Connection closed: not handled (for now).");
         }
 
-        while (true) {
-            RpcResponse.Builder builder = RpcResponse.newBuilder();
-            boolean success = connection.readBufferedMessage(builder);
-            if (!success) {
-                // TODO: Cache the builder object to reduce garbage?
-                break;
-            }
-
-            // Set the appropriate flags on the RPC object
+        while (connection.readBufferedMessage(responseParser)) {
             // TODO: Handle bad sequence number by ignoring/logging?
-            RpcResponse response = builder.build();
-            ProtoRpcController rpc = null;
-            synchronized (this) {
-                rpc = pendingRpcs.remove(response.getSequenceNumber());
-                assert response.getStatus() == Protocol.Status.OK;
-                assert rpc != null :
-                        "No ProtoRpcController for Sequence# " + response.getSequenceNumber();
+            ProtoRpcController rpc = responseParser.rpc;
+            responseParser.rpc = null;
+            assert responseParser.status == Protocol.Status.OK;
+            if (responseParser.status == Protocol.Status.OK) {
+                rpc.finishRpcSuccess();
+            } else {
+                rpc.finishRpcFailure(responseParser.status, responseParser.errorReason);
             }
-            rpc.finishRpcSuccess(response.getResponse());
         }
     }
 
@@ -239,12 +333,23 @@ public class ProtoRpcChannel extends AbstractEventHandler implements RpcChannel
     }
 
     private static final int RECONNECT_TIMEOUT_MS = 2000;
-    static final int TOTAL_CONNECT_TIMEOUT_MS = 30000;
+    public static final int TOTAL_CONNECT_TIMEOUT_MS = 30000;
     public static ProtoRpcChannel[] connectParallel(final EventLoop eventLoop, final InetSocketAddress[] addresses) {
         return connectParallel(eventLoop, addresses, TOTAL_CONNECT_TIMEOUT_MS);
     }
     
     public static ProtoRpcChannel[] connectParallel(final EventLoop eventLoop, final InetSocketAddress[] addresses, final int total_time) {
+        return connectParallel(eventLoop, addresses, total_time, null);
+    }
+
+    /**
+     * Connect to all of the addresses in parallel using eventLoop. If channelLoops is not null,
+     * then the channel for addresses[i] will use channelLoops[i] for all of its events once it
+     * is connected. Otherwise all of the channels will use eventLoop.
+     */
+    public static ProtoRpcChannel[] connectParallel(final EventLoop eventLoop, final InetSocketAddress[] addresses, final int total_time,
+                                                    final EventLoop[] channelLoops) {
+        assert channelLoops == null || channelLoops.length == addresses.length;
         class ExitLoopHandler extends AbstractEventHandler {
             @Override
             public void timerCallback() {
@@ -326,7 +431,8 @@ public class ProtoRpcChannel extends AbstractEventHandler implements RpcChannel
         if (exitLoopHandler.barrierCount == 0) {
             ProtoRpcChannel[] rpcChannels = new ProtoRpcChannel[addresses.length];
             for (int i = 0; i < channels.length; ++i) {
-                rpcChannels[i] = new ProtoRpcChannel(eventLoop,
+                EventLoop channelLoop = (channelLoops != null ? channelLoops[i] : eventLoop);
+                rpcChannels[i] = new ProtoRpcChannel(channelLoop,
                         new StaticConnectFactory(new NonBlockingConnection(channels[i].channel)));
             }
             return rpcChannels;
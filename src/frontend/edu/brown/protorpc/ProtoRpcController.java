@@ -1,8 +1,11 @@
 package edu.brown.protorpc;
 
+import java.io.IOException;
+
 import ca.evanjones.protorpc.Protocol;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import com.google.protobuf.RpcCallback;
@@ -115,24 +118,42 @@ public class ProtoRpcController implements RpcController {
 
     public void finishRpcSuccess(ByteString response) {
         assert response != null;
-        finishRpc(Protocol.Status.OK, response, null);
+        assert callback != null;
+        try {
+            builder.mergeFrom(response);
+        } catch (InvalidProtocolBufferException e) {
+            System.err.println("RESPONSE: " + StringUtil.hexDump(response));
+            System.err.println("BUILDER:  " + builder.toString());
+            throw new RuntimeException(e);
+        }
+        finishRpc(Protocol.Status.OK, null);
+    }
+
+    /** Parse the response for this RPC directly out of input, which must be limited to
+     * the bytes of the response message. Call {@link #finishRpcSuccess()} afterwards. */
+    public void mergeResponse(CodedInputStream input) throws IOException {
+        assert callback != null;
+        builder.mergeFrom(input);
+    }
+
+    /** Finish an RPC whose response has already been passed to {@link #mergeResponse}. */
+    public void finishRpcSuccess() {
+        finishRpc(Protocol.Status.OK, null);
     }
 
     public void finishRpcFailure(Protocol.Status status, String errorText) {
-        finishRpc(status, null, errorText);
+        finishRpc(status, errorText);
     }
 
-    private void finishRpc(Protocol.Status status, ByteString response, String errorText) {
+    private void finishRpc(Protocol.Status status, String errorText) {
         assert this.status == Protocol.Status.INVALID : "Status = " + this.status;
         assert callback != null;
 
         assert status != Protocol.Status.INVALID;
         boolean success = status == Protocol.Status.OK;
         if (success) {
-            assert response != null;
             assert errorText == null;
         } else {
-            assert response == null;
             assert errorText != null;
         }
 
@@ -147,14 +168,7 @@ public class ProtoRpcController implements RpcController {
 
         Message result = null;
         if (success) {
-            try {
-                tempBuilder.mergeFrom(response);
-                result = tempBuilder.build();
-            } catch (InvalidProtocolBufferException e) {
-                System.err.println("RESPONSE: " + StringUtil.hexDump(response));
-                System.err.println("BUILDER:  " + tempBuilder.toString());
-                throw new RuntimeException(e);
-            }
+            result = tempBuilder.build();
         }
         tempCallback.run(result);
     }
@@ -12,11 +12,14 @@ import ca.evanjones.protorpc.Protocol;
 import ca.evanjones.protorpc.Protocol.RpcRequest;
 import ca.evanjones.protorpc.Protocol.RpcResponse;
 
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import com.google.protobuf.RpcCallback;
 import com.google.protobuf.RpcController;
 import com.google.protobuf.Service;
+import com.google.protobuf.WireFormat;
 
 import edu.brown.net.NonBlockingConnection;
 
@@ -24,7 +27,17 @@ public class ProtoServer extends AbstractEventHandler {
     private static final Logger LOG = Logger.getLogger(ProtoServer.class);
     
     public ProtoServer(EventLoop eventLoop) {
+        this(eventLoop, new EventLoop[] { eventLoop });
+    }
+
+    /**
+     * Accepts connections in eventLoop, but hands each accepted connection off to one of
+     * connectionLoops (round-robin). All reads and writes for a connection happen in its loop.
+     */
+    public ProtoServer(EventLoop eventLoop, EventLoop[] connectionLoops) {
+        assert connectionLoops.length > 0;
         this.eventLoop = eventLoop;
+        this.connectionLoops = connectionLoops;
     }
 
     @Override
@@ -41,16 +54,31 @@ public class ProtoServer extends AbstractEventHandler {
 
         // wrap it in a message connection and register with event loop
         ProtoConnection connection = new ProtoConnection(new NonBlockingConnection(client));
-
-        eventLoop.registerRead(client, new EventCallbackWrapper(connection));
+        final EventLoop connectionLoop = connectionLoops[nextConnectionLoop];
+        nextConnectionLoop = (nextConnectionLoop + 1) % connectionLoops.length;
+        final SocketChannel connectionChannel = client;
+        final EventCallbackWrapper wrapper = new EventCallbackWrapper(connection, connectionLoop);
+
+        if (connectionLoop == eventLoop) {
+            eventLoop.registerRead(client, wrapper);
+        } else {
+            // Registering with another loop's selector would block until that loop wakes up
+            connectionLoop.runInEventThread(new Runnable() {
+                @Override
+                public void run() {
+                    connectionLoop.registerRead(connectionChannel, wrapper);
+                }
+            });
+        }
 //        SelectionKey clientKey = connection.register(selector);
 //        clientKey.attach(connection);
 //        eventQueue.add(new Event(connection, null));
     }
 
     private class EventCallbackWrapper extends AbstractEventHandler {
-        public EventCallbackWrapper(ProtoConnection connection) {
+        public EventCallbackWrapper(ProtoConnection connection, EventLoop eventLoop) {
             this.connection = connection;
+            this.eventLoop = eventLoop;
         }
 
         @Override
@@ -64,9 +92,18 @@ public class ProtoServer extends AbstractEventHandler {
         }
 
         private final ProtoConnection connection;
-
-        public synchronized void writeResponse(RpcResponse output) {
-            boolean blocked = connection.tryWrite(output);
+        /** The event loop that handles all of this connection's events */
+        private final EventLoop eventLoop;
+        /** Only used by the event loop thread that reads from this connection. */
+        private final RequestParser requestParser = new RequestParser();
+        /** Reused to write every response, protected by the lock on this. */
+        private final ResponseFrame responseFrame = new ResponseFrame();
+
+        public synchronized void writeResponse(int sequence, Protocol.Status status,
+                Message response, String errorReason) {
+            responseFrame.set(sequence, status, response, errorReason);
+            boolean blocked = connection.tryWrite(responseFrame);
+            responseFrame.set(-1, Protocol.Status.INVALID, null, null);
             if (blocked) {
                 // write blocked: wait for the write callback
                 eventLoop.registerWrite(connection.getChannel(), this);
@@ -83,25 +120,104 @@ public class ProtoServer extends AbstractEventHandler {
             return;
         }
 
-        while (true) {
-            RpcRequest.Builder requestBuilder = RpcRequest.newBuilder();
-            boolean hasMessage = eventLoopCallback.connection.readBufferedMessage(requestBuilder);
-            if (!hasMessage) {
-                break;
-            }
-
-            RpcRequest request = requestBuilder.build();
-    //        System.out.println(request.getMethodName() + " " + request.getRequest().size());
-
+        RequestParser parser = eventLoopCallback.requestParser;
+        while (eventLoopCallback.connection.readBufferedMessage(parser)) {
             // Handle the request
-            ProtoMethodInvoker invoker = serviceRegistry.getInvoker(request.getMethodName());
             // TODO: Reuse callback objects?
             ProtoServerCallback callback =
-                    new ProtoServerCallback(eventLoopCallback, request.getSequenceNumber());
-            try {
-                invoker.invoke(callback.controller, request.getRequest(), callback);
-            } catch (InvalidProtocolBufferException e) {
-                throw new RuntimeException(e);
+                    new ProtoServerCallback(eventLoopCallback, parser.sequence);
+            Message request = parser.request;
+            parser.request = null;
+            parser.invoker.invoke(callback.controller, request, callback);
+        }
+    }
+
+    /**
+     * Parses an RpcRequest without building it. The request message is parsed straight out of
+     * the connection's input using the prototype of the method that it is for, so it is never
+     * copied into a ByteString.
+     */
+    private final class RequestParser implements ProtoConnection.FrameParser {
+        private int sequence;
+        private ProtoMethodInvoker invoker;
+        private Message request;
+
+        @Override
+        public void parseFrom(CodedInputStream input) throws IOException {
+            sequence = -1;
+            invoker = null;
+            request = null;
+
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                switch (WireFormat.getTagFieldNumber(tag)) {
+                    case RpcRequest.SEQUENCE_NUMBER_FIELD_NUMBER:
+                        sequence = input.readInt32();
+                        break;
+                    case RpcRequest.METHOD_NAME_FIELD_NUMBER:
+                        invoker = serviceRegistry.getInvoker(input.readBytes());
+                        break;
+                    case RpcRequest.REQUEST_FIELD_NUMBER: {
+                        // Fields are always serialized in order, so we know what type this is
+                        if (invoker == null) {
+                            throw new InvalidProtocolBufferException(
+                                    "RpcRequest does not have a method name before its request");
+                        }
+                        int length = input.readRawVarint32();
+                        int oldLimit = input.pushLimit(length);
+                        request = invoker.parseRequest(input);
+                        input.popLimit(oldLimit);
+                        break;
+                    }
+                    default:
+                        input.skipField(tag);
+                } // SWITCH
+            } // WHILE
+            if (request == null) {
+                throw new InvalidProtocolBufferException("RpcRequest is missing required fields");
+            }
+        }
+    }
+
+    /**
+     * Writes an RpcResponse with the response message serialized directly into it, rather than
+     * copying the response into a ByteString first.
+     */
+    private static final class ResponseFrame implements ProtoConnection.Frame {
+        private int sequence;
+        private Protocol.Status status;
+        private Message response;
+        private String errorReason;
+
+        public void set(int sequence, Protocol.Status status, Message response, String errorReason) {
+            this.sequence = sequence;
+            this.status = status;
+            this.response = response;
+            this.errorReason = errorReason;
+        }
+
+        @Override
+        public int getSerializedSize() {
+            int size = CodedOutputStream.computeInt32Size(RpcResponse.SEQUENCE_NUMBER_FIELD_NUMBER, sequence) +
+                       CodedOutputStream.computeEnumSize(RpcResponse.STATUS_FIELD_NUMBER, status.getNumber());
+            if (response != null) {
+                size += CodedOutputStream.computeMessageSize(RpcResponse.RESPONSE_FIELD_NUMBER, response);
+            }
+            if (errorReason != null) {
+                size += CodedOutputStream.computeStringSize(RpcResponse.ERROR_REASON_FIELD_NUMBER, errorReason);
+            }
+            return size;
+        }
+
+        @Override
+        public void writeTo(CodedOutputStream output) throws IOException {
+            output.writeInt32(RpcResponse.SEQUENCE_NUMBER_FIELD_NUMBER, sequence);
+            output.writeEnum(RpcResponse.STATUS_FIELD_NUMBER, status.getNumber());
+            if (response != null) {
+                output.writeMessage(RpcResponse.RESPONSE_FIELD_NUMBER, response);
+            }
+            if (errorReason != null) {
+                output.writeString(RpcResponse.ERROR_REASON_FIELD_NUMBER, errorReason);
             }
         }
     }
@@ -172,22 +288,16 @@ public class ProtoServer extends AbstractEventHandler {
                 throw new IllegalStateException("response callback must only be called once");
             }
 
-            RpcResponse.Builder responseMessage = RpcResponse.newBuilder();
-            responseMessage.setSequenceNumber(sequence);
             assert controller.status != Protocol.Status.INVALID;
-            responseMessage.setStatus(controller.status);
-            if (response != null) {
-                responseMessage.setResponse(response.toByteString());
-            } else {
+            if (response == null) {
                 // No message: we must have failed
                 assert controller.status != Protocol.Status.OK;
             }
             if (controller.errorReason != null) {
                 assert controller.status != Protocol.Status.OK;
-                responseMessage.setErrorReason(controller.errorReason);
             }
 
-            eventLoopCallback.writeResponse(responseMessage.build());
+            eventLoopCallback.writeResponse(sequence, controller.status, response, controller.errorReason);
             eventLoopCallback = null;
         }
     }
@@ -218,6 +328,8 @@ public class ProtoServer extends AbstractEventHandler {
     }
 
     private EventLoop eventLoop;
+    private final EventLoop[] connectionLoops;
+    private int nextConnectionLoop = 0;
     private ServerSocketChannel serverSocket;
     private final ServiceRegistry serviceRegistry = new ServiceRegistry();
 }
@@ -2,6 +2,7 @@ package edu.brown.protorpc;
 
 import java.util.HashMap;
 
+import com.google.protobuf.ByteString;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.Descriptors.MethodDescriptor;
 import com.google.protobuf.Service;
@@ -17,7 +18,9 @@ public final class ServiceRegistry {
                 throw new IllegalStateException(
                         "method " + i.getFullName() + " is already registered");
             }
-            methods.put(i.getFullName(), new ProtoMethodInvoker(service, i));
+            ProtoMethodInvoker invoker = new ProtoMethodInvoker(service, i);
+            methods.put(i.getFullName(), invoker);
+            encodedMethods.put(ByteString.copyFromUtf8(i.getFullName()), invoker);
         }
     }
 
@@ -29,6 +32,18 @@ public final class ServiceRegistry {
         return invoker;
     }
 
+    /** Same as {@link #getInvoker(String)}, but looks up the UTF-8 encoded method name so
+     * that it does not need to be decoded for every request. */
+    public ProtoMethodInvoker getInvoker(ByteString fullMethodName) {
+        ProtoMethodInvoker invoker = encodedMethods.get(fullMethodName);
+        if (invoker == null) {
+            throw new RuntimeException("method not found: " + fullMethodName.toStringUtf8());
+        }
+        return invoker;
+    }
+
     private final HashMap<String, ProtoMethodInvoker> methods =
         new HashMap<String, ProtoMethodInvoker>();
+    private final HashMap<ByteString, ProtoMethodInvoker> encodedMethods =
+        new HashMap<ByteString, ProtoMethodInvoker>();
 }
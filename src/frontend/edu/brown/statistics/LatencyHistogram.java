@@ -0,0 +1,227 @@
+package edu.brown.statistics;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONStringer;
+import org.voltdb.catalog.Database;
+
+import edu.brown.utils.JSONSerializable;
+import edu.brown.utils.JSONUtil;
+
+/**
+ * Fixed-memory histogram of latencies (in nanoseconds) with logarithmic buckets.
+ * Every power of two is split into SUB_BUCKETS linear buckets, so any value is
+ * reported within 1/SUB_BUCKETS (~6%) of what was recorded, no matter how large it is.
+ * <p>
+ * Recording a value is just a few bit operations and an atomic increment, so
+ * it does not allocate anything or take any locks and it can be called from
+ * any number of threads at once. Use copy() to get a consistent snapshot that
+ * percentiles can be computed from and that other histograms can be merged into.
+ */
+public class LatencyHistogram implements JSONSerializable {
+
+    public enum Members {
+        COUNT,
+        SUM,
+        MAX,
+        BUCKETS,
+    }
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    protected static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count = new AtomicLong(0);
+    private final AtomicLong sum = new AtomicLong(0);
+    private final AtomicLong max = new AtomicLong(0);
+
+    public LatencyHistogram() {
+        // Nothing...
+    }
+
+    // ----------------------------------------------------------------------------
+    // BUCKET MATH
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Returns the bucket that the given value belongs to
+     */
+    protected static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) return ((int)Math.max(0, value));
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return ((shift * SUB_BUCKETS) + (int)(value >>> shift));
+    }
+
+    /**
+     * Returns the largest value that falls into the given bucket
+     */
+    protected static long bucketUpperBound(int idx) {
+        if (idx < SUB_BUCKETS) return (idx);
+        int shift = (idx / SUB_BUCKETS) - 1;
+        long mantissa = idx - (shift * SUB_BUCKETS);
+        return (((mantissa + 1) << shift) - 1);
+    }
+
+    // ----------------------------------------------------------------------------
+    // RECORDING
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Record a single latency measurement
+     * @param value the latency in nanoseconds
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        this.buckets.incrementAndGet(bucketIndex(value));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(value);
+        long cur_max = this.max.get();
+        while (value > cur_max && this.max.compareAndSet(cur_max, value) == false) {
+            cur_max = this.max.get();
+        } // WHILE
+    }
+
+    /**
+     * Add all of the measurements in the given histogram into this one
+     * @param other
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            long ctr = other.buckets.get(i);
+            if (ctr > 0) this.buckets.addAndGet(i, ctr);
+        } // FOR
+        this.count.addAndGet(other.count.get());
+        this.sum.addAndGet(other.sum.get());
+        long other_max = other.max.get();
+        long cur_max = this.max.get();
+        while (other_max > cur_max && this.max.compareAndSet(cur_max, other_max) == false) {
+            cur_max = this.max.get();
+        } // WHILE
+    }
+
+    /**
+     * Returns a snapshot of this histogram. The copy is not updated
+     * by any measurements that are recorded afterwards.
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.merge(this);
+        return (copy);
+    }
+
+    public void clear() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            this.buckets.set(i, 0);
+        } // FOR
+        this.count.set(0);
+        this.sum.set(0);
+        this.max.set(0);
+    }
+
+    // ----------------------------------------------------------------------------
+    // STATISTICS
+    // ----------------------------------------------------------------------------
+
+    public long getCount() {
+        return (this.count.get());
+    }
+    public boolean isEmpty() {
+        return (this.count.get() == 0);
+    }
+    public long getMax() {
+        return (this.max.get());
+    }
+    public double getMean() {
+        long ctr = this.count.get();
+        return (ctr > 0 ? this.sum.get() / (double)ctr : 0d);
+    }
+
+    /**
+     * Returns the latency that the given percentage of the measurements are
+     * less than or equal to. This should only be called on a snapshot from copy().
+     * @param percentile a value between 0 and 100
+     * @return the latency in nanoseconds
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            total += this.buckets.get(i);
+        } // FOR
+        if (total == 0) return (0);
+
+        long target = (long)Math.ceil((Math.min(100d, Math.max(0d, percentile)) / 100d) * total);
+        if (target < 1) target = 1;
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += this.buckets.get(i);
+            if (seen >= target) return (Math.min(bucketUpperBound(i), this.max.get()));
+        } // FOR
+        return (this.max.get());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d txns / %.2fms avg / %.2fms p50 / %.2fms p95 / %.2fms p99 / %.2fms p999 / %.2fms max",
+                             this.getCount(),
+                             this.getMean() / 1000000d,
+                             this.getValueAtPercentile(50) / 1000000d,
+                             this.getValueAtPercentile(95) / 1000000d,
+                             this.getValueAtPercentile(99) / 1000000d,
+                             this.getValueAtPercentile(99.9) / 1000000d,
+                             this.getMax() / 1000000d);
+    }
+
+    // ----------------------------------------------------------------------------
+    // SERIALIZATION METHODS
+    // ----------------------------------------------------------------------------
+
+    @Override
+    public void load(String input_path, Database catalog_db) throws IOException {
+        JSONUtil.load(this, catalog_db, input_path);
+    }
+
+    @Override
+    public void save(String output_path) throws IOException {
+        JSONUtil.save(this, output_path);
+    }
+
+    @Override
+    public String toJSONString() {
+        return (JSONUtil.toJSONString(this));
+    }
+
+    @Override
+    public void toJSON(JSONStringer stringer) throws JSONException {
+        stringer.key(Members.COUNT.name()).value(this.count.get());
+        stringer.key(Members.SUM.name()).value(this.sum.get());
+        stringer.key(Members.MAX.name()).value(this.max.get());
+        // Only the non-empty buckets are written out
+        stringer.key(Members.BUCKETS.name()).object();
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            long ctr = this.buckets.get(i);
+            if (ctr > 0) stringer.key(Integer.toString(i)).value(ctr);
+        } // FOR
+        stringer.endObject();
+    }
+
+    @Override
+    public void fromJSON(JSONObject json_object, Database catalog_db) throws JSONException {
+        this.clear();
+        this.count.set(json_object.getLong(Members.COUNT.name()));
+        this.sum.set(json_object.getLong(Members.SUM.name()));
+        this.max.set(json_object.getLong(Members.MAX.name()));
+        JSONObject json_buckets = json_object.getJSONObject(Members.BUCKETS.name());
+        @SuppressWarnings("unchecked")
+        Iterator<String> keys = json_buckets.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            this.buckets.set(Integer.parseInt(key), json_buckets.getLong(key));
+        } // WHILE
+    }
+}
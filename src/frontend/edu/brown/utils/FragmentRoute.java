@@ -0,0 +1,187 @@
+package edu.brown.utils;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+import org.voltdb.catalog.Column;
+import org.voltdb.catalog.PlanFragment;
+
+import edu.brown.hashing.AbstractHasher;
+
+/**
+ * The partitions that a PlanFragment needs to go to, compiled down into a flat function
+ * of its input parameters. The PartitionEstimator builds one of these for each PlanFragment
+ * from its CacheEntry when the catalog is loaded. After that, routing a fragment is just a
+ * loop over the tables that it touches. There are no map look-ups, catalog keys, or
+ * boxed partition sets involved. The partitions are written into a PartitionSet.
+ * <p>
+ * Each table that the fragment touches is compiled into one of these operations:
+ * <ul>
+ * <li><b>LOCAL</b>: Read from a replicated table, so it goes to the base partition</li>
+ * <li><b>HASH</b>: Hash the parameters at the given offsets on the table's partitioning column</li>
+ * <li><b>MULTI_HASH</b>: Hash the parameters for each column of a MultiColumn and then combine them</li>
+ * </ul>
+ * If any table needs to be broadcast, then the whole route is just all of the partitions.
+ */
+public final class FragmentRoute {
+
+    protected static final byte LOCAL = 0;
+    protected static final byte HASH = 1;
+    protected static final byte MULTI_HASH = 2;
+
+    private final PlanFragment catalog_frag;
+    private final AbstractHasher hasher;
+    private final int num_partitions;
+
+    /**
+     * If this is true, then the fragment always goes to every partition
+     */
+    private final boolean broadcast;
+
+    /** TableIdx -> Operation */
+    private final byte ops[];
+    /** TableIdx -> Partitioning Column (HASH) */
+    private final Column columns[];
+    /** TableIdx -> StmtParameter offsets (HASH) */
+    private final int offsets[][];
+    /** TableIdx -> MultiColumn Sub-Column (MULTI_HASH) */
+    private final Column mc_columns[][];
+    /** TableIdx -> MultiColumn Sub-Column -> StmtParameter offsets (MULTI_HASH) */
+    private final int mc_offsets[][][];
+
+    /**
+     * Constructor for a fragment that needs to be sent to all partitions
+     */
+    protected FragmentRoute(PlanFragment catalog_frag, AbstractHasher hasher, int num_partitions) {
+        this(catalog_frag, hasher, num_partitions, true, new byte[0], null, null, null, null);
+    }
+
+    /**
+     * Full Constructor
+     */
+    protected FragmentRoute(PlanFragment catalog_frag, AbstractHasher hasher, int num_partitions, boolean broadcast,
+                            byte ops[], Column columns[], int offsets[][], Column mc_columns[][], int mc_offsets[][][]) {
+        this.catalog_frag = catalog_frag;
+        this.hasher = hasher;
+        this.num_partitions = num_partitions;
+        this.broadcast = broadcast;
+        this.ops = ops;
+        this.columns = columns;
+        this.offsets = offsets;
+        this.mc_columns = mc_columns;
+        this.mc_offsets = mc_offsets;
+    }
+
+    public PlanFragment getPlanFragment() {
+        return (this.catalog_frag);
+    }
+
+    public boolean isBroadcast() {
+        return (this.broadcast);
+    }
+
+    /**
+     * Add the partitions that this fragment needs to go to for the given
+     * parameters into the given PartitionSet. If the fragment doesn't touch any
+     * tables (i.e., it just combines the output of other fragments), then nothing
+     * is added and it is up to the caller to figure out where it should go.
+     * @param params
+     * @param base_partition the txn's base partition, or -1 if there isn't one
+     * @param partitions
+     */
+    public void route(final Object params[], final int base_partition, final PartitionSet partitions) {
+        if (this.broadcast) {
+            partitions.addRange(0, this.num_partitions);
+            return;
+        }
+        for (int table_idx = 0; table_idx < this.ops.length; table_idx++) {
+            switch (this.ops[table_idx]) {
+                case LOCAL:
+                    if (base_partition >= 0) partitions.add(base_partition);
+                    break;
+                case HASH:
+                    this.hash(params, this.offsets[table_idx], this.columns[table_idx], partitions);
+                    break;
+                case MULTI_HASH:
+                    this.multiHash(params, table_idx, partitions);
+                    break;
+                default:
+                    assert(false) : "Unexpected operation " + this.ops[table_idx];
+            } // SWITCH
+        } // FOR
+    }
+
+    /**
+     * Hash each of the parameters at the given offsets. If a parameter is an array,
+     * then every element in it is hashed.
+     */
+    private void hash(final Object params[], final int param_offsets[], final Column catalog_col, final PartitionSet partitions) {
+        for (int i = 0; i < param_offsets.length; i++) {
+            Object value = params[param_offsets[i]];
+            if (value != null && value.getClass().isArray()) {
+                if (value instanceof long[]) {
+                    for (long element : (long[])value) {
+                        partitions.add(this.hasher.hash(element, catalog_col));
+                    } // FOR
+                } else {
+                    for (int ii = 0, cnt = Array.getLength(value); ii < cnt; ii++) {
+                        partitions.add(this.hasher.hash(Array.get(value, ii), catalog_col));
+                    } // FOR
+                }
+            } else {
+                partitions.add(this.hasher.hash(value, catalog_col));
+            }
+        } // FOR
+    }
+
+    /**
+     * Multi-column partitioning is rare enough that we just allocate the
+     * temporary bitmaps that we need for the cross product
+     */
+    private void multiHash(final Object params[], final int table_idx, final PartitionSet partitions) {
+        Column sub_columns[] = this.mc_columns[table_idx];
+        PartitionSet sub_partitions[] = new PartitionSet[sub_columns.length];
+        for (int i = 0; i < sub_columns.length; i++) {
+            sub_partitions[i] = new PartitionSet(this.num_partitions);
+            int sub_offsets[] = this.mc_offsets[table_idx][i];
+            if (sub_offsets != null) this.hash(params, sub_offsets, sub_columns[i], sub_partitions[i]);
+
+            // Unless we have partition values for all of the keys,
+            // then it has to be a broadcast
+            if (sub_partitions[i].isEmpty()) {
+                partitions.addRange(0, this.num_partitions);
+                return;
+            }
+        } // FOR
+        for (int part0 = sub_partitions[0].next(0); part0 != -1; part0 = sub_partitions[0].next(part0 + 1)) {
+            for (int part1 = sub_partitions[1].next(0); part1 != -1; part1 = sub_partitions[1].next(part1 + 1)) {
+                partitions.add(this.hasher.multiValueHash(part0, part1));
+            } // FOR
+        } // FOR
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(this.getClass().getSimpleName()).append("[").append(this.catalog_frag.fullName());
+        if (this.broadcast) {
+            sb.append(", BROADCAST");
+        } else {
+            for (int i = 0; i < this.ops.length; i++) {
+                sb.append(", ");
+                switch (this.ops[i]) {
+                    case LOCAL:
+                        sb.append("LOCAL");
+                        break;
+                    case HASH:
+                        sb.append("HASH").append(Arrays.toString(this.offsets[i]));
+                        break;
+                    case MULTI_HASH:
+                        sb.append("MULTI_HASH").append(Arrays.deepToString(this.mc_offsets[i]));
+                        break;
+                } // SWITCH
+            } // FOR
+        }
+        return (sb.append("]").toString());
+    }
+}
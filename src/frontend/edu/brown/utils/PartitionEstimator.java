@@ -117,6 +117,22 @@ public class PartitionEstimator {
      */
     private final Map<String, Set<CacheEntry>> table_cache_xref = new HashMap<String, Set<CacheEntry>>();
 
+    /**
+     * PlanFragment Id -> Compiled FragmentRoute
+     * This array is copied whenever we add a new route, so readers never need to lock it
+     */
+    private volatile FragmentRoute frag_routes[] = new FragmentRoute[0];
+
+    /**
+     * Scratch PartitionSet that each thread uses to collect the partitions for a FragmentRoute
+     * when the caller gives us some other type of Set
+     */
+    private final ThreadLocal<PartitionSet> route_partitions = new ThreadLocal<PartitionSet>() {
+        protected PartitionSet initialValue() {
+            return (new PartitionSet());
+        };
+    };
+
     /**
      * CacheEntry ColumnKey -> Set<StmtParameterIndex>
      */
@@ -394,6 +410,7 @@ public class PartitionEstimator {
         for (CacheEntry entry : this.cache_statementEntries.values()) {
             entry.cache_valid = false;
         }
+        this.frag_routes = new FragmentRoute[0];
 
         // Generate a list of all the partition ids, so that we can quickly
         // add them to the output when estimating later on
@@ -417,6 +434,7 @@ public class PartitionEstimator {
         this.cache_fragmentEntries.clear();
         this.cache_statementEntries.clear();
         this.cache_stmtPartitionParameters.clear();
+        this.frag_routes = new FragmentRoute[0];
     }
 
     // ----------------------------------------------------------------------------
@@ -1027,7 +1045,8 @@ public class PartitionEstimator {
         for (PlanFragment catalog_frag : fragments) {
             try {
                 Map<String, Set<Integer>> frag_partitions = new HashMap<String, Set<Integer>>();
-                this.calculatePartitionsForFragment(frag_partitions, null, catalog_frag, params, base_partition);
+                // The compiled FragmentRoutes don't keep track of tables, so we have to walk the CacheEntry
+                this.calculatePartitionsForCache(frag_partitions, null, this.getFragmentCacheEntry(catalog_frag), params, base_partition);
                 for (String table_key : frag_partitions.keySet()) {
                     if (!all_partitions.containsKey(table_key)) {
                         all_partitions.put(table_key, frag_partitions.get(table_key));
@@ -1142,7 +1161,7 @@ public class PartitionEstimator {
             if (frag_partitions != null) {
                 partitions = frag_partitions.get(catalog_frag);
                 if (partitions == null) {
-                    partitions = new HashSet<Integer>();
+                    partitions = new PartitionSet(this.num_partitions);
                     frag_partitions.put(catalog_frag, partitions);
                 } else {
                     partitions.clear();
@@ -1153,7 +1172,7 @@ public class PartitionEstimator {
             }
             assert (partitions != null);
 
-            this.calculatePartitionsForFragment(null, partitions, catalog_frag, params, base_partition);
+            this.calculatePartitionsForFragment(partitions, catalog_frag, params, base_partition);
 
             // If there were no partitions, then the PlanFragment needs to be
             // execute on the base partition
@@ -1181,7 +1200,25 @@ public class PartitionEstimator {
      */
     public Set<Integer> getPartitions(final PlanFragment catalog_frag, Object params[], Integer base_partition) throws Exception {
         Set<Integer> partitions = new HashSet<Integer>();
-        this.calculatePartitionsForFragment(null, partitions, catalog_frag, params, base_partition);
+        this.calculatePartitionsForFragment(partitions, catalog_frag, params, base_partition);
+        return (partitions);
+    }
+
+    /**
+     * Add the partitions that this fragment needs to be sent to based on the
+     * parameters into the given PartitionSet. This uses the PlanFragment's compiled
+     * FragmentRoute, so it does not allocate anything.
+     * Note that nothing is added for fragments that do not touch any tables.
+     * 
+     * @param catalog_frag
+     * @param params
+     * @param base_partition the base partition, or -1 if there isn't one
+     * @param partitions
+     * @return the partitions
+     * @throws Exception
+     */
+    public PartitionSet getPartitions(final PlanFragment catalog_frag, Object params[], int base_partition, PartitionSet partitions) throws Exception {
+        this.getFragmentRoute(catalog_frag).route(params, base_partition, partitions);
         return (partitions);
     }
 
@@ -1196,21 +1233,135 @@ public class PartitionEstimator {
      * @return
      * @throws Exception
      */
-    private void calculatePartitionsForFragment(final Map<String, Set<Integer>> entry_partitions, final Set<Integer> all_partitions, PlanFragment catalog_frag, Object params[], Integer base_partition)
+    private void calculatePartitionsForFragment(final Set<Integer> all_partitions, PlanFragment catalog_frag, Object params[], Integer base_partition)
             throws Exception {
         if (trace.get())
             LOG.trace("Estimating partitions for PlanFragment #" + catalog_frag.fullName());
-        PartitionEstimator.CacheEntry cache_entry = this.getFragmentCacheEntry(catalog_frag);
-        this.calculatePartitionsForCache(entry_partitions, all_partitions, cache_entry, params, base_partition);
-        if (debug.get()) {
-            if (entry_partitions != null)
-                LOG.debug(String.format("%s Table Partitions: %s", catalog_frag.fullName(), entry_partitions));
-            if (all_partitions != null)
-                LOG.debug(String.format("%s All Partitions: %s", catalog_frag.fullName(), all_partitions));
+        FragmentRoute route = this.getFragmentRoute(catalog_frag);
+        int base = (base_partition != null ? base_partition.intValue() : -1);
+        if (all_partitions instanceof PartitionSet) {
+            route.route(params, base, (PartitionSet)all_partitions);
+        } else {
+            PartitionSet partitions = this.route_partitions.get();
+            partitions.clear();
+            route.route(params, base, partitions);
+            all_partitions.addAll(partitions);
         }
+        if (debug.get())
+            LOG.debug(String.format("%s All Partitions: %s", catalog_frag.fullName(), all_partitions));
         return;
     }
 
+    /**
+     * Return the compiled FragmentRoute for the given PlanFragment.
+     * Routes are indexed by the PlanFragment's id, so this is just an array look-up
+     * once the route has been compiled.
+     * @param catalog_frag
+     * @return
+     * @throws Exception
+     */
+    protected FragmentRoute getFragmentRoute(PlanFragment catalog_frag) throws Exception {
+        final int frag_id = catalog_frag.getId();
+        final FragmentRoute routes[] = this.frag_routes;
+        if (frag_id >= 0 && frag_id < routes.length) {
+            FragmentRoute route = routes[frag_id];
+            if (route != null && route.getPlanFragment() == catalog_frag)
+                return (route);
+        }
+        return (this.compileFragmentRoute(catalog_frag));
+    }
+
+    /**
+     * Compile the CacheEntry for the given PlanFragment into a FragmentRoute
+     * and store it in our routing table
+     * @param catalog_frag
+     * @return
+     * @throws Exception
+     */
+    private synchronized FragmentRoute compileFragmentRoute(PlanFragment catalog_frag) throws Exception {
+        final int frag_id = catalog_frag.getId();
+        FragmentRoute routes[] = this.frag_routes;
+        if (frag_id >= 0 && frag_id < routes.length && routes[frag_id] != null && routes[frag_id].getPlanFragment() == catalog_frag) {
+            return (routes[frag_id]);
+        }
+
+        CacheEntry cache_entry = this.getFragmentCacheEntry(catalog_frag);
+        QueryType stmt_type = cache_entry.query_type;
+        List<Table> tables = cache_entry.getTables().asList();
+        int num_tables = cache_entry.is_replicated.length;
+
+        boolean broadcast = false;
+        byte ops[] = new byte[num_tables];
+        Column columns[] = new Column[num_tables];
+        int offsets[][] = new int[num_tables][];
+        Column mc_columns[][] = new Column[num_tables][];
+        int mc_offsets[][][] = new int[num_tables][][];
+        int num_ops = 0;
+        for (int table_idx = 0; table_idx < num_tables && broadcast == false; table_idx++) {
+            Table catalog_tbl = tables.get(table_idx);
+            if (cache_entry.is_replicated[table_idx]) {
+                if (stmt_type == QueryType.SELECT) {
+                    ops[num_ops++] = FragmentRoute.LOCAL;
+                } else if (stmt_type == QueryType.INSERT || stmt_type == QueryType.UPDATE || stmt_type == QueryType.DELETE) {
+                    broadcast = true;
+                } else {
+                    assert (false) : "Unexpected query type: " + stmt_type;
+                }
+                continue;
+            }
+
+            Column catalog_col = this.cache_tablePartitionColumns.get(catalog_tbl);
+            if (catalog_col instanceof MultiColumn) {
+                // HACK: All multi-column look-ups on queries with an OR must be broadcast
+                if (cache_entry.isContainsOr()) {
+                    broadcast = true;
+                } else {
+                    MultiColumn mc = (MultiColumn) catalog_col;
+                    mc_columns[num_ops] = new Column[mc.size()];
+                    mc_offsets[num_ops] = new int[mc.size()][];
+                    for (int i = 0, mc_cnt = mc.size(); i < mc_cnt; i++) {
+                        Column mc_column = mc.get(i);
+                        Set<Integer> param_idxs = cache_entry.get(mc_column);
+                        mc_columns[num_ops][i] = mc_column;
+                        mc_offsets[num_ops][i] = (param_idxs != null ? CollectionUtil.toIntArray(param_idxs) : null);
+                    } // FOR
+                    ops[num_ops++] = FragmentRoute.MULTI_HASH;
+                }
+            } else {
+                Set<Integer> param_idxs = cache_entry.get(catalog_col);
+                // If there is no entry for this partitioning column, then we have to broadcast
+                if (param_idxs == null || param_idxs.isEmpty()) {
+                    broadcast = true;
+                } else {
+                    columns[num_ops] = catalog_col;
+                    offsets[num_ops] = CollectionUtil.toIntArray(param_idxs);
+                    ops[num_ops++] = FragmentRoute.HASH;
+                }
+            }
+        } // FOR
+
+        FragmentRoute route = null;
+        if (broadcast) {
+            route = new FragmentRoute(catalog_frag, this.hasher, this.num_partitions);
+        } else {
+            route = new FragmentRoute(catalog_frag, this.hasher, this.num_partitions, false,
+                                      Arrays.copyOf(ops, num_ops), columns, offsets, mc_columns, mc_offsets);
+        }
+        if (debug.get())
+            LOG.debug("Compiled " + route);
+
+        if (frag_id >= 0) {
+            if (frag_id >= routes.length) {
+                routes = Arrays.copyOf(routes, Math.max(frag_id + 1, routes.length * 2));
+            } else {
+                routes = routes.clone();
+            }
+            routes[frag_id] = route;
+            this.frag_routes = routes;
+        }
+        return (route);
+    }
+
     private PartitionEstimator.CacheEntry getFragmentCacheEntry(PlanFragment catalog_frag) throws Exception {
         String frag_key = CatalogKey.createKey(catalog_frag);
         // Check whether we have generate the cache entries for this Statement
@@ -1584,5 +1735,22 @@ public class PartitionEstimator {
             entry.getTables();
         }
 
+        // Compile the routes for all of the PlanFragments
+        for (Procedure catalog_proc : this.catalog_db.getProcedures()) {
+            for (Statement catalog_stmt : catalog_proc.getStatements()) {
+                try {
+                    for (PlanFragment catalog_frag : catalog_stmt.getFragments()) {
+                        this.getFragmentRoute(catalog_frag);
+                    } // FOR
+                    for (PlanFragment catalog_frag : catalog_stmt.getMs_fragments()) {
+                        this.getFragmentRoute(catalog_frag);
+                    } // FOR
+                } catch (Exception ex) {
+                    LOG.fatal("Failed to compile FragmentRoutes for " + catalog_stmt.fullName(), ex);
+                    System.exit(1);
+                }
+            } // FOR
+        } // FOR
+
     }
 }
\ No newline at end of file
@@ -0,0 +1,310 @@
+package edu.brown.utils;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A compact set of partition ids backed by an array of long words.
+ * This is meant to replace the HashSet<Integer> objects that we pass around
+ * for the partitions that a txn touches. Adding, removing, and checking for a
+ * partition is just a bit operation, and copying one PartitionSet into another
+ * is just a loop over the words. There is no boxing or hashing involved.
+ * <p>
+ * It still implements Set<Integer> so that it can be handed to code that does
+ * not care about any of this. The hot paths should use the primitive methods
+ * and iterate over the partitions without allocating an Iterator:
+ * <pre>
+ * for (int p = partitions.next(0); p != -1; p = partitions.next(p+1)) {
+ *     ...
+ * } // FOR
+ * </pre>
+ * This class is not thread-safe.
+ */
+public class PartitionSet extends AbstractSet<Integer> {
+
+    private static final int ADDRESS_BITS = 6;
+    private static final int WORD_SIZE = 1 << ADDRESS_BITS;
+    private static final int DEFAULT_NUM_PARTITIONS = 64;
+
+    private long words[];
+    private int size = 0;
+
+    public PartitionSet() {
+        this(DEFAULT_NUM_PARTITIONS);
+    }
+
+    /**
+     * Constructor
+     * @param num_partitions the expected number of partitions in the cluster
+     */
+    public PartitionSet(int num_partitions) {
+        this.words = new long[wordIndex(Math.max(1, num_partitions) - 1) + 1];
+    }
+
+    /**
+     * Copy Constructor
+     * @param partitions
+     */
+    public PartitionSet(Collection<Integer> partitions) {
+        this(partitions instanceof PartitionSet ? ((PartitionSet)partitions).words.length * WORD_SIZE : DEFAULT_NUM_PARTITIONS);
+        this.addAll(partitions);
+    }
+
+    private static int wordIndex(int partition) {
+        return (partition >> ADDRESS_BITS);
+    }
+
+    private void ensureCapacity(int word_idx) {
+        if (word_idx >= this.words.length) {
+            this.words = Arrays.copyOf(this.words, Math.max(word_idx + 1, this.words.length * 2));
+        }
+    }
+
+    // ----------------------------------------------------------------------------
+    // PRIMITIVE METHODS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Add the given partition to this set
+     * @param partition
+     * @return true if the partition was not already in this set
+     */
+    public boolean add(int partition) {
+        assert(partition >= 0) : "Invalid partition " + partition;
+        int word_idx = wordIndex(partition);
+        this.ensureCapacity(word_idx);
+        long mask = 1L << partition;
+        if ((this.words[word_idx] & mask) != 0) return (false);
+        this.words[word_idx] |= mask;
+        this.size++;
+        return (true);
+    }
+
+    /**
+     * Add all of the partitions from start (inclusive) to stop (exclusive)
+     * @param start
+     * @param stop
+     */
+    public void addRange(int start, int stop) {
+        assert(start >= 0) : "Invalid partition " + start;
+        if (start >= stop) return;
+        int first_idx = wordIndex(start);
+        int last_idx = wordIndex(stop - 1);
+        this.ensureCapacity(last_idx);
+        for (int i = first_idx; i <= last_idx; i++) {
+            long mask = -1L;
+            if (i == first_idx) mask &= (-1L << start);
+            if (i == last_idx) mask &= (-1L >>> -stop);
+            long word = this.words[i];
+            this.words[i] = word | mask;
+            this.size += Long.bitCount(this.words[i]) - Long.bitCount(word);
+        } // FOR
+    }
+
+    /**
+     * Returns true if the given partition is in this set
+     * @param partition
+     * @return
+     */
+    public boolean contains(int partition) {
+        if (partition < 0) return (false);
+        int word_idx = wordIndex(partition);
+        return (word_idx < this.words.length && (this.words[word_idx] & (1L << partition)) != 0);
+    }
+
+    /**
+     * Remove the given partition from this set
+     * @param partition
+     * @return true if the partition was in this set
+     */
+    public boolean remove(int partition) {
+        if (this.contains(partition) == false) return (false);
+        this.words[wordIndex(partition)] &= ~(1L << partition);
+        this.size--;
+        return (true);
+    }
+
+    /**
+     * Returns the first partition in this set that is greater than or equal to
+     * the given partition, or -1 if there isn't one.
+     * @param from
+     * @return
+     */
+    public int next(int from) {
+        if (from < 0) from = 0;
+        int word_idx = wordIndex(from);
+        if (word_idx >= this.words.length) return (-1);
+        long word = this.words[word_idx] & (-1L << from);
+        while (true) {
+            if (word != 0) return ((word_idx * WORD_SIZE) + Long.numberOfTrailingZeros(word));
+            if (++word_idx == this.words.length) return (-1);
+            word = this.words[word_idx];
+        } // WHILE
+    }
+
+    /**
+     * Returns the smallest partition in this set, or -1 if it is empty
+     * @return
+     */
+    public int first() {
+        return (this.next(0));
+    }
+
+    /**
+     * Returns a new array of the partitions in this set in ascending order
+     * @return
+     */
+    public int[] values() {
+        int ret[] = new int[this.size];
+        int i = 0;
+        for (int p = this.next(0); p != -1; p = this.next(p + 1)) {
+            ret[i++] = p;
+        } // FOR
+        return (ret);
+    }
+
+    // ----------------------------------------------------------------------------
+    // SET METHODS
+    // ----------------------------------------------------------------------------
+
+    @Override
+    public int size() {
+        return (this.size);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (this.size == 0);
+    }
+
+    @Override
+    public void clear() {
+        if (this.size > 0) {
+            Arrays.fill(this.words, 0L);
+            this.size = 0;
+        }
+    }
+
+    @Override
+    public boolean add(Integer partition) {
+        return (this.add(partition.intValue()));
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return (o instanceof Integer && this.contains(((Integer)o).intValue()));
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return (o instanceof Integer && this.remove(((Integer)o).intValue()));
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Integer> c) {
+        if ((c instanceof PartitionSet) == false) {
+            boolean ret = false;
+            for (Integer p : c) {
+                ret = this.add(p.intValue()) || ret;
+            } // FOR
+            return (ret);
+        }
+        PartitionSet other = (PartitionSet)c;
+        this.ensureCapacity(other.words.length - 1);
+        int orig_size = this.size;
+        int new_size = 0;
+        for (int i = 0; i < this.words.length; i++) {
+            if (i < other.words.length) this.words[i] |= other.words[i];
+            new_size += Long.bitCount(this.words[i]);
+        } // FOR
+        this.size = new_size;
+        return (new_size != orig_size);
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        if ((c instanceof PartitionSet) == false) {
+            return (super.containsAll(c));
+        }
+        PartitionSet other = (PartitionSet)c;
+        for (int i = 0; i < other.words.length; i++) {
+            long word = (i < this.words.length ? this.words[i] : 0L);
+            if ((other.words[i] & ~word) != 0) return (false);
+        } // FOR
+        return (true);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        if ((c instanceof PartitionSet) == false) {
+            boolean ret = false;
+            for (Object o : c) {
+                ret = this.remove(o) || ret;
+            } // FOR
+            return (ret);
+        }
+        PartitionSet other = (PartitionSet)c;
+        int orig_size = this.size;
+        int new_size = 0;
+        for (int i = 0; i < this.words.length; i++) {
+            if (i < other.words.length) this.words[i] &= ~other.words[i];
+            new_size += Long.bitCount(this.words[i]);
+        } // FOR
+        this.size = new_size;
+        return (new_size != orig_size);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return (new Iterator<Integer>() {
+            private int next = PartitionSet.this.next(0);
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return (this.next != -1);
+            }
+            @Override
+            public Integer next() {
+                if (this.next == -1) throw new NoSuchElementException();
+                this.last = this.next;
+                this.next = PartitionSet.this.next(this.next + 1);
+                return (Integer.valueOf(this.last));
+            }
+            @Override
+            public void remove() {
+                if (this.last == -1) throw new IllegalStateException();
+                PartitionSet.this.remove(this.last);
+                this.last = -1;
+            }
+        });
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return (true);
+        if ((obj instanceof PartitionSet) == false) return (super.equals(obj));
+        PartitionSet other = (PartitionSet)obj;
+        if (this.size != other.size) return (false);
+        int max = Math.max(this.words.length, other.words.length);
+        for (int i = 0; i < max; i++) {
+            long word0 = (i < this.words.length ? this.words[i] : 0L);
+            long word1 = (i < other.words.length ? other.words[i] : 0L);
+            if (word0 != word1) return (false);
+        } // FOR
+        return (true);
+    }
+
+    @Override
+    public int hashCode() {
+        // This has to match the hashCode of any other Set<Integer>
+        int hash = 0;
+        for (int p = this.next(0); p != -1; p = this.next(p + 1)) {
+            hash += p;
+        } // FOR
+        return (hash);
+    }
+}
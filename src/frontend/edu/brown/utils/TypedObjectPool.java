@@ -0,0 +1,355 @@
+/***************************************************************************
+ *  Copyright (C) 2012 by H-Store Project                                  *
+ *  Brown University                                                       *
+ *  Massachusetts Institute of Technology                                  *
+ *  Yale University                                                        *
+ *                                                                         *
+ *  http://hstore.cs.brown.edu/                                            *
+ *                                                                         *
+ *  Permission is hereby granted, free of charge, to any person obtaining  *
+ *  a copy of this software and associated documentation files (the        *
+ *  "Software"), to deal in the Software without restriction, including    *
+ *  without limitation the rights to use, copy, modify, merge, publish,    *
+ *  distribute, sublicense, and/or sell copies of the Software, and to     *
+ *  permit persons to whom the Software is furnished to do so, subject to  *
+ *  the following conditions:                                              *
+ *                                                                         *
+ *  The above copyright notice and this permission notice shall be         *
+ *  included in all copies or substantial portions of the Software.        *
+ *                                                                         *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,        *
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF     *
+ *  MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. *
+ *  IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR      *
+ *  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,  *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR  *
+ *  OTHER DEALINGS IN THE SOFTWARE.                                        *
+ ***************************************************************************/
+package edu.brown.utils;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * An object pool that does not take any locks. Each thread keeps a small cache
+ * of idle objects that only it can touch. When a thread's cache is full, the objects
+ * that it returns are pushed onto a lock-free stack that is shared by all threads.
+ * When a thread's cache is empty, it pops objects off of that shared stack. This
+ * means that objects that are borrowed on one thread and returned on another
+ * (e.g., callbacks) still make their way back to the threads that need them.
+ * <p>
+ * The shared stack holds at most <i>idle</i> objects and each thread's cache
+ * holds at most <i>local_idle</i> objects. Anything returned beyond that is just
+ * dropped for the garbage collector.
+ * <p>
+ * Each thread counts its own borrows, returns, and misses, so keeping these
+ * stats does not add any contention. The totals are summed over all the
+ * threads when they are requested, so they may be slightly stale.
+ * <p>
+ * The caches of threads that have exited are cleaned up the next time that another
+ * thread creates its cache or somebody asks for the stats. Their idle objects are
+ * moved to the shared stack and their counters are added to the pool's totals.
+ * @param <T>
+ */
+public class TypedObjectPool<T extends Poolable> {
+    private static final Logger LOG = Logger.getLogger(TypedObjectPool.class);
+    private final static LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private final static LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    /**
+     * The default number of idle objects that each thread keeps to itself
+     */
+    public static final int DEFAULT_LOCAL_IDLE = 64;
+
+    /**
+     * A node in the shared stack
+     */
+    private static final class Node {
+        private final Object obj;
+        private Node next;
+
+        private Node(Object obj) {
+            this.obj = obj;
+        }
+    } // END CLASS
+
+    /**
+     * A thread's own cache of idle objects and its stats counters
+     */
+    private static final class LocalCache {
+        private final WeakReference<Thread> owner;
+        private final Object items[];
+        private int size = 0;
+
+        private long borrowed = 0;
+        private long returned = 0;
+        private long missed = 0;
+        private long dropped = 0;
+
+        private LocalCache(Thread owner, int capacity) {
+            this.owner = new WeakReference<Thread>(owner);
+            this.items = new Object[capacity];
+        }
+    } // END CLASS
+
+    private final TypedPoolableObjectFactory<T> factory;
+    private final int idle;
+    private final int local_idle;
+
+    private final AtomicReference<Node> shared = new AtomicReference<Node>();
+    private final AtomicInteger shared_size = new AtomicInteger(0);
+
+    /**
+     * The caches of all of the threads that are using this pool
+     */
+    private final CopyOnWriteArrayList<LocalCache> caches = new CopyOnWriteArrayList<LocalCache>();
+    private final ThreadLocal<LocalCache> local = new ThreadLocal<LocalCache>() {
+        @Override
+        protected LocalCache initialValue() {
+            reapCaches();
+            LocalCache cache = new LocalCache(Thread.currentThread(), local_idle);
+            caches.add(cache);
+            return (cache);
+        }
+    };
+
+    /**
+     * The counters from the caches of threads that have exited
+     */
+    private final AtomicLong reaped_borrowed = new AtomicLong(0);
+    private final AtomicLong reaped_returned = new AtomicLong(0);
+    private final AtomicLong reaped_missed = new AtomicLong(0);
+    private final AtomicLong reaped_dropped = new AtomicLong(0);
+
+    /**
+     * Constructor
+     * @param factory
+     * @param idle the max number of idle objects to keep in the shared stack
+     * @param local_idle the max number of idle objects that each thread keeps in its own cache
+     */
+    public TypedObjectPool(TypedPoolableObjectFactory<T> factory, int idle, int local_idle) {
+        this.factory = factory;
+        this.idle = Math.max(0, idle);
+        this.local_idle = Math.max(0, Math.min(local_idle, this.idle));
+    }
+
+    public TypedObjectPool(TypedPoolableObjectFactory<T> factory, int idle) {
+        this(factory, idle, DEFAULT_LOCAL_IDLE);
+    }
+
+    public TypedPoolableObjectFactory<T> getFactory() {
+        return (this.factory);
+    }
+
+    // ----------------------------------------------------------------------------
+    // POOL METHODS
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Get an object from the pool. A new object is created if there
+     * aren't any idle ones left.
+     * @return
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    public T borrowObject() throws Exception {
+        LocalCache cache = this.local.get();
+        cache.borrowed++;
+        Object obj = null;
+        if (cache.size > 0) {
+            obj = cache.items[--cache.size];
+            cache.items[cache.size] = null;
+        } else {
+            obj = this.pop();
+            if (obj == null) {
+                cache.missed++;
+                obj = this.factory.makeObject();
+            }
+        }
+        T t = (T)obj;
+        assert (t.isInitialized() == false) : String.format("Trying to reuse %s<%s> before it is finished!", this.getClass().getSimpleName(), t);
+        return (t);
+    }
+
+    /**
+     * Put an object back in the pool. The object is passivated (i.e., its
+     * finish() method is called) first.
+     * @param t
+     */
+    public void returnObject(T t) {
+        if (debug.get())
+            LOG.debug(String.format("Returning %s back to ObjectPool [hashCode=%d]", t.getClass().getSimpleName(), t.hashCode()));
+        try {
+            this.factory.passivateObject(t);
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+        LocalCache cache = this.local.get();
+        cache.returned++;
+        if (cache.size < cache.items.length) {
+            cache.items[cache.size++] = t;
+        } else if (this.push(t) == false) {
+            cache.dropped++;
+            try {
+                this.factory.destroyObject(t);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    private boolean push(Object obj) {
+        // We may go over the limit by a few objects if threads race here
+        if (this.shared_size.get() >= this.idle) return (false);
+        Node node = new Node(obj);
+        Node head;
+        do {
+            head = this.shared.get();
+            node.next = head;
+        } while (this.shared.compareAndSet(head, node) == false);
+        this.shared_size.incrementAndGet();
+        return (true);
+    }
+
+    /**
+     * Remove the caches of threads that have exited. Nobody else can touch a dead
+     * thread's cache, so we can move its idle objects into the shared stack.
+     */
+    private void reapCaches() {
+        for (LocalCache cache : this.caches) {
+            Thread owner = cache.owner.get();
+            if (owner != null && owner.isAlive()) continue;
+            // Only one thread gets to remove it, so it can't be reaped twice
+            if (this.caches.remove(cache) == false) continue;
+
+            long dropped = cache.dropped;
+            for (int i = 0; i < cache.size; i++) {
+                if (this.push(cache.items[i])) continue;
+                dropped++;
+                try {
+                    this.factory.destroyObject(cache.items[i]);
+                } catch (Exception ex) {
+                    LOG.warn("Failed to destroy idle object from an exited thread's cache", ex);
+                }
+            } // FOR
+            this.reaped_borrowed.addAndGet(cache.borrowed);
+            this.reaped_returned.addAndGet(cache.returned);
+            this.reaped_missed.addAndGet(cache.missed);
+            this.reaped_dropped.addAndGet(dropped);
+            if (debug.get())
+                LOG.debug(String.format("Reaped cache with %d idle objects from exited thread", cache.size));
+        } // FOR
+    }
+
+    private Object pop() {
+        Node head;
+        do {
+            head = this.shared.get();
+            if (head == null) return (null);
+        } while (this.shared.compareAndSet(head, head.next) == false);
+        this.shared_size.decrementAndGet();
+        return (head.obj);
+    }
+
+    // ----------------------------------------------------------------------------
+    // STATS
+    // ----------------------------------------------------------------------------
+
+    public int getMaxIdle() {
+        return (this.idle);
+    }
+    public int getMaxLocalIdle() {
+        return (this.local_idle);
+    }
+    /**
+     * Returns the number of objects in the shared stack and all of the thread caches
+     */
+    public int getNumIdle() {
+        this.reapCaches();
+        int ctr = this.shared_size.get();
+        for (LocalCache cache : this.caches) {
+            ctr += cache.size;
+        } // FOR
+        return (ctr);
+    }
+    /**
+     * Returns the number of objects that have been borrowed but not returned
+     */
+    public int getNumActive() {
+        return ((int)Math.max(0, this.getBorrowCount() - this.getReturnCount()));
+    }
+    public long getBorrowCount() {
+        this.reapCaches();
+        long ctr = this.reaped_borrowed.get();
+        for (LocalCache cache : this.caches) {
+            ctr += cache.borrowed;
+        } // FOR
+        return (ctr);
+    }
+    public long getReturnCount() {
+        this.reapCaches();
+        long ctr = this.reaped_returned.get();
+        for (LocalCache cache : this.caches) {
+            ctr += cache.returned;
+        } // FOR
+        return (ctr);
+    }
+    /**
+     * Returns the number of borrows that had to create a new object
+     */
+    public long getMissCount() {
+        this.reapCaches();
+        long ctr = this.reaped_missed.get();
+        for (LocalCache cache : this.caches) {
+            ctr += cache.missed;
+        } // FOR
+        return (ctr);
+    }
+    /**
+     * Returns the number of returned objects that were dropped because the pool was full
+     */
+    public long getDropCount() {
+        this.reapCaches();
+        long ctr = this.reaped_dropped.get();
+        for (LocalCache cache : this.caches) {
+            ctr += cache.dropped;
+        } // FOR
+        return (ctr);
+    }
+
+    /**
+     * Returns the number of thread caches that have not been reaped yet
+     */
+    protected int getThreadCacheCount() {
+        return (this.caches.size());
+    }
+
+    // ----------------------------------------------------------------------------
+    // FACTORY
+    // ----------------------------------------------------------------------------
+
+    /**
+     * @param <X>
+     * @param clazz
+     * @param idle
+     * @param local_idle
+     * @param enable_tracking
+     * @param args
+     * @return
+     */
+    public static <X extends Poolable> TypedObjectPool<X> factory(final Class<X> clazz, final int idle, final int local_idle, final boolean enable_tracking, final Object... args) {
+        TypedPoolableObjectFactory<X> factory = TypedPoolableObjectFactory.makeFactory(clazz, enable_tracking, args);
+        return new TypedObjectPool<X>(factory, idle, local_idle);
+    }
+}
@@ -62,12 +62,35 @@ import org.voltdb.types.VoltDecimalHelper;
     }
     private Object m_params[] = new Object[0];
 
+    /**
+     * The serialized form of this ParameterSet that we were deserialized from.
+     * If this is set, then writeExternal() copies these bytes out as-is instead
+     * of encoding m_params all over again.
+     */
+    private ByteBuffer m_serialized = null;
+
     /** Sets the internal array to params. Note: this does *not* copy the argument. */
     public ParameterSet setParameters(Object... params) {
         this.m_params = params;
+        this.m_serialized = null;
         return (this);
     }
 
+    /**
+     * Attach the serialized bytes that this ParameterSet was read from so that we can
+     * pass them along without having to serialize our parameters again. The caller must
+     * make sure that the buffer's contents will not change for as long as this
+     * ParameterSet is in use.
+     * @param serialized
+     */
+    public void setSerializedBytes(ByteBuffer serialized) {
+        this.m_serialized = serialized;
+    }
+
+    public ByteBuffer getSerializedBytes() {
+        return (this.m_serialized);
+    }
+
     public Object[] toArray() {
         return m_params;
     }
@@ -95,6 +118,7 @@ import org.voltdb.types.VoltDecimalHelper;
     public void readExternal(FastDeserializer in) throws IOException {
         int paramLen = in.readShort();
         m_params = new Object[paramLen];
+        m_serialized = null;
 
         for (int i = 0; i < paramLen; i++) {
             m_params[i] = readOneParameter(in);
@@ -103,6 +127,10 @@ import org.voltdb.types.VoltDecimalHelper;
 
     @Override
     public void writeExternal(FastSerializer out) throws IOException {
+        if (m_serialized != null) {
+            out.write(m_serialized.duplicate());
+            return;
+        }
         out.writeShort(m_params.length);
 
         for (Object obj : m_params) {
@@ -112,7 +140,26 @@ import org.voltdb.types.VoltDecimalHelper;
                 continue;
             }
 
+            // Fast path for the common scalar types so that we don't need to look them up
             Class<?> cls = obj.getClass();
+            if (cls == Long.class) {
+                out.writeByte(VoltType.BIGINT.getValue());
+                out.writeLong(((Long)obj).longValue());
+                continue;
+            } else if (cls == Integer.class) {
+                out.writeByte(VoltType.INTEGER.getValue());
+                out.writeInt(((Integer)obj).intValue());
+                continue;
+            } else if (cls == String.class) {
+                out.writeByte(VoltType.STRING.getValue());
+                out.writeString((String)obj);
+                continue;
+            } else if (cls == Double.class) {
+                out.writeByte(VoltType.FLOAT.getValue());
+                out.writeDouble(((Double)obj).doubleValue());
+                continue;
+            }
+
             if (cls.isArray()) {
 
                 // EE doesn't support array parameters. Arrays of bytes are
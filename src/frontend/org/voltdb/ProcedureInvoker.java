@@ -0,0 +1,88 @@
+package org.voltdb;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.voltdb.utils.Pair;
+
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * Calls a VoltProcedure's run() method without going through reflection.
+ * <p>
+ * The subclass for each procedure is generated at runtime by {@link ProcedureInvokerGenerator}.
+ * Its invoke() casts each parameter to the exact type of its slot in run() (unboxing primitives
+ * directly out of their Number wrappers) and then makes a normal virtual call.
+ * The parameters must already have been made compatible with run()'s signature.
+ */
+public abstract class ProcedureInvoker {
+    private static final Logger LOG = Logger.getLogger(ProcedureInvoker.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    /**
+     * The invokers that we have already generated, keyed by procedure class and run() method.
+     * The same run() method can be inherited by more than one procedure class, but each
+     * generated invoker casts to the class that it was generated for.
+     * A null value means that we could not generate one for that method.
+     */
+    private static final Map<Pair<Class<? extends VoltProcedure>, Method>, ProcedureInvoker> CACHE =
+            new HashMap<Pair<Class<? extends VoltProcedure>, Method>, ProcedureInvoker>();
+
+    /**
+     * Invoke proc's run() method with the given parameters
+     * @param proc
+     * @param params
+     * @return whatever run() returned, or null if it returns void
+     * @throws Exception anything that run() throws is passed straight through
+     */
+    public abstract Object invoke(VoltProcedure proc, Object params[]) throws Exception;
+
+    /**
+     * Returns the invoker for the given run() method of a VoltProcedure class.
+     * Each invoker is only generated once per JVM.
+     * Returns null if the method cannot be invoked directly (e.g., it is not public),
+     * in which case the caller must fall back to reflection.
+     * @param proc_class
+     * @param run
+     * @return
+     */
+    public static synchronized ProcedureInvoker get(Class<? extends VoltProcedure> proc_class, Method run) {
+        Pair<Class<? extends VoltProcedure>, Method> key = Pair.<Class<? extends VoltProcedure>, Method>of(proc_class, run);
+        if (CACHE.containsKey(key)) return (CACHE.get(key));
+
+        ProcedureInvoker invoker = null;
+        if (isAccessible(proc_class) && Modifier.isPublic(run.getModifiers()) && Modifier.isStatic(run.getModifiers()) == false) {
+            try {
+                invoker = ProcedureInvokerGenerator.generate(proc_class, run);
+                if (debug.get()) LOG.debug(String.format("Generated %s for %s.%s",
+                                                         invoker.getClass().getName(), proc_class.getSimpleName(), run.getName()));
+            } catch (Throwable ex) {
+                LOG.warn(String.format("Failed to generate ProcedureInvoker for %s.%s. Falling back to reflection",
+                                       proc_class.getName(), run.getName()), ex);
+            }
+        } else if (debug.get()) {
+            LOG.debug(String.format("%s.%s is not public. Using reflection to invoke it",
+                                    proc_class.getName(), run.getName()));
+        }
+        CACHE.put(key, invoker);
+        return (invoker);
+    }
+
+    /**
+     * Returns true if code in another ClassLoader is allowed to refer to this class
+     */
+    private static boolean isAccessible(Class<?> clazz) {
+        for (Class<?> c = clazz; c != null; c = c.getEnclosingClass()) {
+            if (Modifier.isPublic(c.getModifiers()) == false) return (false);
+        } // FOR
+        return (clazz.isAnonymousClass() == false && clazz.isLocalClass() == false);
+    }
+}
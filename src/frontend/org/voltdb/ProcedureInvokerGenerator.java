@@ -0,0 +1,337 @@
+package org.voltdb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes out the class file for a {@link ProcedureInvoker} subclass that calls a specific
+ * VoltProcedure's run() method and then loads it. The generated invoke() method is the
+ * equivalent of:
+ * <pre>
+ * return ((MyProc)proc).run(((Number)params[0]).longValue(), (String)params[1], ...);
+ * </pre>
+ * with the return value boxed if run() returns a primitive and null if it returns void.
+ * <p>
+ * We target the Java 5 class file format so that we don't need to compute StackMapTable frames.
+ * The generated code never branches anyway.
+ */
+abstract class ProcedureInvokerGenerator {
+
+    private static final int CLASS_VERSION = 49; // Java 5
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    // Constant pool tags
+    private static final int CONSTANT_Utf8 = 1;
+    private static final int CONSTANT_Class = 7;
+    private static final int CONSTANT_Methodref = 10;
+    private static final int CONSTANT_NameAndType = 12;
+
+    // Opcodes
+    private static final int ACONST_NULL = 0x01;
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int AALOAD = 0x32;
+    private static final int ARETURN = 0xb0;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int CHECKCAST = 0xc0;
+
+    private static final String SUPER_CLASS = internalName(ProcedureInvoker.class);
+    private static final String INVOKE_DESC = "(" + descriptor(VoltProcedure.class) + descriptor(Object[].class) + ")" + descriptor(Object.class);
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(0);
+
+    /**
+     * Define each generated class in its own loader whose parent is the
+     * procedure's loader so that it can see the procedure's class
+     */
+    private static final class InvokerClassLoader extends ClassLoader {
+        InvokerClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+        Class<?> define(String name, byte bytes[]) {
+            return (this.defineClass(name, bytes, 0, bytes.length));
+        }
+    } // END CLASS
+
+    /**
+     * Generate, load, and instantiate the invoker for the given run() method
+     * @param proc_class
+     * @param run
+     * @return
+     * @throws Exception
+     */
+    static ProcedureInvoker generate(Class<? extends VoltProcedure> proc_class, Method run) throws Exception {
+        assert(run.getDeclaringClass().isAssignableFrom(proc_class));
+        String className = proc_class.getName() + "$$Invoker" + NEXT_ID.getAndIncrement();
+        byte bytes[] = new ProcedureInvokerGenerator.ClassFile(className, proc_class, run).toByteArray();
+
+        ClassLoader parent = proc_class.getClassLoader();
+        if (parent == null) parent = ProcedureInvoker.class.getClassLoader();
+        Class<?> clazz = new InvokerClassLoader(parent).define(className, bytes);
+        return ((ProcedureInvoker)clazz.newInstance());
+    }
+
+    // ----------------------------------------------------------------------------
+    // TYPE DESCRIPTORS
+    // ----------------------------------------------------------------------------
+
+    static String internalName(Class<?> clazz) {
+        return (clazz.getName().replace('.', '/'));
+    }
+
+    static String descriptor(Class<?> clazz) {
+        if (clazz.isArray()) return (clazz.getName().replace('.', '/'));
+        if (clazz == void.class) return ("V");
+        if (clazz == boolean.class) return ("Z");
+        if (clazz == byte.class) return ("B");
+        if (clazz == char.class) return ("C");
+        if (clazz == short.class) return ("S");
+        if (clazz == int.class) return ("I");
+        if (clazz == long.class) return ("J");
+        if (clazz == float.class) return ("F");
+        if (clazz == double.class) return ("D");
+        return ("L" + internalName(clazz) + ";");
+    }
+
+    static String descriptor(Method m) {
+        StringBuilder sb = new StringBuilder("(");
+        for (Class<?> p : m.getParameterTypes()) {
+            sb.append(descriptor(p));
+        } // FOR
+        return (sb.append(")").append(descriptor(m.getReturnType())).toString());
+    }
+
+    /**
+     * The wrapper class that we have to cast the parameter to before we can unbox it.
+     * All of the numeric types come out of a Number so that run() can take a long
+     * when the client sent us an Integer (VoltProcedure.tryToMakeCompatible allows this).
+     */
+    private static Class<?> unboxFrom(Class<?> primitive) {
+        if (primitive == boolean.class) return (Boolean.class);
+        if (primitive == char.class) return (Character.class);
+        return (Number.class);
+    }
+
+    private static Class<?> boxTo(Class<?> primitive) {
+        if (primitive == boolean.class) return (Boolean.class);
+        if (primitive == byte.class) return (Byte.class);
+        if (primitive == char.class) return (Character.class);
+        if (primitive == short.class) return (Short.class);
+        if (primitive == int.class) return (Integer.class);
+        if (primitive == long.class) return (Long.class);
+        if (primitive == float.class) return (Float.class);
+        if (primitive == double.class) return (Double.class);
+        throw new IllegalArgumentException("Unexpected type " + primitive);
+    }
+
+    private static int stackSize(Class<?> clazz) {
+        return (clazz == long.class || clazz == double.class ? 2 : 1);
+    }
+
+    // ----------------------------------------------------------------------------
+    // CLASS FILE
+    // ----------------------------------------------------------------------------
+
+    private static final class ClassFile {
+        private final String className;
+        private final Class<?> proc_class;
+        private final Method run;
+
+        private final List<byte[]> constants = new ArrayList<byte[]>();
+        private final Map<String, Integer> constant_idxs = new HashMap<String, Integer>();
+
+        ClassFile(String className, Class<?> proc_class, Method run) {
+            this.className = className.replace('.', '/');
+            this.proc_class = proc_class;
+            this.run = run;
+        }
+
+        byte[] toByteArray() throws IOException {
+            // Build the method bodies first so that all of their constants are in the pool
+            int this_idx = this.classRef(this.className);
+            int super_idx = this.classRef(SUPER_CLASS);
+            int init_name = this.utf8("<init>");
+            int init_desc = this.utf8("()V");
+            byte init_code[] = this.constructorCode();
+            int invoke_name = this.utf8("invoke");
+            int invoke_desc = this.utf8(INVOKE_DESC);
+            byte invoke_code[] = this.invokeCode();
+            int code_name = this.utf8("Code");
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            out.writeShort(this.constants.size() + 1);
+            for (byte c[] : this.constants) {
+                out.write(c);
+            } // FOR
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(this_idx);
+            out.writeShort(super_idx);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+
+            out.writeShort(2); // methods
+            this.writeMethod(out, init_name, init_desc, code_name, 1, 1, init_code);
+            int max_stack = 1 + 2;
+            for (Class<?> p : this.run.getParameterTypes()) {
+                max_stack += stackSize(p);
+            } // FOR
+            this.writeMethod(out, invoke_name, invoke_desc, code_name, max_stack, 3, invoke_code);
+
+            out.writeShort(0); // attributes
+            out.flush();
+            return (bytes.toByteArray());
+        }
+
+        private void writeMethod(DataOutputStream out, int name, int desc, int code_name,
+                                 int max_stack, int max_locals, byte code[]) throws IOException {
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(name);
+            out.writeShort(desc);
+            out.writeShort(1); // attributes
+            out.writeShort(code_name);
+            out.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+            out.writeShort(max_stack);
+            out.writeShort(max_locals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // attributes
+        }
+
+        /**
+         * super();
+         */
+        private byte[] constructorCode() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream code = new DataOutputStream(bytes);
+            code.writeByte(ALOAD_0);
+            code.writeByte(INVOKESPECIAL);
+            code.writeShort(this.methodRef(SUPER_CLASS, "<init>", "()V"));
+            code.writeByte(RETURN);
+            code.flush();
+            return (bytes.toByteArray());
+        }
+
+        /**
+         * return ((ProcClass)proc).run((T0)params[0], (T1)params[1], ...);
+         */
+        private byte[] invokeCode() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream code = new DataOutputStream(bytes);
+
+            String owner = internalName(this.proc_class);
+            code.writeByte(ALOAD_1);
+            code.writeByte(CHECKCAST);
+            code.writeShort(this.classRef(owner));
+
+            Class<?> params[] = this.run.getParameterTypes();
+            for (int i = 0; i < params.length; i++) {
+                code.writeByte(ALOAD_2);
+                if (i <= 5) {
+                    code.writeByte(ICONST_0 + i);
+                } else if (i <= Byte.MAX_VALUE) {
+                    code.writeByte(BIPUSH);
+                    code.writeByte(i);
+                } else {
+                    code.writeByte(SIPUSH);
+                    code.writeShort(i);
+                }
+                code.writeByte(AALOAD);
+
+                Class<?> p = params[i];
+                if (p.isPrimitive()) {
+                    Class<?> wrapper = unboxFrom(p);
+                    String wrapper_name = internalName(wrapper);
+                    code.writeByte(CHECKCAST);
+                    code.writeShort(this.classRef(wrapper_name));
+                    code.writeByte(INVOKEVIRTUAL);
+                    code.writeShort(this.methodRef(wrapper_name, p.getName() + "Value", "()" + descriptor(p)));
+                } else if (p != Object.class) {
+                    code.writeByte(CHECKCAST);
+                    code.writeShort(this.classRef(p.isArray() ? descriptor(p) : internalName(p)));
+                }
+            } // FOR
+            code.writeByte(INVOKEVIRTUAL);
+            code.writeShort(this.methodRef(owner, this.run.getName(), descriptor(this.run)));
+
+            Class<?> ret = this.run.getReturnType();
+            if (ret == void.class) {
+                code.writeByte(ACONST_NULL);
+            } else if (ret.isPrimitive()) {
+                Class<?> wrapper = boxTo(ret);
+                code.writeByte(INVOKESTATIC);
+                code.writeShort(this.methodRef(internalName(wrapper), "valueOf",
+                                               "(" + descriptor(ret) + ")" + descriptor(wrapper)));
+            }
+            code.writeByte(ARETURN);
+            code.flush();
+            return (bytes.toByteArray());
+        }
+
+        // ----------------------------------------------------------------------------
+        // CONSTANT POOL
+        // ----------------------------------------------------------------------------
+
+        private int constant(String key, byte entry[]) {
+            Integer idx = this.constant_idxs.get(key);
+            if (idx == null) {
+                this.constants.add(entry);
+                idx = this.constants.size(); // The pool is 1-indexed
+                this.constant_idxs.put(key, idx);
+            }
+            return (idx.intValue());
+        }
+
+        private int utf8(String value) throws IOException {
+            String key = "U" + value;
+            if (this.constant_idxs.containsKey(key)) return (this.constant_idxs.get(key));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(CONSTANT_Utf8);
+            out.writeUTF(value);
+            out.flush();
+            return (this.constant(key, bytes.toByteArray()));
+        }
+
+        private int classRef(String internal_name) throws IOException {
+            String key = "C" + internal_name;
+            if (this.constant_idxs.containsKey(key)) return (this.constant_idxs.get(key));
+            int name_idx = this.utf8(internal_name);
+            return (this.constant(key, new byte[]{ CONSTANT_Class, (byte)(name_idx >> 8), (byte)name_idx }));
+        }
+
+        private int methodRef(String owner, String name, String desc) throws IOException {
+            String key = "M" + owner + "." + name + desc;
+            if (this.constant_idxs.containsKey(key)) return (this.constant_idxs.get(key));
+            int owner_idx = this.classRef(owner);
+            int name_idx = this.utf8(name);
+            int desc_idx = this.utf8(desc);
+            int nat_idx = this.constant("N" + name + desc, new byte[]{ CONSTANT_NameAndType,
+                                                                      (byte)(name_idx >> 8), (byte)name_idx,
+                                                                      (byte)(desc_idx >> 8), (byte)desc_idx });
+            return (this.constant(key, new byte[]{ CONSTANT_Methodref,
+                                                   (byte)(owner_idx >> 8), (byte)owner_idx,
+                                                   (byte)(nat_idx >> 8), (byte)nat_idx }));
+        }
+    } // END CLASS
+}
@@ -19,6 +19,7 @@ package org.voltdb;
 
 import java.util.Calendar;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 
@@ -45,8 +46,6 @@ public class TransactionIdManager {
     static final long TIMESTAMP_BITS = 40;
     static final long COUNTER_BITS = 13;
     static final long INITIATORID_BITS = 10;
-    
-    static final int DRIFT_CHECK = 5; // ms
 
     // VOLT_EPOCH holds the time in millis since 1/1/2008 at 12am.
     // The current time - VOLT_EPOCH should fit nicely in 40 bits
@@ -70,17 +69,41 @@ public class TransactionIdManager {
     static final long INITIATORID_MAX_VALUE = (1L << INITIATORID_BITS) - 1L;
 
     // the local siteid
-    long initiatorId;
-    // the time of the previous txn id generation
-    long lastUsedTime = -1;
-    // the number of txns generated during the same value
-    // for System.currentTimeMillis()
-    long counterValue = 0;
-
-    // remembers the last txn generated
-    long lastTxnId = 0;
-    
-    long time_delta = 0L;
+    final long initiatorId;
+
+    /**
+     * How far (in ms) the ids that we hand out are allowed to get ahead of the clock.
+     * This only happens if we run out of counter values in a millisecond or if the
+     * clock moves backwards.
+     */
+    static final long DRIFT_CHECK = 5;
+
+    /**
+     * The number of times that we will wait for the clock to catch up
+     * before we give up and crash
+     */
+    static final int DRIFT_MAX_WAITS = 1000;
+
+    /**
+     * The number of ids that can be generated per millisecond
+     */
+    static final long SLOTS_PER_MS = COUNTER_MAX_VALUE + 1;
+
+    /**
+     * The last slot that was used to generate an id
+     * A slot is (milliseconds * SLOTS_PER_MS) + the counter, so the next id is
+     * always just the next slot or the first slot in the current millisecond,
+     * whichever is larger. Every thread at the site advances the same slot with
+     * a CAS instead of taking a lock, so the ids are strictly increasing in the
+     * order that they were generated. The TransactionQueueManager depends on this,
+     * because it restarts any dtxn whose id is less than one that it has already
+     * released. If we run out of slots in a millisecond or the clock moves backwards,
+     * then we keep counting into the following millisecond, but only for up to
+     * DRIFT_CHECK ms. After that we wait for the clock to catch up.
+     */
+    private final AtomicLong lastSlot = new AtomicLong(-1);
+
+    volatile long time_delta = 0L;
 
     /**
      * Initialize the TransactionIdManager for this site
@@ -94,62 +117,41 @@ public class TransactionIdManager {
      * Generate a unique id that contains a timestamp, a counter
      * and a siteid packed into a 64-bit long value. Subsequent calls
      * to this method will return strictly larger long values.
+     * This only blocks if the ids have gotten more than DRIFT_CHECK ms
+     * ahead of the clock.
      * @return The newly generated transaction id.
      */
-    public synchronized long getNextUniqueTransactionId() {
-        long currentTime = System.currentTimeMillis();
-//        boolean new_time = true;
-        if (currentTime == lastUsedTime) {
-//            new_time = false;
-            // increment the counter for this millisecond
-            counterValue++;
-
-            // handle the case where we've run out of counter values
-            // for this particular millisecond (feels unlikely)
-            if (counterValue > COUNTER_MAX_VALUE) {
-                LOG.warn("TOO MANY TXNS! SPIN LOCK!!!");
-                // spin until the next millisecond
-                while (currentTime == lastUsedTime)
-                    currentTime = System.currentTimeMillis();
-                // reset the counter and lastUsedTime for the new millisecond
-                lastUsedTime = currentTime;
-                counterValue = 0;
-            }
-        }
-        else {
-            // reset the counter and lastUsedTime for the new millisecond
-            if (currentTime < lastUsedTime) {
-                LOG.warn(String.format("Initiator time moved backwards from %d to %d by %d ms!!!",
-                                        lastUsedTime, currentTime, (lastUsedTime - currentTime)));
-                // if the diff is less than 5 ms, wait a bit
-                if ((lastUsedTime - currentTime) < DRIFT_CHECK) {
-                    int count = 1000;
-                    // note, the loop should stop once lastUsedTime is PASSED, not current
-                    while ((currentTime <= lastUsedTime) && (count-- > 0)) {
-                        try {
-                            Thread.sleep(lastUsedTime - currentTime + 1);
-                        } catch (InterruptedException e) {}
-                        currentTime = System.currentTimeMillis();
-                    }
-                    // if the loop above ended because it ran too much
-                    if (count < 0) {
-                        LOG.error("H-Store was unable to recover after the system time was externally negatively adusted. " +
-                                  "It is possible that there is a serious system time or NTP error. ");
-                        VoltDB.crashVoltDB();
-                    }
+    public long getNextUniqueTransactionId() {
+        int waits = 0;
+        while (true) {
+            final long currentSlot = (System.currentTimeMillis() + this.time_delta) * SLOTS_PER_MS;
+            final long last = this.lastSlot.get();
+            final long next = Math.max(currentSlot, last + 1);
+            if (next - currentSlot >= DRIFT_CHECK * SLOTS_PER_MS) {
+                if (waits == 0) {
+                    LOG.warn(String.format("Initiator time is behind the last txn id by %d ms. Waiting for it to catch up...",
+                                           (next - currentSlot) / SLOTS_PER_MS));
                 }
-                // crash immediately if time has gone backwards by too much
-                else {
+                if (++waits > DRIFT_MAX_WAITS) {
+                    LOG.error("H-Store was unable to recover after the system time was externally negatively adusted. " +
+                              "It is possible that there is a serious system time or NTP error. ");
                     VoltDB.crashVoltDB();
                 }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException ex) {
+                    // Keep going...
+                }
+                continue;
             }
-            lastUsedTime = currentTime;
-            counterValue = 0;
-        }
-
-        lastTxnId = makeIdFromComponents(currentTime + time_delta, counterValue, initiatorId);
+            if (this.lastSlot.compareAndSet(last, next)) {
+                return (this.makeIdFromSlot(next));
+            }
+        } // WHILE
+    }
 
-        return lastTxnId;
+    private long makeIdFromSlot(long slot) {
+        return makeIdFromComponents(slot / SLOTS_PER_MS, slot % SLOTS_PER_MS, this.initiatorId);
     }
 
     public static long makeIdFromComponents(long ts, long seqNo, long initiatorId) {
@@ -216,11 +218,16 @@ public class TransactionIdManager {
      * @return The last txn id generated.
      */
     public long getLastTxnId() {
-        return lastTxnId;
+        long slot = this.lastSlot.get();
+        return (slot < 0 ? 0 : this.makeIdFromSlot(slot));
     }
 
+    /**
+     * Get the time embedded in the last txn id generated.
+     */
     public long getLastUsedTime() {
-        return lastUsedTime;
+        long slot = this.lastSlot.get();
+        return (slot < 0 ? -1 : slot / SLOTS_PER_MS);
     }
 
     public void setTimeDelta(long delta) {
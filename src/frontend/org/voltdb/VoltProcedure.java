@@ -120,12 +120,18 @@ public abstract class VoltProcedure implements Poolable, Loggable {
 
     // private members reserved exclusively to VoltProcedure
     private Method procMethod;
+    private ProcedureInvoker procInvoker;
     private boolean procMethodNoJava = false;
     private boolean procIsMapReduce = false;
     private Class<?>[] paramTypes;
     private boolean paramTypeIsPrimitive[];
     private boolean paramTypeIsArray[];
     private Class<?> paramTypeComponentType[];
+    /**
+     * For each parameter, the class of the values that tryToMakeCompatible() would
+     * pass through unchanged. This is null if there is no such class for that slot.
+     */
+    private Class<?> paramTypeExactClass[];
     private int paramTypesLength;
     private boolean isNative = true;
     protected Object procParams[];
@@ -352,9 +358,15 @@ public abstract class VoltProcedure implements Poolable, Loggable {
             paramTypeIsPrimitive = tempParamTypeIsPrimitive;
             paramTypeIsArray = tempParamTypeIsArray;
             paramTypeComponentType = tempParamTypeComponentType;
+            paramTypeExactClass = new Class<?>[paramTypesLength];
+            for (int ii = 0; ii < paramTypesLength; ii++) {
+                paramTypeExactClass[ii] = getExactClass(paramTypes[ii]);
+            } // FOR
 
             if (procMethod == null) {
                 LOG.fatal("No good method found in: " + getClass().getName());
+            } else if (procIsMapReduce == false && hstore_conf.site.exec_procedure_invokers) {
+                procInvoker = ProcedureInvoker.get(getClass(), procMethod);
             }
 
             Field[] fields = getClass().getFields();
@@ -596,6 +608,8 @@ public abstract class VoltProcedure implements Poolable, Loggable {
         
         for (int i = 0; i < paramTypesLength; i++) {
 //          String orig = (this.procParams[i] != null ? this.procParams[i].getClass().getSimpleName() : null);
+            // Skip the checks if the client already gave us exactly what run() wants
+            if (this.procParams[i] != null && this.procParams[i].getClass() == paramTypeExactClass[i]) continue;
             try {
                 this.procParams[i] = tryToMakeCompatible(i, this.procParams[i]);
 //                if (trace.get()) LOG.trace(String.format("[%02d] ORIG:%s -> NEW:%s", i, orig, this.procParams[i].getClass().getSimpleName()));
@@ -628,7 +642,17 @@ public abstract class VoltProcedure implements Poolable, Loggable {
                 LOG.trace(String.format("Invoking %s [params=%s, partition=%d]",
                                         this.procMethod, this.procParams + Arrays.toString(this.procParams), this.partitionId));
             try {
-                Object rawResult = procMethod.invoke(this, this.procParams);
+                Object rawResult = null;
+                if (this.procInvoker != null) {
+                    try {
+                        rawResult = this.procInvoker.invoke(this, this.procParams);
+                    } catch (Throwable ex) {
+                        // Wrap it up just like Method.invoke() would have
+                        throw new InvocationTargetException(ex);
+                    }
+                } else {
+                    rawResult = procMethod.invoke(this, this.procParams);
+                }
                 this.results = getResultsFromRawResults(rawResult);
                 if (this.results == null) results = HStoreConstants.EMPTY_RESULT;
             } catch (IllegalAccessException e) {
@@ -799,6 +823,24 @@ public abstract class VoltProcedure implements Poolable, Loggable {
         throw new RuntimeException("Procedure didn't return acceptable type.");
     }
 
+    /**
+     * Returns the class of the parameter values that tryToMakeCompatible() will
+     * always hand back as-is for a run() parameter of the given type
+     * @param slot
+     * @return
+     */
+    private static Class<?> getExactClass(Class<?> slot) {
+        if (slot == long.class) return (Long.class);
+        if (slot == int.class) return (Integer.class);
+        if (slot == short.class) return (Short.class);
+        if (slot == byte.class) return (Byte.class);
+        if (slot == double.class) return (Double.class);
+        if (slot == boolean.class) return (Boolean.class);
+        if (slot == String.class || slot == TimestampType.class || slot == VoltTable.class) return (slot);
+        if (slot.isArray()) return (slot);
+        return (null);
+    }
+
     /** @throws Exception with a message describing why the types are incompatible. */
     final private Object tryToMakeCompatible(int paramTypeIndex, Object param) throws Exception {
         if (param == null || param == VoltType.NULL_STRING ||
@@ -1111,6 +1153,7 @@ public abstract class VoltProcedure implements Poolable, Loggable {
         this.planner = this.executor.POOL_BATCH_PLANNERS.get(batchHashCode);
         if (this.planner == null) { // Assume fast case
             this.planner = new BatchPlanner(batchStmts, batchSize, this.catalog_proc, this.p_estimator, forceSinglePartition);
+            if (this.hstore_site != null) this.planner.setPlanCache(this.hstore_site.getBatchPlanCache());
             this.executor.POOL_BATCH_PLANNERS.put(batchHashCode, planner);
         }
         assert(this.planner != null);
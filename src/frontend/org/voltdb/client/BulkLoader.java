@@ -0,0 +1,168 @@
+package org.voltdb.client;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.log4j.Logger;
+import org.voltdb.VoltTable;
+import org.voltdb.catalog.Catalog;
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Table;
+
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+import edu.brown.utils.PartitionEstimator;
+
+/**
+ * Loads VoltTables into the database without going through a multi-partition txn.
+ * The rows for a partitioned table are hashed on the client using the table's
+ * partitioning column and then each partition's rows are sent at the same time as
+ * separate single-partition @LoadTablePartition txns. If the Client was given
+ * the catalog, then each of these txns goes straight to the site that has that partition.
+ * Replicated tables (and tables with a vertical partition) still have to be sent to
+ * every partition, so they are loaded with a single @LoadMultipartitionTable txn.
+ */
+public class BulkLoader {
+    private static final Logger LOG = Logger.getLogger(BulkLoader.class);
+    private static final LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private static final LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    private static final String PROC_LOAD_PARTITION = "@LoadTablePartition";
+    private static final String PROC_LOAD_MULTIPARTITION = "@LoadMultipartitionTable";
+
+    private final Client client;
+    private final Database catalog_db;
+    private final PartitionEstimator p_estimator;
+    private final int num_partitions;
+
+    /**
+     * Collects the responses for all of the partitions that we sent rows to
+     */
+    private static class LoadCallback implements ProcedureCallback {
+        private final CountDownLatch latch;
+        private ClientResponse error = null;
+        private ClientResponse last = null;
+
+        public LoadCallback(int num_txns) {
+            this.latch = new CountDownLatch(num_txns);
+        }
+
+        @Override
+        public void clientCallback(ClientResponse clientResponse) {
+            synchronized (this) {
+                if (clientResponse.getStatus() != Status.OK) {
+                    if (this.error == null) this.error = clientResponse;
+                } else {
+                    this.last = clientResponse;
+                }
+            } // SYNCH
+            this.latch.countDown();
+        }
+
+        public synchronized ClientResponse getResponse() {
+            return (this.error != null ? this.error : this.last);
+        }
+    } // END CLASS
+
+    public BulkLoader(Client client, Catalog catalog) {
+        this.client = client;
+        this.catalog_db = CatalogUtil.getDatabase(catalog);
+        this.p_estimator = new PartitionEstimator(this.catalog_db);
+        this.num_partitions = CatalogUtil.getNumberOfPartitions(catalog);
+    }
+
+    /**
+     * Split the rows of the given VoltTable into separate VoltTables for each partition.
+     * The VoltTable for a partition will be null if none of the rows belong to it.
+     * @param catalog_tbl
+     * @param table
+     * @return
+     */
+    public VoltTable[] splitByPartition(Table catalog_tbl, VoltTable table) {
+        assert(catalog_tbl.getIsreplicated() == false) : "Trying to split replicated table " + catalog_tbl;
+        VoltTable partitioned[] = new VoltTable[this.num_partitions];
+        table.resetRowPosition();
+        while (table.advanceRow()) {
+            int p = -1;
+            try {
+                p = this.p_estimator.getTableRowPartition(catalog_tbl, table.fetchRow(table.getActiveRowIndex()));
+            } catch (Exception ex) {
+                throw new RuntimeException("Failed to calculate the partition of row #" + table.getActiveRowIndex() + " for " + catalog_tbl, ex);
+            }
+            assert(p >= 0 && p < this.num_partitions) : "Invalid partition " + p + " for " + catalog_tbl;
+            if (partitioned[p] == null) {
+                partitioned[p] = table.clone(table.getUnderlyingBufferSize() / this.num_partitions);
+            }
+            // this adds the active row from table
+            partitioned[p].add(table);
+        } // WHILE
+        table.resetRowPosition();
+        return (partitioned);
+    }
+
+    /**
+     * Load the rows in the given VoltTable into the database. This will block
+     * until all of the partitions have finished loading their rows. The response
+     * of the first partition that failed is returned if there was an error.
+     * <p>
+     * Each partition's rows are loaded in a separate txn, so a failure is not atomic:
+     * the rows for every partition whose txn committed will still be in the database.
+     * The caller has to clean up those rows (or retry with only the failed
+     * partitions' rows) before it loads the table again.
+     * @param tableName
+     * @param table
+     * @return
+     * @throws IOException
+     * @throws ProcCallException
+     */
+    public ClientResponse load(String tableName, VoltTable table) throws IOException, ProcCallException {
+        Table catalog_tbl = this.catalog_db.getTables().getIgnoreCase(tableName);
+        if (catalog_tbl == null) {
+            throw new IllegalArgumentException("Invalid table name '" + tableName + "'");
+        }
+
+        // Replicated tables and vertical partitions have to go to everybody
+        // We also let the database deal with empty tables so that we always have a response
+        if (catalog_tbl.getIsreplicated() ||
+            CatalogUtil.getVerticalPartition(catalog_tbl) != null ||
+            table.getRowCount() == 0) {
+            if (debug.get()) LOG.debug(String.format("Loading %d rows for %s with %s",
+                                                     table.getRowCount(), tableName, PROC_LOAD_MULTIPARTITION));
+            return (this.client.callProcedure(PROC_LOAD_MULTIPARTITION, tableName, table));
+        }
+
+        VoltTable partitioned[] = this.splitByPartition(catalog_tbl, table);
+        int num_txns = 0;
+        for (VoltTable vt : partitioned) {
+            if (vt != null) num_txns++;
+        } // FOR
+        if (debug.get()) LOG.debug(String.format("Loading %d rows for %s with %d %s txns",
+                                                 table.getRowCount(), tableName, num_txns, PROC_LOAD_PARTITION));
+
+        LoadCallback callback = new LoadCallback(num_txns);
+        for (int p = 0; p < partitioned.length; p++) {
+            if (partitioned[p] == null) continue;
+            if (trace.get()) LOG.trace(String.format("Sending %d rows for %s to partition %d",
+                                                     partitioned[p].getRowCount(), tableName, p));
+            try {
+                while (this.client.callProcedure(callback, PROC_LOAD_PARTITION, p, tableName, partitioned[p]) == false) {
+                    this.client.backpressureBarrier();
+                } // WHILE
+            } catch (InterruptedException ex) {
+                throw new RuntimeException("Interrupted while loading " + tableName, ex);
+            }
+        } // FOR
+
+        try {
+            callback.latch.await();
+        } catch (InterruptedException ex) {
+            throw new RuntimeException("Interrupted while waiting for " + tableName + " to finish loading", ex);
+        }
+        return (callback.getResponse());
+    }
+}
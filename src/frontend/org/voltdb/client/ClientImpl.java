@@ -27,6 +27,7 @@ import org.apache.log4j.Logger;
 import org.voltdb.StoredProcedureInvocation;
 import org.voltdb.VoltTable;
 import org.voltdb.catalog.Catalog;
+import org.voltdb.catalog.Procedure;
 import org.voltdb.messaging.FastSerializer;
 import org.voltdb.utils.DBBPool.BBContainer;
 
@@ -183,6 +184,12 @@ final class ClientImpl implements Client {
             } catch (Exception ex) {
                 throw new RuntimeException("Failed to estimate base partition for new invocation of '" + procName + "'", ex);
             }
+        } else if (m_catalog != null) {
+            Integer partition = this.getSysProcBasePartition(procName, parameters);
+            if (partition != null) {
+                site_id = m_partitionSiteXref.get(partition);
+                invocation.setBasePartition(partition.intValue());
+            }
         }
         
         long start = ProfileMeasurement.getTime();
@@ -206,6 +213,24 @@ final class ClientImpl implements Client {
         return cb.getResponse();
     }
 
+    /**
+     * Single-partition sysprocs take the partition that they need to execute
+     * on as their first parameter. Returns null if the given sysproc is not
+     * single-partitioned or if that parameter is not a valid partition.
+     * @param procName
+     * @param parameters
+     * @return
+     */
+    private Integer getSysProcBasePartition(String procName, Object parameters[]) {
+        Procedure catalog_proc = CatalogUtil.getDatabase(m_catalog).getProcedures().getIgnoreCase(procName);
+        if (catalog_proc == null || catalog_proc.getSinglepartition() == false) return (null);
+        // Let the server send back the error if we don't have a valid partition
+        if (parameters.length == 0 || (parameters[0] instanceof Number) == false) return (null);
+        Integer partition = ((Number)parameters[0]).intValue();
+        if (m_partitionSiteXref.containsKey(partition) == false) return (null);
+        return (partition);
+    }
+
     /**
      * Asynchronously invoke a procedure call.
      * @param callback TransactionCallback that will be invoked with procedure results.
@@ -267,6 +292,12 @@ final class ClientImpl implements Client {
             } catch (Exception ex) {
                 throw new RuntimeException("Failed to estimate base partition for new invocation of '" + procName + "'", ex);
             }
+        } else if (m_catalog != null) {
+            Integer partition = this.getSysProcBasePartition(procName, parameters);
+            if (partition != null) {
+                site_id = m_partitionSiteXref.get(partition);
+                invocation.setBasePartition(partition.intValue());
+            }
         }
         
         if (m_blockingQueue) {
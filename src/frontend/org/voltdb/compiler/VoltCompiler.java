@@ -82,10 +82,15 @@ import org.voltdb.compiler.projectfile.VerticalpartitionsType.Verticalpartition;
 import org.voltdb.planner.VerticalPartitionPlanner;
 import org.voltdb.sysprocs.AdHoc;
 import org.voltdb.sysprocs.DatabaseDump;
+import org.voltdb.sysprocs.LatencyStatistics;
 import org.voltdb.sysprocs.LoadMultipartitionTable;
+import org.voltdb.sysprocs.LoadTablePartition;
 import org.voltdb.sysprocs.NoOp;
 import org.voltdb.sysprocs.RecomputeMarkovs;
+import org.voltdb.sysprocs.ReplayWork;
 import org.voltdb.sysprocs.Shutdown;
+import org.voltdb.sysprocs.SnapshotRestore;
+import org.voltdb.sysprocs.SnapshotSave;
 import org.voltdb.types.IndexType;
 import org.voltdb.utils.Encoder;
 import org.voltdb.utils.JarReader;
@@ -1191,15 +1196,18 @@ public class VoltCompiler {
         {
          // package.classname                                readonly    everysite
         {LoadMultipartitionTable.class.getCanonicalName(),      "false",   "true"},
+        {LoadTablePartition.class.getCanonicalName(),           "false",   "false"},
+        {ReplayWork.class.getCanonicalName(),                   "false",   "false"},
         {DatabaseDump.class.getCanonicalName(),                 "true",    "true"},
         {RecomputeMarkovs.class.getCanonicalName(),             "true",    "true"},
+        {SnapshotSave.class.getCanonicalName(),                 "true",    "true"},
+        {SnapshotRestore.class.getCanonicalName(),              "false",   "true"},
         {Shutdown.class.getCanonicalName(),                     "false",   "true"},
         {NoOp.class.getCanonicalName(),                         "true",    "false"},
         {AdHoc.class.getCanonicalName(),                        "false",   "false"},
+        {LatencyStatistics.class.getCanonicalName(),            "true",    "true"},
         
 //         {"org.voltdb.sysprocs.Quiesce",                      "false",    "false"},
-//         {"org.voltdb.sysprocs.SnapshotSave",                 "false",    "false"},
-//         {"org.voltdb.sysprocs.SnapshotRestore",              "false",    "false"},
 //         {"org.voltdb.sysprocs.SnapshotStatus",               "false",    "false"},
 //         {"org.voltdb.sysprocs.SnapshotScan",                 "false",    "false"},
 //         {"org.voltdb.sysprocs.SnapshotDelete",               "false",    "false"},
@@ -284,6 +284,18 @@ public class FastSerializer implements DataOutput {
             return;
         }
 
+        // Most strings are plain ASCII, so we can copy their chars straight into
+        // the buffer without encoding them into a temporary byte array first
+        final int numChars = string.length();
+        if (numChars <= MAX_LENGTH && isASCII(string, numChars)) {
+            writeInt(numChars);
+            growIfNeeded(numChars);
+            for (int i = 0; i < numChars; i++) {
+                buffer.b.put((byte)string.charAt(i));
+            } // FOR
+            return;
+        }
+
         int len = 0;
         byte[] strbytes = {};
         try {
@@ -300,6 +312,13 @@ public class FastSerializer implements DataOutput {
         write(strbytes);
     }
 
+    private static boolean isASCII(String string, int numChars) {
+        for (int i = 0; i < numChars; i++) {
+            if (string.charAt(i) >= 0x80) return (false);
+        } // FOR
+        return (true);
+    }
+
     // These writeArray() methods are tested in TestSQLTypesSuite.
     // If changing the max limits, please update testInvalidParameterSerializations.
 
@@ -0,0 +1,166 @@
+package org.voltdb.sysprocs;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.voltdb.BackendTarget;
+import org.voltdb.DependencySet;
+import org.voltdb.HsqlBackend;
+import org.voltdb.ParameterSet;
+import org.voltdb.ProcInfo;
+import org.voltdb.VoltSystemProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Procedure;
+
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.PartitionExecutor;
+import edu.brown.hstore.PartitionExecutor.SystemProcedureExecutionContext;
+import edu.brown.hstore.util.TxnLatencyStats;
+import edu.brown.statistics.LatencyHistogram;
+import edu.brown.utils.PartitionEstimator;
+
+/**
+ * Returns the latency percentiles for each Procedure and each part of the system
+ * that its txns go through, merged across all of the HStoreSites in the cluster.
+ * This only returns something if ${site.txn_profiling} is enabled.
+ */
+@ProcInfo(singlePartition = false)
+public class LatencyStatistics extends VoltSystemProcedure {
+
+    private static final Logger LOG = Logger.getLogger(LatencyStatistics.class);
+
+    @Override
+    public void globalInit(PartitionExecutor site, Procedure catalog_proc,
+            BackendTarget eeType, HsqlBackend hsql, PartitionEstimator p_estimator) {
+        super.globalInit(site, catalog_proc, eeType, hsql, p_estimator);
+        site.registerPlanFragment(SysProcFragmentId.PF_latencyStatsDistribute, this);
+        site.registerPlanFragment(SysProcFragmentId.PF_latencyStatsAggregate, this);
+    }
+
+    @Override
+    public DependencySet executePlanFragment(long txn_id, Map<Integer, List<VoltTable>> dependencies, int fragmentId, ParameterSet params, SystemProcedureExecutionContext context) {
+        final boolean debug = LOG.isDebugEnabled();
+
+        if (fragmentId == SysProcFragmentId.PF_latencyStatsDistribute) {
+            VoltTable result = new VoltTable(new VoltTable.ColumnInfo("SITE_ID", VoltType.BIGINT),
+                                             new VoltTable.ColumnInfo("PROCEDURE", VoltType.STRING),
+                                             new VoltTable.ColumnInfo("PHASE", VoltType.STRING),
+                                             new VoltTable.ColumnInfo("HISTOGRAM", VoltType.STRING));
+
+            // The histograms are shared by the whole site, so only the first partition
+            // at each site sends them back
+            HStoreSite hstore_site = this.executor.getHStoreSite();
+            TxnLatencyStats stats = hstore_site.getTxnLatencyStats();
+            if (stats != null && Collections.min(hstore_site.getLocalPartitionIds()).equals(this.partitionId)) {
+                String phases[] = TxnLatencyStats.getPhases();
+                for (Procedure catalog_proc : stats.getProcedures()) {
+                    LatencyHistogram histograms[] = stats.getSnapshot(catalog_proc);
+                    for (int i = 0; i < phases.length; i++) {
+                        if (histograms[i].isEmpty()) continue;
+                        result.addRow(this.executor.getSiteId(), catalog_proc.getName(), phases[i], histograms[i].toJSONString());
+                    } // FOR
+                } // FOR
+            }
+            return new DependencySet(new int[] { (int)SysProcFragmentId.PF_latencyStatsDistribute }, new VoltTable[]{ result });
+
+        } else if (fragmentId == SysProcFragmentId.PF_latencyStatsAggregate) {
+            if (debug) LOG.debug("Aggregating latency histograms in txn #" + txn_id);
+
+            // Merge the histograms for each Procedure+Phase from all of the sites
+            Map<String, Map<String, LatencyHistogram>> merged = new TreeMap<String, Map<String, LatencyHistogram>>();
+            for (List<VoltTable> l : dependencies.values()) {
+                for (VoltTable vt : l) {
+                    while (vt != null && vt.advanceRow()) {
+                        String proc_name = vt.getString(1);
+                        String phase = vt.getString(2);
+                        LatencyHistogram h = new LatencyHistogram();
+                        try {
+                            h.fromJSON(new JSONObject(vt.getString(3)), null);
+                        } catch (JSONException ex) {
+                            throw new RuntimeException("Failed to deserialize latency histogram for " + proc_name + "." + phase, ex);
+                        }
+                        Map<String, LatencyHistogram> proc_histograms = merged.get(proc_name);
+                        if (proc_histograms == null) {
+                            proc_histograms = new TreeMap<String, LatencyHistogram>();
+                            merged.put(proc_name, proc_histograms);
+                        }
+                        LatencyHistogram total = proc_histograms.get(phase);
+                        if (total == null) {
+                            proc_histograms.put(phase, h);
+                        } else {
+                            total.merge(h);
+                        }
+                    } // WHILE
+                } // FOR
+            } // FOR
+
+            VoltTable result = new VoltTable(new VoltTable.ColumnInfo("PROCEDURE", VoltType.STRING),
+                                             new VoltTable.ColumnInfo("PHASE", VoltType.STRING),
+                                             new VoltTable.ColumnInfo("COUNT", VoltType.BIGINT),
+                                             new VoltTable.ColumnInfo("AVG_MS", VoltType.FLOAT),
+                                             new VoltTable.ColumnInfo("P50_MS", VoltType.FLOAT),
+                                             new VoltTable.ColumnInfo("P95_MS", VoltType.FLOAT),
+                                             new VoltTable.ColumnInfo("P99_MS", VoltType.FLOAT),
+                                             new VoltTable.ColumnInfo("P999_MS", VoltType.FLOAT),
+                                             new VoltTable.ColumnInfo("MAX_MS", VoltType.FLOAT));
+            for (String proc_name : merged.keySet()) {
+                for (String phase : TxnLatencyStats.getPhases()) {
+                    LatencyHistogram h = merged.get(proc_name).get(phase);
+                    if (h == null) continue;
+                    result.addRow(proc_name, phase, h.getCount(),
+                                  h.getMean() / 1000000d,
+                                  h.getValueAtPercentile(50) / 1000000d,
+                                  h.getValueAtPercentile(95) / 1000000d,
+                                  h.getValueAtPercentile(99) / 1000000d,
+                                  h.getValueAtPercentile(99.9) / 1000000d,
+                                  h.getMax() / 1000000d);
+                } // FOR
+            } // FOR
+            return new DependencySet(new int[] { (int)SysProcFragmentId.PF_latencyStatsAggregate }, new VoltTable[]{ result });
+        }
+        assert(false) : "Unexpected FragmentId " + fragmentId;
+        return null;
+    }
+
+    /**
+     *
+     * @return
+     * @throws VoltAbortException
+     */
+    public VoltTable[] run() throws VoltAbortException {
+        final boolean debug = LOG.isDebugEnabled();
+
+        SynthesizedPlanFragment pfs[] = new SynthesizedPlanFragment[num_partitions + 1];
+        for (int i = 1; i <= num_partitions; ++i) {
+            int partition = i - 1;
+            pfs[i] = new SynthesizedPlanFragment();
+            pfs[i].fragmentId = SysProcFragmentId.PF_latencyStatsDistribute;
+            pfs[i].inputDependencyIds = new int[] { };
+            pfs[i].outputDependencyIds = new int[] { (int)SysProcFragmentId.PF_latencyStatsDistribute };
+            pfs[i].multipartition = true;
+            pfs[i].nonExecSites = false;
+            pfs[i].destPartitionId = partition;
+            pfs[i].parameters = new ParameterSet();
+            pfs[i].last_task = true;
+        } // FOR
+
+        // a final plan fragment to aggregate the results
+        pfs[0] = new SynthesizedPlanFragment();
+        pfs[0].destPartitionId = partitionId;
+        pfs[0].fragmentId = SysProcFragmentId.PF_latencyStatsAggregate;
+        pfs[0].inputDependencyIds = new int[] { (int)SysProcFragmentId.PF_latencyStatsDistribute };
+        pfs[0].outputDependencyIds = new int[] { (int)SysProcFragmentId.PF_latencyStatsAggregate };
+        pfs[0].multipartition = false;
+        pfs[0].nonExecSites = false;
+        pfs[0].parameters = new ParameterSet();
+
+        if (debug) LOG.debug("Passing " + pfs.length + " sysproc fragments to executeSysProcPlanFragments()");
+        return executeSysProcPlanFragments(pfs, (int)SysProcFragmentId.PF_latencyStatsAggregate);
+    }
+}
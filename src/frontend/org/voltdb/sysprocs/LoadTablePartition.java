@@ -0,0 +1,83 @@
+package org.voltdb.sysprocs;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.voltdb.DependencySet;
+import org.voltdb.ParameterSet;
+import org.voltdb.ProcInfo;
+import org.voltdb.VoltSystemProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Table;
+
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.PartitionExecutor.SystemProcedureExecutionContext;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * Load a VoltTable directly into a single partition as a single-partition txn.
+ * Unlike @LoadMultipartitionTable, the rows are not split up by the database. The
+ * client is expected to have already hashed every row to the partition that is passed
+ * in as the first parameter (see BulkLoader). The HStoreSite will route the txn
+ * to that partition, so this does not need to go through the dtxn coordinator.
+ * Replicated tables still need to be loaded with @LoadMultipartitionTable.
+ */
+@ProcInfo(singlePartition = true)
+public class LoadTablePartition extends VoltSystemProcedure {
+    private static final Logger LOG = Logger.getLogger(LoadTablePartition.class);
+    private final static LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private final static LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    @Override
+    public DependencySet executePlanFragment(long txn_id, Map<Integer, List<VoltTable>> dependencies, int fragmentId, ParameterSet params, SystemProcedureExecutionContext context) {
+        // This sysproc never sends out any fragments
+        assert(false) : "Unexpected FragmentId " + fragmentId;
+        return null;
+    }
+
+    public VoltTable[] run(int partition, String tableName, VoltTable table) throws VoltAbortException {
+        assert(table != null) : "VoltTable to be loaded into " + tableName + " is null in txn #" + this.getTransactionId();
+
+        Table catalog_tbl = database.getTables().getIgnoreCase(tableName);
+        if (catalog_tbl == null) {
+            throw new VoltAbortException("Table '" + tableName + "' not present in catalog.");
+        }
+        if (catalog_tbl.getIsreplicated()) {
+            throw new VoltAbortException("Replicated table '" + tableName + "' must be loaded with @LoadMultipartitionTable");
+        }
+        if (partition != this.partitionId) {
+            throw new VoltAbortException(String.format("Rows for partition %d were sent to partition %d", partition, this.partitionId));
+        }
+        if (debug.get()) LOG.debug(String.format("Loading %d tuples for %s directly into partition %d in txn #%d [bytes=%d]",
+                                                 table.getRowCount(), tableName, partition,
+                                                 this.getTransactionId(), table.getUnderlyingBufferSize()));
+
+        // Check that the client split up the rows correctly
+        if (trace.get()) {
+            table.resetRowPosition();
+            while (table.advanceRow()) {
+                int p = -1;
+                try {
+                    p = this.p_estimator.getTableRowPartition(catalog_tbl, table.fetchRow(table.getActiveRowIndex()));
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+                assert(p == partition) : String.format("Row #%d for %s belongs to partition %d not %d",
+                                                       table.getActiveRowIndex(), tableName, p, partition);
+            } // WHILE
+            table.resetRowPosition();
+        }
+
+        super.voltLoadTable(CatalogUtil.getCluster(database).getName(), database.getName(), tableName, table, 0);
+
+        VoltTable result = new VoltTable(new VoltTable.ColumnInfo("TxnId", VoltType.BIGINT));
+        result.addRow(this.getTransactionId());
+        return (new VoltTable[]{ result });
+    }
+}
@@ -0,0 +1,58 @@
+package org.voltdb.sysprocs;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.voltdb.DependencySet;
+import org.voltdb.ParameterSet;
+import org.voltdb.ProcInfo;
+import org.voltdb.VoltSystemProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+
+import edu.brown.hstore.PartitionExecutor.SystemProcedureExecutionContext;
+import edu.brown.logging.LoggerUtil;
+import edu.brown.logging.LoggerUtil.LoggerBoolean;
+
+/**
+ * Re-execute the modifying WorkFragments that a distributed txn executed at a single
+ * partition of the primary. This is only invoked by HStoreSite.transactionReplayWork()
+ * at a replica, which attaches the fragments to the txn's LocalTransaction handle.
+ * Every partition that the dtxn touched gets its own single-partition @ReplayWork txn,
+ * so the replica never has to coordinate a dtxn of its own.
+ */
+@ProcInfo(singlePartition = true)
+public class ReplayWork extends VoltSystemProcedure {
+    private static final Logger LOG = Logger.getLogger(ReplayWork.class);
+    private final static LoggerBoolean debug = new LoggerBoolean(LOG.isDebugEnabled());
+    private final static LoggerBoolean trace = new LoggerBoolean(LOG.isTraceEnabled());
+    static {
+        LoggerUtil.attachObserver(LOG, debug, trace);
+    }
+
+    @Override
+    public DependencySet executePlanFragment(long txn_id, Map<Integer, List<VoltTable>> dependencies, int fragmentId, ParameterSet params, SystemProcedureExecutionContext context) {
+        // This sysproc never sends out any fragments
+        assert(false) : "Unexpected FragmentId " + fragmentId;
+        return null;
+    }
+
+    public VoltTable[] run(int partition) throws VoltAbortException {
+        if (partition != this.partitionId) {
+            throw new VoltAbortException(String.format("Work for partition %d was sent to partition %d", partition, this.partitionId));
+        }
+        if (this.m_localTxnState.isReplay() == false) {
+            throw new VoltAbortException(this.m_localTxnState + " is not a replayed txn");
+        }
+        if (debug.get()) LOG.debug(String.format("Replaying %d WorkFragments at partition %d in txn #%d",
+                                                 this.m_localTxnState.getReplayFragments().size(), partition,
+                                                 this.getTransactionId()));
+
+        int executed = this.executor.executeReplayWork(this.m_localTxnState);
+
+        VoltTable result = new VoltTable(new VoltTable.ColumnInfo("Fragments", VoltType.INTEGER));
+        result.addRow(executed);
+        return (new VoltTable[]{ result });
+    }
+}
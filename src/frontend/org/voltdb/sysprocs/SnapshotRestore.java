@@ -0,0 +1,164 @@
+package org.voltdb.sysprocs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.voltdb.BackendTarget;
+import org.voltdb.DependencySet;
+import org.voltdb.HsqlBackend;
+import org.voltdb.ParameterSet;
+import org.voltdb.ProcInfo;
+import org.voltdb.VoltSystemProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Table;
+
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.PartitionExecutor;
+import edu.brown.hstore.PartitionExecutor.SystemProcedureExecutionContext;
+import edu.brown.hstore.snapshot.SnapshotReader;
+import edu.brown.hstore.snapshot.SnapshotWriter;
+import edu.brown.utils.PartitionEstimator;
+
+/**
+ * Load the tables of every partition back in from the files written by {@link SnapshotSave}.
+ * Each partition only reads its own snapshot file. Every block is checked against its CRC
+ * before it is loaded, and the txn will abort if a file is missing, corrupt, or incomplete.
+ * The tables at every partition must be empty before they can be restored.
+ */
+@ProcInfo(singlePartition = false)
+public class SnapshotRestore extends VoltSystemProcedure {
+
+    private static final Logger LOG = Logger.getLogger(SnapshotRestore.class);
+
+    @Override
+    public void globalInit(PartitionExecutor site, Procedure catalog_proc,
+            BackendTarget eeType, HsqlBackend hsql, PartitionEstimator p_estimator) {
+        super.globalInit(site, catalog_proc, eeType, hsql, p_estimator);
+        site.registerPlanFragment(SysProcFragmentId.PF_snapshotRestoreDistribute, this);
+        site.registerPlanFragment(SysProcFragmentId.PF_snapshotRestoreAggregate, this);
+    }
+
+    @Override
+    public DependencySet executePlanFragment(long txn_id, Map<Integer, List<VoltTable>> dependencies, int fragmentId, ParameterSet params, SystemProcedureExecutionContext context) {
+        final boolean debug = LOG.isDebugEnabled();
+
+        VoltTable[] result = new VoltTable[1];
+        result[0] = new VoltTable(new VoltTable.ColumnInfo(CNAME_PARTITION_ID, CTYPE_ID),
+                                  new VoltTable.ColumnInfo("SNAPSHOT_TXN_ID", VoltType.BIGINT),
+                                  new VoltTable.ColumnInfo("NUM_BLOCKS", VoltType.BIGINT),
+                                  new VoltTable.ColumnInfo("NUM_TUPLES", VoltType.BIGINT));
+
+        if (fragmentId == SysProcFragmentId.PF_snapshotRestoreDistribute) {
+            File directory = new File(params.toArray()[0].toString());
+            String nonce = params.toArray()[1].toString();
+            File file = SnapshotWriter.getSnapshotFile(directory, nonce, this.partitionId);
+            if (file.exists() == false) {
+                throw new VoltAbortException("Missing snapshot file '" + file + "' for partition " + this.partitionId);
+            }
+
+            // The snapshot's tuples are loaded on top of whatever is already there, so we
+            // won't restore into a partition that still has data in it
+            Collection<String> nonEmpty = new ArrayList<String>();
+            for (Table catalog_tbl : CatalogUtil.getDataTables(this.database)) {
+                if (catalog_tbl.getMaterializer() != null) continue;
+                if (this.executor.getExecutionEngine().serializeTable(catalog_tbl, 0, 1).getRowCount() > 0) {
+                    nonEmpty.add(catalog_tbl.getName());
+                }
+            } // FOR
+            if (nonEmpty.isEmpty() == false) {
+                throw new VoltAbortException(String.format("Unable to restore partition %d from snapshot '%s' because " +
+                                                           "these tables are not empty: %s", this.partitionId, file, nonEmpty));
+            }
+
+            long num_tuples = 0;
+            SnapshotReader reader = null;
+            try {
+                reader = new SnapshotReader(file, this.database);
+                if (reader.getPartitionId() != this.partitionId) {
+                    throw new VoltAbortException(String.format("Snapshot file '%s' is for partition %d not %d",
+                                                               file, reader.getPartitionId(), this.partitionId));
+                }
+                if (debug) LOG.debug(String.format("Restoring partition %d from snapshot '%s' for txn #%d",
+                                                   this.partitionId, file, reader.getTransactionId()));
+                SnapshotReader.Block block = null;
+                while ((block = reader.next()) != null) {
+                    this.voltLoadTable(context.getCluster().getName(), context.getDatabase().getName(),
+                                       block.catalog_tbl.getName(), block.data, 0);
+                    num_tuples += block.data.getRowCount();
+                } // WHILE
+                result[0].addRow(this.partitionId, reader.getTransactionId(), reader.getBlockCount(), num_tuples);
+            } catch (IOException ex) {
+                throw new VoltAbortException("Failed to restore partition " + this.partitionId + " from snapshot '" + file + "': " + ex.getMessage());
+            } finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException ex) {
+                        LOG.warn("Failed to close snapshot file '" + file + "'", ex);
+                    }
+                }
+            }
+            if (debug) LOG.debug(String.format("Restored %d tuples at partition %d", num_tuples, this.partitionId));
+            return new DependencySet(new int[] { (int)SysProcFragmentId.PF_snapshotRestoreDistribute }, result);
+
+        } else if (fragmentId == SysProcFragmentId.PF_snapshotRestoreAggregate) {
+            if (debug) LOG.debug("Aggregating results from restore fragments in txn #" + txn_id);
+            for (List<VoltTable> l : dependencies.values()) {
+                for (VoltTable vt : l) {
+                    while (vt != null && vt.advanceRow()) {
+                        result[0].add(vt.getRow());
+                    } // WHILE
+                } // FOR
+            } // FOR
+            return new DependencySet(new int[] { (int)SysProcFragmentId.PF_snapshotRestoreAggregate }, result);
+        }
+        assert(false) : "Unexpected FragmentId " + fragmentId;
+        return null;
+    }
+
+    /**
+     *
+     * @param path The directory that the snapshot files were written into
+     * @param nonce The unique name of the snapshot
+     * @return
+     * @throws VoltAbortException
+     */
+    public VoltTable[] run(String path, String nonce) throws VoltAbortException {
+        final boolean debug = LOG.isDebugEnabled();
+
+        SynthesizedPlanFragment pfs[] = new SynthesizedPlanFragment[num_partitions + 1];
+        for (int i = 1; i <= num_partitions; ++i) {
+            int partition = i - 1;
+            pfs[i] = new SynthesizedPlanFragment();
+            pfs[i].fragmentId = SysProcFragmentId.PF_snapshotRestoreDistribute;
+            pfs[i].inputDependencyIds = new int[] { };
+            pfs[i].outputDependencyIds = new int[] { (int)SysProcFragmentId.PF_snapshotRestoreDistribute };
+            pfs[i].multipartition = true;
+            pfs[i].nonExecSites = false;
+            pfs[i].destPartitionId = partition;
+            pfs[i].parameters = new ParameterSet(path, nonce);
+            pfs[i].last_task = true;
+        } // FOR
+
+        // a final plan fragment to aggregate the results
+        pfs[0] = new SynthesizedPlanFragment();
+        pfs[0].destPartitionId = partitionId;
+        pfs[0].fragmentId = SysProcFragmentId.PF_snapshotRestoreAggregate;
+        pfs[0].inputDependencyIds = new int[] { (int)SysProcFragmentId.PF_snapshotRestoreDistribute };
+        pfs[0].outputDependencyIds = new int[] { (int)SysProcFragmentId.PF_snapshotRestoreAggregate };
+        pfs[0].multipartition = false;
+        pfs[0].nonExecSites = false;
+        pfs[0].parameters = new ParameterSet();
+
+        if (debug) LOG.debug("Passing " + pfs.length + " sysproc fragments to executeSysProcPlanFragments()");
+        return executeSysProcPlanFragments(pfs, (int)SysProcFragmentId.PF_snapshotRestoreAggregate);
+    }
+
+}
@@ -0,0 +1,141 @@
+package org.voltdb.sysprocs;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.voltdb.BackendTarget;
+import org.voltdb.DependencySet;
+import org.voltdb.HsqlBackend;
+import org.voltdb.ParameterSet;
+import org.voltdb.ProcInfo;
+import org.voltdb.VoltSystemProcedure;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Table;
+
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.PartitionExecutor;
+import edu.brown.hstore.PartitionExecutor.SystemProcedureExecutionContext;
+import edu.brown.hstore.snapshot.SnapshotWriter;
+import edu.brown.utils.PartitionEstimator;
+
+/**
+ * Take a transactionally consistent snapshot of every partition's tables.
+ * Each partition puts its tables into copy-on-write mode when it executes this txn.
+ * Once the txn commits, each partition streams the tuples out to its own snapshot file
+ * in between the txns that come after it. If the txn aborts, then the snapshot is
+ * thrown away. This means that the sysproc returns as soon as every partition has
+ * started its snapshot, not when all of the files have been written.
+ */
+@ProcInfo(singlePartition = false)
+public class SnapshotSave extends VoltSystemProcedure {
+
+    private static final Logger LOG = Logger.getLogger(SnapshotSave.class);
+
+    @Override
+    public void globalInit(PartitionExecutor site, Procedure catalog_proc,
+            BackendTarget eeType, HsqlBackend hsql, PartitionEstimator p_estimator) {
+        super.globalInit(site, catalog_proc, eeType, hsql, p_estimator);
+        site.registerPlanFragment(SysProcFragmentId.PF_snapshotSaveDistribute, this);
+        site.registerPlanFragment(SysProcFragmentId.PF_snapshotSaveAggregate, this);
+    }
+
+    @Override
+    public DependencySet executePlanFragment(long txn_id, Map<Integer, List<VoltTable>> dependencies, int fragmentId, ParameterSet params, SystemProcedureExecutionContext context) {
+        final boolean debug = LOG.isDebugEnabled();
+
+        VoltTable[] result = new VoltTable[1];
+        result[0] = new VoltTable(new VoltTable.ColumnInfo(CNAME_PARTITION_ID, CTYPE_ID),
+                                  new VoltTable.ColumnInfo("TXN_ID", VoltType.BIGINT),
+                                  new VoltTable.ColumnInfo("NUM_TABLES", VoltType.INTEGER),
+                                  new VoltTable.ColumnInfo("FILE", VoltType.STRING));
+
+        if (fragmentId == SysProcFragmentId.PF_snapshotSaveDistribute) {
+            File directory = new File(params.toArray()[0].toString());
+            String nonce = params.toArray()[1].toString();
+            File file = SnapshotWriter.getSnapshotFile(directory, nonce, this.partitionId);
+
+            if (this.executor.isSnapshotInProgress()) {
+                throw new VoltAbortException("Unable to start snapshot at partition " + this.partitionId +
+                                             " because there is another snapshot in progress");
+            }
+
+            // Materialized views will get rebuilt when we load their base tables back in
+            Collection<Table> tables = new ArrayList<Table>();
+            for (Table catalog_tbl : CatalogUtil.getDataTables(this.database)) {
+                if (catalog_tbl.getMaterializer() == null) tables.add(catalog_tbl);
+            } // FOR
+
+            if (debug) LOG.debug(String.format("Starting snapshot of %d tables at partition %d to '%s'",
+                                               tables.size(), this.partitionId, file));
+            SnapshotWriter writer = null;
+            try {
+                writer = new SnapshotWriter(this.executor.getExecutionEngine(), this.partitionId, txn_id,
+                                            tables, file, this.executor.getHStoreConf().site.snapshot_block_size);
+            } catch (Exception ex) {
+                throw new RuntimeException(String.format("Failed to start snapshot at partition %d to '%s'", this.partitionId, file), ex);
+            }
+            // The file is only written out if this txn commits at this partition
+            this.executor.prepareSnapshot(writer);
+            result[0].addRow(this.partitionId, txn_id, tables.size(), file.getAbsolutePath());
+            return new DependencySet(new int[] { (int)SysProcFragmentId.PF_snapshotSaveDistribute }, result);
+
+        } else if (fragmentId == SysProcFragmentId.PF_snapshotSaveAggregate) {
+            if (debug) LOG.debug("Aggregating results from snapshot fragments in txn #" + txn_id);
+            for (List<VoltTable> l : dependencies.values()) {
+                for (VoltTable vt : l) {
+                    while (vt != null && vt.advanceRow()) {
+                        result[0].add(vt.getRow());
+                    } // WHILE
+                } // FOR
+            } // FOR
+            return new DependencySet(new int[] { (int)SysProcFragmentId.PF_snapshotSaveAggregate }, result);
+        }
+        assert(false) : "Unexpected FragmentId " + fragmentId;
+        return null;
+    }
+
+    /**
+     *
+     * @param path The directory that each partition will write its snapshot file into
+     * @param nonce The unique name of this snapshot
+     * @return
+     * @throws VoltAbortException
+     */
+    public VoltTable[] run(String path, String nonce) throws VoltAbortException {
+        final boolean debug = LOG.isDebugEnabled();
+
+        SynthesizedPlanFragment pfs[] = new SynthesizedPlanFragment[num_partitions + 1];
+        for (int i = 1; i <= num_partitions; ++i) {
+            int partition = i - 1;
+            pfs[i] = new SynthesizedPlanFragment();
+            pfs[i].fragmentId = SysProcFragmentId.PF_snapshotSaveDistribute;
+            pfs[i].inputDependencyIds = new int[] { };
+            pfs[i].outputDependencyIds = new int[] { (int)SysProcFragmentId.PF_snapshotSaveDistribute };
+            pfs[i].multipartition = true;
+            pfs[i].nonExecSites = false;
+            pfs[i].destPartitionId = partition;
+            pfs[i].parameters = new ParameterSet(path, nonce);
+            pfs[i].last_task = true;
+        } // FOR
+
+        // a final plan fragment to aggregate the results
+        pfs[0] = new SynthesizedPlanFragment();
+        pfs[0].destPartitionId = partitionId;
+        pfs[0].fragmentId = SysProcFragmentId.PF_snapshotSaveAggregate;
+        pfs[0].inputDependencyIds = new int[] { (int)SysProcFragmentId.PF_snapshotSaveDistribute };
+        pfs[0].outputDependencyIds = new int[] { (int)SysProcFragmentId.PF_snapshotSaveAggregate };
+        pfs[0].multipartition = false;
+        pfs[0].nonExecSites = false;
+        pfs[0].parameters = new ParameterSet();
+
+        if (debug) LOG.debug("Passing " + pfs.length + " sysproc fragments to executeSysProcPlanFragments()");
+        return executeSysProcPlanFragments(pfs, (int)SysProcFragmentId.PF_snapshotSaveAggregate);
+    }
+
+}
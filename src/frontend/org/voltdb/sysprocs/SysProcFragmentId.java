@@ -120,4 +120,16 @@ public class SysProcFragmentId
     public static final int PF_recomputeMarkovsDistribute = 180;
     public static final int PF_recomputeMarkovsAggregate = 181;
     
+    // @SnapshotSave
+    public static final int PF_snapshotSaveDistribute = 190;
+    public static final int PF_snapshotSaveAggregate = 191;
+    
+    // @SnapshotRestore
+    public static final int PF_snapshotRestoreDistribute = 200;
+    public static final int PF_snapshotRestoreAggregate = 201;
+    
+    // @LatencyStatistics
+    public static final int PF_latencyStatsDistribute = 210;
+    public static final int PF_latencyStatsAggregate = 211;
+    
 }
@@ -10716,6 +10716,3034 @@ public final class Hstoreservice {
     // @@protoc_insertion_point(class_scope:edu.brown.hstore.TimeSyncResponse)
   }
   
+  public static final class ReplicationRecord extends
+      com.google.protobuf.GeneratedMessage {
+    // Use ReplicationRecord.newBuilder() to construct.
+    private ReplicationRecord() {
+      initFields();
+    }
+    private ReplicationRecord(boolean noInit) {}
+    
+    private static final ReplicationRecord defaultInstance;
+    public static ReplicationRecord getDefaultInstance() {
+      return defaultInstance;
+    }
+    
+    public ReplicationRecord getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+    
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return edu.brown.hstore.Hstoreservice.internal_static_edu_brown_hstore_ReplicationRecord_descriptor;
+    }
+    
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return edu.brown.hstore.Hstoreservice.internal_static_edu_brown_hstore_ReplicationRecord_fieldAccessorTable;
+    }
+    
+    public enum Type
+        implements com.google.protobuf.ProtocolMessageEnum {
+      INIT(0, 0),
+      WORK(1, 1),
+      FINISH(2, 2),
+      ;
+      
+      
+      public final int getNumber() { return value; }
+      
+      public static Type valueOf(int value) {
+        switch (value) {
+          case 0: return INIT;
+          case 1: return WORK;
+          case 2: return FINISH;
+          default: return null;
+        }
+      }
+      
+      public static com.google.protobuf.Internal.EnumLiteMap<Type>
+          internalGetValueMap() {
+        return internalValueMap;
+      }
+      private static com.google.protobuf.Internal.EnumLiteMap<Type>
+          internalValueMap =
+            new com.google.protobuf.Internal.EnumLiteMap<Type>() {
+              public Type findValueByNumber(int number) {
+                return Type.valueOf(number)
+      ;        }
+            };
+      
+      public final com.google.protobuf.Descriptors.EnumValueDescriptor
+          getValueDescriptor() {
+        return getDescriptor().getValues().get(index);
+      }
+      public final com.google.protobuf.Descriptors.EnumDescriptor
+          getDescriptorForType() {
+        return getDescriptor();
+      }
+      public static final com.google.protobuf.Descriptors.EnumDescriptor
+          getDescriptor() {
+        return edu.brown.hstore.Hstoreservice.ReplicationRecord.getDescriptor().getEnumTypes().get(0);
+      }
+      
+      private static final Type[] VALUES = {
+        INIT, WORK, FINISH, 
+      };
+      public static Type valueOf(
+          com.google.protobuf.Descriptors.EnumValueDescriptor desc) {
+        if (desc.getType() != getDescriptor()) {
+          throw new java.lang.IllegalArgumentException(
+            "EnumValueDescriptor is not for this type.");
+        }
+        return VALUES[desc.getIndex()];
+      }
+      private final int index;
+      private final int value;
+      private Type(int index, int value) {
+        this.index = index;
+        this.value = value;
+      }
+      
+      static {
+        edu.brown.hstore.Hstoreservice.getDescriptor();
+      }
+      
+      // @@protoc_insertion_point(enum_scope:edu.brown.hstore.ReplicationRecord.Type)
+    }
+    
+    // required int64 sequence = 1;
+    public static final int SEQUENCE_FIELD_NUMBER = 1;
+    private boolean hasSequence;
+    private long sequence_ = 0L;
+    public boolean hasSequence() { return hasSequence; }
+    public long getSequence() { return sequence_; }
+    
+    // required int64 transaction_id = 2;
+    public static final int TRANSACTION_ID_FIELD_NUMBER = 2;
+    private boolean hasTransactionId;
+    private long transactionId_ = 0L;
+    public boolean hasTransactionId() { return hasTransactionId; }
+    public long getTransactionId() { return transactionId_; }
+    
+    // required .edu.brown.hstore.ReplicationRecord.Type type = 3;
+    public static final int TYPE_FIELD_NUMBER = 3;
+    private boolean hasType;
+    private edu.brown.hstore.Hstoreservice.ReplicationRecord.Type type_;
+    public boolean hasType() { return hasType; }
+    public edu.brown.hstore.Hstoreservice.ReplicationRecord.Type getType() { return type_; }
+    
+    // optional int32 procedure_id = 4;
+    public static final int PROCEDURE_ID_FIELD_NUMBER = 4;
+    private boolean hasProcedureId;
+    private int procedureId_ = 0;
+    public boolean hasProcedureId() { return hasProcedureId; }
+    public int getProcedureId() { return procedureId_; }
+    
+    // optional bytes parameters = 5;
+    public static final int PARAMETERS_FIELD_NUMBER = 5;
+    private boolean hasParameters;
+    private com.google.protobuf.ByteString parameters_ = com.google.protobuf.ByteString.EMPTY;
+    public boolean hasParameters() { return hasParameters; }
+    public com.google.protobuf.ByteString getParameters() { return parameters_; }
+    
+    // optional .edu.brown.hstore.WorkFragment fragment = 6;
+    public static final int FRAGMENT_FIELD_NUMBER = 6;
+    private boolean hasFragment;
+    private edu.brown.hstore.Hstoreservice.WorkFragment fragment_;
+    public boolean hasFragment() { return hasFragment; }
+    public edu.brown.hstore.Hstoreservice.WorkFragment getFragment() { return fragment_; }
+    
+    // repeated bytes parameter_sets = 7;
+    public static final int PARAMETER_SETS_FIELD_NUMBER = 7;
+    private java.util.List<com.google.protobuf.ByteString> parameterSets_ =
+      java.util.Collections.emptyList();
+    public java.util.List<com.google.protobuf.ByteString> getParameterSetsList() {
+      return parameterSets_;
+    }
+    public int getParameterSetsCount() { return parameterSets_.size(); }
+    public com.google.protobuf.ByteString getParameterSets(int index) {
+      return parameterSets_.get(index);
+    }
+    
+    // optional .edu.brown.hstore.Status status = 8;
+    public static final int STATUS_FIELD_NUMBER = 8;
+    private boolean hasStatus;
+    private edu.brown.hstore.Hstoreservice.Status status_;
+    public boolean hasStatus() { return hasStatus; }
+    public edu.brown.hstore.Hstoreservice.Status getStatus() { return status_; }
+    
+    private void initFields() {
+      type_ = edu.brown.hstore.Hstoreservice.ReplicationRecord.Type.INIT;
+      fragment_ = edu.brown.hstore.Hstoreservice.WorkFragment.getDefaultInstance();
+      status_ = edu.brown.hstore.Hstoreservice.Status.OK;
+    }
+    public final boolean isInitialized() {
+      if (!hasSequence) return false;
+      if (!hasTransactionId) return false;
+      if (!hasType) return false;
+      if (hasFragment()) {
+        if (!getFragment().isInitialized()) return false;
+      }
+      return true;
+    }
+    
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (hasSequence()) {
+        output.writeInt64(1, getSequence());
+      }
+      if (hasTransactionId()) {
+        output.writeInt64(2, getTransactionId());
+      }
+      if (hasType()) {
+        output.writeEnum(3, getType().getNumber());
+      }
+      if (hasProcedureId()) {
+        output.writeInt32(4, getProcedureId());
+      }
+      if (hasParameters()) {
+        output.writeBytes(5, getParameters());
+      }
+      if (hasFragment()) {
+        output.writeMessage(6, getFragment());
+      }
+      for (com.google.protobuf.ByteString element : getParameterSetsList()) {
+        output.writeBytes(7, element);
+      }
+      if (hasStatus()) {
+        output.writeEnum(8, getStatus().getNumber());
+      }
+      getUnknownFields().writeTo(output);
+    }
+    
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+    
+      size = 0;
+      if (hasSequence()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt64Size(1, getSequence());
+      }
+      if (hasTransactionId()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt64Size(2, getTransactionId());
+      }
+      if (hasType()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeEnumSize(3, getType().getNumber());
+      }
+      if (hasProcedureId()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(4, getProcedureId());
+      }
+      if (hasParameters()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(5, getParameters());
+      }
+      if (hasFragment()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(6, getFragment());
+      }
+      {
+        int dataSize = 0;
+        for (com.google.protobuf.ByteString element : getParameterSetsList()) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeBytesSizeNoTag(element);
+        }
+        size += dataSize;
+        size += 1 * getParameterSetsList().size();
+      }
+      if (hasStatus()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeEnumSize(8, getStatus().getNumber());
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+    
+    public static edu.brown.hstore.Hstoreservice.ReplicationRecord parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationRecord parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationRecord parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationRecord parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationRecord parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationRecord parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationRecord parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationRecord parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationRecord parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationRecord parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+    
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(edu.brown.hstore.Hstoreservice.ReplicationRecord prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+    
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder> {
+      private edu.brown.hstore.Hstoreservice.ReplicationRecord result;
+      
+      // Construct using edu.brown.hstore.Hstoreservice.ReplicationRecord.newBuilder()
+      private Builder() {}
+      
+      private static Builder create() {
+        Builder builder = new Builder();
+        builder.result = new edu.brown.hstore.Hstoreservice.ReplicationRecord();
+        return builder;
+      }
+      
+      protected edu.brown.hstore.Hstoreservice.ReplicationRecord internalGetResult() {
+        return result;
+      }
+      
+      public Builder clear() {
+        if (result == null) {
+          throw new IllegalStateException(
+            "Cannot call clear() after build().");
+        }
+        result = new edu.brown.hstore.Hstoreservice.ReplicationRecord();
+        return this;
+      }
+      
+      public Builder clone() {
+        return create().mergeFrom(result);
+      }
+      
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return edu.brown.hstore.Hstoreservice.ReplicationRecord.getDescriptor();
+      }
+      
+      public edu.brown.hstore.Hstoreservice.ReplicationRecord getDefaultInstanceForType() {
+        return edu.brown.hstore.Hstoreservice.ReplicationRecord.getDefaultInstance();
+      }
+      
+      public boolean isInitialized() {
+        return result.isInitialized();
+      }
+      public edu.brown.hstore.Hstoreservice.ReplicationRecord build() {
+        if (result != null && !isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return buildPartial();
+      }
+      
+      private edu.brown.hstore.Hstoreservice.ReplicationRecord buildParsed()
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        if (!isInitialized()) {
+          throw newUninitializedMessageException(
+            result).asInvalidProtocolBufferException();
+        }
+        return buildPartial();
+      }
+      
+      public edu.brown.hstore.Hstoreservice.ReplicationRecord buildPartial() {
+        if (result == null) {
+          throw new IllegalStateException(
+            "build() has already been called on this Builder.");
+        }
+        if (result.parameterSets_ != java.util.Collections.EMPTY_LIST) {
+          result.parameterSets_ =
+            java.util.Collections.unmodifiableList(result.parameterSets_);
+        }
+        edu.brown.hstore.Hstoreservice.ReplicationRecord returnMe = result;
+        result = null;
+        return returnMe;
+      }
+      
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof edu.brown.hstore.Hstoreservice.ReplicationRecord) {
+          return mergeFrom((edu.brown.hstore.Hstoreservice.ReplicationRecord)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+      
+      public Builder mergeFrom(edu.brown.hstore.Hstoreservice.ReplicationRecord other) {
+        if (other == edu.brown.hstore.Hstoreservice.ReplicationRecord.getDefaultInstance()) return this;
+        if (other.hasSequence()) {
+          setSequence(other.getSequence());
+        }
+        if (other.hasTransactionId()) {
+          setTransactionId(other.getTransactionId());
+        }
+        if (other.hasType()) {
+          setType(other.getType());
+        }
+        if (other.hasProcedureId()) {
+          setProcedureId(other.getProcedureId());
+        }
+        if (other.hasParameters()) {
+          setParameters(other.getParameters());
+        }
+        if (other.hasFragment()) {
+          mergeFragment(other.getFragment());
+        }
+        if (!other.parameterSets_.isEmpty()) {
+          if (result.parameterSets_.isEmpty()) {
+            result.parameterSets_ = new java.util.ArrayList<com.google.protobuf.ByteString>();
+          }
+          result.parameterSets_.addAll(other.parameterSets_);
+        }
+        if (other.hasStatus()) {
+          setStatus(other.getStatus());
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+      
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder(
+            this.getUnknownFields());
+        while (true) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              this.setUnknownFields(unknownFields.build());
+              return this;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                this.setUnknownFields(unknownFields.build());
+                return this;
+              }
+              break;
+            }
+            case 8: {
+              setSequence(input.readInt64());
+              break;
+            }
+            case 16: {
+              setTransactionId(input.readInt64());
+              break;
+            }
+            case 24: {
+              int rawValue = input.readEnum();
+              edu.brown.hstore.Hstoreservice.ReplicationRecord.Type value = edu.brown.hstore.Hstoreservice.ReplicationRecord.Type.valueOf(rawValue);
+              if (value == null) {
+                unknownFields.mergeVarintField(3, rawValue);
+              } else {
+                setType(value);
+              }
+              break;
+            }
+            case 32: {
+              setProcedureId(input.readInt32());
+              break;
+            }
+            case 42: {
+              setParameters(input.readBytes());
+              break;
+            }
+            case 50: {
+              edu.brown.hstore.Hstoreservice.WorkFragment.Builder subBuilder = edu.brown.hstore.Hstoreservice.WorkFragment.newBuilder();
+              if (hasFragment()) {
+                subBuilder.mergeFrom(getFragment());
+              }
+              input.readMessage(subBuilder, extensionRegistry);
+              setFragment(subBuilder.buildPartial());
+              break;
+            }
+            case 58: {
+              addParameterSets(input.readBytes());
+              break;
+            }
+            case 64: {
+              int rawValue = input.readEnum();
+              edu.brown.hstore.Hstoreservice.Status value = edu.brown.hstore.Hstoreservice.Status.valueOf(rawValue);
+              if (value == null) {
+                unknownFields.mergeVarintField(8, rawValue);
+              } else {
+                setStatus(value);
+              }
+              break;
+            }
+          }
+        }
+      }
+      
+      
+      // required int64 sequence = 1;
+      public boolean hasSequence() {
+        return result.hasSequence();
+      }
+      public long getSequence() {
+        return result.getSequence();
+      }
+      public Builder setSequence(long value) {
+        result.hasSequence = true;
+        result.sequence_ = value;
+        return this;
+      }
+      public Builder clearSequence() {
+        result.hasSequence = false;
+        result.sequence_ = 0L;
+        return this;
+      }
+      
+      // required int64 transaction_id = 2;
+      public boolean hasTransactionId() {
+        return result.hasTransactionId();
+      }
+      public long getTransactionId() {
+        return result.getTransactionId();
+      }
+      public Builder setTransactionId(long value) {
+        result.hasTransactionId = true;
+        result.transactionId_ = value;
+        return this;
+      }
+      public Builder clearTransactionId() {
+        result.hasTransactionId = false;
+        result.transactionId_ = 0L;
+        return this;
+      }
+      
+      // required .edu.brown.hstore.ReplicationRecord.Type type = 3;
+      public boolean hasType() {
+        return result.hasType();
+      }
+      public edu.brown.hstore.Hstoreservice.ReplicationRecord.Type getType() {
+        return result.getType();
+      }
+      public Builder setType(edu.brown.hstore.Hstoreservice.ReplicationRecord.Type value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        result.hasType = true;
+        result.type_ = value;
+        return this;
+      }
+      public Builder clearType() {
+        result.hasType = false;
+        result.type_ = edu.brown.hstore.Hstoreservice.ReplicationRecord.Type.INIT;
+        return this;
+      }
+      
+      // optional int32 procedure_id = 4;
+      public boolean hasProcedureId() {
+        return result.hasProcedureId();
+      }
+      public int getProcedureId() {
+        return result.getProcedureId();
+      }
+      public Builder setProcedureId(int value) {
+        result.hasProcedureId = true;
+        result.procedureId_ = value;
+        return this;
+      }
+      public Builder clearProcedureId() {
+        result.hasProcedureId = false;
+        result.procedureId_ = 0;
+        return this;
+      }
+      
+      // optional bytes parameters = 5;
+      public boolean hasParameters() {
+        return result.hasParameters();
+      }
+      public com.google.protobuf.ByteString getParameters() {
+        return result.getParameters();
+      }
+      public Builder setParameters(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  result.hasParameters = true;
+        result.parameters_ = value;
+        return this;
+      }
+      public Builder clearParameters() {
+        result.hasParameters = false;
+        result.parameters_ = getDefaultInstance().getParameters();
+        return this;
+      }
+      
+      // optional .edu.brown.hstore.WorkFragment fragment = 6;
+      public boolean hasFragment() {
+        return result.hasFragment();
+      }
+      public edu.brown.hstore.Hstoreservice.WorkFragment getFragment() {
+        return result.getFragment();
+      }
+      public Builder setFragment(edu.brown.hstore.Hstoreservice.WorkFragment value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        result.hasFragment = true;
+        result.fragment_ = value;
+        return this;
+      }
+      public Builder setFragment(edu.brown.hstore.Hstoreservice.WorkFragment.Builder builderForValue) {
+        result.hasFragment = true;
+        result.fragment_ = builderForValue.build();
+        return this;
+      }
+      public Builder mergeFragment(edu.brown.hstore.Hstoreservice.WorkFragment value) {
+        if (result.hasFragment() &&
+            result.fragment_ != edu.brown.hstore.Hstoreservice.WorkFragment.getDefaultInstance()) {
+          result.fragment_ =
+            edu.brown.hstore.Hstoreservice.WorkFragment.newBuilder(result.fragment_).mergeFrom(value).buildPartial();
+        } else {
+          result.fragment_ = value;
+        }
+        result.hasFragment = true;
+        return this;
+      }
+      public Builder clearFragment() {
+        result.hasFragment = false;
+        result.fragment_ = edu.brown.hstore.Hstoreservice.WorkFragment.getDefaultInstance();
+        return this;
+      }
+      
+      // repeated bytes parameter_sets = 7;
+      public java.util.List<com.google.protobuf.ByteString> getParameterSetsList() {
+        return java.util.Collections.unmodifiableList(result.parameterSets_);
+      }
+      public int getParameterSetsCount() {
+        return result.getParameterSetsCount();
+      }
+      public com.google.protobuf.ByteString getParameterSets(int index) {
+        return result.getParameterSets(index);
+      }
+      public Builder setParameterSets(int index, com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  result.parameterSets_.set(index, value);
+        return this;
+      }
+      public Builder addParameterSets(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  if (result.parameterSets_.isEmpty()) {
+          result.parameterSets_ = new java.util.ArrayList<com.google.protobuf.ByteString>();
+        }
+        result.parameterSets_.add(value);
+        return this;
+      }
+      public Builder addAllParameterSets(
+          java.lang.Iterable<? extends com.google.protobuf.ByteString> values) {
+        if (result.parameterSets_.isEmpty()) {
+          result.parameterSets_ = new java.util.ArrayList<com.google.protobuf.ByteString>();
+        }
+        super.addAll(values, result.parameterSets_);
+        return this;
+      }
+      public Builder clearParameterSets() {
+        result.parameterSets_ = java.util.Collections.emptyList();
+        return this;
+      }
+      
+      // optional .edu.brown.hstore.Status status = 8;
+      public boolean hasStatus() {
+        return result.hasStatus();
+      }
+      public edu.brown.hstore.Hstoreservice.Status getStatus() {
+        return result.getStatus();
+      }
+      public Builder setStatus(edu.brown.hstore.Hstoreservice.Status value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        result.hasStatus = true;
+        result.status_ = value;
+        return this;
+      }
+      public Builder clearStatus() {
+        result.hasStatus = false;
+        result.status_ = edu.brown.hstore.Hstoreservice.Status.OK;
+        return this;
+      }
+      
+      // @@protoc_insertion_point(builder_scope:edu.brown.hstore.ReplicationRecord)
+    }
+    
+    static {
+      defaultInstance = new ReplicationRecord(true);
+      edu.brown.hstore.Hstoreservice.internalForceInit();
+      defaultInstance.initFields();
+    }
+    
+    // @@protoc_insertion_point(class_scope:edu.brown.hstore.ReplicationRecord)
+  }
+  
+  public static final class ReplicationStreamRequest extends
+      com.google.protobuf.GeneratedMessage {
+    // Use ReplicationStreamRequest.newBuilder() to construct.
+    private ReplicationStreamRequest() {
+      initFields();
+    }
+    private ReplicationStreamRequest(boolean noInit) {}
+    
+    private static final ReplicationStreamRequest defaultInstance;
+    public static ReplicationStreamRequest getDefaultInstance() {
+      return defaultInstance;
+    }
+    
+    public ReplicationStreamRequest getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+    
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return edu.brown.hstore.Hstoreservice.internal_static_edu_brown_hstore_ReplicationStreamRequest_descriptor;
+    }
+    
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return edu.brown.hstore.Hstoreservice.internal_static_edu_brown_hstore_ReplicationStreamRequest_fieldAccessorTable;
+    }
+    
+    // required int32 sender_id = 1;
+    public static final int SENDER_ID_FIELD_NUMBER = 1;
+    private boolean hasSenderId;
+    private int senderId_ = 0;
+    public boolean hasSenderId() { return hasSenderId; }
+    public int getSenderId() { return senderId_; }
+    
+    // required int32 partition_id = 2;
+    public static final int PARTITION_ID_FIELD_NUMBER = 2;
+    private boolean hasPartitionId;
+    private int partitionId_ = 0;
+    public boolean hasPartitionId() { return hasPartitionId; }
+    public int getPartitionId() { return partitionId_; }
+    
+    // repeated .edu.brown.hstore.ReplicationRecord records = 3;
+    public static final int RECORDS_FIELD_NUMBER = 3;
+    private java.util.List<edu.brown.hstore.Hstoreservice.ReplicationRecord> records_ =
+      java.util.Collections.emptyList();
+    public java.util.List<edu.brown.hstore.Hstoreservice.ReplicationRecord> getRecordsList() {
+      return records_;
+    }
+    public int getRecordsCount() { return records_.size(); }
+    public edu.brown.hstore.Hstoreservice.ReplicationRecord getRecords(int index) {
+      return records_.get(index);
+    }
+    
+    private void initFields() {
+    }
+    public final boolean isInitialized() {
+      if (!hasSenderId) return false;
+      if (!hasPartitionId) return false;
+      for (edu.brown.hstore.Hstoreservice.ReplicationRecord element : getRecordsList()) {
+        if (!element.isInitialized()) return false;
+      }
+      return true;
+    }
+    
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (hasSenderId()) {
+        output.writeInt32(1, getSenderId());
+      }
+      if (hasPartitionId()) {
+        output.writeInt32(2, getPartitionId());
+      }
+      for (edu.brown.hstore.Hstoreservice.ReplicationRecord element : getRecordsList()) {
+        output.writeMessage(3, element);
+      }
+      getUnknownFields().writeTo(output);
+    }
+    
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+    
+      size = 0;
+      if (hasSenderId()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(1, getSenderId());
+      }
+      if (hasPartitionId()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(2, getPartitionId());
+      }
+      for (edu.brown.hstore.Hstoreservice.ReplicationRecord element : getRecordsList()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(3, element);
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+    
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamRequest parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamRequest parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamRequest parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamRequest parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamRequest parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamRequest parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamRequest parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamRequest parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamRequest parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamRequest parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+    
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(edu.brown.hstore.Hstoreservice.ReplicationStreamRequest prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+    
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder> {
+      private edu.brown.hstore.Hstoreservice.ReplicationStreamRequest result;
+      
+      // Construct using edu.brown.hstore.Hstoreservice.ReplicationStreamRequest.newBuilder()
+      private Builder() {}
+      
+      private static Builder create() {
+        Builder builder = new Builder();
+        builder.result = new edu.brown.hstore.Hstoreservice.ReplicationStreamRequest();
+        return builder;
+      }
+      
+      protected edu.brown.hstore.Hstoreservice.ReplicationStreamRequest internalGetResult() {
+        return result;
+      }
+      
+      public Builder clear() {
+        if (result == null) {
+          throw new IllegalStateException(
+            "Cannot call clear() after build().");
+        }
+        result = new edu.brown.hstore.Hstoreservice.ReplicationStreamRequest();
+        return this;
+      }
+      
+      public Builder clone() {
+        return create().mergeFrom(result);
+      }
+      
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return edu.brown.hstore.Hstoreservice.ReplicationStreamRequest.getDescriptor();
+      }
+      
+      public edu.brown.hstore.Hstoreservice.ReplicationStreamRequest getDefaultInstanceForType() {
+        return edu.brown.hstore.Hstoreservice.ReplicationStreamRequest.getDefaultInstance();
+      }
+      
+      public boolean isInitialized() {
+        return result.isInitialized();
+      }
+      public edu.brown.hstore.Hstoreservice.ReplicationStreamRequest build() {
+        if (result != null && !isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return buildPartial();
+      }
+      
+      private edu.brown.hstore.Hstoreservice.ReplicationStreamRequest buildParsed()
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        if (!isInitialized()) {
+          throw newUninitializedMessageException(
+            result).asInvalidProtocolBufferException();
+        }
+        return buildPartial();
+      }
+      
+      public edu.brown.hstore.Hstoreservice.ReplicationStreamRequest buildPartial() {
+        if (result == null) {
+          throw new IllegalStateException(
+            "build() has already been called on this Builder.");
+        }
+        if (result.records_ != java.util.Collections.EMPTY_LIST) {
+          result.records_ =
+            java.util.Collections.unmodifiableList(result.records_);
+        }
+        edu.brown.hstore.Hstoreservice.ReplicationStreamRequest returnMe = result;
+        result = null;
+        return returnMe;
+      }
+      
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof edu.brown.hstore.Hstoreservice.ReplicationStreamRequest) {
+          return mergeFrom((edu.brown.hstore.Hstoreservice.ReplicationStreamRequest)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+      
+      public Builder mergeFrom(edu.brown.hstore.Hstoreservice.ReplicationStreamRequest other) {
+        if (other == edu.brown.hstore.Hstoreservice.ReplicationStreamRequest.getDefaultInstance()) return this;
+        if (other.hasSenderId()) {
+          setSenderId(other.getSenderId());
+        }
+        if (other.hasPartitionId()) {
+          setPartitionId(other.getPartitionId());
+        }
+        if (!other.records_.isEmpty()) {
+          if (result.records_.isEmpty()) {
+            result.records_ = new java.util.ArrayList<edu.brown.hstore.Hstoreservice.ReplicationRecord>();
+          }
+          result.records_.addAll(other.records_);
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+      
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder(
+            this.getUnknownFields());
+        while (true) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              this.setUnknownFields(unknownFields.build());
+              return this;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                this.setUnknownFields(unknownFields.build());
+                return this;
+              }
+              break;
+            }
+            case 8: {
+              setSenderId(input.readInt32());
+              break;
+            }
+            case 16: {
+              setPartitionId(input.readInt32());
+              break;
+            }
+            case 26: {
+              edu.brown.hstore.Hstoreservice.ReplicationRecord.Builder subBuilder = edu.brown.hstore.Hstoreservice.ReplicationRecord.newBuilder();
+              input.readMessage(subBuilder, extensionRegistry);
+              addRecords(subBuilder.buildPartial());
+              break;
+            }
+          }
+        }
+      }
+      
+      
+      // required int32 sender_id = 1;
+      public boolean hasSenderId() {
+        return result.hasSenderId();
+      }
+      public int getSenderId() {
+        return result.getSenderId();
+      }
+      public Builder setSenderId(int value) {
+        result.hasSenderId = true;
+        result.senderId_ = value;
+        return this;
+      }
+      public Builder clearSenderId() {
+        result.hasSenderId = false;
+        result.senderId_ = 0;
+        return this;
+      }
+      
+      // required int32 partition_id = 2;
+      public boolean hasPartitionId() {
+        return result.hasPartitionId();
+      }
+      public int getPartitionId() {
+        return result.getPartitionId();
+      }
+      public Builder setPartitionId(int value) {
+        result.hasPartitionId = true;
+        result.partitionId_ = value;
+        return this;
+      }
+      public Builder clearPartitionId() {
+        result.hasPartitionId = false;
+        result.partitionId_ = 0;
+        return this;
+      }
+      
+      // repeated .edu.brown.hstore.ReplicationRecord records = 3;
+      public java.util.List<edu.brown.hstore.Hstoreservice.ReplicationRecord> getRecordsList() {
+        return java.util.Collections.unmodifiableList(result.records_);
+      }
+      public int getRecordsCount() {
+        return result.getRecordsCount();
+      }
+      public edu.brown.hstore.Hstoreservice.ReplicationRecord getRecords(int index) {
+        return result.getRecords(index);
+      }
+      public Builder setRecords(int index, edu.brown.hstore.Hstoreservice.ReplicationRecord value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        result.records_.set(index, value);
+        return this;
+      }
+      public Builder setRecords(int index, edu.brown.hstore.Hstoreservice.ReplicationRecord.Builder builderForValue) {
+        result.records_.set(index, builderForValue.build());
+        return this;
+      }
+      public Builder addRecords(edu.brown.hstore.Hstoreservice.ReplicationRecord value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        if (result.records_.isEmpty()) {
+          result.records_ = new java.util.ArrayList<edu.brown.hstore.Hstoreservice.ReplicationRecord>();
+        }
+        result.records_.add(value);
+        return this;
+      }
+      public Builder addRecords(edu.brown.hstore.Hstoreservice.ReplicationRecord.Builder builderForValue) {
+        if (result.records_.isEmpty()) {
+          result.records_ = new java.util.ArrayList<edu.brown.hstore.Hstoreservice.ReplicationRecord>();
+        }
+        result.records_.add(builderForValue.build());
+        return this;
+      }
+      public Builder addAllRecords(
+          java.lang.Iterable<? extends edu.brown.hstore.Hstoreservice.ReplicationRecord> values) {
+        if (result.records_.isEmpty()) {
+          result.records_ = new java.util.ArrayList<edu.brown.hstore.Hstoreservice.ReplicationRecord>();
+        }
+        super.addAll(values, result.records_);
+        return this;
+      }
+      public Builder clearRecords() {
+        result.records_ = java.util.Collections.emptyList();
+        return this;
+      }
+      
+      // @@protoc_insertion_point(builder_scope:edu.brown.hstore.ReplicationStreamRequest)
+    }
+    
+    static {
+      defaultInstance = new ReplicationStreamRequest(true);
+      edu.brown.hstore.Hstoreservice.internalForceInit();
+      defaultInstance.initFields();
+    }
+    
+    // @@protoc_insertion_point(class_scope:edu.brown.hstore.ReplicationStreamRequest)
+  }
+  
+  public static final class ReplicationStreamResponse extends
+      com.google.protobuf.GeneratedMessage {
+    // Use ReplicationStreamResponse.newBuilder() to construct.
+    private ReplicationStreamResponse() {
+      initFields();
+    }
+    private ReplicationStreamResponse(boolean noInit) {}
+    
+    private static final ReplicationStreamResponse defaultInstance;
+    public static ReplicationStreamResponse getDefaultInstance() {
+      return defaultInstance;
+    }
+    
+    public ReplicationStreamResponse getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+    
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return edu.brown.hstore.Hstoreservice.internal_static_edu_brown_hstore_ReplicationStreamResponse_descriptor;
+    }
+    
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return edu.brown.hstore.Hstoreservice.internal_static_edu_brown_hstore_ReplicationStreamResponse_fieldAccessorTable;
+    }
+    
+    // required int32 sender_id = 1;
+    public static final int SENDER_ID_FIELD_NUMBER = 1;
+    private boolean hasSenderId;
+    private int senderId_ = 0;
+    public boolean hasSenderId() { return hasSenderId; }
+    public int getSenderId() { return senderId_; }
+    
+    // required int32 partition_id = 2;
+    public static final int PARTITION_ID_FIELD_NUMBER = 2;
+    private boolean hasPartitionId;
+    private int partitionId_ = 0;
+    public boolean hasPartitionId() { return hasPartitionId; }
+    public int getPartitionId() { return partitionId_; }
+    
+    // required int64 last_sequence = 3;
+    public static final int LAST_SEQUENCE_FIELD_NUMBER = 3;
+    private boolean hasLastSequence;
+    private long lastSequence_ = 0L;
+    public boolean hasLastSequence() { return hasLastSequence; }
+    public long getLastSequence() { return lastSequence_; }
+    
+    // required .edu.brown.hstore.Status status = 4;
+    public static final int STATUS_FIELD_NUMBER = 4;
+    private boolean hasStatus;
+    private edu.brown.hstore.Hstoreservice.Status status_;
+    public boolean hasStatus() { return hasStatus; }
+    public edu.brown.hstore.Hstoreservice.Status getStatus() { return status_; }
+    
+    private void initFields() {
+      status_ = edu.brown.hstore.Hstoreservice.Status.OK;
+    }
+    public final boolean isInitialized() {
+      if (!hasSenderId) return false;
+      if (!hasPartitionId) return false;
+      if (!hasLastSequence) return false;
+      if (!hasStatus) return false;
+      return true;
+    }
+    
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (hasSenderId()) {
+        output.writeInt32(1, getSenderId());
+      }
+      if (hasPartitionId()) {
+        output.writeInt32(2, getPartitionId());
+      }
+      if (hasLastSequence()) {
+        output.writeInt64(3, getLastSequence());
+      }
+      if (hasStatus()) {
+        output.writeEnum(4, getStatus().getNumber());
+      }
+      getUnknownFields().writeTo(output);
+    }
+    
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+    
+      size = 0;
+      if (hasSenderId()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(1, getSenderId());
+      }
+      if (hasPartitionId()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(2, getPartitionId());
+      }
+      if (hasLastSequence()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt64Size(3, getLastSequence());
+      }
+      if (hasStatus()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeEnumSize(4, getStatus().getNumber());
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+    
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamResponse parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamResponse parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamResponse parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamResponse parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamResponse parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamResponse parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamResponse parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamResponse parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamResponse parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.ReplicationStreamResponse parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+    
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(edu.brown.hstore.Hstoreservice.ReplicationStreamResponse prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+    
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder> {
+      private edu.brown.hstore.Hstoreservice.ReplicationStreamResponse result;
+      
+      // Construct using edu.brown.hstore.Hstoreservice.ReplicationStreamResponse.newBuilder()
+      private Builder() {}
+      
+      private static Builder create() {
+        Builder builder = new Builder();
+        builder.result = new edu.brown.hstore.Hstoreservice.ReplicationStreamResponse();
+        return builder;
+      }
+      
+      protected edu.brown.hstore.Hstoreservice.ReplicationStreamResponse internalGetResult() {
+        return result;
+      }
+      
+      public Builder clear() {
+        if (result == null) {
+          throw new IllegalStateException(
+            "Cannot call clear() after build().");
+        }
+        result = new edu.brown.hstore.Hstoreservice.ReplicationStreamResponse();
+        return this;
+      }
+      
+      public Builder clone() {
+        return create().mergeFrom(result);
+      }
+      
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return edu.brown.hstore.Hstoreservice.ReplicationStreamResponse.getDescriptor();
+      }
+      
+      public edu.brown.hstore.Hstoreservice.ReplicationStreamResponse getDefaultInstanceForType() {
+        return edu.brown.hstore.Hstoreservice.ReplicationStreamResponse.getDefaultInstance();
+      }
+      
+      public boolean isInitialized() {
+        return result.isInitialized();
+      }
+      public edu.brown.hstore.Hstoreservice.ReplicationStreamResponse build() {
+        if (result != null && !isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return buildPartial();
+      }
+      
+      private edu.brown.hstore.Hstoreservice.ReplicationStreamResponse buildParsed()
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        if (!isInitialized()) {
+          throw newUninitializedMessageException(
+            result).asInvalidProtocolBufferException();
+        }
+        return buildPartial();
+      }
+      
+      public edu.brown.hstore.Hstoreservice.ReplicationStreamResponse buildPartial() {
+        if (result == null) {
+          throw new IllegalStateException(
+            "build() has already been called on this Builder.");
+        }
+        edu.brown.hstore.Hstoreservice.ReplicationStreamResponse returnMe = result;
+        result = null;
+        return returnMe;
+      }
+      
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof edu.brown.hstore.Hstoreservice.ReplicationStreamResponse) {
+          return mergeFrom((edu.brown.hstore.Hstoreservice.ReplicationStreamResponse)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+      
+      public Builder mergeFrom(edu.brown.hstore.Hstoreservice.ReplicationStreamResponse other) {
+        if (other == edu.brown.hstore.Hstoreservice.ReplicationStreamResponse.getDefaultInstance()) return this;
+        if (other.hasSenderId()) {
+          setSenderId(other.getSenderId());
+        }
+        if (other.hasPartitionId()) {
+          setPartitionId(other.getPartitionId());
+        }
+        if (other.hasLastSequence()) {
+          setLastSequence(other.getLastSequence());
+        }
+        if (other.hasStatus()) {
+          setStatus(other.getStatus());
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+      
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder(
+            this.getUnknownFields());
+        while (true) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              this.setUnknownFields(unknownFields.build());
+              return this;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                this.setUnknownFields(unknownFields.build());
+                return this;
+              }
+              break;
+            }
+            case 8: {
+              setSenderId(input.readInt32());
+              break;
+            }
+            case 16: {
+              setPartitionId(input.readInt32());
+              break;
+            }
+            case 24: {
+              setLastSequence(input.readInt64());
+              break;
+            }
+            case 32: {
+              int rawValue = input.readEnum();
+              edu.brown.hstore.Hstoreservice.Status value = edu.brown.hstore.Hstoreservice.Status.valueOf(rawValue);
+              if (value == null) {
+                unknownFields.mergeVarintField(4, rawValue);
+              } else {
+                setStatus(value);
+              }
+              break;
+            }
+          }
+        }
+      }
+      
+      
+      // required int32 sender_id = 1;
+      public boolean hasSenderId() {
+        return result.hasSenderId();
+      }
+      public int getSenderId() {
+        return result.getSenderId();
+      }
+      public Builder setSenderId(int value) {
+        result.hasSenderId = true;
+        result.senderId_ = value;
+        return this;
+      }
+      public Builder clearSenderId() {
+        result.hasSenderId = false;
+        result.senderId_ = 0;
+        return this;
+      }
+      
+      // required int32 partition_id = 2;
+      public boolean hasPartitionId() {
+        return result.hasPartitionId();
+      }
+      public int getPartitionId() {
+        return result.getPartitionId();
+      }
+      public Builder setPartitionId(int value) {
+        result.hasPartitionId = true;
+        result.partitionId_ = value;
+        return this;
+      }
+      public Builder clearPartitionId() {
+        result.hasPartitionId = false;
+        result.partitionId_ = 0;
+        return this;
+      }
+      
+      // required int64 last_sequence = 3;
+      public boolean hasLastSequence() {
+        return result.hasLastSequence();
+      }
+      public long getLastSequence() {
+        return result.getLastSequence();
+      }
+      public Builder setLastSequence(long value) {
+        result.hasLastSequence = true;
+        result.lastSequence_ = value;
+        return this;
+      }
+      public Builder clearLastSequence() {
+        result.hasLastSequence = false;
+        result.lastSequence_ = 0L;
+        return this;
+      }
+      
+      // required .edu.brown.hstore.Status status = 4;
+      public boolean hasStatus() {
+        return result.hasStatus();
+      }
+      public edu.brown.hstore.Hstoreservice.Status getStatus() {
+        return result.getStatus();
+      }
+      public Builder setStatus(edu.brown.hstore.Hstoreservice.Status value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        result.hasStatus = true;
+        result.status_ = value;
+        return this;
+      }
+      public Builder clearStatus() {
+        result.hasStatus = false;
+        result.status_ = edu.brown.hstore.Hstoreservice.Status.OK;
+        return this;
+      }
+      
+      // @@protoc_insertion_point(builder_scope:edu.brown.hstore.ReplicationStreamResponse)
+    }
+    
+    static {
+      defaultInstance = new ReplicationStreamResponse(true);
+      edu.brown.hstore.Hstoreservice.internalForceInit();
+      defaultInstance.initFields();
+    }
+    
+    // @@protoc_insertion_point(class_scope:edu.brown.hstore.ReplicationStreamResponse)
+  }
+  
+  public static final class TransactionBatchMessage extends
+      com.google.protobuf.GeneratedMessage {
+    // Use TransactionBatchMessage.newBuilder() to construct.
+    private TransactionBatchMessage() {
+      initFields();
+    }
+    private TransactionBatchMessage(boolean noInit) {}
+    
+    private static final TransactionBatchMessage defaultInstance;
+    public static TransactionBatchMessage getDefaultInstance() {
+      return defaultInstance;
+    }
+    
+    public TransactionBatchMessage getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+    
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return edu.brown.hstore.Hstoreservice.internal_static_edu_brown_hstore_TransactionBatchMessage_descriptor;
+    }
+    
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return edu.brown.hstore.Hstoreservice.internal_static_edu_brown_hstore_TransactionBatchMessage_fieldAccessorTable;
+    }
+    
+    // required int32 message_id = 1;
+    public static final int MESSAGE_ID_FIELD_NUMBER = 1;
+    private boolean hasMessageId;
+    private int messageId_ = 0;
+    public boolean hasMessageId() { return hasMessageId; }
+    public int getMessageId() { return messageId_; }
+    
+    // optional .edu.brown.hstore.TransactionInitRequest init_request = 2;
+    public static final int INIT_REQUEST_FIELD_NUMBER = 2;
+    private boolean hasInitRequest;
+    private edu.brown.hstore.Hstoreservice.TransactionInitRequest initRequest_;
+    public boolean hasInitRequest() { return hasInitRequest; }
+    public edu.brown.hstore.Hstoreservice.TransactionInitRequest getInitRequest() { return initRequest_; }
+    
+    // optional .edu.brown.hstore.TransactionInitResponse init_response = 3;
+    public static final int INIT_RESPONSE_FIELD_NUMBER = 3;
+    private boolean hasInitResponse;
+    private edu.brown.hstore.Hstoreservice.TransactionInitResponse initResponse_;
+    public boolean hasInitResponse() { return hasInitResponse; }
+    public edu.brown.hstore.Hstoreservice.TransactionInitResponse getInitResponse() { return initResponse_; }
+    
+    // optional .edu.brown.hstore.TransactionWorkRequest work_request = 4;
+    public static final int WORK_REQUEST_FIELD_NUMBER = 4;
+    private boolean hasWorkRequest;
+    private edu.brown.hstore.Hstoreservice.TransactionWorkRequest workRequest_;
+    public boolean hasWorkRequest() { return hasWorkRequest; }
+    public edu.brown.hstore.Hstoreservice.TransactionWorkRequest getWorkRequest() { return workRequest_; }
+    
+    // optional .edu.brown.hstore.TransactionWorkResponse work_response = 5;
+    public static final int WORK_RESPONSE_FIELD_NUMBER = 5;
+    private boolean hasWorkResponse;
+    private edu.brown.hstore.Hstoreservice.TransactionWorkResponse workResponse_;
+    public boolean hasWorkResponse() { return hasWorkResponse; }
+    public edu.brown.hstore.Hstoreservice.TransactionWorkResponse getWorkResponse() { return workResponse_; }
+    
+    // optional .edu.brown.hstore.TransactionPrepareRequest prepare_request = 6;
+    public static final int PREPARE_REQUEST_FIELD_NUMBER = 6;
+    private boolean hasPrepareRequest;
+    private edu.brown.hstore.Hstoreservice.TransactionPrepareRequest prepareRequest_;
+    public boolean hasPrepareRequest() { return hasPrepareRequest; }
+    public edu.brown.hstore.Hstoreservice.TransactionPrepareRequest getPrepareRequest() { return prepareRequest_; }
+    
+    // optional .edu.brown.hstore.TransactionPrepareResponse prepare_response = 7;
+    public static final int PREPARE_RESPONSE_FIELD_NUMBER = 7;
+    private boolean hasPrepareResponse;
+    private edu.brown.hstore.Hstoreservice.TransactionPrepareResponse prepareResponse_;
+    public boolean hasPrepareResponse() { return hasPrepareResponse; }
+    public edu.brown.hstore.Hstoreservice.TransactionPrepareResponse getPrepareResponse() { return prepareResponse_; }
+    
+    // optional .edu.brown.hstore.TransactionFinishRequest finish_request = 8;
+    public static final int FINISH_REQUEST_FIELD_NUMBER = 8;
+    private boolean hasFinishRequest;
+    private edu.brown.hstore.Hstoreservice.TransactionFinishRequest finishRequest_;
+    public boolean hasFinishRequest() { return hasFinishRequest; }
+    public edu.brown.hstore.Hstoreservice.TransactionFinishRequest getFinishRequest() { return finishRequest_; }
+    
+    // optional .edu.brown.hstore.TransactionFinishResponse finish_response = 9;
+    public static final int FINISH_RESPONSE_FIELD_NUMBER = 9;
+    private boolean hasFinishResponse;
+    private edu.brown.hstore.Hstoreservice.TransactionFinishResponse finishResponse_;
+    public boolean hasFinishResponse() { return hasFinishResponse; }
+    public edu.brown.hstore.Hstoreservice.TransactionFinishResponse getFinishResponse() { return finishResponse_; }
+    
+    private void initFields() {
+      initRequest_ = edu.brown.hstore.Hstoreservice.TransactionInitRequest.getDefaultInstance();
+      initResponse_ = edu.brown.hstore.Hstoreservice.TransactionInitResponse.getDefaultInstance();
+      workRequest_ = edu.brown.hstore.Hstoreservice.TransactionWorkRequest.getDefaultInstance();
+      workResponse_ = edu.brown.hstore.Hstoreservice.TransactionWorkResponse.getDefaultInstance();
+      prepareRequest_ = edu.brown.hstore.Hstoreservice.TransactionPrepareRequest.getDefaultInstance();
+      prepareResponse_ = edu.brown.hstore.Hstoreservice.TransactionPrepareResponse.getDefaultInstance();
+      finishRequest_ = edu.brown.hstore.Hstoreservice.TransactionFinishRequest.getDefaultInstance();
+      finishResponse_ = edu.brown.hstore.Hstoreservice.TransactionFinishResponse.getDefaultInstance();
+    }
+    public final boolean isInitialized() {
+      if (!hasMessageId) return false;
+      if (hasInitRequest()) {
+        if (!getInitRequest().isInitialized()) return false;
+      }
+      if (hasInitResponse()) {
+        if (!getInitResponse().isInitialized()) return false;
+      }
+      if (hasWorkRequest()) {
+        if (!getWorkRequest().isInitialized()) return false;
+      }
+      if (hasWorkResponse()) {
+        if (!getWorkResponse().isInitialized()) return false;
+      }
+      if (hasPrepareRequest()) {
+        if (!getPrepareRequest().isInitialized()) return false;
+      }
+      if (hasPrepareResponse()) {
+        if (!getPrepareResponse().isInitialized()) return false;
+      }
+      if (hasFinishRequest()) {
+        if (!getFinishRequest().isInitialized()) return false;
+      }
+      if (hasFinishResponse()) {
+        if (!getFinishResponse().isInitialized()) return false;
+      }
+      return true;
+    }
+    
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (hasMessageId()) {
+        output.writeInt32(1, getMessageId());
+      }
+      if (hasInitRequest()) {
+        output.writeMessage(2, getInitRequest());
+      }
+      if (hasInitResponse()) {
+        output.writeMessage(3, getInitResponse());
+      }
+      if (hasWorkRequest()) {
+        output.writeMessage(4, getWorkRequest());
+      }
+      if (hasWorkResponse()) {
+        output.writeMessage(5, getWorkResponse());
+      }
+      if (hasPrepareRequest()) {
+        output.writeMessage(6, getPrepareRequest());
+      }
+      if (hasPrepareResponse()) {
+        output.writeMessage(7, getPrepareResponse());
+      }
+      if (hasFinishRequest()) {
+        output.writeMessage(8, getFinishRequest());
+      }
+      if (hasFinishResponse()) {
+        output.writeMessage(9, getFinishResponse());
+      }
+      getUnknownFields().writeTo(output);
+    }
+    
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+    
+      size = 0;
+      if (hasMessageId()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(1, getMessageId());
+      }
+      if (hasInitRequest()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(2, getInitRequest());
+      }
+      if (hasInitResponse()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(3, getInitResponse());
+      }
+      if (hasWorkRequest()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(4, getWorkRequest());
+      }
+      if (hasWorkResponse()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(5, getWorkResponse());
+      }
+      if (hasPrepareRequest()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(6, getPrepareRequest());
+      }
+      if (hasPrepareResponse()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(7, getPrepareResponse());
+      }
+      if (hasFinishRequest()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(8, getFinishRequest());
+      }
+      if (hasFinishResponse()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(9, getFinishResponse());
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+    
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchMessage parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchMessage parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchMessage parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchMessage parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchMessage parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchMessage parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchMessage parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchMessage parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchMessage parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchMessage parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+    
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(edu.brown.hstore.Hstoreservice.TransactionBatchMessage prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+    
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder> {
+      private edu.brown.hstore.Hstoreservice.TransactionBatchMessage result;
+      
+      // Construct using edu.brown.hstore.Hstoreservice.TransactionBatchMessage.newBuilder()
+      private Builder() {}
+      
+      private static Builder create() {
+        Builder builder = new Builder();
+        builder.result = new edu.brown.hstore.Hstoreservice.TransactionBatchMessage();
+        return builder;
+      }
+      
+      protected edu.brown.hstore.Hstoreservice.TransactionBatchMessage internalGetResult() {
+        return result;
+      }
+      
+      public Builder clear() {
+        if (result == null) {
+          throw new IllegalStateException(
+            "Cannot call clear() after build().");
+        }
+        result = new edu.brown.hstore.Hstoreservice.TransactionBatchMessage();
+        return this;
+      }
+      
+      public Builder clone() {
+        return create().mergeFrom(result);
+      }
+      
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return edu.brown.hstore.Hstoreservice.TransactionBatchMessage.getDescriptor();
+      }
+      
+      public edu.brown.hstore.Hstoreservice.TransactionBatchMessage getDefaultInstanceForType() {
+        return edu.brown.hstore.Hstoreservice.TransactionBatchMessage.getDefaultInstance();
+      }
+      
+      public boolean isInitialized() {
+        return result.isInitialized();
+      }
+      public edu.brown.hstore.Hstoreservice.TransactionBatchMessage build() {
+        if (result != null && !isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return buildPartial();
+      }
+      
+      private edu.brown.hstore.Hstoreservice.TransactionBatchMessage buildParsed()
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        if (!isInitialized()) {
+          throw newUninitializedMessageException(
+            result).asInvalidProtocolBufferException();
+        }
+        return buildPartial();
+      }
+      
+      public edu.brown.hstore.Hstoreservice.TransactionBatchMessage buildPartial() {
+        if (result == null) {
+          throw new IllegalStateException(
+            "build() has already been called on this Builder.");
+        }
+        edu.brown.hstore.Hstoreservice.TransactionBatchMessage returnMe = result;
+        result = null;
+        return returnMe;
+      }
+      
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof edu.brown.hstore.Hstoreservice.TransactionBatchMessage) {
+          return mergeFrom((edu.brown.hstore.Hstoreservice.TransactionBatchMessage)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+      
+      public Builder mergeFrom(edu.brown.hstore.Hstoreservice.TransactionBatchMessage other) {
+        if (other == edu.brown.hstore.Hstoreservice.TransactionBatchMessage.getDefaultInstance()) return this;
+        if (other.hasMessageId()) {
+          setMessageId(other.getMessageId());
+        }
+        if (other.hasInitRequest()) {
+          mergeInitRequest(other.getInitRequest());
+        }
+        if (other.hasInitResponse()) {
+          mergeInitResponse(other.getInitResponse());
+        }
+        if (other.hasWorkRequest()) {
+          mergeWorkRequest(other.getWorkRequest());
+        }
+        if (other.hasWorkResponse()) {
+          mergeWorkResponse(other.getWorkResponse());
+        }
+        if (other.hasPrepareRequest()) {
+          mergePrepareRequest(other.getPrepareRequest());
+        }
+        if (other.hasPrepareResponse()) {
+          mergePrepareResponse(other.getPrepareResponse());
+        }
+        if (other.hasFinishRequest()) {
+          mergeFinishRequest(other.getFinishRequest());
+        }
+        if (other.hasFinishResponse()) {
+          mergeFinishResponse(other.getFinishResponse());
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+      
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder(
+            this.getUnknownFields());
+        while (true) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              this.setUnknownFields(unknownFields.build());
+              return this;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                this.setUnknownFields(unknownFields.build());
+                return this;
+              }
+              break;
+            }
+            case 8: {
+              setMessageId(input.readInt32());
+              break;
+            }
+            case 18: {
+              edu.brown.hstore.Hstoreservice.TransactionInitRequest.Builder subBuilder = edu.brown.hstore.Hstoreservice.TransactionInitRequest.newBuilder();
+              if (hasInitRequest()) {
+                subBuilder.mergeFrom(getInitRequest());
+              }
+              input.readMessage(subBuilder, extensionRegistry);
+              setInitRequest(subBuilder.buildPartial());
+              break;
+            }
+            case 26: {
+              edu.brown.hstore.Hstoreservice.TransactionInitResponse.Builder subBuilder = edu.brown.hstore.Hstoreservice.TransactionInitResponse.newBuilder();
+              if (hasInitResponse()) {
+                subBuilder.mergeFrom(getInitResponse());
+              }
+              input.readMessage(subBuilder, extensionRegistry);
+              setInitResponse(subBuilder.buildPartial());
+              break;
+            }
+            case 34: {
+              edu.brown.hstore.Hstoreservice.TransactionWorkRequest.Builder subBuilder = edu.brown.hstore.Hstoreservice.TransactionWorkRequest.newBuilder();
+              if (hasWorkRequest()) {
+                subBuilder.mergeFrom(getWorkRequest());
+              }
+              input.readMessage(subBuilder, extensionRegistry);
+              setWorkRequest(subBuilder.buildPartial());
+              break;
+            }
+            case 42: {
+              edu.brown.hstore.Hstoreservice.TransactionWorkResponse.Builder subBuilder = edu.brown.hstore.Hstoreservice.TransactionWorkResponse.newBuilder();
+              if (hasWorkResponse()) {
+                subBuilder.mergeFrom(getWorkResponse());
+              }
+              input.readMessage(subBuilder, extensionRegistry);
+              setWorkResponse(subBuilder.buildPartial());
+              break;
+            }
+            case 50: {
+              edu.brown.hstore.Hstoreservice.TransactionPrepareRequest.Builder subBuilder = edu.brown.hstore.Hstoreservice.TransactionPrepareRequest.newBuilder();
+              if (hasPrepareRequest()) {
+                subBuilder.mergeFrom(getPrepareRequest());
+              }
+              input.readMessage(subBuilder, extensionRegistry);
+              setPrepareRequest(subBuilder.buildPartial());
+              break;
+            }
+            case 58: {
+              edu.brown.hstore.Hstoreservice.TransactionPrepareResponse.Builder subBuilder = edu.brown.hstore.Hstoreservice.TransactionPrepareResponse.newBuilder();
+              if (hasPrepareResponse()) {
+                subBuilder.mergeFrom(getPrepareResponse());
+              }
+              input.readMessage(subBuilder, extensionRegistry);
+              setPrepareResponse(subBuilder.buildPartial());
+              break;
+            }
+            case 66: {
+              edu.brown.hstore.Hstoreservice.TransactionFinishRequest.Builder subBuilder = edu.brown.hstore.Hstoreservice.TransactionFinishRequest.newBuilder();
+              if (hasFinishRequest()) {
+                subBuilder.mergeFrom(getFinishRequest());
+              }
+              input.readMessage(subBuilder, extensionRegistry);
+              setFinishRequest(subBuilder.buildPartial());
+              break;
+            }
+            case 74: {
+              edu.brown.hstore.Hstoreservice.TransactionFinishResponse.Builder subBuilder = edu.brown.hstore.Hstoreservice.TransactionFinishResponse.newBuilder();
+              if (hasFinishResponse()) {
+                subBuilder.mergeFrom(getFinishResponse());
+              }
+              input.readMessage(subBuilder, extensionRegistry);
+              setFinishResponse(subBuilder.buildPartial());
+              break;
+            }
+          }
+        }
+      }
+      
+      
+      // required int32 message_id = 1;
+      public boolean hasMessageId() {
+        return result.hasMessageId();
+      }
+      public int getMessageId() {
+        return result.getMessageId();
+      }
+      public Builder setMessageId(int value) {
+        result.hasMessageId = true;
+        result.messageId_ = value;
+        return this;
+      }
+      public Builder clearMessageId() {
+        result.hasMessageId = false;
+        result.messageId_ = 0;
+        return this;
+      }
+      
+      // optional .edu.brown.hstore.TransactionInitRequest init_request = 2;
+      public boolean hasInitRequest() {
+        return result.hasInitRequest();
+      }
+      public edu.brown.hstore.Hstoreservice.TransactionInitRequest getInitRequest() {
+        return result.getInitRequest();
+      }
+      public Builder setInitRequest(edu.brown.hstore.Hstoreservice.TransactionInitRequest value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        result.hasInitRequest = true;
+        result.initRequest_ = value;
+        return this;
+      }
+      public Builder setInitRequest(edu.brown.hstore.Hstoreservice.TransactionInitRequest.Builder builderForValue) {
+        result.hasInitRequest = true;
+        result.initRequest_ = builderForValue.build();
+        return this;
+      }
+      public Builder mergeInitRequest(edu.brown.hstore.Hstoreservice.TransactionInitRequest value) {
+        if (result.hasInitRequest() &&
+            result.initRequest_ != edu.brown.hstore.Hstoreservice.TransactionInitRequest.getDefaultInstance()) {
+          result.initRequest_ =
+            edu.brown.hstore.Hstoreservice.TransactionInitRequest.newBuilder(result.initRequest_).mergeFrom(value).buildPartial();
+        } else {
+          result.initRequest_ = value;
+        }
+        result.hasInitRequest = true;
+        return this;
+      }
+      public Builder clearInitRequest() {
+        result.hasInitRequest = false;
+        result.initRequest_ = edu.brown.hstore.Hstoreservice.TransactionInitRequest.getDefaultInstance();
+        return this;
+      }
+      
+      // optional .edu.brown.hstore.TransactionInitResponse init_response = 3;
+      public boolean hasInitResponse() {
+        return result.hasInitResponse();
+      }
+      public edu.brown.hstore.Hstoreservice.TransactionInitResponse getInitResponse() {
+        return result.getInitResponse();
+      }
+      public Builder setInitResponse(edu.brown.hstore.Hstoreservice.TransactionInitResponse value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        result.hasInitResponse = true;
+        result.initResponse_ = value;
+        return this;
+      }
+      public Builder setInitResponse(edu.brown.hstore.Hstoreservice.TransactionInitResponse.Builder builderForValue) {
+        result.hasInitResponse = true;
+        result.initResponse_ = builderForValue.build();
+        return this;
+      }
+      public Builder mergeInitResponse(edu.brown.hstore.Hstoreservice.TransactionInitResponse value) {
+        if (result.hasInitResponse() &&
+            result.initResponse_ != edu.brown.hstore.Hstoreservice.TransactionInitResponse.getDefaultInstance()) {
+          result.initResponse_ =
+            edu.brown.hstore.Hstoreservice.TransactionInitResponse.newBuilder(result.initResponse_).mergeFrom(value).buildPartial();
+        } else {
+          result.initResponse_ = value;
+        }
+        result.hasInitResponse = true;
+        return this;
+      }
+      public Builder clearInitResponse() {
+        result.hasInitResponse = false;
+        result.initResponse_ = edu.brown.hstore.Hstoreservice.TransactionInitResponse.getDefaultInstance();
+        return this;
+      }
+      
+      // optional .edu.brown.hstore.TransactionWorkRequest work_request = 4;
+      public boolean hasWorkRequest() {
+        return result.hasWorkRequest();
+      }
+      public edu.brown.hstore.Hstoreservice.TransactionWorkRequest getWorkRequest() {
+        return result.getWorkRequest();
+      }
+      public Builder setWorkRequest(edu.brown.hstore.Hstoreservice.TransactionWorkRequest value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        result.hasWorkRequest = true;
+        result.workRequest_ = value;
+        return this;
+      }
+      public Builder setWorkRequest(edu.brown.hstore.Hstoreservice.TransactionWorkRequest.Builder builderForValue) {
+        result.hasWorkRequest = true;
+        result.workRequest_ = builderForValue.build();
+        return this;
+      }
+      public Builder mergeWorkRequest(edu.brown.hstore.Hstoreservice.TransactionWorkRequest value) {
+        if (result.hasWorkRequest() &&
+            result.workRequest_ != edu.brown.hstore.Hstoreservice.TransactionWorkRequest.getDefaultInstance()) {
+          result.workRequest_ =
+            edu.brown.hstore.Hstoreservice.TransactionWorkRequest.newBuilder(result.workRequest_).mergeFrom(value).buildPartial();
+        } else {
+          result.workRequest_ = value;
+        }
+        result.hasWorkRequest = true;
+        return this;
+      }
+      public Builder clearWorkRequest() {
+        result.hasWorkRequest = false;
+        result.workRequest_ = edu.brown.hstore.Hstoreservice.TransactionWorkRequest.getDefaultInstance();
+        return this;
+      }
+      
+      // optional .edu.brown.hstore.TransactionWorkResponse work_response = 5;
+      public boolean hasWorkResponse() {
+        return result.hasWorkResponse();
+      }
+      public edu.brown.hstore.Hstoreservice.TransactionWorkResponse getWorkResponse() {
+        return result.getWorkResponse();
+      }
+      public Builder setWorkResponse(edu.brown.hstore.Hstoreservice.TransactionWorkResponse value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        result.hasWorkResponse = true;
+        result.workResponse_ = value;
+        return this;
+      }
+      public Builder setWorkResponse(edu.brown.hstore.Hstoreservice.TransactionWorkResponse.Builder builderForValue) {
+        result.hasWorkResponse = true;
+        result.workResponse_ = builderForValue.build();
+        return this;
+      }
+      public Builder mergeWorkResponse(edu.brown.hstore.Hstoreservice.TransactionWorkResponse value) {
+        if (result.hasWorkResponse() &&
+            result.workResponse_ != edu.brown.hstore.Hstoreservice.TransactionWorkResponse.getDefaultInstance()) {
+          result.workResponse_ =
+            edu.brown.hstore.Hstoreservice.TransactionWorkResponse.newBuilder(result.workResponse_).mergeFrom(value).buildPartial();
+        } else {
+          result.workResponse_ = value;
+        }
+        result.hasWorkResponse = true;
+        return this;
+      }
+      public Builder clearWorkResponse() {
+        result.hasWorkResponse = false;
+        result.workResponse_ = edu.brown.hstore.Hstoreservice.TransactionWorkResponse.getDefaultInstance();
+        return this;
+      }
+      
+      // optional .edu.brown.hstore.TransactionPrepareRequest prepare_request = 6;
+      public boolean hasPrepareRequest() {
+        return result.hasPrepareRequest();
+      }
+      public edu.brown.hstore.Hstoreservice.TransactionPrepareRequest getPrepareRequest() {
+        return result.getPrepareRequest();
+      }
+      public Builder setPrepareRequest(edu.brown.hstore.Hstoreservice.TransactionPrepareRequest value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        result.hasPrepareRequest = true;
+        result.prepareRequest_ = value;
+        return this;
+      }
+      public Builder setPrepareRequest(edu.brown.hstore.Hstoreservice.TransactionPrepareRequest.Builder builderForValue) {
+        result.hasPrepareRequest = true;
+        result.prepareRequest_ = builderForValue.build();
+        return this;
+      }
+      public Builder mergePrepareRequest(edu.brown.hstore.Hstoreservice.TransactionPrepareRequest value) {
+        if (result.hasPrepareRequest() &&
+            result.prepareRequest_ != edu.brown.hstore.Hstoreservice.TransactionPrepareRequest.getDefaultInstance()) {
+          result.prepareRequest_ =
+            edu.brown.hstore.Hstoreservice.TransactionPrepareRequest.newBuilder(result.prepareRequest_).mergeFrom(value).buildPartial();
+        } else {
+          result.prepareRequest_ = value;
+        }
+        result.hasPrepareRequest = true;
+        return this;
+      }
+      public Builder clearPrepareRequest() {
+        result.hasPrepareRequest = false;
+        result.prepareRequest_ = edu.brown.hstore.Hstoreservice.TransactionPrepareRequest.getDefaultInstance();
+        return this;
+      }
+      
+      // optional .edu.brown.hstore.TransactionPrepareResponse prepare_response = 7;
+      public boolean hasPrepareResponse() {
+        return result.hasPrepareResponse();
+      }
+      public edu.brown.hstore.Hstoreservice.TransactionPrepareResponse getPrepareResponse() {
+        return result.getPrepareResponse();
+      }
+      public Builder setPrepareResponse(edu.brown.hstore.Hstoreservice.TransactionPrepareResponse value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        result.hasPrepareResponse = true;
+        result.prepareResponse_ = value;
+        return this;
+      }
+      public Builder setPrepareResponse(edu.brown.hstore.Hstoreservice.TransactionPrepareResponse.Builder builderForValue) {
+        result.hasPrepareResponse = true;
+        result.prepareResponse_ = builderForValue.build();
+        return this;
+      }
+      public Builder mergePrepareResponse(edu.brown.hstore.Hstoreservice.TransactionPrepareResponse value) {
+        if (result.hasPrepareResponse() &&
+            result.prepareResponse_ != edu.brown.hstore.Hstoreservice.TransactionPrepareResponse.getDefaultInstance()) {
+          result.prepareResponse_ =
+            edu.brown.hstore.Hstoreservice.TransactionPrepareResponse.newBuilder(result.prepareResponse_).mergeFrom(value).buildPartial();
+        } else {
+          result.prepareResponse_ = value;
+        }
+        result.hasPrepareResponse = true;
+        return this;
+      }
+      public Builder clearPrepareResponse() {
+        result.hasPrepareResponse = false;
+        result.prepareResponse_ = edu.brown.hstore.Hstoreservice.TransactionPrepareResponse.getDefaultInstance();
+        return this;
+      }
+      
+      // optional .edu.brown.hstore.TransactionFinishRequest finish_request = 8;
+      public boolean hasFinishRequest() {
+        return result.hasFinishRequest();
+      }
+      public edu.brown.hstore.Hstoreservice.TransactionFinishRequest getFinishRequest() {
+        return result.getFinishRequest();
+      }
+      public Builder setFinishRequest(edu.brown.hstore.Hstoreservice.TransactionFinishRequest value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        result.hasFinishRequest = true;
+        result.finishRequest_ = value;
+        return this;
+      }
+      public Builder setFinishRequest(edu.brown.hstore.Hstoreservice.TransactionFinishRequest.Builder builderForValue) {
+        result.hasFinishRequest = true;
+        result.finishRequest_ = builderForValue.build();
+        return this;
+      }
+      public Builder mergeFinishRequest(edu.brown.hstore.Hstoreservice.TransactionFinishRequest value) {
+        if (result.hasFinishRequest() &&
+            result.finishRequest_ != edu.brown.hstore.Hstoreservice.TransactionFinishRequest.getDefaultInstance()) {
+          result.finishRequest_ =
+            edu.brown.hstore.Hstoreservice.TransactionFinishRequest.newBuilder(result.finishRequest_).mergeFrom(value).buildPartial();
+        } else {
+          result.finishRequest_ = value;
+        }
+        result.hasFinishRequest = true;
+        return this;
+      }
+      public Builder clearFinishRequest() {
+        result.hasFinishRequest = false;
+        result.finishRequest_ = edu.brown.hstore.Hstoreservice.TransactionFinishRequest.getDefaultInstance();
+        return this;
+      }
+      
+      // optional .edu.brown.hstore.TransactionFinishResponse finish_response = 9;
+      public boolean hasFinishResponse() {
+        return result.hasFinishResponse();
+      }
+      public edu.brown.hstore.Hstoreservice.TransactionFinishResponse getFinishResponse() {
+        return result.getFinishResponse();
+      }
+      public Builder setFinishResponse(edu.brown.hstore.Hstoreservice.TransactionFinishResponse value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        result.hasFinishResponse = true;
+        result.finishResponse_ = value;
+        return this;
+      }
+      public Builder setFinishResponse(edu.brown.hstore.Hstoreservice.TransactionFinishResponse.Builder builderForValue) {
+        result.hasFinishResponse = true;
+        result.finishResponse_ = builderForValue.build();
+        return this;
+      }
+      public Builder mergeFinishResponse(edu.brown.hstore.Hstoreservice.TransactionFinishResponse value) {
+        if (result.hasFinishResponse() &&
+            result.finishResponse_ != edu.brown.hstore.Hstoreservice.TransactionFinishResponse.getDefaultInstance()) {
+          result.finishResponse_ =
+            edu.brown.hstore.Hstoreservice.TransactionFinishResponse.newBuilder(result.finishResponse_).mergeFrom(value).buildPartial();
+        } else {
+          result.finishResponse_ = value;
+        }
+        result.hasFinishResponse = true;
+        return this;
+      }
+      public Builder clearFinishResponse() {
+        result.hasFinishResponse = false;
+        result.finishResponse_ = edu.brown.hstore.Hstoreservice.TransactionFinishResponse.getDefaultInstance();
+        return this;
+      }
+      
+      // @@protoc_insertion_point(builder_scope:edu.brown.hstore.TransactionBatchMessage)
+    }
+    
+    static {
+      defaultInstance = new TransactionBatchMessage(true);
+      edu.brown.hstore.Hstoreservice.internalForceInit();
+      defaultInstance.initFields();
+    }
+    
+    // @@protoc_insertion_point(class_scope:edu.brown.hstore.TransactionBatchMessage)
+  }
+  
+  public static final class TransactionBatchRequest extends
+      com.google.protobuf.GeneratedMessage {
+    // Use TransactionBatchRequest.newBuilder() to construct.
+    private TransactionBatchRequest() {
+      initFields();
+    }
+    private TransactionBatchRequest(boolean noInit) {}
+    
+    private static final TransactionBatchRequest defaultInstance;
+    public static TransactionBatchRequest getDefaultInstance() {
+      return defaultInstance;
+    }
+    
+    public TransactionBatchRequest getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+    
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return edu.brown.hstore.Hstoreservice.internal_static_edu_brown_hstore_TransactionBatchRequest_descriptor;
+    }
+    
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return edu.brown.hstore.Hstoreservice.internal_static_edu_brown_hstore_TransactionBatchRequest_fieldAccessorTable;
+    }
+    
+    // required int32 sender_id = 1;
+    public static final int SENDER_ID_FIELD_NUMBER = 1;
+    private boolean hasSenderId;
+    private int senderId_ = 0;
+    public boolean hasSenderId() { return hasSenderId; }
+    public int getSenderId() { return senderId_; }
+    
+    // repeated .edu.brown.hstore.TransactionBatchMessage messages = 2;
+    public static final int MESSAGES_FIELD_NUMBER = 2;
+    private java.util.List<edu.brown.hstore.Hstoreservice.TransactionBatchMessage> messages_ =
+      java.util.Collections.emptyList();
+    public java.util.List<edu.brown.hstore.Hstoreservice.TransactionBatchMessage> getMessagesList() {
+      return messages_;
+    }
+    public int getMessagesCount() { return messages_.size(); }
+    public edu.brown.hstore.Hstoreservice.TransactionBatchMessage getMessages(int index) {
+      return messages_.get(index);
+    }
+    
+    private void initFields() {
+    }
+    public final boolean isInitialized() {
+      if (!hasSenderId) return false;
+      for (edu.brown.hstore.Hstoreservice.TransactionBatchMessage element : getMessagesList()) {
+        if (!element.isInitialized()) return false;
+      }
+      return true;
+    }
+    
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (hasSenderId()) {
+        output.writeInt32(1, getSenderId());
+      }
+      for (edu.brown.hstore.Hstoreservice.TransactionBatchMessage element : getMessagesList()) {
+        output.writeMessage(2, element);
+      }
+      getUnknownFields().writeTo(output);
+    }
+    
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+    
+      size = 0;
+      if (hasSenderId()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(1, getSenderId());
+      }
+      for (edu.brown.hstore.Hstoreservice.TransactionBatchMessage element : getMessagesList()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(2, element);
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+    
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchRequest parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchRequest parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchRequest parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchRequest parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchRequest parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchRequest parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchRequest parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchRequest parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchRequest parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchRequest parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+    
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(edu.brown.hstore.Hstoreservice.TransactionBatchRequest prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+    
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder> {
+      private edu.brown.hstore.Hstoreservice.TransactionBatchRequest result;
+      
+      // Construct using edu.brown.hstore.Hstoreservice.TransactionBatchRequest.newBuilder()
+      private Builder() {}
+      
+      private static Builder create() {
+        Builder builder = new Builder();
+        builder.result = new edu.brown.hstore.Hstoreservice.TransactionBatchRequest();
+        return builder;
+      }
+      
+      protected edu.brown.hstore.Hstoreservice.TransactionBatchRequest internalGetResult() {
+        return result;
+      }
+      
+      public Builder clear() {
+        if (result == null) {
+          throw new IllegalStateException(
+            "Cannot call clear() after build().");
+        }
+        result = new edu.brown.hstore.Hstoreservice.TransactionBatchRequest();
+        return this;
+      }
+      
+      public Builder clone() {
+        return create().mergeFrom(result);
+      }
+      
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return edu.brown.hstore.Hstoreservice.TransactionBatchRequest.getDescriptor();
+      }
+      
+      public edu.brown.hstore.Hstoreservice.TransactionBatchRequest getDefaultInstanceForType() {
+        return edu.brown.hstore.Hstoreservice.TransactionBatchRequest.getDefaultInstance();
+      }
+      
+      public boolean isInitialized() {
+        return result.isInitialized();
+      }
+      public edu.brown.hstore.Hstoreservice.TransactionBatchRequest build() {
+        if (result != null && !isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return buildPartial();
+      }
+      
+      private edu.brown.hstore.Hstoreservice.TransactionBatchRequest buildParsed()
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        if (!isInitialized()) {
+          throw newUninitializedMessageException(
+            result).asInvalidProtocolBufferException();
+        }
+        return buildPartial();
+      }
+      
+      public edu.brown.hstore.Hstoreservice.TransactionBatchRequest buildPartial() {
+        if (result == null) {
+          throw new IllegalStateException(
+            "build() has already been called on this Builder.");
+        }
+        if (result.messages_ != java.util.Collections.EMPTY_LIST) {
+          result.messages_ =
+            java.util.Collections.unmodifiableList(result.messages_);
+        }
+        edu.brown.hstore.Hstoreservice.TransactionBatchRequest returnMe = result;
+        result = null;
+        return returnMe;
+      }
+      
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof edu.brown.hstore.Hstoreservice.TransactionBatchRequest) {
+          return mergeFrom((edu.brown.hstore.Hstoreservice.TransactionBatchRequest)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+      
+      public Builder mergeFrom(edu.brown.hstore.Hstoreservice.TransactionBatchRequest other) {
+        if (other == edu.brown.hstore.Hstoreservice.TransactionBatchRequest.getDefaultInstance()) return this;
+        if (other.hasSenderId()) {
+          setSenderId(other.getSenderId());
+        }
+        if (!other.messages_.isEmpty()) {
+          if (result.messages_.isEmpty()) {
+            result.messages_ = new java.util.ArrayList<edu.brown.hstore.Hstoreservice.TransactionBatchMessage>();
+          }
+          result.messages_.addAll(other.messages_);
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+      
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder(
+            this.getUnknownFields());
+        while (true) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              this.setUnknownFields(unknownFields.build());
+              return this;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                this.setUnknownFields(unknownFields.build());
+                return this;
+              }
+              break;
+            }
+            case 8: {
+              setSenderId(input.readInt32());
+              break;
+            }
+            case 18: {
+              edu.brown.hstore.Hstoreservice.TransactionBatchMessage.Builder subBuilder = edu.brown.hstore.Hstoreservice.TransactionBatchMessage.newBuilder();
+              input.readMessage(subBuilder, extensionRegistry);
+              addMessages(subBuilder.buildPartial());
+              break;
+            }
+          }
+        }
+      }
+      
+      
+      // required int32 sender_id = 1;
+      public boolean hasSenderId() {
+        return result.hasSenderId();
+      }
+      public int getSenderId() {
+        return result.getSenderId();
+      }
+      public Builder setSenderId(int value) {
+        result.hasSenderId = true;
+        result.senderId_ = value;
+        return this;
+      }
+      public Builder clearSenderId() {
+        result.hasSenderId = false;
+        result.senderId_ = 0;
+        return this;
+      }
+      
+      // repeated .edu.brown.hstore.TransactionBatchMessage messages = 2;
+      public java.util.List<edu.brown.hstore.Hstoreservice.TransactionBatchMessage> getMessagesList() {
+        return java.util.Collections.unmodifiableList(result.messages_);
+      }
+      public int getMessagesCount() {
+        return result.getMessagesCount();
+      }
+      public edu.brown.hstore.Hstoreservice.TransactionBatchMessage getMessages(int index) {
+        return result.getMessages(index);
+      }
+      public Builder setMessages(int index, edu.brown.hstore.Hstoreservice.TransactionBatchMessage value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        result.messages_.set(index, value);
+        return this;
+      }
+      public Builder setMessages(int index, edu.brown.hstore.Hstoreservice.TransactionBatchMessage.Builder builderForValue) {
+        result.messages_.set(index, builderForValue.build());
+        return this;
+      }
+      public Builder addMessages(edu.brown.hstore.Hstoreservice.TransactionBatchMessage value) {
+        if (value == null) {
+          throw new NullPointerException();
+        }
+        if (result.messages_.isEmpty()) {
+          result.messages_ = new java.util.ArrayList<edu.brown.hstore.Hstoreservice.TransactionBatchMessage>();
+        }
+        result.messages_.add(value);
+        return this;
+      }
+      public Builder addMessages(edu.brown.hstore.Hstoreservice.TransactionBatchMessage.Builder builderForValue) {
+        if (result.messages_.isEmpty()) {
+          result.messages_ = new java.util.ArrayList<edu.brown.hstore.Hstoreservice.TransactionBatchMessage>();
+        }
+        result.messages_.add(builderForValue.build());
+        return this;
+      }
+      public Builder addAllMessages(
+          java.lang.Iterable<? extends edu.brown.hstore.Hstoreservice.TransactionBatchMessage> values) {
+        if (result.messages_.isEmpty()) {
+          result.messages_ = new java.util.ArrayList<edu.brown.hstore.Hstoreservice.TransactionBatchMessage>();
+        }
+        super.addAll(values, result.messages_);
+        return this;
+      }
+      public Builder clearMessages() {
+        result.messages_ = java.util.Collections.emptyList();
+        return this;
+      }
+      
+      // @@protoc_insertion_point(builder_scope:edu.brown.hstore.TransactionBatchRequest)
+    }
+    
+    static {
+      defaultInstance = new TransactionBatchRequest(true);
+      edu.brown.hstore.Hstoreservice.internalForceInit();
+      defaultInstance.initFields();
+    }
+    
+    // @@protoc_insertion_point(class_scope:edu.brown.hstore.TransactionBatchRequest)
+  }
+  
+  public static final class TransactionBatchResponse extends
+      com.google.protobuf.GeneratedMessage {
+    // Use TransactionBatchResponse.newBuilder() to construct.
+    private TransactionBatchResponse() {
+      initFields();
+    }
+    private TransactionBatchResponse(boolean noInit) {}
+    
+    private static final TransactionBatchResponse defaultInstance;
+    public static TransactionBatchResponse getDefaultInstance() {
+      return defaultInstance;
+    }
+    
+    public TransactionBatchResponse getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+    
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return edu.brown.hstore.Hstoreservice.internal_static_edu_brown_hstore_TransactionBatchResponse_descriptor;
+    }
+    
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return edu.brown.hstore.Hstoreservice.internal_static_edu_brown_hstore_TransactionBatchResponse_fieldAccessorTable;
+    }
+    
+    // required int32 sender_id = 1;
+    public static final int SENDER_ID_FIELD_NUMBER = 1;
+    private boolean hasSenderId;
+    private int senderId_ = 0;
+    public boolean hasSenderId() { return hasSenderId; }
+    public int getSenderId() { return senderId_; }
+    
+    private void initFields() {
+    }
+    public final boolean isInitialized() {
+      if (!hasSenderId) return false;
+      return true;
+    }
+    
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (hasSenderId()) {
+        output.writeInt32(1, getSenderId());
+      }
+      getUnknownFields().writeTo(output);
+    }
+    
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+    
+      size = 0;
+      if (hasSenderId()) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(1, getSenderId());
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+    
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchResponse parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchResponse parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchResponse parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchResponse parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return newBuilder().mergeFrom(data, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchResponse parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchResponse parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchResponse parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchResponse parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      Builder builder = newBuilder();
+      if (builder.mergeDelimitedFrom(input, extensionRegistry)) {
+        return builder.buildParsed();
+      } else {
+        return null;
+      }
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchResponse parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input).buildParsed();
+    }
+    public static edu.brown.hstore.Hstoreservice.TransactionBatchResponse parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return newBuilder().mergeFrom(input, extensionRegistry)
+               .buildParsed();
+    }
+    
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(edu.brown.hstore.Hstoreservice.TransactionBatchResponse prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+    
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder> {
+      private edu.brown.hstore.Hstoreservice.TransactionBatchResponse result;
+      
+      // Construct using edu.brown.hstore.Hstoreservice.TransactionBatchResponse.newBuilder()
+      private Builder() {}
+      
+      private static Builder create() {
+        Builder builder = new Builder();
+        builder.result = new edu.brown.hstore.Hstoreservice.TransactionBatchResponse();
+        return builder;
+      }
+      
+      protected edu.brown.hstore.Hstoreservice.TransactionBatchResponse internalGetResult() {
+        return result;
+      }
+      
+      public Builder clear() {
+        if (result == null) {
+          throw new IllegalStateException(
+            "Cannot call clear() after build().");
+        }
+        result = new edu.brown.hstore.Hstoreservice.TransactionBatchResponse();
+        return this;
+      }
+      
+      public Builder clone() {
+        return create().mergeFrom(result);
+      }
+      
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return edu.brown.hstore.Hstoreservice.TransactionBatchResponse.getDescriptor();
+      }
+      
+      public edu.brown.hstore.Hstoreservice.TransactionBatchResponse getDefaultInstanceForType() {
+        return edu.brown.hstore.Hstoreservice.TransactionBatchResponse.getDefaultInstance();
+      }
+      
+      public boolean isInitialized() {
+        return result.isInitialized();
+      }
+      public edu.brown.hstore.Hstoreservice.TransactionBatchResponse build() {
+        if (result != null && !isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return buildPartial();
+      }
+      
+      private edu.brown.hstore.Hstoreservice.TransactionBatchResponse buildParsed()
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        if (!isInitialized()) {
+          throw newUninitializedMessageException(
+            result).asInvalidProtocolBufferException();
+        }
+        return buildPartial();
+      }
+      
+      public edu.brown.hstore.Hstoreservice.TransactionBatchResponse buildPartial() {
+        if (result == null) {
+          throw new IllegalStateException(
+            "build() has already been called on this Builder.");
+        }
+        edu.brown.hstore.Hstoreservice.TransactionBatchResponse returnMe = result;
+        result = null;
+        return returnMe;
+      }
+      
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof edu.brown.hstore.Hstoreservice.TransactionBatchResponse) {
+          return mergeFrom((edu.brown.hstore.Hstoreservice.TransactionBatchResponse)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+      
+      public Builder mergeFrom(edu.brown.hstore.Hstoreservice.TransactionBatchResponse other) {
+        if (other == edu.brown.hstore.Hstoreservice.TransactionBatchResponse.getDefaultInstance()) return this;
+        if (other.hasSenderId()) {
+          setSenderId(other.getSenderId());
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+      
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder(
+            this.getUnknownFields());
+        while (true) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              this.setUnknownFields(unknownFields.build());
+              return this;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                this.setUnknownFields(unknownFields.build());
+                return this;
+              }
+              break;
+            }
+            case 8: {
+              setSenderId(input.readInt32());
+              break;
+            }
+          }
+        }
+      }
+      
+      
+      // required int32 sender_id = 1;
+      public boolean hasSenderId() {
+        return result.hasSenderId();
+      }
+      public int getSenderId() {
+        return result.getSenderId();
+      }
+      public Builder setSenderId(int value) {
+        result.hasSenderId = true;
+        result.senderId_ = value;
+        return this;
+      }
+      public Builder clearSenderId() {
+        result.hasSenderId = false;
+        result.senderId_ = 0;
+        return this;
+      }
+      
+      // @@protoc_insertion_point(builder_scope:edu.brown.hstore.TransactionBatchResponse)
+    }
+    
+    static {
+      defaultInstance = new TransactionBatchResponse(true);
+      edu.brown.hstore.Hstoreservice.internalForceInit();
+      defaultInstance.initFields();
+    }
+    
+    // @@protoc_insertion_point(class_scope:edu.brown.hstore.TransactionBatchResponse)
+  }
+  
   public static abstract class HStoreService
       implements com.google.protobuf.Service {
     protected HStoreService() {}
@@ -10771,6 +13799,16 @@ public final class Hstoreservice {
           edu.brown.hstore.Hstoreservice.TimeSyncRequest request,
           com.google.protobuf.RpcCallback<edu.brown.hstore.Hstoreservice.TimeSyncResponse> done);
       
+      public abstract void replicationStream(
+          com.google.protobuf.RpcController controller,
+          edu.brown.hstore.Hstoreservice.ReplicationStreamRequest request,
+          com.google.protobuf.RpcCallback<edu.brown.hstore.Hstoreservice.ReplicationStreamResponse> done);
+      
+      public abstract void transactionBatch(
+          com.google.protobuf.RpcController controller,
+          edu.brown.hstore.Hstoreservice.TransactionBatchRequest request,
+          com.google.protobuf.RpcCallback<edu.brown.hstore.Hstoreservice.TransactionBatchResponse> done);
+      
     }
     
     public static com.google.protobuf.Service newReflectiveService(
@@ -10856,6 +13894,22 @@ public final class Hstoreservice {
           impl.timeSync(controller, request, done);
         }
         
+        @Override
+        public  void replicationStream(
+            com.google.protobuf.RpcController controller,
+            edu.brown.hstore.Hstoreservice.ReplicationStreamRequest request,
+            com.google.protobuf.RpcCallback<edu.brown.hstore.Hstoreservice.ReplicationStreamResponse> done) {
+          impl.replicationStream(controller, request, done);
+        }
+        
+        @Override
+        public  void transactionBatch(
+            com.google.protobuf.RpcController controller,
+            edu.brown.hstore.Hstoreservice.TransactionBatchRequest request,
+            com.google.protobuf.RpcCallback<edu.brown.hstore.Hstoreservice.TransactionBatchResponse> done) {
+          impl.transactionBatch(controller, request, done);
+        }
+        
       };
     }
     
@@ -10898,6 +13952,10 @@ public final class Hstoreservice {
               return impl.shutdown(controller, (edu.brown.hstore.Hstoreservice.ShutdownRequest)request);
             case 9:
               return impl.timeSync(controller, (edu.brown.hstore.Hstoreservice.TimeSyncRequest)request);
+            case 10:
+              return impl.replicationStream(controller, (edu.brown.hstore.Hstoreservice.ReplicationStreamRequest)request);
+            case 11:
+              return impl.transactionBatch(controller, (edu.brown.hstore.Hstoreservice.TransactionBatchRequest)request);
             default:
               throw new java.lang.AssertionError("Can't get here.");
           }
@@ -10932,6 +13990,10 @@ public final class Hstoreservice {
               return edu.brown.hstore.Hstoreservice.ShutdownRequest.getDefaultInstance();
             case 9:
               return edu.brown.hstore.Hstoreservice.TimeSyncRequest.getDefaultInstance();
+            case 10:
+              return edu.brown.hstore.Hstoreservice.ReplicationStreamRequest.getDefaultInstance();
+            case 11:
+              return edu.brown.hstore.Hstoreservice.TransactionBatchRequest.getDefaultInstance();
             default:
               throw new java.lang.AssertionError("Can't get here.");
           }
@@ -10966,6 +14028,10 @@ public final class Hstoreservice {
               return edu.brown.hstore.Hstoreservice.ShutdownResponse.getDefaultInstance();
             case 9:
               return edu.brown.hstore.Hstoreservice.TimeSyncResponse.getDefaultInstance();
+            case 10:
+              return edu.brown.hstore.Hstoreservice.ReplicationStreamResponse.getDefaultInstance();
+            case 11:
+              return edu.brown.hstore.Hstoreservice.TransactionBatchResponse.getDefaultInstance();
             default:
               throw new java.lang.AssertionError("Can't get here.");
           }
@@ -11024,6 +14090,16 @@ public final class Hstoreservice {
         edu.brown.hstore.Hstoreservice.TimeSyncRequest request,
         com.google.protobuf.RpcCallback<edu.brown.hstore.Hstoreservice.TimeSyncResponse> done);
     
+    public abstract void replicationStream(
+        com.google.protobuf.RpcController controller,
+        edu.brown.hstore.Hstoreservice.ReplicationStreamRequest request,
+        com.google.protobuf.RpcCallback<edu.brown.hstore.Hstoreservice.ReplicationStreamResponse> done);
+    
+    public abstract void transactionBatch(
+        com.google.protobuf.RpcController controller,
+        edu.brown.hstore.Hstoreservice.TransactionBatchRequest request,
+        com.google.protobuf.RpcCallback<edu.brown.hstore.Hstoreservice.TransactionBatchResponse> done);
+    
     public static final
         com.google.protobuf.Descriptors.ServiceDescriptor
         getDescriptor() {
@@ -11096,6 +14172,16 @@ public final class Hstoreservice {
             com.google.protobuf.RpcUtil.<edu.brown.hstore.Hstoreservice.TimeSyncResponse>specializeCallback(
               done));
           return;
+        case 10:
+          this.replicationStream(controller, (edu.brown.hstore.Hstoreservice.ReplicationStreamRequest)request,
+            com.google.protobuf.RpcUtil.<edu.brown.hstore.Hstoreservice.ReplicationStreamResponse>specializeCallback(
+              done));
+          return;
+        case 11:
+          this.transactionBatch(controller, (edu.brown.hstore.Hstoreservice.TransactionBatchRequest)request,
+            com.google.protobuf.RpcUtil.<edu.brown.hstore.Hstoreservice.TransactionBatchResponse>specializeCallback(
+              done));
+          return;
         default:
           throw new java.lang.AssertionError("Can't get here.");
       }
@@ -11130,6 +14216,10 @@ public final class Hstoreservice {
           return edu.brown.hstore.Hstoreservice.ShutdownRequest.getDefaultInstance();
         case 9:
           return edu.brown.hstore.Hstoreservice.TimeSyncRequest.getDefaultInstance();
+        case 10:
+          return edu.brown.hstore.Hstoreservice.ReplicationStreamRequest.getDefaultInstance();
+        case 11:
+          return edu.brown.hstore.Hstoreservice.TransactionBatchRequest.getDefaultInstance();
         default:
           throw new java.lang.AssertionError("Can't get here.");
       }
@@ -11164,6 +14254,10 @@ public final class Hstoreservice {
           return edu.brown.hstore.Hstoreservice.ShutdownResponse.getDefaultInstance();
         case 9:
           return edu.brown.hstore.Hstoreservice.TimeSyncResponse.getDefaultInstance();
+        case 10:
+          return edu.brown.hstore.Hstoreservice.ReplicationStreamResponse.getDefaultInstance();
+        case 11:
+          return edu.brown.hstore.Hstoreservice.TransactionBatchResponse.getDefaultInstance();
         default:
           throw new java.lang.AssertionError("Can't get here.");
       }
@@ -11334,6 +14428,36 @@ public final class Hstoreservice {
             edu.brown.hstore.Hstoreservice.TimeSyncResponse.class,
             edu.brown.hstore.Hstoreservice.TimeSyncResponse.getDefaultInstance()));
       }
+      
+      public  void replicationStream(
+          com.google.protobuf.RpcController controller,
+          edu.brown.hstore.Hstoreservice.ReplicationStreamRequest request,
+          com.google.protobuf.RpcCallback<edu.brown.hstore.Hstoreservice.ReplicationStreamResponse> done) {
+        channel.callMethod(
+          getDescriptor().getMethods().get(10),
+          controller,
+          request,
+          edu.brown.hstore.Hstoreservice.ReplicationStreamResponse.getDefaultInstance(),
+          com.google.protobuf.RpcUtil.generalizeCallback(
+            done,
+            edu.brown.hstore.Hstoreservice.ReplicationStreamResponse.class,
+            edu.brown.hstore.Hstoreservice.ReplicationStreamResponse.getDefaultInstance()));
+      }
+      
+      public  void transactionBatch(
+          com.google.protobuf.RpcController controller,
+          edu.brown.hstore.Hstoreservice.TransactionBatchRequest request,
+          com.google.protobuf.RpcCallback<edu.brown.hstore.Hstoreservice.TransactionBatchResponse> done) {
+        channel.callMethod(
+          getDescriptor().getMethods().get(11),
+          controller,
+          request,
+          edu.brown.hstore.Hstoreservice.TransactionBatchResponse.getDefaultInstance(),
+          com.google.protobuf.RpcUtil.generalizeCallback(
+            done,
+            edu.brown.hstore.Hstoreservice.TransactionBatchResponse.class,
+            edu.brown.hstore.Hstoreservice.TransactionBatchResponse.getDefaultInstance()));
+      }
     }
     
     public static BlockingInterface newBlockingStub(
@@ -11391,6 +14515,16 @@ public final class Hstoreservice {
           com.google.protobuf.RpcController controller,
           edu.brown.hstore.Hstoreservice.TimeSyncRequest request)
           throws com.google.protobuf.ServiceException;
+      
+      public edu.brown.hstore.Hstoreservice.ReplicationStreamResponse replicationStream(
+          com.google.protobuf.RpcController controller,
+          edu.brown.hstore.Hstoreservice.ReplicationStreamRequest request)
+          throws com.google.protobuf.ServiceException;
+      
+      public edu.brown.hstore.Hstoreservice.TransactionBatchResponse transactionBatch(
+          com.google.protobuf.RpcController controller,
+          edu.brown.hstore.Hstoreservice.TransactionBatchRequest request)
+          throws com.google.protobuf.ServiceException;
     }
     
     private static final class BlockingStub implements BlockingInterface {
@@ -11519,6 +14653,30 @@ public final class Hstoreservice {
           edu.brown.hstore.Hstoreservice.TimeSyncResponse.getDefaultInstance());
       }
       
+      
+      public edu.brown.hstore.Hstoreservice.ReplicationStreamResponse replicationStream(
+          com.google.protobuf.RpcController controller,
+          edu.brown.hstore.Hstoreservice.ReplicationStreamRequest request)
+          throws com.google.protobuf.ServiceException {
+        return (edu.brown.hstore.Hstoreservice.ReplicationStreamResponse) channel.callBlockingMethod(
+          getDescriptor().getMethods().get(10),
+          controller,
+          request,
+          edu.brown.hstore.Hstoreservice.ReplicationStreamResponse.getDefaultInstance());
+      }
+      
+      
+      public edu.brown.hstore.Hstoreservice.TransactionBatchResponse transactionBatch(
+          com.google.protobuf.RpcController controller,
+          edu.brown.hstore.Hstoreservice.TransactionBatchRequest request)
+          throws com.google.protobuf.ServiceException {
+        return (edu.brown.hstore.Hstoreservice.TransactionBatchResponse) channel.callBlockingMethod(
+          getDescriptor().getMethods().get(11),
+          controller,
+          request,
+          edu.brown.hstore.Hstoreservice.TransactionBatchResponse.getDefaultInstance());
+      }
+      
     }
   }
   
@@ -11647,6 +14805,36 @@ public final class Hstoreservice {
   private static
     com.google.protobuf.GeneratedMessage.FieldAccessorTable
       internal_static_edu_brown_hstore_TimeSyncResponse_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_edu_brown_hstore_ReplicationRecord_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_edu_brown_hstore_ReplicationRecord_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_edu_brown_hstore_ReplicationStreamRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_edu_brown_hstore_ReplicationStreamRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_edu_brown_hstore_ReplicationStreamResponse_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_edu_brown_hstore_ReplicationStreamResponse_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_edu_brown_hstore_TransactionBatchMessage_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_edu_brown_hstore_TransactionBatchMessage_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_edu_brown_hstore_TransactionBatchRequest_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_edu_brown_hstore_TransactionBatchRequest_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_edu_brown_hstore_TransactionBatchResponse_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_edu_brown_hstore_TransactionBatchResponse_fieldAccessorTable;
   
   public static com.google.protobuf.Descriptors.FileDescriptor
       getDescriptor() {
@@ -11729,38 +14917,76 @@ public final class Hstoreservice {
       "onse\022\021\n\tsender_id\030\001 \002(\005\"2\n\017TimeSyncReque" +
       "st\022\021\n\tsender_id\030\001 \002(\005\022\014\n\004t0_s\030\002 \002(\003\"O\n\020T" +
       "imeSyncResponse\022\021\n\tsender_id\030\001 \002(\005\022\014\n\004t0" +
-      "_s\030\002 \002(\003\022\014\n\004t0_r\030\003 \002(\003\022\014\n\004t1_s\030\004 \002(\003*\265\001\n" +
-      "\006Status\022\006\n\002OK\020\000\022\016\n\nABORT_USER\020\001\022\022\n\016ABORT" +
-      "_GRACEFUL\020\002\022\024\n\020ABORT_UNEXPECTED\020\003\022\031\n\025ABO" +
-      "RT_CONNECTION_LOST\020\004\022\024\n\020ABORT_MISPREDICT" +
-      "\020\005\022\021\n\rABORT_RESTART\020\006\022\020\n\014ABORT_REJECT\020\007\022" +
-      "\023\n\017ABORT_THROTTLED\020\0102\376\007\n\rHStoreService\022f" +
-      "\n\017TransactionInit\022(.edu.brown.hstore.Tra",
-      "nsactionInitRequest\032).edu.brown.hstore.T" +
-      "ransactionInitResponse\022f\n\017TransactionWor" +
-      "k\022(.edu.brown.hstore.TransactionWorkRequ" +
-      "est\032).edu.brown.hstore.TransactionWorkRe" +
-      "sponse\022c\n\016TransactionMap\022\'.edu.brown.hst" +
-      "ore.TransactionMapRequest\032(.edu.brown.hs" +
-      "tore.TransactionMapResponse\022l\n\021Transacti" +
-      "onReduce\022*.edu.brown.hstore.TransactionR" +
-      "educeRequest\032+.edu.brown.hstore.Transact" +
-      "ionReduceResponse\022o\n\022TransactionPrepare\022",
-      "+.edu.brown.hstore.TransactionPrepareReq" +
-      "uest\032,.edu.brown.hstore.TransactionPrepa" +
-      "reResponse\022l\n\021TransactionFinish\022*.edu.br" +
-      "own.hstore.TransactionFinishRequest\032+.ed" +
-      "u.brown.hstore.TransactionFinishResponse" +
-      "\022r\n\023TransactionRedirect\022,.edu.brown.hsto" +
-      "re.TransactionRedirectRequest\032-.edu.brow" +
-      "n.hstore.TransactionRedirectResponse\022Q\n\010" +
-      "SendData\022!.edu.brown.hstore.SendDataRequ" +
-      "est\032\".edu.brown.hstore.SendDataResponse\022",
-      "Q\n\010Shutdown\022!.edu.brown.hstore.ShutdownR" +
-      "equest\032\".edu.brown.hstore.ShutdownRespon" +
-      "se\022Q\n\010TimeSync\022!.edu.brown.hstore.TimeSy" +
-      "ncRequest\032\".edu.brown.hstore.TimeSyncRes" +
-      "ponse"
+      "_s\030\002 \002(\003\022\014\n\004t0_r\030\003 \002(\003\022\014\n\004t1_s\030\004 \002(\003\"\273\002\n" +
+      "\021ReplicationRecord\022\020\n\010sequence\030\001 \002(\003\022\026\n\016" +
+      "transaction_id\030\002 \002(\003\0226\n\004type\030\003 \002(\0162(.edu" +
+      ".brown.hstore.ReplicationRecord.Type\022\024\n\014" +
+      "procedure_id\030\004 \001(\005\022\022\n\nparameters\030\005 \001(\014\0220" +
+      "\n\010fragment\030\006 \001(\0132\036.edu.brown.hstore.Work" +
+      "Fragment\022\026\n\016parameter_sets\030\007 \003(\014\022(\n\006stat",
+      "us\030\010 \001(\0162\030.edu.brown.hstore.Status\"&\n\004Ty" +
+      "pe\022\010\n\004INIT\020\000\022\010\n\004WORK\020\001\022\n\n\006FINISH\020\002\"y\n\030Re" +
+      "plicationStreamRequest\022\021\n\tsender_id\030\001 \002(" +
+      "\005\022\024\n\014partition_id\030\002 \002(\005\0224\n\007records\030\003 \003(\013" +
+      "2#.edu.brown.hstore.ReplicationRecord\"\205\001" +
+      "\n\031ReplicationStreamResponse\022\021\n\tsender_id" +
+      "\030\001 \002(\005\022\024\n\014partition_id\030\002 \002(\005\022\025\n\rlast_seq" +
+      "uence\030\003 \002(\003\022(\n\006status\030\004 \002(\0162\030.edu.brown." +
+      "hstore.Status\"\311\004\n\027TransactionBatchMessag" +
+      "e\022\022\n\nmessage_id\030\001 \002(\005\022>\n\014init_request\030\002 ",
+      "\001(\0132(.edu.brown.hstore.TransactionInitRe" +
+      "quest\022@\n\rinit_response\030\003 \001(\0132).edu.brown" +
+      ".hstore.TransactionInitResponse\022>\n\014work_" +
+      "request\030\004 \001(\0132(.edu.brown.hstore.Transac" +
+      "tionWorkRequest\022@\n\rwork_response\030\005 \001(\0132)" +
+      ".edu.brown.hstore.TransactionWorkRespons" +
+      "e\022D\n\017prepare_request\030\006 \001(\0132+.edu.brown.h" +
+      "store.TransactionPrepareRequest\022F\n\020prepa" +
+      "re_response\030\007 \001(\0132,.edu.brown.hstore.Tra" +
+      "nsactionPrepareResponse\022B\n\016finish_reques",
+      "t\030\010 \001(\0132*.edu.brown.hstore.TransactionFi" +
+      "nishRequest\022D\n\017finish_response\030\t \001(\0132+.e" +
+      "du.brown.hstore.TransactionFinishRespons" +
+      "e\"i\n\027TransactionBatchRequest\022\021\n\tsender_i" +
+      "d\030\001 \002(\005\022;\n\010messages\030\002 \003(\0132).edu.brown.hs" +
+      "tore.TransactionBatchMessage\"-\n\030Transact" +
+      "ionBatchResponse\022\021\n\tsender_id\030\001 \002(\005*\265\001\n\006" +
+      "Status\022\006\n\002OK\020\000\022\016\n\nABORT_USER\020\001\022\022\n\016ABORT_" +
+      "GRACEFUL\020\002\022\024\n\020ABORT_UNEXPECTED\020\003\022\031\n\025ABOR" +
+      "T_CONNECTION_LOST\020\004\022\024\n\020ABORT_MISPREDICT\020",
+      "\005\022\021\n\rABORT_RESTART\020\006\022\020\n\014ABORT_REJECT\020\007\022\023" +
+      "\n\017ABORT_THROTTLED\020\0102\327\t\n\rHStoreService\022f\n" +
+      "\017TransactionInit\022(.edu.brown.hstore.Tran" +
+      "sactionInitRequest\032).edu.brown.hstore.Tr" +
+      "ansactionInitResponse\022f\n\017TransactionWork" +
+      "\022(.edu.brown.hstore.TransactionWorkReque" +
+      "st\032).edu.brown.hstore.TransactionWorkRes" +
+      "ponse\022c\n\016TransactionMap\022\'.edu.brown.hsto" +
+      "re.TransactionMapRequest\032(.edu.brown.hst" +
+      "ore.TransactionMapResponse\022l\n\021Transactio",
+      "nReduce\022*.edu.brown.hstore.TransactionRe" +
+      "duceRequest\032+.edu.brown.hstore.Transacti" +
+      "onReduceResponse\022o\n\022TransactionPrepare\022+" +
+      ".edu.brown.hstore.TransactionPrepareRequ" +
+      "est\032,.edu.brown.hstore.TransactionPrepar" +
+      "eResponse\022l\n\021TransactionFinish\022*.edu.bro" +
+      "wn.hstore.TransactionFinishRequest\032+.edu" +
+      ".brown.hstore.TransactionFinishResponse\022" +
+      "r\n\023TransactionRedirect\022,.edu.brown.hstor" +
+      "e.TransactionRedirectRequest\032-.edu.brown",
+      ".hstore.TransactionRedirectResponse\022Q\n\010S" +
+      "endData\022!.edu.brown.hstore.SendDataReque" +
+      "st\032\".edu.brown.hstore.SendDataResponse\022Q" +
+      "\n\010Shutdown\022!.edu.brown.hstore.ShutdownRe" +
+      "quest\032\".edu.brown.hstore.ShutdownRespons" +
+      "e\022Q\n\010TimeSync\022!.edu.brown.hstore.TimeSyn" +
+      "cRequest\032\".edu.brown.hstore.TimeSyncResp" +
+      "onse\022l\n\021ReplicationStream\022*.edu.brown.hs" +
+      "tore.ReplicationStreamRequest\032+.edu.brow" +
+      "n.hstore.ReplicationStreamResponse\022i\n\020Tr",
+      "ansactionBatch\022).edu.brown.hstore.Transa" +
+      "ctionBatchRequest\032*.edu.brown.hstore.Tra" +
+      "nsactionBatchResponse"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
       new com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner() {
@@ -11967,6 +15193,54 @@ public final class Hstoreservice {
               new java.lang.String[] { "SenderId", "T0S", "T0R", "T1S", },
               edu.brown.hstore.Hstoreservice.TimeSyncResponse.class,
               edu.brown.hstore.Hstoreservice.TimeSyncResponse.Builder.class);
+          internal_static_edu_brown_hstore_ReplicationRecord_descriptor =
+            getDescriptor().getMessageTypes().get(22);
+          internal_static_edu_brown_hstore_ReplicationRecord_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_edu_brown_hstore_ReplicationRecord_descriptor,
+              new java.lang.String[] { "Sequence", "TransactionId", "Type", "ProcedureId", "Parameters", "Fragment", "ParameterSets", "Status", },
+              edu.brown.hstore.Hstoreservice.ReplicationRecord.class,
+              edu.brown.hstore.Hstoreservice.ReplicationRecord.Builder.class);
+          internal_static_edu_brown_hstore_ReplicationStreamRequest_descriptor =
+            getDescriptor().getMessageTypes().get(23);
+          internal_static_edu_brown_hstore_ReplicationStreamRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_edu_brown_hstore_ReplicationStreamRequest_descriptor,
+              new java.lang.String[] { "SenderId", "PartitionId", "Records", },
+              edu.brown.hstore.Hstoreservice.ReplicationStreamRequest.class,
+              edu.brown.hstore.Hstoreservice.ReplicationStreamRequest.Builder.class);
+          internal_static_edu_brown_hstore_ReplicationStreamResponse_descriptor =
+            getDescriptor().getMessageTypes().get(24);
+          internal_static_edu_brown_hstore_ReplicationStreamResponse_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_edu_brown_hstore_ReplicationStreamResponse_descriptor,
+              new java.lang.String[] { "SenderId", "PartitionId", "LastSequence", "Status", },
+              edu.brown.hstore.Hstoreservice.ReplicationStreamResponse.class,
+              edu.brown.hstore.Hstoreservice.ReplicationStreamResponse.Builder.class);
+          internal_static_edu_brown_hstore_TransactionBatchMessage_descriptor =
+            getDescriptor().getMessageTypes().get(25);
+          internal_static_edu_brown_hstore_TransactionBatchMessage_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_edu_brown_hstore_TransactionBatchMessage_descriptor,
+              new java.lang.String[] { "MessageId", "InitRequest", "InitResponse", "WorkRequest", "WorkResponse", "PrepareRequest", "PrepareResponse", "FinishRequest", "FinishResponse", },
+              edu.brown.hstore.Hstoreservice.TransactionBatchMessage.class,
+              edu.brown.hstore.Hstoreservice.TransactionBatchMessage.Builder.class);
+          internal_static_edu_brown_hstore_TransactionBatchRequest_descriptor =
+            getDescriptor().getMessageTypes().get(26);
+          internal_static_edu_brown_hstore_TransactionBatchRequest_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_edu_brown_hstore_TransactionBatchRequest_descriptor,
+              new java.lang.String[] { "SenderId", "Messages", },
+              edu.brown.hstore.Hstoreservice.TransactionBatchRequest.class,
+              edu.brown.hstore.Hstoreservice.TransactionBatchRequest.Builder.class);
+          internal_static_edu_brown_hstore_TransactionBatchResponse_descriptor =
+            getDescriptor().getMessageTypes().get(27);
+          internal_static_edu_brown_hstore_TransactionBatchResponse_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_edu_brown_hstore_TransactionBatchResponse_descriptor,
+              new java.lang.String[] { "SenderId", },
+              edu.brown.hstore.Hstoreservice.TransactionBatchResponse.class,
+              edu.brown.hstore.Hstoreservice.TransactionBatchResponse.Builder.class);
           return null;
         }
       };
@@ -0,0 +1,52 @@
+package edu.brown;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.voltdb.benchmark.tpcc.TPCCProjectBuilder;
+import org.voltdb.catalog.Catalog;
+
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.catalog.FixCatalog;
+import edu.brown.catalog.ParametersUtil;
+import edu.brown.utils.ProjectType;
+
+/**
+ * Helper methods for the Japex microbenchmark drivers (see microbenchmark-config.xml).
+ * The drivers are not TestCases, so they can't use BaseTestCase to get their catalogs.
+ * Japex loads the drivers with its own ClassLoader, so we can't use anything that looks
+ * up classes through the system ClassLoader (e.g., AbstractProjectBuilder.getProjectBuilder()).
+ */
+public abstract class MicroBenchmarkUtil {
+    private static final Logger LOG = Logger.getLogger(MicroBenchmarkUtil.class);
+
+    private static final Map<Integer, Catalog> TPCC_CATALOGS = new HashMap<Integer, Catalog>();
+
+    /**
+     * Returns the TPC-C catalog with a single host and site that has the given
+     * number of partitions. The project's test jar is used if it has already
+     * been built, otherwise the catalog is compiled from scratch.
+     * @param num_partitions
+     * @return
+     * @throws Exception
+     */
+    public static synchronized Catalog getTPCCCatalog(int num_partitions) throws Exception {
+        Catalog catalog = TPCC_CATALOGS.get(num_partitions);
+        if (catalog != null) return (catalog);
+
+        File jar_path = new TPCCProjectBuilder().getJarPath(true);
+        if (jar_path.exists()) {
+            LOG.debug("LOAD CACHE JAR: " + jar_path.getAbsolutePath());
+            catalog = CatalogUtil.loadCatalogFromJar(jar_path.getAbsolutePath());
+        } else {
+            LOG.debug("MISSING JAR: " + jar_path.getAbsolutePath());
+            catalog = TPCCProjectBuilder.getTPCCSchemaCatalog(true);
+        }
+        ParametersUtil.populateCatalog(CatalogUtil.getDatabase(catalog), ParametersUtil.getParameterMapping(ProjectType.TPCC));
+        catalog = FixCatalog.addHostInfo(catalog, "localhost", 1, 1, num_partitions);
+        TPCC_CATALOGS.put(num_partitions, catalog);
+        return (catalog);
+    }
+}
@@ -63,7 +63,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
 
@@ -81,6 +83,7 @@ import org.voltdb.benchmark.Verification.Expression;
 import org.voltdb.catalog.Catalog;
 import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Table;
+import org.voltdb.client.BulkLoader;
 import org.voltdb.client.Client;
 import org.voltdb.client.ClientFactory;
 import org.voltdb.client.ClientResponse;
@@ -93,6 +96,7 @@ import edu.brown.designer.partitioners.plan.PartitionPlan;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.statistics.Histogram;
+import edu.brown.statistics.LatencyHistogram;
 import edu.brown.statistics.TableStatistics;
 import edu.brown.statistics.WorkloadStatistics;
 import edu.brown.utils.ArgumentsParser;
@@ -262,6 +266,13 @@ public abstract class BenchmarkComponent {
     
     private final boolean m_blocking;
 
+    /**
+     * If set to true, then transactions are scheduled at their own arrival
+     * times instead of in batches (see ${client.open_loop})
+     */
+    private final boolean m_openLoop;
+    private final boolean m_openLoopPoisson;
+
     /**
      * Number of transactions to generate for every millisecond of time that
      * passes
@@ -334,6 +345,7 @@ public abstract class BenchmarkComponent {
     
     private final boolean m_noUploading;
     private final ReentrantLock m_loaderBlock = new ReentrantLock();
+    private BulkLoader m_bulkLoader = null;
     private final ClientResponse m_dummyResponse = new ClientResponseImpl(-1, -1, -1, Status.OK, HStoreConstants.EMPTY_RESULT, "");
     
     /**
@@ -379,17 +391,42 @@ public abstract class BenchmarkComponent {
         
         public Histogram<Integer> basePartitions = new Histogram<Integer>(true);
         public Histogram<String> transactions = new Histogram<String>(true);
+        /**
+         * TransactionName -> Latencies (nanoseconds)
+         * Like the transaction counts, these are not reset in between polls
+         */
+        public Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<String, LatencyHistogram>();
+
+        public void recordLatency(String txnName, long latency) {
+            LatencyHistogram h = this.latencies.get(txnName);
+            if (h == null) {
+                synchronized (this.latencies) {
+                    h = this.latencies.get(txnName);
+                    if (h == null) {
+                        h = new LatencyHistogram();
+                        this.latencies.put(txnName, h);
+                    }
+                } // SYNCH
+            }
+            h.record(latency);
+        }
 
         public TransactionCounter copy() {
             TransactionCounter copy = new TransactionCounter();
             copy.basePartitions.putHistogram(this.basePartitions);
             copy.transactions.putHistogram(this.transactions);
+            for (Map.Entry<String, LatencyHistogram> e : this.latencies.entrySet()) {
+                copy.latencies.put(e.getKey(), e.getValue().copy());
+            } // FOR
             return (copy);
         }
         
         public void clear() {
             this.basePartitions.clearValues();
             this.transactions.clearValues();
+            for (LatencyHistogram h : this.latencies.values()) {
+                h.clear();
+            } // FOR
         }
         
         // ----------------------------------------------------------------------------
@@ -413,6 +450,8 @@ public abstract class BenchmarkComponent {
         }
         @Override
         public void fromJSON(JSONObject json_object, Database catalog_db) throws JSONException {
+            // The same TransactionCounter may be reused for the responses from different clients
+            this.latencies.clear();
             JSONUtil.fieldsFromJSON(json_object, catalog_db, this, TransactionCounter.class, true, JSONUtil.getSerializableFields(this.getClass()));
         }
     } // END CLASS
@@ -600,6 +639,9 @@ public abstract class BenchmarkComponent {
                         m_sampler.start();
                     }
                     runLoop();
+                } else if (m_openLoop) {
+                    if (debug.get()) LOG.debug(String.format("Running open-loop [m_txnRate=%d, m_openLoopPoisson=%s]", m_txnRate, m_openLoopPoisson));
+                    openLoopRunLoop();
                 } else {
                     if (debug.get()) LOG.debug(String.format("Running rate controlled [m_txnRate=%d, m_txnsPerMillisecond=%f]", m_txnRate, m_txnsPerMillisecond));
                     rateControlledRunLoop();
@@ -685,6 +727,60 @@ public abstract class BenchmarkComponent {
                 m_lastRequestTime = now;
             }
         }
+
+        /**
+         * Submit one txn at a time at the arrival times of a fixed-interval or
+         * Poisson process with an average rate of m_txnRate. The schedule is never
+         * pushed back when we fall behind (e.g., because of back pressure), so the
+         * time that a txn spends waiting to be sent is included in its latency.
+         */
+        private void openLoopRunLoop() {
+            assert(m_txnRate > 0) : "Invalid txn rate " + m_txnRate;
+            final double interval = 1000000000d / m_txnRate; // nanoseconds
+            final Random rand = new Random();
+            double next = System.nanoTime();
+            while (true) {
+                try {
+                    // Check whether we are currently being paused
+                    // We will block until we're allowed to go again
+                    if (m_controlState == ControlState.PAUSED) {
+                        m_pauseLock.acquire();
+                        next = System.nanoTime();
+                    }
+                    assert(m_controlState != ControlState.PAUSED) : "Unexpected " + m_controlState;
+                } catch (InterruptedException e1) {
+                    throw new RuntimeException();
+                }
+
+                // Wait until it is time to send the next txn
+                long start = (long)next;
+                long wait;
+                while ((wait = start - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                } // WHILE
+
+                // If the txn isn't queued because of back pressure, then we keep trying
+                // with the same start time until it gets sent
+                LatencyTrackingClient.setIntendedStartTime(start);
+                try {
+                    while (runOnce() == false) {
+                        m_voltClient.backpressureBarrier();
+                    } // WHILE
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException("Unexpected interruption", ex);
+                } catch (final IOException e) {
+                    return;
+                } finally {
+                    LatencyTrackingClient.setIntendedStartTime(-1);
+                }
+
+                if (m_openLoopPoisson) {
+                    next += -Math.log(1.0 - rand.nextDouble()) * interval;
+                } else {
+                    next += interval;
+                }
+            } // WHILE
+        }
     }
 
     /**
@@ -716,6 +812,13 @@ public abstract class BenchmarkComponent {
         if (status == Status.OK || status == Status.ABORT_USER) {
             m_txnStats.basePartitions.put(cresponse.getBasePartition());
             m_txnStats.transactions.put(m_countDisplayNames[txn_idx]);
+
+            // Use the start time recorded by the LatencyTrackingClient if we are inside
+            // of one of its callbacks. Otherwise the best that we can do is the
+            // round-trip time measured by the Client (in milliseconds)
+            long start = LatencyTrackingClient.getCallbackStartTime();
+            long latency = (start >= 0 ? System.nanoTime() - start : cresponse.getClientRoundtrip() * 1000000l);
+            m_txnStats.recordLatency(m_countDisplayNames[txn_idx], latency);
         }
     }
 
@@ -727,6 +830,8 @@ public abstract class BenchmarkComponent {
         m_username = "";
         m_txnRate = -1;
         m_blocking = false;
+        m_openLoop = false;
+        m_openLoopPoisson = false;
         m_txnsPerMillisecond = 0;
         m_catalogPath = null;
         m_projectName = null;
@@ -920,6 +1025,8 @@ public abstract class BenchmarkComponent {
         m_txnRate = (isLoader ? -1 : transactionRate);
         m_txnsPerMillisecond = (isLoader ? -1 : transactionRate / 1000.0);
         m_blocking = blocking;
+        m_openLoop = m_hstoreConf.client.open_loop;
+        m_openLoopPoisson = m_hstoreConf.client.open_loop_poisson;
         m_tickInterval = tickInterval;
         m_noUploading = noUploading;
         m_noConnections = noConnections || (isLoader && m_noUploading);
@@ -955,6 +1062,8 @@ public abstract class BenchmarkComponent {
                 useHeavyweightClient(),
                 statsSettings
         );
+        // This has to go underneath the BlockingClient so that TPCCClient can still unwrap it
+        new_client = new LatencyTrackingClient(new_client);
         if (m_blocking) {
             if (debug.get()) 
                 LOG.debug(String.format("Using BlockingClient [concurrent=%d]", m_hstoreConf.client.blocking_concurrent));
@@ -1083,6 +1192,7 @@ public abstract class BenchmarkComponent {
     /**
      * This method will load a VoltTable into the database for the given tableName.
      * The database will automatically split the tuples and send to the correct partitions
+     * If ${client.bulk_loader} is enabled, then the tuples are split up here instead
      * The current thread will block until the the database cluster returns the result.
      * Can be overridden for testing purposes.
      * @param tableName
@@ -1106,7 +1216,11 @@ public abstract class BenchmarkComponent {
             boolean locked = m_hstoreConf.client.blocking_loader;
             if (locked) m_loaderBlock.lock();
             try {
-                cr = m_voltClient.callProcedure("@LoadMultipartitionTable", tableName, vt);
+                if (m_hstoreConf.client.bulk_loader) {
+                    cr = this.getBulkLoader().load(tableName, vt);
+                } else {
+                    cr = m_voltClient.callProcedure("@LoadMultipartitionTable", tableName, vt);
+                }
             } catch (Exception e) {
                 throw new RuntimeException("Error when trying load data for '" + tableName + "'", e);
             } finally {
@@ -1150,6 +1264,13 @@ public abstract class BenchmarkComponent {
         return (cr);
     }
     
+    private synchronized BulkLoader getBulkLoader() {
+        if (m_bulkLoader == null) {
+            m_bulkLoader = new BulkLoader(m_voltClient, this.getCatalog());
+        }
+        return (m_bulkLoader);
+    }
+    
     /**
      * Get the number of tuples loaded into the given table thus far
      * @param tableName
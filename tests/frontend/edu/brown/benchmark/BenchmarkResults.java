@@ -38,6 +38,7 @@ import org.voltdb.utils.Pair;
 import edu.brown.logging.LoggerUtil;
 import edu.brown.logging.LoggerUtil.LoggerBoolean;
 import edu.brown.statistics.Histogram;
+import edu.brown.statistics.LatencyHistogram;
 import edu.brown.utils.CollectionUtil;
 import edu.brown.utils.JSONSerializable;
 import edu.brown.utils.JSONUtil;
@@ -88,6 +89,7 @@ public class BenchmarkResults {
         public double stddevTxnPerSecond;
         public final Map<String, EntityResult> txnResults = new HashMap<String, EntityResult>();
         public final Map<String, EntityResult> clientResults = new HashMap<String, EntityResult>();
+        public final Map<String, LatencyResult> txnLatencies = new HashMap<String, LatencyResult>();
         
         public FinalResult(BenchmarkResults results) {
             
@@ -150,6 +152,10 @@ public class BenchmarkResults {
                 EntityResult er = new EntityResult(this.totalTxnCount, this.duration, clientCounts.get(clientName));
                 this.clientResults.put(clientName.replace("client-", ""), er);
             } // FOR
+            // LATENCIES
+            for (Entry<String, LatencyHistogram> e : results.getLatencies().entrySet()) {
+                this.txnLatencies.put(e.getKey(), new LatencyResult(e.getValue()));
+            } // FOR
         }
         
         public long getDuration() {
@@ -188,6 +194,9 @@ public class BenchmarkResults {
         public EntityResult getClientResult(String clientName) {
             return this.clientResults.get(clientName);
         }
+        public LatencyResult getTransactionLatency(String txnName) {
+            return this.txnLatencies.get(txnName);
+        }
         // ----------------------------------------------------------------------------
         // SERIALIZATION METHODS
         // ----------------------------------------------------------------------------
@@ -270,6 +279,75 @@ public class BenchmarkResults {
         }
     }
     
+    /**
+     * Latency percentiles (in milliseconds) for a single transaction type
+     */
+    public static class LatencyResult implements JSONSerializable {
+        public long txnCount;
+        public double avg;
+        public double p50;
+        public double p95;
+        public double p99;
+        public double p999;
+        public double max;
+        
+        public LatencyResult(LatencyHistogram h) {
+            this.txnCount = h.getCount();
+            this.avg = h.getMean() / 1000000d;
+            this.p50 = h.getValueAtPercentile(50) / 1000000d;
+            this.p95 = h.getValueAtPercentile(95) / 1000000d;
+            this.p99 = h.getValueAtPercentile(99) / 1000000d;
+            this.p999 = h.getValueAtPercentile(99.9) / 1000000d;
+            this.max = h.getMax() / 1000000d;
+        }
+        
+        public long getTxnCount() {
+            return this.txnCount;
+        }
+        public double getAverage() {
+            return this.avg;
+        }
+        public double getPercentile50() {
+            return this.p50;
+        }
+        public double getPercentile95() {
+            return this.p95;
+        }
+        public double getPercentile99() {
+            return this.p99;
+        }
+        public double getPercentile999() {
+            return this.p999;
+        }
+        public double getMax() {
+            return this.max;
+        }
+        
+        // ----------------------------------------------------------------------------
+        // SERIALIZATION METHODS
+        // ----------------------------------------------------------------------------
+        @Override
+        public void load(String input_path, Database catalog_db) throws IOException {
+            JSONUtil.load(this, catalog_db, input_path);
+        }
+        @Override
+        public void save(String output_path) throws IOException {
+            JSONUtil.save(this, output_path);
+        }
+        @Override
+        public String toJSONString() {
+            return (JSONUtil.toJSONString(this));
+        }
+        @Override
+        public void toJSON(JSONStringer stringer) throws JSONException {
+            JSONUtil.fieldsToJSON(stringer, this, LatencyResult.class, JSONUtil.getSerializableFields(this.getClass()));
+        }
+        @Override
+        public void fromJSON(JSONObject json_object, Database catalog_db) throws JSONException {
+            JSONUtil.fieldsFromJSON(json_object, catalog_db, this, LatencyResult.class, true, JSONUtil.getSerializableFields(this.getClass()));
+        }
+    }
+    
     /**
      * ClientName -> TxnName -> List<Result>
      */
@@ -281,6 +359,12 @@ public class BenchmarkResults {
     private final int m_clientCount;
     private final Histogram<Integer> m_basePartitions = new Histogram<Integer>();
     
+    /**
+     * ClientName -> TxnName -> Latencies
+     * The clients send us their cumulative latencies, so we only keep the last ones
+     */
+    private final Map<String, Map<String, LatencyHistogram>> m_latencies = new HashMap<String, Map<String, LatencyHistogram>>();
+    
     private int completedIntervals = 0;
     private final Histogram<String> clientResultCount = new Histogram<String>();
     
@@ -345,6 +429,25 @@ public class BenchmarkResults {
     public Histogram<Integer> getBasePartitions() {
         return (m_basePartitions);
     }
+    
+    /**
+     * Returns the latencies of each transaction type merged across all of the clients
+     * @return
+     */
+    public synchronized Map<String, LatencyHistogram> getLatencies() {
+        Map<String, LatencyHistogram> retval = new TreeMap<String, LatencyHistogram>();
+        for (Map<String, LatencyHistogram> clientLatencies : m_latencies.values()) {
+            for (Entry<String, LatencyHistogram> e : clientLatencies.entrySet()) {
+                LatencyHistogram h = retval.get(e.getKey());
+                if (h == null) {
+                    h = new LatencyHistogram();
+                    retval.put(e.getKey(), h);
+                }
+                h.merge(e.getValue());
+            } // FOR
+        } // FOR
+        return (retval);
+    }
 
     public Result[] getResultsForClientAndTransaction(String clientName, String transactionName) {
         int intervals = getCompletedIntervalCount();
@@ -454,6 +557,14 @@ public class BenchmarkResults {
                 Result r = new Result(offsetTime, tc.transactions.get(txnName));
                 results.add(r);
             } // FOR
+            
+            // The TransactionCounter gets reused, so we need to make copies
+            Map<String, LatencyHistogram> clientLatencies = new HashMap<String, LatencyHistogram>();
+            for (Entry<String, LatencyHistogram> e : tc.latencies.entrySet()) {
+                clientLatencies.put(e.getKey(), e.getValue().copy());
+            } // FOR
+            m_latencies.put(clientName, clientLatencies);
+            
             this.clientResultCount.put(clientName);
             if (debug.get())
                 LOG.debug(String.format("New Result for '%s' => %d [minCount=%d]",
@@ -475,6 +586,7 @@ public class BenchmarkResults {
         clone.m_transactionNames.addAll(m_transactionNames);
         clone.completedIntervals = this.completedIntervals;
         clone.clientResultCount.putHistogram(this.clientResultCount);
+        clone.m_latencies.putAll(m_latencies);
 
         for (Entry<String, SortedMap<String, List<Result>>> entry : m_data.entrySet()) {
             SortedMap<String, List<Result>> txnsForClient = new TreeMap<String, List<Result>>();
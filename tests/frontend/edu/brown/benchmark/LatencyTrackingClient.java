@@ -0,0 +1,218 @@
+package edu.brown.benchmark;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+
+import org.voltdb.VoltTable;
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ClientStatusListener;
+import org.voltdb.client.NoConnectionsException;
+import org.voltdb.client.ProcCallException;
+import org.voltdb.client.ProcedureArgumentCacher;
+import org.voltdb.client.ProcedureCallback;
+
+import edu.brown.utils.ProfileMeasurement;
+
+/**
+ * Client wrapper that remembers when each asynchronous invocation was supposed
+ * to start so that BenchmarkComponent can compute its latency once the
+ * ClientResponse comes back. By default a txn starts when callProcedure() is invoked.
+ * An open-loop driver can instead set the time that it had scheduled the txn for
+ * with setIntendedStartTime(), so that any delay in sending the request is
+ * included in the txn's latency.
+ */
+public class LatencyTrackingClient implements Client {
+
+    private static final long NO_START_TIME = -1;
+
+    /**
+     * The start time set by the open-loop driver for the next invocations
+     * made by the current thread.
+     */
+    private static final ThreadLocal<long[]> INTENDED_START = new ThreadLocal<long[]>() {
+        protected long[] initialValue() {
+            return (new long[]{ NO_START_TIME });
+        }
+    };
+
+    /**
+     * The start time of the txn whose callback is currently being
+     * invoked by the current thread.
+     */
+    private static final ThreadLocal<long[]> CALLBACK_START = new ThreadLocal<long[]>() {
+        protected long[] initialValue() {
+            return (new long[]{ NO_START_TIME });
+        }
+    };
+
+    private final Client inner;
+
+    private static class LatencyCallback implements ProcedureCallback {
+        private final ProcedureCallback inner_callback;
+        private final long start;
+
+        public LatencyCallback(ProcedureCallback inner_callback, long start) {
+            this.inner_callback = inner_callback;
+            this.start = start;
+        }
+
+        @Override
+        public void clientCallback(ClientResponse clientResponse) {
+            long ts[] = CALLBACK_START.get();
+            ts[0] = this.start;
+            try {
+                this.inner_callback.clientCallback(clientResponse);
+            } finally {
+                ts[0] = NO_START_TIME;
+            }
+        }
+    } // END CLASS
+
+    public LatencyTrackingClient(Client inner) {
+        this.inner = inner;
+    }
+
+    public Client getClient() {
+        return (this.inner);
+    }
+
+    // ----------------------------------------------------------------------------
+    // START TIMES
+    // ----------------------------------------------------------------------------
+
+    /**
+     * Set the time (from System.nanoTime()) that the invocations made next by
+     * the current thread were scheduled to start at. Pass a negative value
+     * to go back to using the time that callProcedure() is invoked.
+     * @param start
+     */
+    public static void setIntendedStartTime(long start) {
+        INTENDED_START.get()[0] = start;
+    }
+
+    /**
+     * Returns the start time (from System.nanoTime()) of the txn whose callback is
+     * being invoked by the current thread. Returns a negative value if the
+     * current thread is not inside of a callback created by this client.
+     * @return
+     */
+    public static long getCallbackStartTime() {
+        return (CALLBACK_START.get()[0]);
+    }
+
+    private ProcedureCallback wrapCallback(ProcedureCallback callback, Object parameters[]) {
+        if (callback == null) return (null);
+
+        // The inner client won't be able to see that the original callback wants the args
+        if (callback instanceof ProcedureArgumentCacher) {
+            ((ProcedureArgumentCacher)callback).setArgs(parameters);
+        }
+        long start = INTENDED_START.get()[0];
+        if (start < 0) start = System.nanoTime();
+        return (new LatencyCallback(callback, start));
+    }
+
+    // ----------------------------------------------------------------------------
+    // CLIENT METHODS
+    // ----------------------------------------------------------------------------
+
+    @Override
+    public boolean callProcedure(ProcedureCallback callback, String procName, Object... parameters) throws IOException,
+            NoConnectionsException {
+        return this.inner.callProcedure(this.wrapCallback(callback, parameters), procName, parameters);
+    }
+
+    @Override
+    public boolean callProcedure(ProcedureCallback callback, int expectedSerializedSize, String procName,
+            Object... parameters) throws IOException, NoConnectionsException {
+        return this.inner.callProcedure(this.wrapCallback(callback, parameters), expectedSerializedSize, procName, parameters);
+    }
+
+    @Override
+    public ClientResponse callProcedure(String procName, Object... parameters) throws IOException,
+            NoConnectionsException, ProcCallException {
+        return this.inner.callProcedure(procName, parameters);
+    }
+
+    @Override
+    public void addClientStatusListener(ClientStatusListener listener) {
+        this.inner.addClientStatusListener(listener);
+    }
+
+    @Override
+    public boolean removeClientStatusListener(ClientStatusListener listener) {
+        return this.inner.removeClientStatusListener(listener);
+    }
+
+    @Override
+    public void backpressureBarrier() throws InterruptedException {
+        this.inner.backpressureBarrier();
+    }
+
+    @Override
+    public boolean blocking() {
+        return this.inner.blocking();
+    }
+
+    @Override
+    public void configureBlocking(boolean blocking) {
+        this.inner.configureBlocking(blocking);
+    }
+
+    @Override
+    public int calculateInvocationSerializedSize(String procName, Object... parameters) {
+        return this.inner.calculateInvocationSerializedSize(procName, parameters);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        this.inner.close();
+    }
+
+    @Override
+    public void createConnection(Integer siteId, String host, int port, String username, String password) throws UnknownHostException,
+            IOException {
+        this.inner.createConnection(siteId, host, port, username, password);
+    }
+
+    @Override
+    public void drain() throws NoConnectionsException {
+        this.inner.drain();
+    }
+
+    @Override
+    public String getBuildString() {
+        return this.inner.getBuildString();
+    }
+
+    @Override
+    public VoltTable getIOStats() {
+        return this.inner.getIOStats();
+    }
+
+    @Override
+    public VoltTable getIOStatsInterval() {
+        return this.inner.getIOStatsInterval();
+    }
+
+    @Override
+    public Object[] getInstanceId() {
+        return this.inner.getInstanceId();
+    }
+
+    @Override
+    public VoltTable getProcedureStats() {
+        return this.inner.getProcedureStats();
+    }
+
+    @Override
+    public VoltTable getProcedureStatsInterval() {
+        return this.inner.getProcedureStatsInterval();
+    }
+
+    @Override
+    public ProfileMeasurement getQueueTime() {
+        return this.inner.getQueueTime();
+    }
+}
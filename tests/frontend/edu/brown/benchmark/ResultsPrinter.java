@@ -32,6 +32,7 @@ import org.voltdb.utils.Pair;
 
 import edu.brown.benchmark.BenchmarkResults.EntityResult;
 import edu.brown.benchmark.BenchmarkResults.FinalResult;
+import edu.brown.benchmark.BenchmarkResults.LatencyResult;
 import edu.brown.statistics.Histogram;
 import edu.brown.utils.StringUtil;
 import edu.brown.utils.TableUtil;
@@ -46,6 +47,16 @@ public class ResultsPrinter implements BenchmarkController.BenchmarkInterest {
         "%10.2f txn/m",
     };
     
+    private static final String LATENCY_COL_FORMATS[] = {
+        "%23s:",
+        "%8.2f ms avg",
+        "%8.2f ms p50",
+        "%8.2f ms p95",
+        "%8.2f ms p99",
+        "%8.2f ms p999",
+        "%8.2f ms max",
+    };
+    
     private static final String RESULT_FORMAT = "%.2f";
     
     protected final boolean output_clients;
@@ -121,6 +132,32 @@ public class ResultsPrinter implements BenchmarkController.BenchmarkInterest {
         sb.append(TableUtil.table(rows));
         sb.append(String.format("\n%s\n", StringUtil.repeat("=", width)));
         
+        if (fr.txnLatencies.isEmpty() == false) {
+            sb.append("Transaction Latencies:\n");
+            rows = new String[txnNames.size()][LATENCY_COL_FORMATS.length];
+            row_idx = 0;
+            for (String txnName : txnNames) {
+                LatencyResult lr = fr.getTransactionLatency(txnName);
+                if (lr == null) continue;
+                int col_idx = 0;
+                rows[row_idx][col_idx++] = String.format(LATENCY_COL_FORMATS[col_idx-1], txnName);
+                rows[row_idx][col_idx++] = String.format(LATENCY_COL_FORMATS[col_idx-1], lr.getAverage());
+                rows[row_idx][col_idx++] = String.format(LATENCY_COL_FORMATS[col_idx-1], lr.getPercentile50());
+                rows[row_idx][col_idx++] = String.format(LATENCY_COL_FORMATS[col_idx-1], lr.getPercentile95());
+                rows[row_idx][col_idx++] = String.format(LATENCY_COL_FORMATS[col_idx-1], lr.getPercentile99());
+                rows[row_idx][col_idx++] = String.format(LATENCY_COL_FORMATS[col_idx-1], lr.getPercentile999());
+                rows[row_idx][col_idx++] = String.format(LATENCY_COL_FORMATS[col_idx-1], lr.getMax());
+                row_idx++;
+            } // FOR
+            if (row_idx < rows.length) {
+                Object trimmed[][] = new String[row_idx][];
+                System.arraycopy(rows, 0, trimmed, 0, row_idx);
+                rows = trimmed;
+            }
+            sb.append(TableUtil.table(rows));
+            sb.append(String.format("\n%s\n", StringUtil.repeat("=", width)));
+        }
+        
         if (output_basepartitions) {
             sb.append("Transaction Base Partitions:\n");
             Histogram<Integer> h = results.getBasePartitions();
@@ -0,0 +1,102 @@
+package edu.brown.benchmark;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.json.JSONObject;
+import org.json.JSONStringer;
+
+import edu.brown.benchmark.BenchmarkResults.FinalResult;
+import edu.brown.benchmark.BenchmarkResults.LatencyResult;
+import edu.brown.statistics.LatencyHistogram;
+
+public class TestBenchmarkResults extends TestCase {
+
+    private static final long POLL_INTERVAL = 1000;
+    private static final String TXN_NAMES[] = { "NewOrder", "Payment" };
+    private static final String CLIENT_NAMES[] = { "client-00", "client-01" };
+
+    private BenchmarkComponent.TransactionCounter serialize(BenchmarkComponent.TransactionCounter tc) throws Exception {
+        JSONStringer stringer = new JSONStringer();
+        stringer.object();
+        tc.toJSON(stringer);
+        stringer.endObject();
+
+        BenchmarkComponent.TransactionCounter clone = new BenchmarkComponent.TransactionCounter();
+        clone.fromJSON(new JSONObject(stringer.toString()), null);
+        return (clone);
+    }
+
+    /**
+     * testTransactionCounterLatencies
+     */
+    public void testTransactionCounterLatencies() throws Exception {
+        BenchmarkComponent.TransactionCounter tc = new BenchmarkComponent.TransactionCounter();
+        for (int i = 1; i <= 100; i++) {
+            tc.transactions.put(TXN_NAMES[i % 2]);
+            tc.recordLatency(TXN_NAMES[i % 2], i * 1000000l);
+        } // FOR
+
+        BenchmarkComponent.TransactionCounter clone = this.serialize(tc);
+        assertEquals(tc.latencies.keySet(), clone.latencies.keySet());
+        for (String txnName : TXN_NAMES) {
+            LatencyHistogram expected = tc.latencies.get(txnName);
+            LatencyHistogram actual = clone.latencies.get(txnName);
+            assertNotNull(txnName, actual);
+            assertEquals(expected.getCount(), actual.getCount());
+            assertEquals(expected.getMax(), actual.getMax());
+            assertEquals(expected.getValueAtPercentile(99), actual.getValueAtPercentile(99));
+        } // FOR
+
+        // Clearing the counter should throw away the latencies too
+        tc.clear();
+        for (String txnName : TXN_NAMES) {
+            assertTrue(txnName, tc.latencies.get(txnName).isEmpty());
+        } // FOR
+    }
+
+    /**
+     * testFinalResultLatencies
+     */
+    public void testFinalResultLatencies() throws Exception {
+        BenchmarkResults results = new BenchmarkResults(POLL_INTERVAL, POLL_INTERVAL * 2, CLIENT_NAMES.length);
+        BenchmarkComponent.TransactionCounter tc = new BenchmarkComponent.TransactionCounter();
+
+        // The clients send their cumulative latencies in every poll response,
+        // so only the last ones that we get from each client should be counted
+        for (int poll = 0; poll < 2; poll++) {
+            for (int c = 0; c < CLIENT_NAMES.length; c++) {
+                BenchmarkComponent.TransactionCounter client_tc = new BenchmarkComponent.TransactionCounter();
+                for (int i = 0; i <= poll; i++) {
+                    for (String txnName : TXN_NAMES) {
+                        client_tc.transactions.put(txnName);
+                        client_tc.recordLatency(txnName, (c + 1) * 10000000l);
+                    } // FOR
+                } // FOR
+                tc.fromJSON(new JSONObject(client_tc.toJSONString()), null);
+                results.addPollResponseInfo(CLIENT_NAMES[c], poll, (poll + 1) * POLL_INTERVAL, tc, null);
+            } // FOR
+        } // FOR
+
+        Map<String, LatencyHistogram> latencies = results.getLatencies();
+        assertEquals(TXN_NAMES.length, latencies.size());
+
+        FinalResult fr = results.getFinalResult();
+        for (String txnName : TXN_NAMES) {
+            assertEquals(CLIENT_NAMES.length * 2, latencies.get(txnName).getCount());
+
+            LatencyResult lr = fr.getTransactionLatency(txnName);
+            assertNotNull(txnName, lr);
+            assertEquals(CLIENT_NAMES.length * 2, lr.getTxnCount());
+            assertEquals(15.0d, lr.getAverage(), 0.001);
+            assertTrue(lr.getPercentile50() <= lr.getPercentile99());
+            assertTrue(lr.getPercentile99() <= lr.getMax());
+            assertEquals(20.0d, lr.getMax(), 0.001);
+        } // FOR
+
+        // Make sure that the latencies make it into the JSON output
+        JSONObject json = new JSONObject(fr.toJSONString());
+        assertTrue(json.has("TXNLATENCIES"));
+    }
+}
@@ -16,6 +16,7 @@ import edu.brown.costmodel.TimeIntervalCostModel;
 import edu.brown.designer.AccessGraph;
 import edu.brown.designer.Designer;
 import edu.brown.designer.generators.AccessGraphGenerator;
+import edu.brown.designer.partitioners.AbstractPartitioner.HaltReason;
 import edu.brown.designer.partitioners.BranchAndBoundPartitioner.StateVertex;
 import edu.brown.designer.partitioners.BranchAndBoundPartitioner.TraverseThread;
 import edu.brown.designer.partitioners.plan.PartitionPlan;
@@ -97,27 +98,20 @@ public class TestBranchAndBoundPartitioner extends BasePartitionerTestCase {
     }
     
     /**
-     * testTraverse
+     * Set up a search over just SPECIAL_FACILITY and CALL_FORWARDING. Both tables start
+     * out partitioned on their last column, which we know we can beat if we partition on S_ID.
+     * @param table_visit_order
+     * @param proc_visit_order
+     * @return the partitioning attribute that the search should pick for each table
      */
-    public void testTraverse() throws Exception {
-        List<Procedure> proc_visit_order = new ArrayList<Procedure>();
-        List<Table> table_visit_order = new ArrayList<Table>();
-        
-        // We have to massage our attributes list so that our testing is deterministic. Set the only table
-        // that we're going to visit is ACCESS_INFO and change its partitioning column to something that we know
-        // we can beat if we partition on S_ID
+    private Map<Table, Column> setUpTraverse(List<Table> table_visit_order, List<Procedure> proc_visit_order) throws Exception {
         Map<Table, Column> expected = new HashMap<Table, Column>();
-        Table catalog_tbl = this.getTable(TM1Constants.TABLENAME_SPECIAL_FACILITY);
-        Column catalog_col = this.getColumn(catalog_tbl, -1);
-        catalog_tbl.setPartitioncolumn(catalog_col);
-        table_visit_order.add(catalog_tbl);
-        expected.put(catalog_tbl, this.getColumn(catalog_tbl, "S_ID"));
-        
-        catalog_tbl = this.getTable(TM1Constants.TABLENAME_CALL_FORWARDING);
-        catalog_col = this.getColumn(catalog_tbl, -1);
-        catalog_tbl.setPartitioncolumn(catalog_col);
-        table_visit_order.add(catalog_tbl);
-        expected.put(catalog_tbl, this.getColumn(catalog_tbl, "S_ID"));
+        for (String table_name : new String[]{ TM1Constants.TABLENAME_SPECIAL_FACILITY, TM1Constants.TABLENAME_CALL_FORWARDING }) {
+            Table catalog_tbl = this.getTable(table_name);
+            catalog_tbl.setPartitioncolumn(this.getColumn(catalog_tbl, -1));
+            table_visit_order.add(catalog_tbl);
+            expected.put(catalog_tbl, this.getColumn(catalog_tbl, "S_ID"));
+        } // FOR
         
         // Set this to be the upperbounds
         PartitionPlan ub_pplan = PartitionPlan.createFromCatalog(catalog_db);
@@ -129,6 +123,31 @@ public class TestBranchAndBoundPartitioner extends BasePartitionerTestCase {
         hints.enable_replication_readonly = false;
         hints.enable_procparameter_search = false;
         hints.max_memory_per_partition = Long.MAX_VALUE;
+        return (expected);
+    }
+    
+    /**
+     * Make sure that the best solution that the search found matches what we expected
+     */
+    private StateVertex checkBestVertex(Map<Table, Column> expected) {
+        StateVertex best_vertex = this.partitioner.getBestVertex();
+        assertNotNull(best_vertex);
+        Map<CatalogType, CatalogType> m = best_vertex.getCatalogMap(catalog_db);
+        for (Table t : expected.keySet()) {
+            assert(m.containsKey(t)) : "Missing " + t;
+            assertEquals(expected.get(t), m.get(t));
+        } // FOR
+        assert(best_vertex.getCost() > 0) : best_vertex.getCost();
+        return (best_vertex);
+    }
+    
+    /**
+     * testTraverse
+     */
+    public void testTraverse() throws Exception {
+        List<Procedure> proc_visit_order = new ArrayList<Procedure>();
+        List<Table> table_visit_order = new ArrayList<Table>();
+        Map<Table, Column> expected = this.setUpTraverse(table_visit_order, proc_visit_order);
         this.partitioner.setParameters(agraph, table_visit_order, proc_visit_order);
         this.partitioner.init(this.hints);
         
@@ -138,14 +157,28 @@ public class TestBranchAndBoundPartitioner extends BasePartitionerTestCase {
         thread.traverse(start_vertex, 0);
         
         // Make sure that the solution we pick has a memory and a cost
-        StateVertex best_vertex = this.partitioner.getBestVertex();
-        assertNotNull(best_vertex);
-        Map<CatalogType, CatalogType> m = best_vertex.getCatalogMap(catalog_db);
-        for (Table t : expected.keySet()) {
-            assert(m.containsKey(t)) : "Missing " + t;
-            assertEquals(expected.get(t), m.get(t));
-        } // FOR
-        assert(best_vertex.getCost() > 0) : best_vertex.getCost();
+        StateVertex best_vertex = this.checkBestVertex(expected);
         assert(best_vertex.getMemory() > 0) : best_vertex.getMemory();
     }
-}
\ No newline at end of file
+    
+    /**
+     * testParallelTraverse
+     */
+    public void testParallelTraverse() throws Exception {
+        List<Procedure> proc_visit_order = new ArrayList<Procedure>();
+        List<Table> table_visit_order = new ArrayList<Table>();
+        
+        // Same setup as testTraverse, but now we let the partitioner split up the
+        // search between multiple threads. They should still find the same solution
+        Map<Table, Column> expected = this.setUpTraverse(table_visit_order, proc_visit_order);
+        hints.search_threads = 2;
+        this.partitioner.setParameters(agraph, table_visit_order, proc_visit_order);
+        
+        PartitionPlan pplan = this.partitioner.generate(hints);
+        assertNotNull(pplan);
+        assertEquals(hints.search_threads, this.partitioner.workers.size());
+        assertEquals(HaltReason.EXHAUSTED_SEARCH, this.partitioner.getLastHaltReason());
+        assertFalse(this.partitioner.wasHalted());
+        this.checkBestVertex(expected);
+    }
+}
@@ -0,0 +1,160 @@
+package edu.brown.designer.partitioners;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.voltdb.catalog.CatalogType;
+import org.voltdb.catalog.Column;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.Table;
+
+import edu.brown.BaseTestCase;
+import edu.brown.benchmark.tm1.TM1Constants;
+import edu.brown.benchmark.tm1.procedures.GetAccessData;
+import edu.brown.benchmark.tm1.procedures.GetNewDestination;
+import edu.brown.costmodel.SingleSitedCostModel;
+import edu.brown.costmodel.TimeIntervalCostModel;
+import edu.brown.designer.AccessGraph;
+import edu.brown.designer.Designer;
+import edu.brown.designer.DesignerHints;
+import edu.brown.designer.DesignerInfo;
+import edu.brown.designer.generators.AccessGraphGenerator;
+import edu.brown.designer.partitioners.AbstractPartitioner.HaltReason;
+import edu.brown.designer.partitioners.BranchAndBoundPartitioner.StateVertex;
+import edu.brown.designer.partitioners.plan.PartitionPlan;
+import edu.brown.statistics.WorkloadStatistics;
+import edu.brown.utils.ProjectType;
+import edu.brown.workload.QueryTrace;
+import edu.brown.workload.TransactionTrace;
+import edu.brown.workload.Workload;
+
+/**
+ * Run the same branch-and-bound search with one thread and then with multiple
+ * threads over a synthetic TM1 workload and make sure that they pick the same
+ * solution. Unlike TestBranchAndBoundPartitioner, this does not need any of the
+ * workload, stats, or mappings files.
+ */
+public class TestBranchAndBoundPartitionerParallel extends BaseTestCase {
+
+    private static final int NUM_PARTITIONS = 10;
+    private static final int NUM_INTERVALS = 10;
+    private static final int NUM_TRANSACTIONS = 200;
+    private static final int NUM_SUBSCRIBERS = 1000;
+    private static final int NUM_SEARCH_THREADS[] = { 2, 3, 4 };
+
+    private static final String TABLE_VISIT_ORDER[] = {
+        TM1Constants.TABLENAME_SPECIAL_FACILITY,
+        TM1Constants.TABLENAME_CALL_FORWARDING,
+        TM1Constants.TABLENAME_ACCESS_INFO,
+    };
+
+    private Workload workload;
+    private WorkloadStatistics stats;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1, true);
+        this.addPartitions(NUM_PARTITIONS);
+
+        // Every query in the workload is keyed on S_ID, so that is the attribute
+        // that both searches should pick for each of the tables
+        Random rand = new Random(0);
+        Procedure procs[] = { this.getProcedure(GetNewDestination.class), this.getProcedure(GetAccessData.class) };
+        this.workload = new Workload(catalog);
+        for (int i = 0; i < NUM_TRANSACTIONS; i++) {
+            Procedure catalog_proc = procs[i % procs.length];
+            Statement catalog_stmt = this.getStatement(catalog_proc, "GetData");
+            long s_id = rand.nextInt(NUM_SUBSCRIBERS);
+            long type = rand.nextInt(4) + 1;
+            Object proc_params[] = null;
+            Object stmt_params[] = null;
+            if (i % procs.length == 0) {
+                proc_params = new Object[] { s_id, type, 0l, 24l };
+                stmt_params = new Object[] { s_id, s_id, type, 0l, 24l };
+            } else {
+                proc_params = new Object[] { s_id, type };
+                stmt_params = proc_params;
+            }
+            TransactionTrace txn_trace = new TransactionTrace(i, catalog_proc, proc_params);
+            txn_trace.addQuery(new QueryTrace(catalog_stmt, stmt_params, 0));
+            this.workload.addTransaction(catalog_proc, txn_trace);
+        } // FOR
+        assertEquals(NUM_TRANSACTIONS, this.workload.getTransactionCount());
+
+        this.stats = new WorkloadStatistics(catalog_db);
+        this.stats.process(catalog_db, this.workload);
+    }
+
+    /**
+     * Run a complete search with the given number of threads, starting from
+     * a catalog where every table is partitioned on its last column
+     */
+    private BranchAndBoundPartitioner search(int search_threads) throws Exception {
+        List<Table> table_visit_order = new ArrayList<Table>();
+        for (String table_name : TABLE_VISIT_ORDER) {
+            Table catalog_tbl = this.getTable(table_name);
+            catalog_tbl.setPartitioncolumn(this.getColumn(catalog_tbl, -1));
+            table_visit_order.add(catalog_tbl);
+        } // FOR
+
+        DesignerInfo info = new DesignerInfo(catalog_db, this.workload, this.stats);
+        info.setNumIntervals(NUM_INTERVALS);
+        info.setCostModel(new TimeIntervalCostModel<SingleSitedCostModel>(catalog_db, SingleSitedCostModel.class, NUM_INTERVALS));
+        info.setPartitionerClass(BranchAndBoundPartitioner.class);
+        DesignerHints hints = new DesignerHints();
+        hints.enable_multi_partitioning = false;
+        hints.enable_replication_readmostly = false;
+        hints.enable_replication_readonly = false;
+        hints.enable_procparameter_search = false;
+        hints.max_memory_per_partition = Long.MAX_VALUE;
+        hints.search_threads = search_threads;
+
+        Designer designer = new Designer(info, hints, info.getArgs());
+        BranchAndBoundPartitioner partitioner = (BranchAndBoundPartitioner) designer.getPartitioner();
+        AccessGraph agraph = AccessGraphGenerator.convertToSingleColumnEdges(catalog_db, partitioner.generateAccessGraph());
+        partitioner.setUpperBounds(hints, PartitionPlan.createFromCatalog(catalog_db), Double.MAX_VALUE, 1000l);
+        partitioner.setParameters(agraph, table_visit_order, new ArrayList<Procedure>());
+
+        PartitionPlan pplan = partitioner.generate(hints);
+        assertNotNull(pplan);
+        assertEquals(HaltReason.EXHAUSTED_SEARCH, partitioner.getLastHaltReason());
+        assertFalse(partitioner.wasHalted());
+        if (search_threads > 1) {
+            assertEquals(search_threads, partitioner.workers.size());
+        }
+        return (partitioner);
+    }
+
+    private Map<String, String> getSolution(StateVertex vertex) {
+        Map<String, String> m = new HashMap<String, String>();
+        for (Map.Entry<CatalogType, CatalogType> e : vertex.getCatalogMap(catalog_db).entrySet()) {
+            m.put(e.getKey().getName(), e.getValue().getName());
+        } // FOR
+        return (m);
+    }
+
+    /**
+     * testSameSolution
+     */
+    public void testSameSolution() throws Exception {
+        StateVertex expected = this.search(1).getBestVertex();
+        assertNotNull(expected);
+        assertFalse(expected.isStartVertex());
+        Map<String, String> expected_solution = this.getSolution(expected);
+        for (String table_name : TABLE_VISIT_ORDER) {
+            assertEquals(table_name, "S_ID", expected_solution.get(table_name));
+        } // FOR
+        assert(expected.getCost() > 0) : expected.getCost();
+
+        for (int search_threads : NUM_SEARCH_THREADS) {
+            StateVertex best_vertex = this.search(search_threads).getBestVertex();
+            assertNotNull(best_vertex);
+            assertEquals("threads=" + search_threads, expected_solution, this.getSolution(best_vertex));
+            assertEquals("threads=" + search_threads, expected.getCost(), best_vertex.getCost());
+        } // FOR
+    }
+}
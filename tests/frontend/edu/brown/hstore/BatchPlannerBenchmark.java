@@ -0,0 +1,97 @@
+package edu.brown.hstore;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.voltdb.ParameterSet;
+import org.voltdb.SQLStmt;
+import org.voltdb.VoltProcedure;
+import org.voltdb.catalog.Catalog;
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+
+import com.sun.japex.JapexDriverBase;
+import com.sun.japex.TestCase;
+
+import edu.brown.MicroBenchmarkUtil;
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.statistics.Histogram;
+import edu.brown.utils.PartitionEstimator;
+
+/**
+ * Plan the stock lookup and update batch that TPC-C neworder submits for each of its items.
+ * If the "distributed" driver parameter is true, then the last item in each
+ * batch is supplied by a remote warehouse.
+ */
+public class BatchPlannerBenchmark extends JapexDriverBase {
+    private static final String PARAM_DISTRIBUTED = "distributed";
+    private static final int NUM_PARTITIONS = 16;
+    private static final int NUM_ITEMS = 10;
+    private static final short W_ID = 1;
+    private static final long CLIENT_HANDLE = 1l;
+
+    private BatchPlanner planner;
+    private int base_partition;
+    private ParameterSet args[];
+    private Collection<Integer> predict_partitions;
+    private boolean predict_singlepartitioned;
+    private final Histogram<Integer> touched_partitions = new Histogram<Integer>();
+    private long txn_id = 0;
+
+    @Override
+    public void initializeDriver() {
+        HStoreConf.singleton(true);
+        boolean distributed = (this.hasParam(PARAM_DISTRIBUTED) && this.getBooleanParam(PARAM_DISTRIBUTED));
+
+        Procedure catalog_proc = null;
+        PartitionEstimator p_estimator = null;
+        try {
+            Catalog catalog = MicroBenchmarkUtil.getTPCCCatalog(NUM_PARTITIONS);
+            Database catalog_db = CatalogUtil.getDatabase(catalog);
+            p_estimator = new PartitionEstimator(catalog_db);
+            catalog_proc = catalog_db.getProcedures().getIgnoreCase("neworder");
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+        Statement getStockInfo = catalog_proc.getStatements().getIgnoreCase("getStockInfo01");
+        Statement updateStock = catalog_proc.getStatements().getIgnoreCase("updateStock");
+        assert(getStockInfo != null);
+        assert(updateStock != null);
+
+        this.base_partition = p_estimator.getHasher().hash(W_ID);
+        SQLStmt batch[] = new SQLStmt[NUM_ITEMS * 2];
+        this.args = new ParameterSet[batch.length];
+        for (int i = 0; i < NUM_ITEMS; i++) {
+            int ol_i_id = i + 1;
+            short ol_supply_w_id = (distributed && i == NUM_ITEMS - 1 ? (short)(W_ID + 1) : W_ID);
+            batch[i] = new SQLStmt(getStockInfo);
+            this.args[i] = VoltProcedure.getCleanParams(batch[i], new Object[]{ ol_i_id, ol_supply_w_id });
+            batch[NUM_ITEMS + i] = new SQLStmt(updateStock);
+            this.args[NUM_ITEMS + i] = VoltProcedure.getCleanParams(batch[NUM_ITEMS + i], new Object[]{ 50, 5, 1, 0, ol_i_id, ol_supply_w_id });
+        } // FOR
+        this.planner = new BatchPlanner(batch, catalog_proc, p_estimator);
+
+        if (distributed) {
+            this.predict_partitions = CatalogUtil.getAllPartitionIds(catalog_proc);
+            this.predict_singlepartitioned = false;
+        } else {
+            this.predict_partitions = Collections.singleton(this.base_partition);
+            this.predict_singlepartitioned = true;
+        }
+    }
+
+    @Override
+    public void run(TestCase testCase) {
+        this.touched_partitions.clear();
+        BatchPlanner.BatchPlan plan = this.planner.plan(this.txn_id++,
+                                                        CLIENT_HANDLE,
+                                                        this.base_partition,
+                                                        this.predict_partitions,
+                                                        this.predict_singlepartitioned,
+                                                        this.touched_partitions,
+                                                        this.args);
+        assert(plan != null && plan.hasMisprediction() == false);
+    }
+}
@@ -6,12 +6,16 @@ import com.google.protobuf.RpcCallback;
 import com.google.protobuf.RpcController;
 
 import edu.brown.hstore.Hstoreservice.HStoreService;
+import edu.brown.hstore.Hstoreservice.ReplicationStreamRequest;
+import edu.brown.hstore.Hstoreservice.ReplicationStreamResponse;
 import edu.brown.hstore.Hstoreservice.SendDataRequest;
 import edu.brown.hstore.Hstoreservice.SendDataResponse;
 import edu.brown.hstore.Hstoreservice.ShutdownRequest;
 import edu.brown.hstore.Hstoreservice.ShutdownResponse;
 import edu.brown.hstore.Hstoreservice.TimeSyncRequest;
 import edu.brown.hstore.Hstoreservice.TimeSyncResponse;
+import edu.brown.hstore.Hstoreservice.TransactionBatchRequest;
+import edu.brown.hstore.Hstoreservice.TransactionBatchResponse;
 import edu.brown.hstore.Hstoreservice.TransactionFinishRequest;
 import edu.brown.hstore.Hstoreservice.TransactionFinishResponse;
 import edu.brown.hstore.Hstoreservice.TransactionInitRequest;
@@ -158,6 +162,18 @@ public class MockHStoreCoordinator extends HStoreCoordinator {
             // TODO Auto-generated method stub
             
         }
+
+        @Override
+        public void replicationStream(RpcController controller, ReplicationStreamRequest request, RpcCallback<ReplicationStreamResponse> done) {
+            // TODO Auto-generated method stub
+            
+        }
+
+        @Override
+        public void transactionBatch(RpcController controller, TransactionBatchRequest request, RpcCallback<TransactionBatchResponse> done) {
+            // TODO Auto-generated method stub
+            
+        }
     }
     
     
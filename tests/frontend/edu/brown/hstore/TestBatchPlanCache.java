@@ -0,0 +1,129 @@
+package edu.brown.hstore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voltdb.ParameterSet;
+import org.voltdb.SQLStmt;
+import org.voltdb.VoltProcedure;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+
+import edu.brown.BaseTestCase;
+import edu.brown.benchmark.seats.procedures.LoadConfig;
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.Hstoreservice.WorkFragment;
+import edu.brown.statistics.Histogram;
+import edu.brown.utils.ProjectType;
+
+public class TestBatchPlanCache extends BaseTestCase {
+
+    private static final Class<? extends VoltProcedure> TARGET_PROCEDURE = LoadConfig.class;
+    private static final int NUM_PARTITIONS = 4;
+    private static final long TXN_ID = 123l;
+    private static final long CLIENT_HANDLE = Long.MAX_VALUE;
+
+    private SQLStmt batch[];
+    private ParameterSet args[];
+    private Procedure catalog_proc;
+    private BatchPlanCache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.SEATS);
+        this.addPartitions(NUM_PARTITIONS);
+        this.catalog_proc = this.getProcedure(TARGET_PROCEDURE);
+
+        this.batch = new SQLStmt[this.catalog_proc.getStatements().size()];
+        this.args = new ParameterSet[this.batch.length];
+        int i = 0;
+        for (Statement catalog_stmt : this.catalog_proc.getStatements()) {
+            this.batch[i] = new SQLStmt(catalog_stmt);
+            this.args[i] = ParameterSet.EMPTY;
+            i++;
+        } // FOR
+        this.cache = new BatchPlanCache(100);
+    }
+
+    private List<WorkFragment> plan(BatchPlanner planner, int base_partition) {
+        BatchPlanner.BatchPlan plan = planner.plan(TXN_ID,
+                                                   CLIENT_HANDLE,
+                                                   base_partition,
+                                                   CatalogUtil.getAllPartitionIds(catalog_db),
+                                                   false,
+                                                   new Histogram<Integer>(),
+                                                   this.args);
+        assertNotNull(plan);
+        assertFalse(plan.hasMisprediction());
+        List<WorkFragment> fragments = new ArrayList<WorkFragment>();
+        plan.getWorkFragments(TXN_ID, fragments);
+        assertFalse(fragments.isEmpty());
+        return (fragments);
+    }
+
+    /**
+     * testSharedPlans
+     */
+    public void testSharedPlans() throws Exception {
+        BatchPlanner planner0 = new BatchPlanner(this.batch, this.catalog_proc, p_estimator);
+        planner0.setPlanCache(this.cache);
+        BatchPlanner planner1 = new BatchPlanner(this.batch, this.catalog_proc, p_estimator);
+        planner1.setPlanCache(this.cache);
+
+        List<WorkFragment> fragments0 = this.plan(planner0, 0);
+        assertEquals(0, this.cache.getHitCount());
+        assertEquals(1, this.cache.getMissCount());
+        assertEquals(1, this.cache.size());
+
+        // The other planner should get back the exact same WorkFragments
+        List<WorkFragment> fragments1 = this.plan(planner1, 0);
+        assertEquals(1, this.cache.getHitCount());
+        assertEquals(1, this.cache.size());
+        assertEquals(fragments0.size(), fragments1.size());
+        for (int i = 0; i < fragments0.size(); i++) {
+            assertSame(fragments0.get(i), fragments1.get(i));
+        } // FOR
+        assertEquals(planner0.getBatchPlan().getFragmentCount(), planner1.getBatchPlan().getFragmentCount());
+
+        // But not if we are planning from a different partition
+        this.plan(planner1, 1);
+        assertEquals(1, this.cache.getHitCount());
+        assertEquals(2, this.cache.getMissCount());
+        assertEquals(2, this.cache.size());
+    }
+
+    /**
+     * testNoCache
+     */
+    public void testNoCache() throws Exception {
+        BatchPlanner planner0 = new BatchPlanner(this.batch, this.catalog_proc, p_estimator);
+        BatchPlanner planner1 = new BatchPlanner(this.batch, this.catalog_proc, p_estimator);
+        assertNull(planner0.getPlanCache());
+        List<WorkFragment> fragments0 = this.plan(planner0, 0);
+        List<WorkFragment> fragments1 = this.plan(planner1, 0);
+        assertEquals(fragments0.size(), fragments1.size());
+        assertNotSame(fragments0.get(0), fragments1.get(0));
+    }
+
+    /**
+     * testEviction
+     */
+    public void testEviction() throws Exception {
+        BatchPlanCache small = new BatchPlanCache(1);
+        assertEquals(1, small.getCapacity());
+        Statement stmts[] = new Statement[0];
+        BatchPlanCache.Key key0 = new BatchPlanCache.Key(stmts, new int[]{ 0 });
+        BatchPlanCache.Key key1 = new BatchPlanCache.Key(stmts, new int[]{ 1 });
+        assertEquals(key0, new BatchPlanCache.Key(stmts, new int[]{ 0 }));
+        assertFalse(key0.equals(key1));
+
+        BatchPlanCache.CachedPlan entry = new BatchPlanCache.CachedPlan(null, new ArrayList<WorkFragment>());
+        small.put(key0, entry);
+        assertSame(entry, small.get(key0));
+        small.put(key1, entry);
+        assertEquals(1, small.size());
+        assertEquals(1, small.getEvictionCount());
+        assertNull(small.get(key0));
+        assertSame(entry, small.get(key1));
+    }
+}
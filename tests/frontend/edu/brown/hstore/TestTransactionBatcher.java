@@ -0,0 +1,349 @@
+package edu.brown.hstore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.google.protobuf.RpcCallback;
+import com.google.protobuf.RpcController;
+
+import edu.brown.hstore.Hstoreservice.HStoreService;
+import edu.brown.hstore.Hstoreservice.ReplicationStreamRequest;
+import edu.brown.hstore.Hstoreservice.ReplicationStreamResponse;
+import edu.brown.hstore.Hstoreservice.SendDataRequest;
+import edu.brown.hstore.Hstoreservice.SendDataResponse;
+import edu.brown.hstore.Hstoreservice.ShutdownRequest;
+import edu.brown.hstore.Hstoreservice.ShutdownResponse;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.hstore.Hstoreservice.TimeSyncRequest;
+import edu.brown.hstore.Hstoreservice.TimeSyncResponse;
+import edu.brown.hstore.Hstoreservice.TransactionBatchRequest;
+import edu.brown.hstore.Hstoreservice.TransactionBatchResponse;
+import edu.brown.hstore.Hstoreservice.TransactionFinishRequest;
+import edu.brown.hstore.Hstoreservice.TransactionFinishResponse;
+import edu.brown.hstore.Hstoreservice.TransactionInitRequest;
+import edu.brown.hstore.Hstoreservice.TransactionInitResponse;
+import edu.brown.hstore.Hstoreservice.TransactionMapRequest;
+import edu.brown.hstore.Hstoreservice.TransactionMapResponse;
+import edu.brown.hstore.Hstoreservice.TransactionPrepareRequest;
+import edu.brown.hstore.Hstoreservice.TransactionPrepareResponse;
+import edu.brown.hstore.Hstoreservice.TransactionRedirectRequest;
+import edu.brown.hstore.Hstoreservice.TransactionRedirectResponse;
+import edu.brown.hstore.Hstoreservice.TransactionReduceRequest;
+import edu.brown.hstore.Hstoreservice.TransactionReduceResponse;
+import edu.brown.hstore.Hstoreservice.TransactionWorkRequest;
+import edu.brown.hstore.Hstoreservice.TransactionWorkResponse;
+import edu.brown.hstore.Hstoreservice.WorkFragment;
+import edu.brown.protorpc.NIOEventLoop;
+import edu.brown.protorpc.ProtoRpcController;
+
+/**
+ * TransactionBatcher
+ */
+public class TestTransactionBatcher extends TestCase {
+
+    private static final int BATCH_SIZE = 4;
+    private static final int NUM_TXNS = 9;
+
+    private NIOEventLoop loop0;
+    private NIOEventLoop loop1;
+    private MockBatcher batcher0;
+    private MockBatcher batcher1;
+    private final List<Long> inits = Collections.synchronizedList(new ArrayList<Long>());
+    private final List<Long> finishes = Collections.synchronizedList(new ArrayList<Long>());
+
+    /**
+     * TransactionBatcher that hands its batches directly to the other site's batcher
+     */
+    private class MockBatcher extends TransactionBatcher {
+        MockBatcher other;
+        final List<TransactionBatchRequest> sent = new ArrayList<TransactionBatchRequest>();
+        boolean fail = false;
+
+        MockBatcher(int site_id, NIOEventLoop eventLoop) {
+            super(null, site_id, new MockService(site_id), eventLoop, BATCH_SIZE);
+        }
+        @Override
+        protected void sendBatch(int site_id, TransactionBatchRequest request, RpcCallback<TransactionBatchResponse> callback) {
+            this.sent.add(request);
+            if (this.fail) {
+                callback.run(null);
+                return;
+            }
+            this.other.receive(new ProtoRpcController(), request);
+            callback.run(TransactionBatchResponse.newBuilder().setSenderId(site_id).build());
+        }
+    }
+
+    /**
+     * HStoreService that responds to init and finish requests right away
+     */
+    private class MockService extends HStoreService {
+        final int site_id;
+
+        MockService(int site_id) {
+            this.site_id = site_id;
+        }
+        @Override
+        public void transactionInit(RpcController controller, TransactionInitRequest request, RpcCallback<TransactionInitResponse> done) {
+            inits.add(request.getTransactionId());
+            done.run(TransactionInitResponse.newBuilder()
+                                            .setTransactionId(request.getTransactionId())
+                                            .setStatus(Status.OK)
+                                            .addAllPartitions(request.getPartitionsList())
+                                            .build());
+        }
+        @Override
+        public void transactionFinish(RpcController controller, TransactionFinishRequest request, RpcCallback<TransactionFinishResponse> done) {
+            finishes.add(request.getTransactionId());
+            done.run(TransactionFinishResponse.newBuilder()
+                                              .setTransactionId(request.getTransactionId())
+                                              .addAllPartitions(request.getPartitionsList())
+                                              .build());
+        }
+        @Override
+        public void transactionWork(RpcController controller, TransactionWorkRequest request, RpcCallback<TransactionWorkResponse> done) { }
+        @Override
+        public void transactionMap(RpcController controller, TransactionMapRequest request, RpcCallback<TransactionMapResponse> done) { }
+        @Override
+        public void transactionReduce(RpcController controller, TransactionReduceRequest request, RpcCallback<TransactionReduceResponse> done) { }
+        @Override
+        public void transactionPrepare(RpcController controller, TransactionPrepareRequest request, RpcCallback<TransactionPrepareResponse> done) { }
+        @Override
+        public void transactionRedirect(RpcController controller, TransactionRedirectRequest request, RpcCallback<TransactionRedirectResponse> done) { }
+        @Override
+        public void sendData(RpcController controller, SendDataRequest request, RpcCallback<SendDataResponse> done) { }
+        @Override
+        public void shutdown(RpcController controller, ShutdownRequest request, RpcCallback<ShutdownResponse> done) { }
+        @Override
+        public void timeSync(RpcController controller, TimeSyncRequest request, RpcCallback<TimeSyncResponse> done) { }
+        @Override
+        public void replicationStream(RpcController controller, ReplicationStreamRequest request, RpcCallback<ReplicationStreamResponse> done) { }
+        @Override
+        public void transactionBatch(RpcController controller, TransactionBatchRequest request, RpcCallback<TransactionBatchResponse> done) { }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.loop0 = new NIOEventLoop();
+        this.loop1 = new NIOEventLoop();
+        this.batcher0 = new MockBatcher(0, this.loop0);
+        this.batcher1 = new MockBatcher(1, this.loop1);
+        this.batcher0.other = this.batcher1;
+        this.batcher1.other = this.batcher0;
+    }
+
+    /**
+     * testBatching
+     */
+    @Test
+    public void testBatching() throws Exception {
+        final List<TransactionInitResponse> initResponses = new ArrayList<TransactionInitResponse>();
+        RpcCallback<TransactionInitResponse> initCallback = new RpcCallback<TransactionInitResponse>() {
+            @Override
+            public void run(TransactionInitResponse parameter) {
+                initResponses.add(parameter);
+            }
+        };
+        final List<TransactionFinishResponse> finishResponses = new ArrayList<TransactionFinishResponse>();
+        RpcCallback<TransactionFinishResponse> finishCallback = new RpcCallback<TransactionFinishResponse>() {
+            @Override
+            public void run(TransactionFinishResponse parameter) {
+                finishResponses.add(parameter);
+            }
+        };
+
+        for (long txn_id = 0; txn_id < NUM_TXNS; txn_id++) {
+            TransactionInitRequest request = TransactionInitRequest.newBuilder()
+                                                    .setTransactionId(txn_id)
+                                                    .setProcedureId(1)
+                                                    .addPartitions(1)
+                                                    .build();
+            this.batcher0.addInitRequest(1, request, initCallback);
+        } // FOR
+        for (long txn_id = 0; txn_id < NUM_TXNS; txn_id++) {
+            TransactionFinishRequest request = TransactionFinishRequest.newBuilder()
+                                                    .setTransactionId(txn_id)
+                                                    .setStatus(Status.OK)
+                                                    .addPartitions(1)
+                                                    .build();
+            this.batcher0.addFinishRequest(1, request, finishCallback);
+        } // FOR
+
+        // The full batches should have gone out right away, but the rest
+        // should be waiting for the event loop
+        int expected = (NUM_TXNS * 2) / BATCH_SIZE;
+        assertEquals(expected, this.batcher0.sent.size());
+        assertEquals(expected * BATCH_SIZE, this.inits.size() + this.finishes.size());
+        this.loop0.runOnce();
+        assertEquals(NUM_TXNS, this.inits.size());
+        assertEquals(NUM_TXNS, this.finishes.size());
+        for (int i = 0; i < NUM_TXNS; i++) {
+            assertEquals(i, this.inits.get(i).longValue());
+            assertEquals(i, this.finishes.get(i).longValue());
+        } // FOR
+        int num_batches = this.batcher0.sent.size();
+        assertTrue(num_batches < NUM_TXNS * 2);
+        assertEquals(num_batches, this.batcher0.getBatchCount());
+        assertEquals(NUM_TXNS * 2, this.batcher0.getMessageCount());
+
+        // Now let the other site send back the rest of its responses
+        this.loop1.runOnce();
+        assertEquals(0, this.batcher0.getPendingCount());
+        assertEquals(NUM_TXNS, initResponses.size());
+        assertEquals(NUM_TXNS, finishResponses.size());
+        for (int i = 0; i < NUM_TXNS; i++) {
+            assertEquals(i, initResponses.get(i).getTransactionId());
+            assertEquals(i, finishResponses.get(i).getTransactionId());
+        } // FOR
+        assertEquals(NUM_TXNS * 2, this.batcher1.getMessageCount());
+    }
+
+    /**
+     * Every request in a batch that fails to send should get an error response
+     */
+    @Test
+    public void testFailedBatch() throws Exception {
+        this.batcher0.fail = true;
+        final List<Object> responses = new ArrayList<Object>();
+        RpcCallback<TransactionInitResponse> initCallback = new RpcCallback<TransactionInitResponse>() {
+            @Override
+            public void run(TransactionInitResponse parameter) {
+                responses.add(parameter);
+            }
+        };
+        RpcCallback<TransactionWorkResponse> workCallback = new RpcCallback<TransactionWorkResponse>() {
+            @Override
+            public void run(TransactionWorkResponse parameter) {
+                responses.add(parameter);
+            }
+        };
+        RpcCallback<TransactionPrepareResponse> prepareCallback = new RpcCallback<TransactionPrepareResponse>() {
+            @Override
+            public void run(TransactionPrepareResponse parameter) {
+                responses.add(parameter);
+            }
+        };
+        RpcCallback<TransactionFinishResponse> finishCallback = new RpcCallback<TransactionFinishResponse>() {
+            @Override
+            public void run(TransactionFinishResponse parameter) {
+                responses.add(parameter);
+            }
+        };
+
+        long txn_id = 100;
+        this.batcher0.addInitRequest(1, TransactionInitRequest.newBuilder()
+                                            .setTransactionId(txn_id)
+                                            .setProcedureId(1)
+                                            .addPartitions(1)
+                                            .build(), initCallback);
+        this.batcher0.addWorkRequest(1, TransactionWorkRequest.newBuilder()
+                                            .setTransactionId(txn_id)
+                                            .setSourcePartition(0)
+                                            .setSysproc(false)
+                                            .addFragments(WorkFragment.newBuilder()
+                                                            .setPartitionId(1)
+                                                            .addFragmentId(1)
+                                                            .addOutputDepId(1)
+                                                            .addInputDepId(WorkFragment.InputDependency.newBuilder())
+                                                            .setReadOnly(false)
+                                                            .setNeedsInput(false))
+                                            .build(), workCallback);
+        this.batcher0.addPrepareRequest(1, TransactionPrepareRequest.newBuilder()
+                                            .setTransactionId(txn_id)
+                                            .addPartitions(1)
+                                            .build(), prepareCallback);
+        this.batcher0.addFinishRequest(1, TransactionFinishRequest.newBuilder()
+                                            .setTransactionId(txn_id)
+                                            .setStatus(Status.ABORT_USER)
+                                            .addPartitions(1)
+                                            .build(), finishCallback);
+        assertEquals(1, this.batcher0.sent.size());
+        assertEquals(0, this.batcher0.getPendingCount());
+        assertTrue(this.inits.isEmpty());
+        assertTrue(this.finishes.isEmpty());
+
+        assertEquals(BATCH_SIZE, responses.size());
+        TransactionInitResponse init = (TransactionInitResponse)responses.get(0);
+        assertEquals(txn_id, init.getTransactionId());
+        assertEquals(Status.ABORT_REJECT, init.getStatus());
+        assertEquals(1, init.getPartitions(0));
+        TransactionWorkResponse work = (TransactionWorkResponse)responses.get(1);
+        assertEquals(txn_id, work.getTransactionId());
+        assertEquals(Status.ABORT_UNEXPECTED, work.getStatus());
+        assertEquals(1, work.getResultsCount());
+        assertEquals(1, work.getResults(0).getPartitionId());
+        assertEquals(Status.ABORT_UNEXPECTED, work.getResults(0).getStatus());
+        assertTrue(work.getResults(0).hasError());
+        TransactionPrepareResponse prepare = (TransactionPrepareResponse)responses.get(2);
+        assertEquals(txn_id, prepare.getTransactionId());
+        assertEquals(Status.ABORT_UNEXPECTED, prepare.getStatus());
+        TransactionFinishResponse finish = (TransactionFinishResponse)responses.get(3);
+        assertEquals(txn_id, finish.getTransactionId());
+        assertEquals(1, finish.getPartitions(0));
+    }
+
+    /**
+     * Responses that were in a batch that failed should go out again in the next
+     * batch to that site, until they have failed too many times
+     */
+    @Test
+    public void testFailedBatchResponses() throws Exception {
+        final List<TransactionInitResponse> responses = new ArrayList<TransactionInitResponse>();
+        RpcCallback<TransactionInitResponse> initCallback = new RpcCallback<TransactionInitResponse>() {
+            @Override
+            public void run(TransactionInitResponse parameter) {
+                responses.add(parameter);
+            }
+        };
+
+        // Site #1 sends a full batch of requests to site #0, which answers them right away.
+        // That fills up site #0's batch for site #1, but sending it fails
+        this.batcher0.fail = true;
+        for (long txn_id = 0; txn_id < BATCH_SIZE; txn_id++) {
+            this.batcher1.addInitRequest(0, TransactionInitRequest.newBuilder()
+                                                .setTransactionId(txn_id)
+                                                .setProcedureId(1)
+                                                .addPartitions(0)
+                                                .build(), initCallback);
+        } // FOR
+        assertEquals(BATCH_SIZE, this.inits.size());
+        assertEquals(1, this.batcher0.sent.size());
+        assertEquals(BATCH_SIZE, this.batcher1.getPendingCount());
+        assertTrue(responses.isEmpty());
+
+        // The responses should go out in site #0's next batch
+        this.batcher0.fail = false;
+        this.loop0.runOnce();
+        assertEquals(2, this.batcher0.sent.size());
+        assertEquals(0, this.batcher1.getPendingCount());
+        assertEquals(BATCH_SIZE, responses.size());
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            assertEquals(i, responses.get(i).getTransactionId());
+            assertEquals(Status.OK, responses.get(i).getStatus());
+        } // FOR
+
+        // Now keep failing so that site #0 has to give up on the next set of responses
+        this.batcher0.fail = true;
+        for (long txn_id = BATCH_SIZE; txn_id < BATCH_SIZE * 2; txn_id++) {
+            this.batcher1.addInitRequest(0, TransactionInitRequest.newBuilder()
+                                                .setTransactionId(txn_id)
+                                                .setProcedureId(1)
+                                                .addPartitions(0)
+                                                .build(), initCallback);
+        } // FOR
+        assertEquals(3, this.batcher0.sent.size());
+        this.loop0.runOnce();
+        assertEquals(3 + TransactionBatcher.MAX_RESPONSE_RETRIES, this.batcher0.sent.size());
+        this.batcher0.fail = false;
+        this.loop0.runOnce();
+        assertEquals(3 + TransactionBatcher.MAX_RESPONSE_RETRIES, this.batcher0.sent.size());
+        assertEquals(BATCH_SIZE, this.batcher1.getPendingCount());
+        assertEquals(BATCH_SIZE, responses.size());
+    }
+}
@@ -18,6 +18,7 @@ import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ConnectionUtil;
 import org.voltdb.client.ProcedureCallback;
 
+import edu.brown.protorpc.EventLoop;
 import edu.brown.protorpc.MockEventLoop;
 import edu.brown.protorpc.MockServerSocketChannel;
 import edu.brown.protorpc.NIOEventLoop;
@@ -239,4 +240,89 @@ public class TestVoltProcedureListener extends TestCase {
         assertFalse(handler.writeCallback(channel));
         assertFalse(channel.writeChannel.writeCalled);
     }
+
+    /**
+     * testResponseBatching
+     */
+    public void testResponseBatching() {
+        MockEventLoop mockEvent = new MockEventLoop();
+        VoltProcedureListener listener = new VoltProcedureListener(mockEvent, handler);
+        listener.setResponseBatching(true);
+        MockServerSocketChannel mockServer = new MockServerSocketChannel();
+        listener.setServerSocketForTest(mockServer);
+
+        MockSocketChannel channel = new MockSocketChannel();
+        channel.setConnected();
+        mockServer.nextAccept = channel;
+        listener.acceptCallback(mockServer);
+        ClientConnectionHandler handler = (ClientConnectionHandler) mockEvent.handler;
+
+        // Nothing goes out until the event loop flushes the connection
+        handler.run(new byte[] { 0x1, 0x2 });
+        handler.run(new byte[] { 0x3 });
+        assertTrue(channel.writeChannel.lastWrites.isEmpty());
+        assertEquals(1, mockEvent.threadEvents.size());
+
+        // And then all of the responses go out in a single write
+        mockEvent.threadEvents.remove(0).run();
+        assertArrayEquals(new byte[] { 0x0, 0x0, 0x0, 0x2, 0x1, 0x2, 0x0, 0x0, 0x0, 0x1, 0x3 },
+                          channel.writeChannel.dequeueWrite());
+        assertTrue(channel.writeChannel.lastWrites.isEmpty());
+
+        // If the socket is full, then the write gets registered with the event loop
+        channel.writeChannel.numBytesToAccept = 0;
+        handler.run(new byte[] { 0x4 });
+        assertEquals(1, mockEvent.threadEvents.size());
+        mockEvent.threadEvents.remove(0).run();
+        assertEquals(handler, mockEvent.writeHandler);
+        channel.writeChannel.clear();
+        channel.writeChannel.numBytesToAccept = -1;
+        assertFalse(handler.writeCallback(channel));
+        assertArrayEquals(new byte[] { 0x0, 0x0, 0x0, 0x1, 0x4 }, channel.writeChannel.dequeueWrite());
+    }
+
+    /**
+     * testConnectionLoops
+     */
+    public void testConnectionLoops() {
+        MockEventLoop acceptLoop = new MockEventLoop();
+        MockEventLoop otherLoop = new MockEventLoop();
+        VoltProcedureListener listener = new VoltProcedureListener(acceptLoop, new EventLoop[]{ acceptLoop, otherLoop }, handler);
+        MockServerSocketChannel mockServer = new MockServerSocketChannel();
+        listener.setServerSocketForTest(mockServer);
+
+        // The first connection is handled by the accepting loop
+        MockSocketChannel first = new MockSocketChannel();
+        first.setConnected();
+        mockServer.nextAccept = first;
+        listener.acceptCallback(mockServer);
+        assertNotNull(acceptLoop.handler);
+        assertNull(otherLoop.handler);
+
+        // The second must be registered from within the other loop's thread
+        acceptLoop.handler = null;
+        MockSocketChannel second = new MockSocketChannel();
+        second.setConnected();
+        mockServer.nextAccept = second;
+        listener.acceptCallback(mockServer);
+        assertNull(acceptLoop.handler);
+        assertEquals(1, otherLoop.threadEvents.size());
+        otherLoop.threadEvents.remove(0).run();
+        assertNotNull(otherLoop.handler);
+
+        // Blocked writes are registered with the connection's own loop
+        ClientConnectionHandler handler = (ClientConnectionHandler) otherLoop.handler;
+        second.writeChannel.numBytesToAccept = 0;
+        handler.run(new byte[] { 0x1 });
+        assertEquals(handler, otherLoop.writeHandler);
+        assertNull(acceptLoop.writeHandler);
+
+        // And then we wrap around
+        MockSocketChannel third = new MockSocketChannel();
+        third.setConnected();
+        mockServer.nextAccept = third;
+        listener.acceptCallback(mockServer);
+        assertNotNull(acceptLoop.handler);
+        assertTrue(otherLoop.threadEvents.isEmpty());
+    }
 }
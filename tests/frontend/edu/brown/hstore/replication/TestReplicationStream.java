@@ -0,0 +1,523 @@
+package edu.brown.hstore.replication;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.ParameterSet;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Site;
+import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.messaging.FastSerializer;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.RpcCallback;
+import com.google.protobuf.RpcController;
+
+import edu.brown.BaseTestCase;
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.HStoreConstants;
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.MockHStoreSite;
+import edu.brown.hstore.Hstoreservice.ReplicationRecord;
+import edu.brown.hstore.Hstoreservice.ReplicationStreamRequest;
+import edu.brown.hstore.Hstoreservice.ReplicationStreamResponse;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.hstore.Hstoreservice.WorkFragment;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.utils.CollectionUtil;
+import edu.brown.utils.ProjectType;
+import edu.brown.utils.ThreadUtil;
+
+/**
+ * ReplicationStream + ReplicationStreamHandler
+ */
+public class TestReplicationStream extends BaseTestCase {
+
+    private static final int BASE_PARTITION = 0;
+    private static final int REPLICA_ID = 1000;
+    private static final int NUM_RECORDS = 500;
+    private static final String TARGET_PROCEDURE = "GetSubscriberData";
+
+    private HStoreSite hstore_site;
+    private MockStreamHandler handler;
+
+    /**
+     * ReplicationStreamHandler that just records what it would apply
+     */
+    private class MockStreamHandler extends ReplicationStreamHandler {
+        final List<ReplicationRecord> applied = Collections.synchronizedList(new ArrayList<ReplicationRecord>());
+
+        public MockStreamHandler() {
+            super(hstore_site, null);
+        }
+        @Override
+        protected void apply(int partition, ReplicationRecord record) {
+            this.applied.add(record);
+        }
+    }
+
+    /**
+     * ReplicationStream that hands its batches directly to the MockStreamHandler
+     */
+    private class MockStream extends ReplicationStream {
+        int num_requests = 0;
+
+        public MockStream() {
+            super(hstore_site, BASE_PARTITION, Collections.singleton(REPLICA_ID));
+        }
+        @Override
+        protected void sendBatch(int replica_id, ReplicationStreamRequest request, RpcCallback<ReplicationStreamResponse> callback) {
+            assertEquals(REPLICA_ID, replica_id);
+            assert(request.getRecordsCount() <= HStoreConf.singleton().site.replication_stream_batch_size);
+            this.num_requests++;
+            handler.remoteHandler((RpcController)null, request, callback);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        HStoreConf.singleton().site.replication_stream_buffer_size = 64;
+        HStoreConf.singleton().site.replication_stream_batch_size = 16;
+        HStoreConf.singleton().site.replication_mode = "async";
+        HStoreConf.singleton().site.replication_sync_quorum = -1;
+        HStoreConf.singleton().site.replication_response_timeout = 10000;
+
+        Site catalog_site = CollectionUtil.first(CatalogUtil.getCluster(catalog).getSites());
+        this.hstore_site = new MockHStoreSite(catalog_site, HStoreConf.singleton());
+        this.handler = new MockStreamHandler();
+    }
+
+    /**
+     * testAppendAndSend
+     */
+    @Test
+    public void testAppendAndSend() throws Exception {
+        MockStream stream = new MockStream();
+        Thread sender = new Thread(stream);
+        sender.setDaemon(true);
+        sender.start();
+
+        // Append more records than the ring buffer can hold so that we have to
+        // wait for the sender thread to free up slots
+        ParameterSet params = new ParameterSet();
+        params.setParameters(new Object[]{ new Long(1), "ABC" });
+        long last = 0;
+        for (int i = 0; i < NUM_RECORDS; i++) {
+            long txn_id = 1000 + i;
+            long seq = (i % 2 == 0 ? stream.appendInit(txn_id, 1, params) :
+                                     stream.appendFinish(txn_id, Status.OK));
+            assertEquals(last + 1, seq);
+            last = seq;
+        } // FOR
+        assertEquals(NUM_RECORDS, stream.getLastSequence());
+
+        for (int i = 0; i < 100 && stream.getAckedSequence() < NUM_RECORDS; i++) {
+            ThreadUtil.sleep(50);
+        } // FOR
+        stream.shutdown();
+
+        assertEquals(NUM_RECORDS, stream.getSentSequence());
+        assertEquals(NUM_RECORDS, stream.getAckedSequence());
+        assertEquals(NUM_RECORDS, stream.getAckedSequence(REPLICA_ID));
+        assertEquals(0, stream.getQueueSize());
+        assert(stream.num_requests >= NUM_RECORDS / HStoreConf.singleton().site.replication_stream_batch_size);
+
+        assertEquals(NUM_RECORDS, this.handler.applied.size());
+        for (int i = 0; i < NUM_RECORDS; i++) {
+            ReplicationRecord record = this.handler.applied.get(i);
+            assertEquals(i + 1, record.getSequence());
+            assertEquals(1000 + i, record.getTransactionId());
+            if (i % 2 == 0) {
+                assertEquals(ReplicationRecord.Type.INIT, record.getType());
+                assertTrue(record.hasParameters());
+            } else {
+                assertEquals(ReplicationRecord.Type.FINISH, record.getType());
+                assertEquals(Status.OK, record.getStatus());
+            }
+        } // FOR
+    }
+
+    /**
+     * testResendAfterLostBatch
+     */
+    @Test
+    public void testResendAfterLostBatch() throws Exception {
+        // Silently drop the 3rd batch and fail the RPC for the 6th batch
+        MockStream stream = new MockStream() {
+            @Override
+            protected void sendBatch(int replica_id, ReplicationStreamRequest request, RpcCallback<ReplicationStreamResponse> callback) {
+                this.num_requests++;
+                if (this.num_requests == 3) return;
+                if (this.num_requests == 6) {
+                    callback.run(null);
+                    return;
+                }
+                handler.remoteHandler((RpcController)null, request, callback);
+            }
+        };
+        Thread sender = new Thread(stream);
+        sender.setDaemon(true);
+        sender.start();
+
+        for (int i = 0; i < NUM_RECORDS; i++) {
+            stream.appendFinish(1000 + i, Status.OK);
+        } // FOR
+        for (int i = 0; i < 100 && stream.getAckedSequence() < NUM_RECORDS; i++) {
+            ThreadUtil.sleep(50);
+        } // FOR
+        stream.shutdown();
+
+        assertEquals(NUM_RECORDS, stream.getAckedSequence());
+        assertEquals(NUM_RECORDS, stream.getReleasedSequence());
+        assert(stream.getResendCount() >= 2) : "Resends: " + stream.getResendCount();
+
+        // The replica should have gotten every record exactly once and in order
+        assertEquals(NUM_RECORDS, this.handler.applied.size());
+        for (int i = 0; i < NUM_RECORDS; i++) {
+            assertEquals(i + 1, this.handler.applied.get(i).getSequence());
+        } // FOR
+    }
+
+    /**
+     * testSyncClientResponse
+     */
+    @Test
+    public void testSyncClientResponse() throws Exception {
+        HStoreConf.singleton().site.replication_mode = "sync";
+        MockStream stream = new MockStream();
+        assertTrue(stream.isSynchronous());
+
+        final List<byte[]> sent = Collections.synchronizedList(new ArrayList<byte[]>());
+        RpcCallback<byte[]> callback = new RpcCallback<byte[]>() {
+            @Override
+            public void run(byte[] parameter) {
+                sent.add(parameter);
+            }
+        };
+
+        // Nothing should go back to the client until the sender thread
+        // gets the acknowledgement from the replica
+        long seq = stream.appendFinish(1000, Status.OK);
+        byte output[] = new byte[]{ 1, 2, 3 };
+        stream.queueClientResponse(seq, callback, output);
+        assertEquals(0, sent.size());
+        assertEquals(1, stream.getPendingResponseCount());
+
+        Thread sender = new Thread(stream);
+        sender.setDaemon(true);
+        sender.start();
+        for (int i = 0; i < 100 && sent.isEmpty(); i++) {
+            ThreadUtil.sleep(50);
+        } // FOR
+        stream.shutdown();
+        assertEquals(1, sent.size());
+        assertSame(output, sent.get(0));
+        assertEquals(0, stream.getPendingResponseCount());
+        assertEquals(seq, stream.getWatermark());
+
+        // Already acknowledged, so this one should be sent right away
+        stream.queueClientResponse(seq, callback, output);
+        assertEquals(2, sent.size());
+    }
+
+    private ReplicationStreamResponse makeAck(int replica_id, long seq) {
+        return (ReplicationStreamResponse.newBuilder()
+                    .setSenderId(replica_id)
+                    .setPartitionId(BASE_PARTITION)
+                    .setLastSequence(seq)
+                    .setStatus(Status.OK)
+                    .build());
+    }
+
+    /**
+     * The watermark should be the 2nd highest acknowledgement out of three replicas
+     * no matter what order the acknowledgements come back in
+     */
+    @Test
+    public void testQuorumWatermark() throws Exception {
+        HStoreConf.singleton().site.replication_mode = "sync";
+        HStoreConf.singleton().site.replication_sync_quorum = 2;
+        final List<Integer> replica_ids = Arrays.asList(REPLICA_ID, REPLICA_ID + 1, REPLICA_ID + 2);
+        final List<RpcCallback<ReplicationStreamResponse>> callbacks = new ArrayList<RpcCallback<ReplicationStreamResponse>>();
+        ReplicationStream stream = new ReplicationStream(hstore_site, BASE_PARTITION, replica_ids) {
+            @Override
+            protected void sendBatch(int replica_id, ReplicationStreamRequest request, RpcCallback<ReplicationStreamResponse> callback) {
+                callbacks.add(callback);
+            }
+        };
+        for (int i = 0; i < 10; i++) {
+            stream.appendFinish(1000 + i, Status.OK);
+        } // FOR
+        assertTrue(stream.sendNextBatch());
+        assertEquals(replica_ids.size(), callbacks.size());
+        assertEquals(0, stream.getWatermark());
+
+        // { acked sequence for each replica, expected watermark }
+        long acks[][] = {
+            { 5, 0, 0,  0 },
+            { 5, 0, 7,  5 },
+            { 9, 0, 7,  7 },    // The replica was already past the watermark
+            { 9, 3, 7,  7 },
+            { 9, 3, 9,  9 },
+            { 9, 10, 9, 9 },
+            { 10, 10, 9, 10 },
+        };
+        long prev[] = new long[replica_ids.size()];
+        for (long a[] : acks) {
+            for (int i = 0; i < prev.length; i++) {
+                if (a[i] != prev[i]) callbacks.get(i).run(this.makeAck(replica_ids.get(i), a[i]));
+                prev[i] = a[i];
+            } // FOR
+            assertEquals(Arrays.toString(a), a[3], stream.getWatermark());
+        } // FOR
+        assertEquals(9, stream.getAckedSequence());
+    }
+
+    /**
+     * A ClientResponse whose txn never gets acknowledged should go back
+     * to the client as an error once the timeout passes
+     */
+    @Test
+    public void testClientResponseTimeout() throws Exception {
+        HStoreConf.singleton().site.replication_mode = "sync";
+        HStoreConf.singleton().site.replication_response_timeout = 100;
+        ReplicationStream stream = new MockStream() {
+            @Override
+            protected void sendBatch(int replica_id, ReplicationStreamRequest request, RpcCallback<ReplicationStreamResponse> callback) {
+                // The replica never answers
+            }
+        };
+        final List<byte[]> sent = Collections.synchronizedList(new ArrayList<byte[]>());
+        RpcCallback<byte[]> callback = new RpcCallback<byte[]>() {
+            @Override
+            public void run(byte[] parameter) {
+                sent.add(parameter);
+            }
+        };
+        ClientResponseImpl cresponse = new ClientResponseImpl(1000, 1234, BASE_PARTITION, Status.OK, HStoreConstants.EMPTY_RESULT, "");
+        stream.queueClientResponse(stream.appendFinish(1000, Status.OK), callback, FastSerializer.serialize(cresponse));
+        assertEquals(1, stream.getPendingResponseCount());
+
+        Thread sender = new Thread(stream);
+        sender.setDaemon(true);
+        sender.start();
+        for (int i = 0; i < 100 && sent.isEmpty(); i++) {
+            ThreadUtil.sleep(50);
+        } // FOR
+        stream.shutdown();
+        assertEquals(1, sent.size());
+        assertEquals(0, stream.getPendingResponseCount());
+        assertEquals(1, stream.getResponseTimeoutCount());
+        assertEquals(0, stream.getWatermark());
+
+        ClientResponseImpl error = new FastDeserializer(sent.get(0)).readObject(ClientResponseImpl.class);
+        assertEquals(Status.ABORT_UNEXPECTED, error.getStatus());
+        assertEquals(1234, error.getClientHandle());
+    }
+
+    /**
+     * testReplayCommittedTransactions
+     */
+    @Test
+    public void testReplayCommittedTransactions() throws Exception {
+        final List<Long> replayed = new ArrayList<Long>();
+        final List<ParameterSet> replayed_params = new ArrayList<ParameterSet>();
+        ReplicationStreamHandler replay_handler = new ReplicationStreamHandler(hstore_site, null) {
+            @Override
+            protected void replay(long txn_id, Procedure catalog_proc, ParameterSet params, int partition) {
+                assertEquals(BASE_PARTITION, partition);
+                assertEquals(TARGET_PROCEDURE, catalog_proc.getName());
+                replayed.add(txn_id);
+                replayed_params.add(params);
+            }
+        };
+        Procedure catalog_proc = this.getProcedure(TARGET_PROCEDURE);
+        ParameterSet params = new ParameterSet();
+        params.setParameters(new Object[]{ new Long(1), "ABC" });
+        FastSerializer fs = new FastSerializer();
+        fs.writeObject(params);
+        ByteString param_bytes = ByteString.copyFrom(fs.getBytes());
+
+        // Txn #1 commits, Txn #2 aborts, Txn #3 commits
+        // Txn #4 is a distributed txn that has no INIT record at this partition
+        Object records[][] = {
+            { 1l, ReplicationRecord.Type.INIT, null },
+            { 2l, ReplicationRecord.Type.INIT, null },
+            { 1l, ReplicationRecord.Type.FINISH, Status.OK },
+            { 3l, ReplicationRecord.Type.INIT, null },
+            { 2l, ReplicationRecord.Type.FINISH, Status.ABORT_USER },
+            { 4l, ReplicationRecord.Type.FINISH, Status.OK },
+            { 3l, ReplicationRecord.Type.FINISH, Status.OK },
+        };
+        ReplicationStreamRequest.Builder builder = ReplicationStreamRequest.newBuilder()
+                                                        .setSenderId(0)
+                                                        .setPartitionId(BASE_PARTITION);
+        long seq = 1;
+        for (Object r[] : records) {
+            ReplicationRecord.Builder record = ReplicationRecord.newBuilder()
+                                                    .setSequence(seq++)
+                                                    .setTransactionId((Long)r[0])
+                                                    .setType((ReplicationRecord.Type)r[1]);
+            if (r[2] != null) {
+                record.setStatus((Status)r[2]);
+            } else {
+                record.setProcedureId(catalog_proc.getId());
+                record.setParameters(param_bytes);
+            }
+            builder.addRecords(record);
+        } // FOR
+        replay_handler.remoteHandler(null, builder.build(), new RpcCallback<ReplicationStreamResponse>() {
+            @Override
+            public void run(ReplicationStreamResponse parameter) {
+                assertEquals(Status.OK, parameter.getStatus());
+            }
+        });
+
+        assertEquals(2, replayed.size());
+        assertEquals(1l, replayed.get(0).longValue());
+        assertEquals(3l, replayed.get(1).longValue());
+        for (ParameterSet p : replayed_params) {
+            assertEquals(params.toArray().length, p.toArray().length);
+            assertEquals(params.toArray()[0], p.toArray()[0]);
+            assertEquals(params.toArray()[1], p.toArray()[1]);
+        } // FOR
+    }
+
+    /**
+     * A distributed txn that modified two partitions should be replayed separately
+     * at each of them with just the WorkFragments that it executed there
+     */
+    @Test
+    public void testReplayDistributedTransaction() throws Exception {
+        final List<Object[]> replayed = new ArrayList<Object[]>();
+        final ReplicationStreamHandler replay_handler = new ReplicationStreamHandler(hstore_site, null) {
+            @Override
+            protected void replay(long txn_id, Procedure catalog_proc, ParameterSet params, int partition) {
+                replayed.add(new Object[]{ txn_id, partition, null, null });
+            }
+            @Override
+            protected void replayWork(long txn_id, List<WorkFragment> fragments, List<ParameterSet[]> parameters, int partition) {
+                replayed.add(new Object[]{ txn_id, partition, fragments, parameters });
+            }
+        };
+        final RpcCallback<ReplicationStreamResponse> callback = new RpcCallback<ReplicationStreamResponse>() {
+            @Override
+            public void run(ReplicationStreamResponse parameter) {
+                assertEquals(Status.OK, parameter.getStatus());
+            }
+        };
+        int num_partitions = 2;
+        ReplicationStream streams[] = new ReplicationStream[num_partitions];
+        for (int p = 0; p < num_partitions; p++) {
+            streams[p] = new ReplicationStream(hstore_site, p, Collections.singleton(REPLICA_ID)) {
+                @Override
+                protected void sendBatch(int replica_id, ReplicationStreamRequest request, RpcCallback<ReplicationStreamResponse> cb) {
+                    replay_handler.remoteHandler((RpcController)null, request, cb);
+                }
+            };
+        } // FOR
+
+        // Txn #10 modifies both partitions and commits. Txn #11 modifies both and aborts.
+        // Txn #12 is single-partitioned at partition 1
+        long dtxn_id = 10;
+        for (int p = 0; p < num_partitions; p++) {
+            WorkFragment fragment = WorkFragment.newBuilder()
+                                        .setPartitionId(p)
+                                        .addFragmentId(100 + p)
+                                        .addOutputDepId(p)
+                                        .addInputDepId(WorkFragment.InputDependency.newBuilder())
+                                        .setReadOnly(false)
+                                        .setNeedsInput(false)
+                                        .build();
+            ParameterSet params = new ParameterSet();
+            params.setParameters(new Object[]{ new Long(p), "XYZ" });
+            streams[p].appendWork(dtxn_id, fragment, new ParameterSet[]{ params });
+            streams[p].appendWork(dtxn_id + 1, fragment, new ParameterSet[]{ params });
+        } // FOR
+        ParameterSet params = new ParameterSet();
+        params.setParameters(new Object[]{ new Long(1), "ABC" });
+        streams[1].appendInit(dtxn_id + 2, this.getProcedure(TARGET_PROCEDURE).getId(), params);
+        for (int p = 0; p < num_partitions; p++) {
+            streams[p].appendFinish(dtxn_id, Status.OK);
+            streams[p].appendFinish(dtxn_id + 1, Status.ABORT_USER);
+        } // FOR
+        streams[1].appendFinish(dtxn_id + 2, Status.OK);
+        // The primary finishing the same txn twice must not replay it twice
+        streams[0].appendFinish(dtxn_id, Status.OK);
+        for (int p = 0; p < num_partitions; p++) {
+            while (streams[p].sendNextBatch()) {
+                // Keep going...
+            } // WHILE
+            assertEquals(streams[p].getLastSequence(), streams[p].getAckedSequence());
+        } // FOR
+
+        assertEquals(3, replayed.size());
+        for (int p = 0; p < num_partitions; p++) {
+            Object r[] = replayed.get(p);
+            assertEquals(dtxn_id, r[0]);
+            assertEquals(p, r[1]);
+            @SuppressWarnings("unchecked")
+            List<WorkFragment> fragments = (List<WorkFragment>)r[2];
+            @SuppressWarnings("unchecked")
+            List<ParameterSet[]> parameters = (List<ParameterSet[]>)r[3];
+            assertNotNull(fragments);
+            assertEquals(1, fragments.size());
+            assertEquals(p, fragments.get(0).getPartitionId());
+            assertEquals(100 + p, fragments.get(0).getFragmentId(0));
+            assertEquals(1, parameters.get(0).length);
+            assertEquals(new Long(p), parameters.get(0)[0].toArray()[0]);
+            assertEquals("XYZ", parameters.get(0)[0].toArray()[1]);
+        } // FOR
+        assertEquals(dtxn_id + 2, replayed.get(2)[0]);
+        assertEquals(1, replayed.get(2)[1]);
+        assertNull(replayed.get(2)[2]);
+    }
+
+    /**
+     * testHandlerDuplicatesAndGaps
+     */
+    @Test
+    public void testHandlerDuplicatesAndGaps() throws Exception {
+        final List<ReplicationStreamResponse> responses = new ArrayList<ReplicationStreamResponse>();
+        RpcCallback<ReplicationStreamResponse> callback = new RpcCallback<ReplicationStreamResponse>() {
+            @Override
+            public void run(ReplicationStreamResponse parameter) {
+                responses.add(parameter);
+            }
+        };
+
+        long seqs[][] = {
+            { 1, 2, 3 },    // OK
+            { 2, 3, 4 },    // Duplicates are skipped
+            { 6, 7 },       // Gap!
+        };
+        for (long batch[] : seqs) {
+            ReplicationStreamRequest.Builder builder = ReplicationStreamRequest.newBuilder()
+                                                            .setSenderId(0)
+                                                            .setPartitionId(BASE_PARTITION);
+            for (long seq : batch) {
+                builder.addRecords(ReplicationRecord.newBuilder()
+                                        .setSequence(seq)
+                                        .setTransactionId(seq)
+                                        .setType(ReplicationRecord.Type.FINISH)
+                                        .setStatus(Status.OK));
+            } // FOR
+            this.handler.remoteHandler(null, builder.build(), callback);
+        } // FOR
+
+        assertEquals(seqs.length, responses.size());
+        assertEquals(3, responses.get(0).getLastSequence());
+        assertEquals(Status.OK, responses.get(0).getStatus());
+        assertEquals(4, responses.get(1).getLastSequence());
+        assertEquals(Status.OK, responses.get(1).getStatus());
+        assertEquals(4, responses.get(2).getLastSequence());
+        assertEquals(Status.ABORT_REJECT, responses.get(2).getStatus());
+        assertEquals(4, this.handler.applied.size());
+    }
+}
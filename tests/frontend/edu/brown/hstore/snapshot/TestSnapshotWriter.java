@@ -0,0 +1,157 @@
+package edu.brown.hstore.snapshot;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.voltdb.EELibraryLoader;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Catalog;
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.LoadCatalogToString;
+import org.voltdb.catalog.Table;
+import org.voltdb.jni.ExecutionEngine;
+import org.voltdb.jni.ExecutionEngineJNI;
+
+import edu.brown.utils.FileUtil;
+
+/**
+ * Write a snapshot out of one EE with SnapshotWriter and then load it
+ * back into another EE with SnapshotReader
+ */
+public class TestSnapshotWriter extends TestCase {
+
+    private static final int CLUSTER_ID = 2;
+    private static final int NODE_ID = 1;
+    private static final int PARTITION_ID = 0;
+    private static final long TXN_ID = 1000;
+    private static final int BLOCK_SIZE = 4096;
+    private static final int NUM_WAREHOUSES = 200;
+    private static final int NUM_STOCK = 1000;
+
+    private Catalog catalog;
+    private Database catalog_db;
+    private ExecutionEngine source;
+    private ExecutionEngine target;
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        EELibraryLoader.loadExecutionEngineLibrary(true);
+        this.catalog = new Catalog();
+        this.catalog.execute(LoadCatalogToString.THE_CATALOG);
+        this.catalog_db = this.catalog.getClusters().get("cluster").getDatabases().get("database");
+
+        this.source = new ExecutionEngineJNI(null, CLUSTER_ID, NODE_ID, PARTITION_ID, 0, "");
+        this.source.loadCatalog(this.catalog.serialize());
+        this.target = new ExecutionEngineJNI(null, CLUSTER_ID, NODE_ID, PARTITION_ID, 0, "");
+        this.target.loadCatalog(this.catalog.serialize());
+        this.file = FileUtil.getTempFile("snapshot", true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        this.source.release();
+        this.target.release();
+        this.file.delete();
+    }
+
+    private void loadTables() throws Exception {
+        VoltTable warehouse = new VoltTable(new VoltTable.ColumnInfo("W_ID", VoltType.INTEGER),
+                                            new VoltTable.ColumnInfo("W_NAME", VoltType.STRING));
+        for (int i = 0; i < NUM_WAREHOUSES; ++i) {
+            warehouse.addRow(i, "str" + i);
+        } // FOR
+        this.source.loadTable(this.getTable("WAREHOUSE").getRelativeIndex(), warehouse, 0, 0, Long.MAX_VALUE, false);
+
+        VoltTable stock = new VoltTable(new VoltTable.ColumnInfo("S_I_ID", VoltType.INTEGER),
+                                        new VoltTable.ColumnInfo("S_W_ID", VoltType.INTEGER),
+                                        new VoltTable.ColumnInfo("S_QUANTITY", VoltType.INTEGER));
+        for (int i = 0; i < NUM_STOCK; ++i) {
+            stock.addRow(i, i % NUM_WAREHOUSES, i * i);
+        } // FOR
+        this.source.loadTable(this.getTable("STOCK").getRelativeIndex(), stock, 0, 0, Long.MAX_VALUE, false);
+    }
+
+    private Table getTable(String name) {
+        return (this.catalog_db.getTables().get(name));
+    }
+
+    private Set<String> getRows(ExecutionEngine ee, Table catalog_tbl) {
+        Set<String> rows = new HashSet<String>();
+        VoltTable vt = ee.serializeTable(catalog_tbl);
+        while (vt.advanceRow()) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < vt.getColumnCount(); i++) {
+                sb.append(vt.get(i)).append("|");
+            } // FOR
+            rows.add(sb.toString());
+        } // WHILE
+        return (rows);
+    }
+
+    /**
+     * testRoundTrip
+     */
+    public void testRoundTrip() throws Exception {
+        this.loadTables();
+        List<Table> tables = new ArrayList<Table>();
+        tables.add(this.getTable("WAREHOUSE"));
+        tables.add(this.getTable("STOCK"));
+
+        SnapshotWriter writer = new SnapshotWriter(this.source, PARTITION_ID, TXN_ID, tables, this.file, BLOCK_SIZE);
+        int ctr = 0;
+        while (writer.writeMore() == false) {
+            assert(ctr++ < NUM_STOCK) : "Snapshot never finished";
+        } // WHILE
+        assertTrue(writer.isFinished());
+        assertTrue(writer.getBlockCount() > tables.size());
+
+        SnapshotReader reader = new SnapshotReader(this.file, this.catalog_db);
+        assertEquals(PARTITION_ID, reader.getPartitionId());
+        assertEquals(TXN_ID, reader.getTransactionId());
+        assertEquals(tables.size(), reader.getTableCount());
+        SnapshotReader.Block block = null;
+        while ((block = reader.next()) != null) {
+            this.target.loadTable(block.catalog_tbl.getRelativeIndex(), block.data, 0, 0, Long.MAX_VALUE, false);
+        } // WHILE
+        reader.close();
+        assertEquals(writer.getBlockCount(), reader.getBlockCount());
+
+        assertEquals(NUM_WAREHOUSES, this.target.serializeTable(this.getTable("WAREHOUSE")).getRowCount());
+        assertEquals(NUM_STOCK, this.target.serializeTable(this.getTable("STOCK")).getRowCount());
+        for (Table catalog_tbl : tables) {
+            assertEquals(catalog_tbl.getName(), this.getRows(this.source, catalog_tbl), this.getRows(this.target, catalog_tbl));
+        } // FOR
+    }
+
+    /**
+     * An aborted snapshot should take the tables back out of copy-on-write
+     * mode and remove its file
+     */
+    public void testAbort() throws Exception {
+        this.loadTables();
+        List<Table> tables = new ArrayList<Table>();
+        tables.add(this.getTable("STOCK"));
+
+        SnapshotWriter writer = new SnapshotWriter(this.source, PARTITION_ID, TXN_ID, tables, this.file, BLOCK_SIZE);
+        assertFalse(writer.writeMore());
+        writer.abort();
+        assertTrue(writer.isFinished());
+        assertFalse(this.file.exists());
+
+        // We should be able to start a new snapshot right away
+        writer = new SnapshotWriter(this.source, PARTITION_ID, TXN_ID + 1, tables, this.file, BLOCK_SIZE);
+        while (writer.writeMore() == false) {
+            // Keep going...
+        } // WHILE
+        assertTrue(this.file.exists());
+    }
+}
@@ -0,0 +1,48 @@
+package edu.brown.hstore.util;
+
+import org.voltdb.messaging.FragmentTaskMessage;
+import org.voltdb.messaging.InitiateTaskMessage;
+import org.voltdb.messaging.TransactionInfoBaseMessage;
+
+import com.sun.japex.JapexDriverBase;
+import com.sun.japex.TestCase;
+
+/**
+ * Pass messages through the PartitionExecutor's work queue. Each iteration
+ * queues a batch of new txn requests and fragments and then drains them.
+ * The batch size is set by the "batch" driver parameter.
+ */
+public class PartitionWorkQueueBenchmark extends JapexDriverBase {
+    private static final String PARAM_BATCH = "batch";
+    private static final int DEFAULT_BATCH = 16;
+
+    private final PartitionWorkQueue queue = new PartitionWorkQueue(PartitionWorkQueue.WaitStrategy.SPIN);
+    private TransactionInfoBaseMessage msgs[];
+    private long next_txn_id = 0;
+
+    @Override
+    public void initializeDriver() {
+        int batch = (this.hasParam(PARAM_BATCH) ? this.getIntParam(PARAM_BATCH) : DEFAULT_BATCH);
+        this.msgs = new TransactionInfoBaseMessage[batch];
+        for (int i = 0; i < batch; i++) {
+            this.msgs[i] = (i % 2 == 0 ? new InitiateTaskMessage() : new FragmentTaskMessage());
+        } // FOR
+    }
+
+    @Override
+    public void run(TestCase testCase) {
+        // The txn requests are queued in reverse order so that the queue has to sort them
+        for (int i = this.msgs.length - 1; i >= 0; i--) {
+            this.msgs[i].setTxnId(this.next_txn_id + i);
+            this.queue.offer(this.msgs[i]);
+        } // FOR
+        this.next_txn_id += this.msgs.length;
+
+        TransactionInfoBaseMessage msg = null;
+        int ctr = 0;
+        while ((msg = this.queue.poll()) != null) {
+            ctr++;
+        } // WHILE
+        assert(ctr == this.msgs.length);
+    }
+}
@@ -0,0 +1,104 @@
+package edu.brown.hstore.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class TestInflightTxnTable extends TestCase {
+
+    private final Random rand = new Random(0);
+
+    /**
+     * testPutGetRemove
+     */
+    public void testPutGetRemove() throws Exception {
+        InflightTxnTable<String> table = new InflightTxnTable<String>(1000);
+        assertEquals(1024, table.getCapacity());
+        Map<Long, String> expected = new HashMap<Long, String>();
+        for (int i = 0; i < 10000; i++) {
+            long txn_id = rand.nextInt(2000);
+            switch (rand.nextInt(3)) {
+                case 0:
+                    assertEquals(expected.put(txn_id, "txn" + i), table.put(txn_id, "txn" + i));
+                    break;
+                case 1:
+                    assertEquals(expected.remove(txn_id), table.remove(txn_id));
+                    break;
+                default:
+                    assertEquals(expected.get(txn_id), table.get(txn_id));
+            } // SWITCH
+            assertEquals(expected.size(), table.size());
+        } // FOR
+        for (Long txn_id : expected.keySet()) {
+            assertEquals(expected.get(txn_id), table.get(txn_id));
+        } // FOR
+        assertTrue(table.getPeakSize() >= expected.size());
+    }
+
+    /**
+     * testOverflow
+     */
+    public void testOverflow() throws Exception {
+        // Put more txns in the table than it has slots
+        InflightTxnTable<Long> table = new InflightTxnTable<Long>(InflightTxnTable.MAX_PROBES);
+        int num_txns = table.getCapacity() * 4;
+        for (long txn_id = 0; txn_id < num_txns; txn_id++) {
+            assertNull(table.put(txn_id, txn_id));
+        } // FOR
+        assertEquals(num_txns, table.size());
+        assertEquals(num_txns, table.getPeakSize());
+        assertTrue(table.getOverflowSize() > 0);
+        assertEquals(table.getOverflowSize(), table.getOverflowCount());
+
+        for (long txn_id = 0; txn_id < num_txns; txn_id++) {
+            assertEquals(Long.valueOf(txn_id), table.get(txn_id));
+        } // FOR
+        for (long txn_id = 0; txn_id < num_txns; txn_id++) {
+            assertEquals(Long.valueOf(txn_id), table.remove(txn_id));
+            assertNull(table.get(txn_id));
+        } // FOR
+        assertEquals(0, table.size());
+        assertEquals(0, table.getOverflowSize());
+    }
+
+    /**
+     * testConcurrentAccess
+     */
+    public void testConcurrentAccess() throws Exception {
+        final int num_threads = 4;
+        final int num_txns = 50000;
+        final InflightTxnTable<Long> table = new InflightTxnTable<Long>(256);
+        final boolean failed[] = new boolean[num_threads];
+
+        Thread threads[] = new Thread[num_threads];
+        for (int i = 0; i < num_threads; i++) {
+            final int thread_id = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    // Each thread works on its own txn ids, but they all share the same slots
+                    for (long ctr = 0; ctr < num_txns; ctr++) {
+                        long txn_id = (ctr * num_threads) + thread_id;
+                        Long value = Long.valueOf(txn_id);
+                        if (table.put(txn_id, value) != null) failed[thread_id] = true;
+                        if (table.get(txn_id) != value) failed[thread_id] = true;
+                        if (ctr >= 50) {
+                            long old_txn_id = ((ctr - 50) * num_threads) + thread_id;
+                            Long old_value = table.remove(old_txn_id);
+                            if (old_value == null || old_value.longValue() != old_txn_id) failed[thread_id] = true;
+                        }
+                    } // FOR
+                }
+            };
+            threads[i].start();
+        } // FOR
+        for (Thread t : threads) {
+            t.join();
+        } // FOR
+        for (int i = 0; i < num_threads; i++) {
+            assertFalse("Thread #" + i + " failed", failed[i]);
+        } // FOR
+        assertEquals(num_threads * 50, table.size());
+    }
+}
@@ -0,0 +1,245 @@
+package edu.brown.hstore.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.voltdb.catalog.Site;
+import org.voltdb.messaging.FinishTaskMessage;
+import org.voltdb.messaging.FragmentTaskMessage;
+import org.voltdb.messaging.InitiateTaskMessage;
+import org.voltdb.messaging.TransactionInfoBaseMessage;
+
+import edu.brown.BaseTestCase;
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.hstore.MockHStoreSite;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.hstore.dtxn.RemoteTransaction;
+import edu.brown.utils.CollectionUtil;
+import edu.brown.utils.ProjectType;
+
+/**
+ * PartitionWorkQueue
+ */
+public class TestPartitionWorkQueue extends BaseTestCase {
+
+    private static final int NUM_PRODUCERS = 4;
+    private static final int NUM_MESSAGES = 5000;
+
+    private HStoreSite hstore_site;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        Site catalog_site = CollectionUtil.first(CatalogUtil.getCluster(catalog).getSites());
+        this.hstore_site = new MockHStoreSite(catalog_site, HStoreConf.singleton());
+    }
+
+    private InitiateTaskMessage makeInitiate(long txn_id) {
+        InitiateTaskMessage msg = new InitiateTaskMessage();
+        msg.setTxnId(txn_id);
+        return (msg);
+    }
+
+    private FragmentTaskMessage makeFragment(long txn_id) {
+        FragmentTaskMessage msg = new FragmentTaskMessage();
+        msg.setTxnId(txn_id);
+        return (msg);
+    }
+
+    private FinishTaskMessage makeFinish(long txn_id) {
+        RemoteTransaction ts = new RemoteTransaction(this.hstore_site);
+        ts.init(txn_id, 0, false, true);
+        return new FinishTaskMessage(ts, Status.OK);
+    }
+
+    /**
+     * testLaneOrder
+     */
+    @Test
+    public void testLaneOrder() throws Exception {
+        PartitionWorkQueue queue = new PartitionWorkQueue(PartitionWorkQueue.WaitStrategy.PARK);
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        queue.add(this.makeInitiate(3));
+        queue.add(this.makeInitiate(1));
+        queue.add(this.makeFragment(20));
+        queue.add(this.makeFragment(10));
+        queue.add(this.makeInitiate(2));
+        queue.add(this.makeFinish(99));
+        assertEquals(6, queue.size());
+
+        // Finishes, then work fragments in the order they arrived, then new txns by txn id
+        TransactionInfoBaseMessage msg = queue.take();
+        assertTrue(msg instanceof FinishTaskMessage);
+        assertEquals(99l, msg.getTxnId().longValue());
+        long expected[] = { 20, 10, 1, 2, 3 };
+        for (int i = 0; i < expected.length; i++) {
+            msg = queue.poll();
+            assertNotNull(msg);
+            assertEquals(i < 2, msg instanceof FragmentTaskMessage);
+            assertEquals(expected[i], msg.getTxnId().longValue());
+        } // FOR
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    /**
+     * testDrainTo
+     */
+    @Test
+    public void testDrainTo() throws Exception {
+        PartitionWorkQueue queue = new PartitionWorkQueue(PartitionWorkQueue.WaitStrategy.PARK);
+        queue.add(this.makeInitiate(2));
+        queue.add(this.makeFragment(5));
+        queue.add(this.makeInitiate(1));
+
+        List<TransactionInfoBaseMessage> blocked = new ArrayList<TransactionInfoBaseMessage>();
+        assertEquals(2, queue.drainTo(blocked));
+        assertEquals(2, blocked.size());
+        assertEquals(1l, blocked.get(0).getTxnId().longValue());
+        assertEquals(2l, blocked.get(1).getTxnId().longValue());
+
+        // The work fragment should still be there
+        assertEquals(1, queue.size());
+        assertTrue(queue.poll() instanceof FragmentTaskMessage);
+        assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * testIterator
+     */
+    @Test
+    public void testIterator() throws Exception {
+        PartitionWorkQueue queue = new PartitionWorkQueue(PartitionWorkQueue.WaitStrategy.PARK);
+        queue.add(this.makeInitiate(3));
+        queue.add(this.makeFragment(20));
+        queue.add(this.makeInitiate(1));
+        queue.add(this.makeFinish(99));
+        // Move one of the txns into the ordered lane so that the snapshot has to merge them
+        assertTrue(queue.peek() instanceof FinishTaskMessage);
+        queue.add(this.makeInitiate(2));
+
+        long expected[] = { 99, 20, 1, 2, 3 };
+        Iterator<TransactionInfoBaseMessage> it = queue.iterator();
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(it.hasNext());
+            assertEquals(expected[i], it.next().getTxnId().longValue());
+        } // FOR
+        assertFalse(it.hasNext());
+        try {
+            queue.iterator().remove();
+            fail("Iterator allowed remove()");
+        } catch (UnsupportedOperationException ex) {
+            // Expected
+        }
+
+        // The snapshot should not have changed anything
+        assertEquals(expected.length, queue.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], queue.poll().getTxnId().longValue());
+        } // FOR
+        assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * clear() from another thread while the consumer is still taking messages
+     */
+    @Test
+    public void testClearFromOtherThread() throws Exception {
+        final PartitionWorkQueue queue = new PartitionWorkQueue(PartitionWorkQueue.WaitStrategy.YIELD);
+        for (int i = 0; i < NUM_MESSAGES; i++) {
+            queue.add(i % 2 == 0 ? this.makeInitiate(i) : this.makeFragment(i));
+        } // FOR
+        final List<Long> taken = new ArrayList<Long>();
+        Thread consumer = new Thread() {
+            public void run() {
+                try {
+                    while (true) {
+                        taken.add(queue.take().getTxnId());
+                    } // WHILE
+                } catch (InterruptedException ex) {
+                    // Done
+                }
+            }
+        };
+        consumer.start();
+        queue.clear();
+        consumer.interrupt();
+        consumer.join(5000);
+        assertFalse(consumer.isAlive());
+
+        // Every message was either taken by the consumer or removed by clear(), but never both
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        assertEquals(taken.size(), new HashSet<Long>(taken).size());
+        assertTrue(taken.size() <= NUM_MESSAGES);
+    }
+
+    /**
+     * Multiple producers and a single consumer blocked in take() for each WaitStrategy.
+     * Every producer's messages must come out in the order that it added them.
+     */
+    @Test
+    public void testProducers() throws Exception {
+        for (PartitionWorkQueue.WaitStrategy strategy : PartitionWorkQueue.WaitStrategy.values()) {
+            final PartitionWorkQueue queue = new PartitionWorkQueue(strategy);
+            List<Thread> producers = new ArrayList<Thread>();
+            for (int i = 0; i < NUM_PRODUCERS; i++) {
+                final int producer = i;
+                producers.add(new Thread() {
+                    public void run() {
+                        for (int j = 0; j < NUM_MESSAGES; j++) {
+                            queue.add(makeFragment(producer * NUM_MESSAGES + j));
+                            if (j % 1000 == 0) Thread.yield();
+                        } // FOR
+                    }
+                });
+            } // FOR
+            for (Thread t : producers) t.start();
+
+            long last[] = new long[NUM_PRODUCERS];
+            for (int i = 0; i < NUM_PRODUCERS; i++) {
+                last[i] = i * NUM_MESSAGES - 1;
+            } // FOR
+            for (int i = 0; i < NUM_PRODUCERS * NUM_MESSAGES; i++) {
+                long txn_id = queue.take().getTxnId().longValue();
+                int producer = (int)(txn_id / NUM_MESSAGES);
+                assertEquals(strategy.toString(), last[producer] + 1, txn_id);
+                last[producer] = txn_id;
+            } // FOR
+            for (Thread t : producers) t.join();
+            assertTrue(strategy.toString(), queue.isEmpty());
+        } // FOR
+    }
+
+    /**
+     * testTakeInterrupted
+     */
+    @Test
+    public void testTakeInterrupted() throws Exception {
+        final PartitionWorkQueue queue = new PartitionWorkQueue(PartitionWorkQueue.WaitStrategy.PARK);
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        Thread consumer = new Thread() {
+            public void run() {
+                try {
+                    queue.take();
+                } catch (Throwable ex) {
+                    errors.add(ex);
+                }
+            }
+        };
+        consumer.start();
+        Thread.sleep(100);
+        consumer.interrupt();
+        consumer.join(5000);
+        assertFalse(consumer.isAlive());
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0) instanceof InterruptedException);
+    }
+}
@@ -0,0 +1,116 @@
+package edu.brown.hstore.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.catalog.Site;
+import org.voltdb.messaging.FastDeserializer;
+
+import com.google.protobuf.RpcCallback;
+
+import edu.brown.BaseTestCase;
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.hstore.MockHStoreSite;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.utils.CollectionUtil;
+import edu.brown.utils.ProjectType;
+import edu.brown.utils.ThreadUtil;
+
+/**
+ * TransactionRouter
+ */
+public class TestTransactionRouter extends BaseTestCase {
+
+    private static final int QUEUE_MAX = 5;
+
+    private HStoreSite hstore_site;
+    private final List<ClientResponseImpl> responses = Collections.synchronizedList(new ArrayList<ClientResponseImpl>());
+    private final RpcCallback<byte[]> callback = new RpcCallback<byte[]>() {
+        @Override
+        public void run(byte[] parameter) {
+            try {
+                responses.add(new FastDeserializer(parameter).readObject(ClientResponseImpl.class));
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        HStoreConf hstore_conf = HStoreConf.singleton();
+        hstore_conf.site.txn_incoming_routers = 1;
+        hstore_conf.site.queue_incoming_max_per_partition = QUEUE_MAX;
+        hstore_conf.site.queue_incoming_throttle = true;
+
+        Site catalog_site = CollectionUtil.first(CatalogUtil.getCluster(catalog).getSites());
+        this.hstore_site = new MockHStoreSite(catalog_site, hstore_conf);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        HStoreConf hstore_conf = HStoreConf.singleton();
+        hstore_conf.site.txn_incoming_routers = 0;
+        hstore_conf.site.queue_incoming_max_per_partition = 150;
+        hstore_conf.site.queue_incoming_throttle = false;
+        super.tearDown();
+    }
+
+    /**
+     * The routing queue should reject new requests once it is full
+     */
+    @Test
+    public void testQueueFull() throws Exception {
+        // Nobody is taking requests out of the queue, so it will fill up
+        int capacity = QUEUE_MAX * this.hstore_site.getLocalPartitionIds().size();
+        for (int i = 0; i < capacity; i++) {
+            this.hstore_site.procedureInvocation(new StoredProcedureInvocation(i, "UpdateLocation", 1l, "ABC"), null, this.callback);
+        } // FOR
+        assertEquals(capacity, this.hstore_site.getIncomingRequestCount());
+        assertTrue(this.responses.isEmpty());
+
+        this.hstore_site.procedureInvocation(new StoredProcedureInvocation(capacity, "UpdateLocation", 1l, "ABC"), null, this.callback);
+        assertEquals(capacity, this.hstore_site.getIncomingRequestCount());
+        assertEquals(1, this.responses.size());
+        ClientResponseImpl cresponse = this.responses.get(0);
+        assertEquals(Status.ABORT_THROTTLED, cresponse.getStatus());
+        assertEquals(capacity, cresponse.getClientHandle());
+        assertTrue(cresponse.getThrottleFlag());
+    }
+
+    /**
+     * A request that can't be routed should get an error response without killing the router
+     */
+    @Test
+    public void testBadRequest() throws Exception {
+        TransactionRouter router = CollectionUtil.first(this.hstore_site.getTransactionRouters());
+        Thread t = new Thread(router);
+        t.setDaemon(true);
+        t.start();
+
+        for (int i = 0; i < 2; i++) {
+            this.hstore_site.procedureInvocation(new StoredProcedureInvocation(i, "NotARealProcedure", 1l), null, this.callback);
+        } // FOR
+        for (int i = 0; i < 100 && this.responses.size() < 2; i++) {
+            ThreadUtil.sleep(50);
+        } // FOR
+        assertTrue(t.isAlive());
+        assertEquals(2, this.responses.size());
+        for (int i = 0; i < 2; i++) {
+            ClientResponseImpl cresponse = this.responses.get(i);
+            assertEquals(Status.ABORT_UNEXPECTED, cresponse.getStatus());
+            assertEquals(i, cresponse.getClientHandle());
+        } // FOR
+
+        router.shutdown();
+        t.join(5000);
+        assertFalse(t.isAlive());
+    }
+}
@@ -0,0 +1,289 @@
+package edu.brown.hstore.wal;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.ParameterSet;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Site;
+import org.voltdb.messaging.FastSerializer;
+
+import com.google.protobuf.RpcCallback;
+
+import edu.brown.BaseTestCase;
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.HStoreConstants;
+import edu.brown.hstore.MockHStoreSite;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.hstore.dtxn.LocalTransaction;
+import edu.brown.utils.CollectionUtil;
+import edu.brown.utils.FileUtil;
+import edu.brown.utils.ProjectType;
+import edu.brown.utils.ThreadUtil;
+
+/**
+ * CommandLogReader + CommandLogRecovery
+ */
+public class TestCommandLogRecovery extends BaseTestCase {
+
+    private static final int BASE_PARTITION = 0;
+    private static final int NUM_TXNS = 100;
+    private static final int DISTRIBUTED_TXN = 50;
+    private static final String TARGET_PROCEDURE = "UpdateLocation";
+
+    private RecoverySite hstore_site;
+    private File logFile;
+    private Procedure catalog_proc;
+
+    /**
+     * HStoreSite that executes replayed txns "asynchronously" and keeps
+     * track of the order that they were invoked in
+     */
+    private class RecoverySite extends MockHStoreSite {
+        final List<Long> invoked = Collections.synchronizedList(new ArrayList<Long>());
+        final AtomicInteger outstanding = new AtomicInteger(0);
+        int outstanding_at_distributed = -1;
+
+        public RecoverySite(Site catalog_site, HStoreConf hstore_conf) {
+            super(catalog_site, hstore_conf);
+        }
+        @Override
+        public void transactionReplay(final Long txn_id, Procedure catalog_proc, ParameterSet params, int partition, final RpcCallback<byte[]> callback) {
+            assertEquals(BASE_PARTITION, partition);
+            this.invoked.add(txn_id);
+            this.outstanding.incrementAndGet();
+            new Thread() {
+                public void run() {
+                    ThreadUtil.sleep(1);
+                    outstanding.decrementAndGet();
+                    callback.run(new byte[0]);
+                };
+            }.start();
+        }
+        @Override
+        public void procedureInvocation(StoredProcedureInvocation request, byte[] serializedRequest, RpcCallback<byte[]> done) {
+            this.invoked.add(request.getClientHandle());
+            this.outstanding_at_distributed = this.outstanding.get();
+            ClientResponseImpl cresponse = new ClientResponseImpl(request.getClientHandle(), request.getClientHandle(),
+                                                                  BASE_PARTITION, Status.OK, HStoreConstants.EMPTY_RESULT, "");
+            FastSerializer fs = new FastSerializer();
+            try {
+                fs.writeObject(cresponse);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+            done.run(fs.getBytes());
+        }
+    }
+
+    /**
+     * CommandLogWriter that doesn't bother with the ClientResponses
+     */
+    private class MockWriter extends CommandLogWriter {
+        int released = 0;
+        public MockWriter(long end_position) {
+            super(hstore_site, logFile, end_position);
+        }
+        @Override
+        protected synchronized void releaseClientResponse(int base_partition, long replication_sequence, RpcCallback<byte[]> callback, byte[] output) {
+            this.released++;
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        HStoreConf hstore_conf = HStoreConf.singleton();
+        hstore_conf.site.commandlog_timeout = 5;
+        hstore_conf.site.commandlog_batch_size = 16;
+        hstore_conf.site.commandlog_prealloc_size = 1;
+        hstore_conf.site.queue_incoming_max_per_partition = 10;
+        hstore_conf.site.commandlog_recover_distributed = true;
+        this.logFile = FileUtil.getTempFile("log", true);
+
+        // Both of the partitions used by the distributed txn are at our site
+        this.initSite(1, 2);
+    }
+
+    private void initSite(int num_sites, int num_partitions) throws Exception {
+        this.initializeCluster(1, num_sites, num_partitions);
+        Site catalog_site = CollectionUtil.first(CatalogUtil.getCluster(catalog).getSites());
+        this.hstore_site = new RecoverySite(catalog_site, HStoreConf.singleton());
+        this.catalog_proc = this.getProcedure(TARGET_PROCEDURE);
+    }
+
+    private void writeLog(MockWriter writer, int first, int count) throws Exception {
+        Thread t = new Thread(writer);
+        t.setDaemon(true);
+        t.start();
+        for (int i = first; i < first + count; i++) {
+            Collection<Integer> partitions = (i == DISTRIBUTED_TXN ? Arrays.asList(BASE_PARTITION, BASE_PARTITION + 1) :
+                                                                     Collections.singleton(BASE_PARTITION));
+            StoredProcedureInvocation invocation = new StoredProcedureInvocation(i, catalog_proc.getName(), new Long(i), "ABC" + i);
+            LocalTransaction ts = new LocalTransaction(this.hstore_site);
+            ts.init(new Long(i), i, BASE_PARTITION, partitions, false, true, catalog_proc, invocation, null);
+            writer.appendToLog(ts, new byte[0]);
+        } // FOR
+        for (int i = 0; i < 100 && writer.released < count; i++) {
+            ThreadUtil.sleep(50);
+        } // FOR
+        writer.shutdown();
+        assertEquals(count, writer.released);
+    }
+
+    /**
+     * testReader
+     */
+    @Test
+    public void testReader() throws Exception {
+        this.writeLog(new MockWriter(-1), 0, NUM_TXNS);
+
+        CommandLogReader reader = new CommandLogReader(this.logFile);
+        assertEquals(this.hstore_site.getSiteId(), reader.getSiteId());
+        int i = 0;
+        for (CommandLogReader.LogEntry entry : reader) {
+            assertEquals(i, entry.txn_id);
+            assertEquals(BASE_PARTITION, entry.base_partition);
+            assertEquals(i != DISTRIBUTED_TXN, entry.single_partition);
+            assertEquals(TARGET_PROCEDURE, entry.proc_name);
+            assertEquals(new Long(i), entry.params.toArray()[0]);
+            assertEquals("ABC" + i, entry.params.toArray()[1]);
+            i++;
+        } // FOR
+        assertEquals(NUM_TXNS, i);
+        assertEquals(NUM_TXNS, reader.getEntryCount());
+        long end_position = reader.getPosition();
+        reader.close();
+
+        // Corrupt the last entry as if we crashed in the middle of writing it
+        RandomAccessFile raf = new RandomAccessFile(this.logFile, "rw");
+        raf.seek(end_position - 1);
+        raf.write(0xFF);
+        raf.close();
+        reader = new CommandLogReader(this.logFile);
+        i = 0;
+        for (@SuppressWarnings("unused") CommandLogReader.LogEntry entry : reader) i++;
+        assertEquals(NUM_TXNS - 1, i);
+        end_position = reader.getPosition();
+        reader.close();
+
+        // Cut off the last good entry in the middle of its payload. The reader should
+        // stop right before its header so that the writer overwrites all of it
+        raf = new RandomAccessFile(this.logFile, "rw");
+        raf.setLength(end_position - 1);
+        raf.close();
+        reader = new CommandLogReader(this.logFile);
+        i = 0;
+        long last_good = -1;
+        for (@SuppressWarnings("unused") CommandLogReader.LogEntry entry : reader) {
+            if (++i == NUM_TXNS - 2) last_good = reader.getPosition();
+        } // FOR
+        assertEquals(NUM_TXNS - 2, i);
+        assertEquals(last_good, reader.getPosition());
+        end_position = reader.getPosition();
+        reader.close();
+
+        // Now append some more entries after the last good one
+        this.writeLog(new MockWriter(end_position), NUM_TXNS, NUM_TXNS);
+        reader = new CommandLogReader(this.logFile);
+        i = 0;
+        for (CommandLogReader.LogEntry entry : reader) {
+            long expected = (i < NUM_TXNS - 2 ? i : i + 2);
+            assertEquals(expected, entry.txn_id);
+            i++;
+        } // FOR
+        assertEquals(NUM_TXNS * 2 - 2, i);
+        reader.close();
+    }
+
+    /**
+     * testRecover
+     */
+    @Test
+    public void testRecover() throws Exception {
+        this.writeLog(new MockWriter(-1), 0, NUM_TXNS);
+
+        CommandLogReader reader = new CommandLogReader(this.logFile);
+        CommandLogRecovery recovery = new CommandLogRecovery(this.hstore_site, reader);
+        recovery.recover();
+        reader.close();
+
+        assertTrue(recovery.isFinished());
+        assertEquals(NUM_TXNS, recovery.getReadCount());
+        assertEquals(NUM_TXNS, recovery.getReplayedCount());
+        assertEquals(1, recovery.getDistributedCount());
+
+        // Everything should have been invoked in log order, and the distributed
+        // txn should not have started until everything before it was finished
+        assertEquals(NUM_TXNS, this.hstore_site.invoked.size());
+        for (int i = 0; i < NUM_TXNS; i++) {
+            assertEquals(i, this.hstore_site.invoked.get(i).longValue());
+        } // FOR
+        assertEquals(0, this.hstore_site.outstanding_at_distributed);
+        assertEquals(0, this.hstore_site.outstanding.get());
+    }
+
+    /**
+     * testRecoverMultiSite
+     */
+    @Test
+    public void testRecoverMultiSite() throws Exception {
+        // The other partition used by the distributed txn is at another site, so
+        // it can't run until all of the single-partition txns have been replayed
+        this.initSite(2, 1);
+        this.writeLog(new MockWriter(-1), 0, NUM_TXNS);
+
+        CommandLogReader reader = new CommandLogReader(this.logFile);
+        CommandLogRecovery recovery = new CommandLogRecovery(this.hstore_site, reader);
+        recovery.recoverLocal();
+        assertTrue(recovery.isLocalFinished());
+        assertFalse(recovery.isFinished());
+        assertEquals(1, recovery.getDeferredCount());
+        assertEquals(NUM_TXNS - 1, recovery.getReplayedCount());
+        assertEquals(0, recovery.getDistributedCount());
+        assertEquals(NUM_TXNS - 1, this.hstore_site.invoked.size());
+        assertFalse(this.hstore_site.invoked.contains(new Long(DISTRIBUTED_TXN)));
+
+        recovery.recoverDistributed();
+        reader.close();
+        assertTrue(recovery.isFinished());
+        assertEquals(0, recovery.getDeferredCount());
+        assertEquals(NUM_TXNS, recovery.getReplayedCount());
+        assertEquals(1, recovery.getDistributedCount());
+        assertEquals(NUM_TXNS, this.hstore_site.invoked.size());
+        assertEquals(DISTRIBUTED_TXN, this.hstore_site.invoked.get(NUM_TXNS - 1).longValue());
+        assertEquals(0, this.hstore_site.outstanding_at_distributed);
+    }
+
+    /**
+     * testRecoverSkipDistributed
+     */
+    @Test
+    public void testRecoverSkipDistributed() throws Exception {
+        this.initSite(2, 1);
+        HStoreConf.singleton().site.commandlog_recover_distributed = false;
+        this.writeLog(new MockWriter(-1), 0, NUM_TXNS);
+
+        CommandLogReader reader = new CommandLogReader(this.logFile);
+        CommandLogRecovery recovery = new CommandLogRecovery(this.hstore_site, reader);
+        recovery.recover();
+        reader.close();
+        assertTrue(recovery.isFinished());
+        assertEquals(NUM_TXNS, recovery.getReadCount());
+        assertEquals(NUM_TXNS - 1, recovery.getReplayedCount());
+        assertEquals(1, recovery.getSkippedCount());
+        assertEquals(0, recovery.getDistributedCount());
+        assertFalse(this.hstore_site.invoked.contains(new Long(DISTRIBUTED_TXN)));
+    }
+}
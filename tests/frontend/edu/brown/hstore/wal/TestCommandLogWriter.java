@@ -0,0 +1,235 @@
+package edu.brown.hstore.wal;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.voltdb.ParameterSet;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Site;
+import org.voltdb.messaging.FastDeserializer;
+
+import com.google.protobuf.RpcCallback;
+
+import edu.brown.BaseTestCase;
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.HStoreSite;
+import edu.brown.hstore.MockHStoreSite;
+import edu.brown.hstore.conf.HStoreConf;
+import edu.brown.hstore.dtxn.LocalTransaction;
+import edu.brown.utils.CollectionUtil;
+import edu.brown.utils.FileUtil;
+import edu.brown.utils.ProjectType;
+import edu.brown.utils.ThreadUtil;
+
+/**
+ * CommandLogWriter
+ */
+public class TestCommandLogWriter extends BaseTestCase {
+
+    private static final int BASE_PARTITION = 0;
+    private static final int NUM_TXNS = 250;
+    private static final String TARGET_PROCEDURE = "UpdateLocation";
+
+    private HStoreSite hstore_site;
+    private File logFile;
+    private MockWriter writer;
+    private final List<byte[]> released = Collections.synchronizedList(new ArrayList<byte[]>());
+
+    /**
+     * CommandLogWriter that just records the ClientResponses it releases
+     */
+    private class MockWriter extends CommandLogWriter {
+        public MockWriter() {
+            super(hstore_site, logFile);
+        }
+        @Override
+        protected void releaseClientResponse(int base_partition, long replication_sequence, RpcCallback<byte[]> callback, byte[] output) {
+            assertEquals(BASE_PARTITION, base_partition);
+            released.add(output);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp(ProjectType.TM1);
+        HStoreConf hstore_conf = HStoreConf.singleton();
+        hstore_conf.site.commandlog_timeout = 5;
+        hstore_conf.site.commandlog_batch_size = 32;
+        hstore_conf.site.commandlog_buffer_size = 4096;
+        hstore_conf.site.commandlog_prealloc_size = 1;
+
+        Site catalog_site = CollectionUtil.first(CatalogUtil.getCluster(catalog).getSites());
+        this.hstore_site = new MockHStoreSite(catalog_site, hstore_conf);
+        this.logFile = FileUtil.getTempFile("log", true);
+        this.writer = new MockWriter();
+    }
+
+    private LocalTransaction makeTransaction(int i) {
+        Procedure catalog_proc = this.getProcedure(TARGET_PROCEDURE);
+        StoredProcedureInvocation invocation = new StoredProcedureInvocation(i, catalog_proc.getName(), new Long(i), "ABC" + i);
+        LocalTransaction ts = new LocalTransaction(this.hstore_site);
+        ts.init(new Long(1000 + i), i, BASE_PARTITION,
+                Collections.singleton(BASE_PARTITION), false, true,
+                catalog_proc, invocation, null);
+        return (ts);
+    }
+
+    /**
+     * Read back the txn ids of all of the entries in the log file
+     */
+    private List<Long> readTransactionIds() throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(this.logFile, "r");
+        FileChannel channel = raf.getChannel();
+        ByteBuffer buffer = ByteBuffer.allocate((int)this.writer.getPosition() + 4);
+        channel.read(buffer, 0);
+        buffer.flip();
+        raf.close();
+
+        List<Long> txn_ids = new ArrayList<Long>();
+        buffer.position(CommandLogWriter.HEADER_SIZE);
+        int length;
+        while ((length = buffer.getInt()) > 0) {
+            buffer.getInt();
+            byte data[] = new byte[length];
+            buffer.get(data);
+            txn_ids.add(new FastDeserializer(data).readLong());
+        } // WHILE
+        return (txn_ids);
+    }
+
+    /**
+     * Entries should be in the log in the order that the txns committed, even
+     * if their ClientResponses show up in a different order
+     */
+    @Test
+    public void testCommitOrder() throws Exception {
+        Thread t = new Thread(this.writer);
+        t.setDaemon(true);
+        t.start();
+
+        List<LocalTransaction> txns = new ArrayList<LocalTransaction>();
+        for (int i = 0; i < NUM_TXNS; i++) {
+            LocalTransaction ts = this.makeTransaction(i);
+            this.writer.appendToLog(ts);
+            txns.add(ts);
+        } // FOR
+        // Wait for some of the entries to become durable before their responses show up
+        ThreadUtil.sleep(100);
+        for (int i = NUM_TXNS - 1; i >= 0; i--) {
+            this.writer.queueClientResponse(txns.get(i), new byte[]{ (byte)i });
+        } // FOR
+        for (int i = 0; i < 100 && this.released.size() < NUM_TXNS; i++) {
+            ThreadUtil.sleep(50);
+        } // FOR
+        this.writer.shutdown();
+
+        // Every response is released exactly once
+        assertEquals(NUM_TXNS, this.released.size());
+        boolean seen[] = new boolean[NUM_TXNS];
+        for (byte output[] : this.released) {
+            int i = output[0] & 0xFF;
+            assertFalse(Integer.toString(i), seen[i]);
+            seen[i] = true;
+        } // FOR
+
+        List<Long> txn_ids = this.readTransactionIds();
+        assertEquals(NUM_TXNS, txn_ids.size());
+        for (int i = 0; i < NUM_TXNS; i++) {
+            assertEquals(1000 + i, txn_ids.get(i).longValue());
+        } // FOR
+    }
+
+    /**
+     * Entries that are still queued when the writer is shutdown should be written out
+     */
+    @Test
+    public void testShutdownDrain() throws Exception {
+        Thread t = new Thread(this.writer);
+        t.setDaemon(true);
+        t.start();
+        for (int i = 0; i < NUM_TXNS; i++) {
+            this.writer.appendToLog(this.makeTransaction(i), new byte[]{ (byte)i });
+        } // FOR
+        this.writer.shutdown();
+        assertFalse(t.isAlive());
+
+        assertEquals(NUM_TXNS, this.writer.getEntryCount());
+        assertEquals(NUM_TXNS, this.released.size());
+        assertEquals(NUM_TXNS, this.readTransactionIds().size());
+    }
+
+    /**
+     * testGroupCommit
+     */
+    @Test
+    public void testGroupCommit() throws Exception {
+        Thread t = new Thread(this.writer);
+        t.setDaemon(true);
+        t.start();
+
+        Procedure catalog_proc = this.getProcedure(TARGET_PROCEDURE);
+        for (int i = 0; i < NUM_TXNS; i++) {
+            StoredProcedureInvocation invocation = new StoredProcedureInvocation(i, catalog_proc.getName(), new Long(i), "ABC" + i);
+            LocalTransaction ts = new LocalTransaction(this.hstore_site);
+            ts.init(new Long(1000 + i), i, BASE_PARTITION,
+                    Collections.singleton(BASE_PARTITION), false, true,
+                    catalog_proc, invocation, null);
+            this.writer.appendToLog(ts, new byte[]{ (byte)i });
+        } // FOR
+        for (int i = 0; i < 100 && this.released.size() < NUM_TXNS; i++) {
+            ThreadUtil.sleep(50);
+        } // FOR
+        this.writer.shutdown();
+
+        // Every response should come back in the same order that they went in
+        assertEquals(NUM_TXNS, this.released.size());
+        for (int i = 0; i < NUM_TXNS; i++) {
+            assertEquals((byte)i, this.released.get(i)[0]);
+        } // FOR
+        assertEquals(NUM_TXNS, this.writer.getEntryCount());
+        assert(this.writer.getGroupCommitCount() < NUM_TXNS) : this.writer.getGroupCommitCount();
+
+        // Make sure that we can read everything back
+        RandomAccessFile raf = new RandomAccessFile(this.logFile, "r");
+        FileChannel channel = raf.getChannel();
+        assert(channel.size() >= this.writer.getPosition());
+        ByteBuffer buffer = ByteBuffer.allocate((int)this.writer.getPosition() + 4);
+        channel.read(buffer, 0);
+        buffer.flip();
+        raf.close();
+
+        assertEquals(CommandLogWriter.LOG_MAGIC, buffer.getInt());
+        assertEquals(CommandLogWriter.LOG_VERSION, buffer.getInt());
+        assertEquals(this.hstore_site.getSiteId(), buffer.getInt());
+        buffer.getLong();
+        for (int i = 0; i < NUM_TXNS; i++) {
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            byte data[] = new byte[length];
+            buffer.get(data);
+            CRC32 checksum = new CRC32();
+            checksum.update(data);
+            assertEquals(crc, (int)checksum.getValue());
+
+            FastDeserializer fds = new FastDeserializer(data);
+            assertEquals(1000 + i, fds.readLong());
+            assertEquals(BASE_PARTITION, fds.readInt());
+            assertTrue(fds.readBoolean());
+            assertEquals(TARGET_PROCEDURE, fds.readString());
+            ParameterSet params = fds.readObject(ParameterSet.class);
+            assertEquals(new Long(i), params.toArray()[0]);
+            assertEquals("ABC" + i, params.toArray()[1]);
+        } // FOR
+        // The preallocated space after the last entry should be empty
+        assertEquals(0, buffer.getInt());
+    }
+}
@@ -82,6 +82,29 @@ public class MockByteChannel implements ByteChannel {
         return bytesToAccept;
     }
 
+    /** Gathering write: everything that is accepted is recorded as a single write. */
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        int total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            total += srcs[i].remaining();
+        }
+        ByteBuffer gathered = ByteBuffer.allocate(total);
+        for (int i = offset; i < offset + length; i++) {
+            gathered.put(srcs[i].duplicate());
+        }
+        gathered.flip();
+        int accepted = (total == 0 ? 0 : write(gathered));
+
+        // Advance the source buffers by the number of bytes that we took
+        int remaining = accepted;
+        for (int i = offset; i < offset + length && remaining > 0; i++) {
+            int bytes = Math.min(remaining, srcs[i].remaining());
+            srcs[i].position(srcs[i].position() + bytes);
+            remaining -= bytes;
+        }
+        return accepted;
+    }
+
     public void clear() {
         lastWrites.clear();
         writeCalled = false;
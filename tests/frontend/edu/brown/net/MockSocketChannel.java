@@ -102,9 +102,13 @@ public class MockSocketChannel extends SocketChannel {
     @Override
     public long write(ByteBuffer[] srcs, int offset, int length)
             throws IOException {
-        // TODO Auto-generated method stub
-        // return 0;
-        throw new UnsupportedOperationException("not implemented");
+        if (state == State.CLOSED) {
+            throw new ClosedChannelException();
+        } else if (state == State.CONNECTING || state == State.UNCONNECTED) {
+            throw new NotYetConnectedException();
+        }
+        assert state == State.CONNECTED;
+        return writeChannel.write(srcs, offset, length);
     }
 
     @Override
@@ -37,6 +37,9 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.spi.SelectorProvider;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 import org.junit.Before;
@@ -212,6 +215,112 @@ public class NIOMessageConnectionTest {
         assertEquals(buffer.length, length + length2);
     }
 
+    @Test
+    public void testReadFrames() throws IOException {
+        assertNull(connection.tryReadFrame());
+        writeServer(new byte[]{
+                5, 0, 0, 0,
+                1, 2, 3, 4, 5,
+                1, 0, 0, 0,
+                6,
+                3, 0, 0});
+        ByteBuffer first = connection.tryReadFrame();
+        assertEquals(5, first.remaining());
+        ByteBuffer second = connection.tryReadFrame();
+        assertEquals(1, second.remaining());
+        assertEquals(6, second.get(0));
+        assertNull(connection.tryReadFrame());
+
+        writeServer(new byte[]{
+                0,
+                7, 8, 9});
+        ByteBuffer third = connection.tryReadFrame();
+        assertEquals(3, third.remaining());
+        assertEquals(7, third.get(0));
+        assertEquals(9, third.get(2));
+        assertNull(connection.tryReadFrame());
+
+        // The earlier views must not have been overwritten
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(i + 1, first.get(i));
+        }
+        assertEquals(6, second.get(0));
+
+        serverSide.close();
+        assertEquals(0, connection.tryReadFrame().remaining());
+    }
+
+    @Test
+    public void testReadLargeFrames() throws IOException {
+        // Each message spills over the end of the read buffer
+        final int size = NIOMessageConnection.FRAME_BUFFER_SIZE * 2 / 3;
+        byte[] data = new byte[(4 + size) * 3];
+        for (int i = 0; i < 3; ++i) {
+            int offset = i * (4 + size);
+            data[offset] = (byte)(size & 0xff);
+            data[offset+1] = (byte)((size >> 8) & 0xff);
+            data[offset+2] = (byte)((size >> 16) & 0xff);
+            data[offset+3] = (byte)((size >> 24) & 0xff);
+            data[offset+4] = (byte)i;
+            data[offset+3+size] = (byte)i;
+        }
+        writeServer(data);
+
+        ByteBuffer frames[] = new ByteBuffer[3];
+        for (int i = 0; i < frames.length; ++i) {
+            ByteBuffer frame = null;
+            while ((frame = connection.tryReadFrame()) == null) {
+                Thread.yield();
+            }
+            frames[i] = frame;
+        }
+        for (int i = 0; i < frames.length; ++i) {
+            assertEquals(size, frames[i].remaining());
+            assertEquals(i, frames[i].get(0));
+            assertEquals(i, frames[i].get(size - 1));
+        }
+    }
+
+    @Test
+    public void testWriteMessages() throws IOException {
+        List<byte[]> messages = new ArrayList<byte[]>();
+        messages.add(new byte[]{1, 2, 3});
+        messages.add(new byte[]{4});
+        assertFalse(connection.write(messages));
+
+        byte[] buffer = new byte[4096];
+        int length = serverSide.getInputStream().read(buffer);
+        assertEquals(4 + 3 + 4 + 1, length);
+        assertArrayEquals(new byte[]{3, 0, 0, 0, 1, 2, 3, 1, 0, 0, 0, 4},
+                          Arrays.copyOf(buffer, length));
+    }
+
+    @Test
+    public void testWriteMessagesBlocked() throws IOException {
+        MockSocketChannel channel = new MockSocketChannel();
+        channel.setConnected();
+        connection = new NIOMessageConnection(channel);
+        List<byte[]> messages = new ArrayList<byte[]>();
+        messages.add(new byte[]{1, 2, 3});
+        messages.add(new byte[]{4});
+
+        // Only part of the first message fits: the rest gets buffered
+        channel.writeChannel.numBytesToAccept = 5;
+        assertTrue(connection.write(messages));
+        assertArrayEquals(new byte[]{3, 0, 0, 0, 1}, channel.writeChannel.dequeueWrite());
+
+        // While we're blocked, new messages go behind the buffered ones
+        messages.clear();
+        messages.add(new byte[]{5});
+        assertTrue(connection.write(messages));
+        channel.writeChannel.clear();
+
+        channel.writeChannel.numBytesToAccept = -1;
+        assertFalse(connection.tryWrite());
+        assertArrayEquals(new byte[]{2, 3, 1, 0, 0, 0, 4, 1, 0, 0, 0, 5},
+                          channel.writeChannel.dequeueWrite());
+    }
+
     @Test
     public void testRegister() throws IOException {
         Selector selector = Selector.open();
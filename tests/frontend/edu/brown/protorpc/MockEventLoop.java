@@ -6,6 +6,8 @@ package edu.brown.protorpc;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
 
 public final class MockEventLoop implements EventLoop {
     @Override
@@ -51,7 +53,7 @@ public final class MockEventLoop implements EventLoop {
 
     @Override
     public void runInEventThread(Runnable callback) {
-        throw new UnsupportedOperationException("TODO: implement");
+        threadEvents.add(callback);
     }
 
     @Override
@@ -63,4 +65,5 @@ public final class MockEventLoop implements EventLoop {
     public Handler writeHandler;
     public int timerMilliseconds;
     public Handler timerHandler;
+    public final List<Runnable> threadEvents = new ArrayList<Runnable>();
 }
@@ -1,11 +1,13 @@
 package edu.brown.protorpc;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -49,8 +51,43 @@ public class ProtoConnectionTest {
         assertEquals(2, channel.lastWrites.size());
     }
 
-    
-    
+    @Test
+    public void testFrames() throws IOException {
+        final Counter.Value v = Counter.Value.newBuilder().setValue(42).build();
+        ProtoConnection.Frame frame = new ProtoConnection.Frame() {
+            @Override
+            public int getSerializedSize() {
+                return v.getSerializedSize();
+            }
+            @Override
+            public void writeTo(CodedOutputStream output) throws IOException {
+                v.writeTo(output);
+            }
+        };
+        assertFalse(connection.tryWrite(frame));
+        assertArrayEquals(makeConnectionMessage(v), channel.lastWrites.get(0));
+
+        // Read it back twice with the same parser
+        final ArrayList<Counter.Value> values = new ArrayList<Counter.Value>();
+        ProtoConnection.FrameParser parser = new ProtoConnection.FrameParser() {
+            @Override
+            public void parseFrom(CodedInputStream input) throws IOException {
+                values.add(Counter.Value.newBuilder().mergeFrom(input).build());
+            }
+        };
+        byte[] message = channel.lastWrites.get(0);
+        byte[] all = new byte[message.length * 2];
+        System.arraycopy(message, 0, all, 0, message.length);
+        System.arraycopy(message, 0, all, message.length, message.length);
+        channel.setNextRead(all);
+        assertTrue(connection.readAllAvailable());
+        for (int i = 0; i < 2; ++i) {
+            assertTrue(connection.readBufferedMessage(parser));
+            assertEquals(v, values.get(i));
+        }
+        assertFalse(connection.readBufferedMessage(parser));
+    }
+
     @Test
     public void testReadBufferedMessage() throws IOException {
         Counter.Value.Builder builder = Counter.Value.newBuilder();
@@ -0,0 +1,79 @@
+package edu.brown.protorpc;
+
+import java.io.IOException;
+
+import ca.evanjones.protorpc.Counter;
+import ca.evanjones.protorpc.Counter.CounterService;
+import ca.evanjones.protorpc.Protocol;
+import ca.evanjones.protorpc.Protocol.RpcResponse;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors.MethodDescriptor;
+import com.google.protobuf.Message;
+import com.sun.japex.JapexDriverBase;
+import com.sun.japex.TestCase;
+
+import edu.brown.net.MockByteChannel;
+import edu.brown.net.NonBlockingConnection;
+
+/**
+ * Send an RPC through a ProtoRpcChannel and then feed its response back in.
+ * This covers the framing of the request and the parsing of the response
+ * without any sockets. The mock channel copies every write, so the absolute
+ * numbers are a bit lower than what a real connection would get.
+ */
+public class ProtoRpcChannelBenchmark extends JapexDriverBase {
+    private static final MethodDescriptor ADD_METHOD = CounterService.getDescriptor().findMethodByName("Add");
+
+    private final MockEventLoop eventLoop = new MockEventLoop();
+    private final MockByteChannel channel = new MockByteChannel();
+    private final ProtoRpcController controller = new ProtoRpcController();
+    private final StoreResultCallback<Message> callback = new StoreResultCallback<Message>();
+    private final Counter.Value request = Counter.Value.newBuilder().setValue(42).build();
+    private final ByteString response = Counter.Value.newBuilder().setValue(100).build().toByteString();
+    private ProtoRpcChannel rpcChannel;
+    private int sequence = 0;
+
+    @Override
+    public void initializeDriver() {
+        this.rpcChannel = new ProtoRpcChannel(this.eventLoop, new ProtoRpcChannel.ConnectFactory() {
+            @Override
+            public NonBlockingConnection startNewConnection() {
+                return new NonBlockingConnection(null, channel);
+            }
+        });
+    }
+
+    /**
+     * Returns the length-prefixed RpcResponse frame for the given sequence number
+     */
+    private byte[] makeResponse(int sequence) throws IOException {
+        int size = CodedOutputStream.computeInt32Size(RpcResponse.SEQUENCE_NUMBER_FIELD_NUMBER, sequence) +
+                   CodedOutputStream.computeEnumSize(RpcResponse.STATUS_FIELD_NUMBER, Protocol.Status.OK.getNumber()) +
+                   CodedOutputStream.computeBytesSize(RpcResponse.RESPONSE_FIELD_NUMBER, this.response);
+        byte bytes[] = new byte[4 + size];
+        CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        output.writeRawLittleEndian32(size);
+        output.writeInt32(RpcResponse.SEQUENCE_NUMBER_FIELD_NUMBER, sequence);
+        output.writeEnum(RpcResponse.STATUS_FIELD_NUMBER, Protocol.Status.OK.getNumber());
+        output.writeBytes(RpcResponse.RESPONSE_FIELD_NUMBER, this.response);
+        output.checkNoSpaceLeft();
+        return (bytes);
+    }
+
+    @Override
+    public void run(TestCase testCase) {
+        this.rpcChannel.callMethod(ADD_METHOD, this.controller, this.request,
+                                   Counter.Value.getDefaultInstance(), this.callback);
+        this.channel.clear();
+        try {
+            this.channel.setNextRead(this.makeResponse(this.sequence++));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        this.rpcChannel.readCallback(null);
+        assert(this.callback.wasCalled());
+        this.callback.reset();
+    }
+}
@@ -82,6 +82,43 @@ public class ProtoServerTest {
         server.register(counter);
     }
 
+    /** Accepted connections are spread across the connection loops. */
+    @Test
+    public void testConnectionLoops() {
+        MockEventLoop secondLoop = new MockEventLoop();
+        server = new ProtoServer(eventLoop, new EventLoop[] { eventLoop, secondLoop });
+        server.setServerSocketForTest(serverChannel);
+        eventLoop.handler = null;
+
+        // The first connection is handled by the accepting loop
+        MockSocketChannel first = new MockSocketChannel();
+        first.setConnected();
+        serverChannel.nextAccept = first;
+        server.acceptCallback(serverChannel);
+        assertNotNull(eventLoop.handler);
+        assertNull(secondLoop.handler);
+
+        // The second must be registered from within the other loop's thread
+        eventLoop.handler = null;
+        MockSocketChannel second = new MockSocketChannel();
+        second.setConnected();
+        serverChannel.nextAccept = second;
+        server.acceptCallback(serverChannel);
+        assertNull(eventLoop.handler);
+        assertNull(secondLoop.handler);
+        assertEquals(1, secondLoop.threadEvents.size());
+        secondLoop.threadEvents.remove(0).run();
+        assertNotNull(secondLoop.handler);
+
+        // And then we wrap around
+        MockSocketChannel third = new MockSocketChannel();
+        third.setConnected();
+        serverChannel.nextAccept = third;
+        server.acceptCallback(serverChannel);
+        assertNotNull(eventLoop.handler);
+        assertTrue(secondLoop.threadEvents.isEmpty());
+    }
+
     @Test
     public void testOutOfOrderResponses() {
         // Read one request
@@ -0,0 +1,127 @@
+package edu.brown.statistics;
+
+import java.util.Random;
+
+import org.json.JSONObject;
+
+import junit.framework.TestCase;
+
+public class TestLatencyHistogram extends TestCase {
+
+    private static final double MAX_ERROR = 1.0 / 16;
+
+    private final Random rand = new Random(0);
+    private LatencyHistogram h;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.h = new LatencyHistogram();
+    }
+
+    private void assertClose(long expected, long actual) {
+        double error = Math.abs(actual - expected) / (double)Math.max(1, expected);
+        assertTrue(String.format("Expected %d but got %d", expected, actual), error <= MAX_ERROR);
+    }
+
+    /**
+     * testBuckets
+     */
+    public void testBuckets() {
+        long last = -1;
+        for (int i = 0; i < LatencyHistogram.NUM_BUCKETS; i++) {
+            long upper = LatencyHistogram.bucketUpperBound(i);
+            assertTrue(upper > last);
+            assertEquals(i, LatencyHistogram.bucketIndex(upper));
+            assertEquals(i, LatencyHistogram.bucketIndex(last + 1));
+            last = upper;
+        } // FOR
+        assertEquals(Long.MAX_VALUE, last);
+    }
+
+    /**
+     * testPercentiles
+     */
+    public void testPercentiles() {
+        // Record 1..100000 microseconds
+        int num_values = 100000;
+        for (int i = 1; i <= num_values; i++) {
+            this.h.record(i * 1000l);
+        } // FOR
+        assertEquals(num_values, this.h.getCount());
+        assertEquals(num_values * 1000l, this.h.getMax());
+        assertEquals((num_values + 1) * 500d, this.h.getMean(), 0.001);
+
+        assertClose(50000000l, this.h.getValueAtPercentile(50));
+        assertClose(95000000l, this.h.getValueAtPercentile(95));
+        assertClose(99000000l, this.h.getValueAtPercentile(99));
+        assertClose(99900000l, this.h.getValueAtPercentile(99.9));
+        assertEquals(this.h.getMax(), this.h.getValueAtPercentile(100));
+    }
+
+    /**
+     * testMerge
+     */
+    public void testMerge() {
+        LatencyHistogram other = new LatencyHistogram();
+        for (int i = 0; i < 1000; i++) {
+            this.h.record(1000);
+            other.record(1000000);
+        } // FOR
+
+        LatencyHistogram copy = this.h.copy();
+        copy.merge(other);
+        assertEquals(2000, copy.getCount());
+        assertEquals(1000000, copy.getMax());
+        assertClose(1000, copy.getValueAtPercentile(50));
+        assertClose(1000000, copy.getValueAtPercentile(51));
+
+        // The original should not have changed
+        assertEquals(1000, this.h.getCount());
+        assertEquals(1000, this.h.getMax());
+    }
+
+    /**
+     * testSerialization
+     */
+    public void testSerialization() throws Exception {
+        for (int i = 0; i < 10000; i++) {
+            this.h.record(Math.abs(rand.nextLong() % 1000000000l));
+        } // FOR
+        String json = this.h.toJSONString();
+        assertFalse(json.isEmpty());
+
+        LatencyHistogram clone = new LatencyHistogram();
+        clone.fromJSON(new JSONObject(json), null);
+        assertEquals(this.h.getCount(), clone.getCount());
+        assertEquals(this.h.getMax(), clone.getMax());
+        assertEquals(this.h.getMean(), clone.getMean(), 0.001);
+        for (double p : new double[]{ 1, 50, 90, 99, 99.9 }) {
+            assertEquals(this.h.getValueAtPercentile(p), clone.getValueAtPercentile(p));
+        } // FOR
+    }
+
+    /**
+     * testConcurrentRecord
+     */
+    public void testConcurrentRecord() throws Exception {
+        final int num_threads = 4;
+        final int num_values = 100000;
+        Thread threads[] = new Thread[num_threads];
+        for (int i = 0; i < num_threads; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 1; j <= num_values; j++) {
+                        h.record(j);
+                    } // FOR
+                }
+            };
+            threads[i].start();
+        } // FOR
+        for (Thread t : threads) {
+            t.join();
+        } // FOR
+        assertEquals(num_threads * num_values, this.h.getCount());
+        assertEquals(num_values, this.h.getMax());
+        assertClose(num_values / 2, this.h.getValueAtPercentile(50));
+    }
+}
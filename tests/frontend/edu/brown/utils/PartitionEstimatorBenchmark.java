@@ -0,0 +1,62 @@
+package edu.brown.utils;
+
+import org.voltdb.catalog.Catalog;
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.types.TimestampType;
+
+import com.sun.japex.JapexDriverBase;
+import com.sun.japex.TestCase;
+
+import edu.brown.MicroBenchmarkUtil;
+import edu.brown.catalog.CatalogUtil;
+
+/**
+ * Compute the base partition of TPC-C neworder txns
+ */
+public class PartitionEstimatorBenchmark extends JapexDriverBase {
+    private static final int NUM_PARTITIONS = 16;
+    private static final int NUM_TXNS = 1024;
+    private static final int NUM_ITEMS = 10;
+
+    private PartitionEstimator p_estimator;
+    private Procedure catalog_proc;
+    private final Object args[][] = new Object[NUM_TXNS][];
+    private int next = 0;
+
+    @Override
+    public void initializeDriver() {
+        try {
+            Catalog catalog = MicroBenchmarkUtil.getTPCCCatalog(NUM_PARTITIONS);
+            Database catalog_db = CatalogUtil.getDatabase(catalog);
+            this.p_estimator = new PartitionEstimator(catalog_db);
+            this.catalog_proc = catalog_db.getProcedures().getIgnoreCase("neworder");
+            assert(this.catalog_proc != null);
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+
+        for (int i = 0; i < NUM_TXNS; i++) {
+            short w_id = (short)((i % NUM_PARTITIONS) + 1);
+            int item_id[] = new int[NUM_ITEMS];
+            short supware[] = new short[NUM_ITEMS];
+            int quantity[] = new int[NUM_ITEMS];
+            for (int j = 0; j < NUM_ITEMS; j++) {
+                item_id[j] = (i * NUM_ITEMS) + j + 1;
+                supware[j] = w_id;
+                quantity[j] = 5;
+            } // FOR
+            this.args[i] = new Object[]{ w_id, (byte)1, i + 1, new TimestampType(), item_id, supware, quantity };
+        } // FOR
+    }
+
+    @Override
+    public void run(TestCase testCase) {
+        try {
+            Integer base_partition = this.p_estimator.getBasePartition(this.catalog_proc, this.args[this.next++ % NUM_TXNS]);
+            assert(base_partition != null);
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
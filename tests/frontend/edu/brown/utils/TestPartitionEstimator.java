@@ -242,6 +242,58 @@ public class TestPartitionEstimator extends BaseTestCase {
         
     }
     
+    /**
+     * testFragmentRoutes
+     */
+    public void testFragmentRoutes() throws Exception {
+        // Check that the compiled FragmentRoutes give us the same partitions as
+        // walking through the CacheEntries for every Statement in the catalog
+        PartitionEstimator estimator = new PartitionEstimator(catalog_db, hasher);
+        PartitionSet partitions = new PartitionSet();
+        for (Procedure catalog_proc : catalog_db.getProcedures()) {
+            if (catalog_proc.getSystemproc()) continue;
+            for (Statement catalog_stmt : catalog_proc.getStatements()) {
+                Object params[] = this.makeRandomStatementParameters(catalog_stmt);
+                CatalogMap<PlanFragment> fragments = (catalog_stmt.getHas_singlesited() ? catalog_stmt.getFragments() : catalog_stmt.getMs_fragments());
+                
+                Set<Integer> expected = new HashSet<Integer>();
+                for (Set<Integer> p : estimator.getTablePartitions(catalog_stmt, params, BASE_PARTITION).values()) {
+                    expected.addAll(p);
+                } // FOR
+                
+                Set<Integer> actual = new HashSet<Integer>();
+                partitions.clear();
+                for (PlanFragment catalog_frag : fragments) {
+                    actual.addAll(estimator.getPartitions(catalog_frag, params, BASE_PARTITION));
+                    assertSame(estimator.getFragmentRoute(catalog_frag), estimator.getFragmentRoute(catalog_frag));
+                    estimator.getPartitions(catalog_frag, params, BASE_PARTITION, partitions);
+                } // FOR
+                assertEquals(catalog_stmt.fullName(), expected, actual);
+                assertEquals(catalog_stmt.fullName(), expected.size(), partitions.size());
+                for (Integer p : expected) {
+                    assertTrue(catalog_stmt.fullName(), partitions.contains(p.intValue()));
+                } // FOR
+            } // FOR
+        } // FOR
+        
+        // Routes have to be recompiled after the catalog is reloaded
+        Statement catalog_stmt = this.getStatement(this.getProcedure(neworder.class), "getWarehouseTaxRate");
+        PlanFragment catalog_frag = CollectionUtil.first(catalog_stmt.getFragments());
+        FragmentRoute route = estimator.getFragmentRoute(catalog_frag);
+        assertFalse(route.isBroadcast());
+        estimator.initCatalog(catalog_db);
+        assertNotSame(route, estimator.getFragmentRoute(catalog_frag));
+        
+        // Primitive arrays go through a different path
+        long w_ids[] = { 1, 5, 9 };
+        partitions.clear();
+        estimator.getPartitions(catalog_frag, new Object[]{ w_ids }, BASE_PARTITION, partitions);
+        assertEquals(w_ids.length, partitions.size());
+        for (long w_id : w_ids) {
+            assertTrue(partitions.contains((int)w_id));
+        } // FOR
+    }
+    
     /**
      * testSelect
      */
@@ -0,0 +1,136 @@
+package edu.brown.utils;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+public class TestPartitionSet extends TestCase {
+
+    private static final int NUM_PARTITIONS = 200;
+    private final Random rand = new Random(0);
+
+    /**
+     * testAddRemove
+     */
+    public void testAddRemove() throws Exception {
+        PartitionSet partitions = new PartitionSet(8);
+        Set<Integer> expected = new TreeSet<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            int p = rand.nextInt(NUM_PARTITIONS);
+            if (rand.nextBoolean()) {
+                assertEquals(expected.add(p), partitions.add(p));
+            } else {
+                assertEquals(expected.remove(p), partitions.remove(p));
+            }
+            assertEquals(expected.size(), partitions.size());
+            assertEquals(expected.contains(p), partitions.contains(p));
+            assertEquals(expected.contains(p), partitions.contains(Integer.valueOf(p)));
+        } // FOR
+        assertEquals(expected, partitions);
+        assertEquals(partitions, expected);
+        assertEquals(expected.hashCode(), partitions.hashCode());
+        assertEquals(expected.toString(), partitions.toString());
+        assertFalse(partitions.contains(-1));
+        assertFalse(partitions.contains(NUM_PARTITIONS * 10));
+        assertFalse(partitions.contains("1"));
+    }
+
+    /**
+     * testIteration
+     */
+    public void testIteration() throws Exception {
+        PartitionSet partitions = new PartitionSet();
+        assertEquals(-1, partitions.first());
+        assertFalse(partitions.iterator().hasNext());
+
+        int values[] = { 0, 1, 63, 64, 65, 127, 128, 150 };
+        for (int p : values) {
+            partitions.add(p);
+        } // FOR
+        assertEquals(values[0], partitions.first());
+
+        int i = 0;
+        for (int p = partitions.next(0); p != -1; p = partitions.next(p + 1)) {
+            assertEquals(values[i++], p);
+        } // FOR
+        assertEquals(values.length, i);
+        assertEquals(values.length, partitions.values().length);
+
+        i = 0;
+        for (Integer p : partitions) {
+            assertEquals(values[i++], p.intValue());
+        } // FOR
+        assertEquals(values.length, i);
+
+        // Remove through the iterator
+        Iterator<Integer> it = partitions.iterator();
+        while (it.hasNext()) {
+            if (it.next().intValue() % 2 == 1) it.remove();
+        } // WHILE
+        for (int p : partitions.values()) {
+            assertEquals(0, p % 2);
+        } // FOR
+        assertEquals(4, partitions.size());
+    }
+
+    /**
+     * testAddRange
+     */
+    public void testAddRange() throws Exception {
+        int ranges[][] = { { 0, 1 }, { 0, 64 }, { 3, 70 }, { 63, 65 }, { 10, 130 }, { 5, 5 } };
+        for (int range[] : ranges) {
+            PartitionSet partitions = new PartitionSet(4);
+            partitions.add(range[0]);
+            partitions.addRange(range[0], range[1]);
+            if (range[0] == range[1]) {
+                assertEquals(1, partitions.size());
+                continue;
+            }
+            assertEquals(range[1] - range[0], partitions.size());
+            assertEquals(range[0], partitions.first());
+            assertFalse(partitions.contains(range[0] - 1));
+            assertTrue(partitions.contains(range[1] - 1));
+            assertFalse(partitions.contains(range[1]));
+        } // FOR
+    }
+
+    /**
+     * testBulkOperations
+     */
+    public void testBulkOperations() throws Exception {
+        for (int trial = 0; trial < 100; trial++) {
+            PartitionSet set0 = new PartitionSet();
+            PartitionSet set1 = new PartitionSet(rand.nextInt(NUM_PARTITIONS) + 1);
+            Set<Integer> expected0 = new HashSet<Integer>();
+            Set<Integer> expected1 = new HashSet<Integer>();
+            for (int i = 0, cnt = rand.nextInt(20); i < cnt; i++) {
+                int p = rand.nextInt(NUM_PARTITIONS);
+                set0.add(p);
+                expected0.add(p);
+                p = rand.nextInt(NUM_PARTITIONS);
+                set1.add(p);
+                expected1.add(p);
+            } // FOR
+            assertEquals(expected0.containsAll(expected1), set0.containsAll(set1));
+            assertEquals(expected0.containsAll(expected1), set0.containsAll(expected1));
+
+            PartitionSet copy = new PartitionSet(set0);
+            assertEquals(set0, copy);
+            assertEquals(expected0.removeAll(expected1), copy.removeAll(set1));
+            assertEquals(expected0, copy);
+
+            assertEquals(expected0.addAll(expected1), copy.addAll(set1));
+            assertEquals(expected0, copy);
+            assertTrue(copy.containsAll(set1));
+
+            copy.clear();
+            assertTrue(copy.isEmpty());
+            assertEquals(-1, copy.first());
+            assertEquals(new PartitionSet(), copy);
+        } // FOR
+    }
+}
@@ -0,0 +1,169 @@
+package edu.brown.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import junit.framework.TestCase;
+
+public class TestTypedObjectPool extends TestCase {
+
+    public static class MockObject implements Poolable {
+        boolean initialized = false;
+        boolean finished = false;
+        public void init() {
+            this.initialized = true;
+            this.finished = false;
+        }
+        @Override
+        public void finish() {
+            this.initialized = false;
+            this.finished = true;
+        }
+        @Override
+        public boolean isInitialized() {
+            return (this.initialized);
+        }
+    }
+
+    private static final int IDLE = 20;
+    private static final int LOCAL_IDLE = 5;
+
+    private TypedObjectPool<MockObject> pool;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.pool = TypedObjectPool.factory(MockObject.class, IDLE, LOCAL_IDLE, true);
+    }
+
+    private MockObject borrow() throws Exception {
+        MockObject obj = this.pool.borrowObject();
+        obj.init();
+        return (obj);
+    }
+
+    /**
+     * testBorrowReturn
+     */
+    public void testBorrowReturn() throws Exception {
+        MockObject obj0 = this.borrow();
+        assertNotNull(obj0);
+        assertEquals(1, this.pool.getMissCount());
+        assertEquals(1, this.pool.getNumActive());
+
+        this.pool.returnObject(obj0);
+        assertTrue(obj0.finished);
+        assertEquals(0, this.pool.getNumActive());
+        assertEquals(1, this.pool.getNumIdle());
+
+        // We should get back the same object from our thread's cache
+        MockObject obj1 = this.borrow();
+        assertSame(obj0, obj1);
+        assertEquals(1, this.pool.getMissCount());
+        assertEquals(2, this.pool.getBorrowCount());
+        assertEquals(1, this.pool.getReturnCount());
+    }
+
+    /**
+     * testIdleLimits
+     */
+    public void testIdleLimits() throws Exception {
+        int num_objects = IDLE * 2;
+        List<MockObject> objects = new ArrayList<MockObject>();
+        for (int i = 0; i < num_objects; i++) {
+            objects.add(this.borrow());
+        } // FOR
+        assertEquals(num_objects, this.pool.getMissCount());
+        for (MockObject obj : objects) {
+            this.pool.returnObject(obj);
+        } // FOR
+
+        // The thread's cache and the shared stack are both full, so the rest get dropped
+        assertEquals(LOCAL_IDLE + IDLE, this.pool.getNumIdle());
+        assertEquals(num_objects - LOCAL_IDLE - IDLE, this.pool.getDropCount());
+        assertEquals(num_objects - LOCAL_IDLE - IDLE, this.pool.getFactory().getDestroyedCount());
+
+        // And we should be able to get all of the idle objects back without creating new ones
+        Set<MockObject> seen = Collections.newSetFromMap(new IdentityHashMap<MockObject, Boolean>());
+        for (int i = 0; i < LOCAL_IDLE + IDLE; i++) {
+            assertTrue(seen.add(this.borrow()));
+        } // FOR
+        assertEquals(num_objects, this.pool.getMissCount());
+        this.borrow();
+        assertEquals(num_objects + 1, this.pool.getMissCount());
+    }
+
+    /**
+     * testCrossThreadReturn
+     */
+    public void testCrossThreadReturn() throws Exception {
+        // Borrow objects on this thread and return them on another
+        final int num_objects = 1000;
+        final BlockingQueue<MockObject> queue = new ArrayBlockingQueue<MockObject>(num_objects);
+        Thread returner = new Thread() {
+            public void run() {
+                try {
+                    for (int i = 0; i < num_objects; i++) {
+                        pool.returnObject(queue.take());
+                    } // FOR
+                } catch (InterruptedException ex) {
+                    // Nothing...
+                }
+            }
+        };
+        returner.start();
+        for (int i = 0; i < num_objects; i++) {
+            MockObject obj = this.borrow();
+            assertFalse(obj.finished);
+            queue.put(obj);
+        } // FOR
+        returner.join();
+
+        // Every returned object was either reused by this thread through the
+        // shared stack, is still idle, or was dropped
+        assertEquals(num_objects, this.pool.getBorrowCount());
+        assertEquals(num_objects, this.pool.getReturnCount());
+        assertEquals(0, this.pool.getNumActive());
+        assertTrue(this.pool.getNumIdle() <= LOCAL_IDLE + IDLE);
+        long reused = this.pool.getBorrowCount() - this.pool.getMissCount();
+        assertEquals(num_objects, reused + this.pool.getNumIdle() + this.pool.getDropCount());
+    }
+
+    /**
+     * The cache of a thread that has exited should get cleaned up without
+     * losing its idle objects or its stats
+     */
+    public void testThreadExit() throws Exception {
+        final int num_threads = 10;
+        for (int i = 0; i < num_threads; i++) {
+            Thread t = new Thread() {
+                public void run() {
+                    try {
+                        pool.returnObject(borrow());
+                    } catch (Exception ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            };
+            t.start();
+            t.join();
+        } // FOR
+
+        // Each new thread should have cleaned up the cache of the one before it
+        assertTrue(this.pool.getThreadCacheCount() <= 1);
+        assertEquals(num_threads, this.pool.getBorrowCount());
+        assertEquals(num_threads, this.pool.getReturnCount());
+        assertEquals(1, this.pool.getMissCount());
+        assertEquals(0, this.pool.getThreadCacheCount());
+        assertEquals(1, this.pool.getNumIdle());
+
+        // The idle object should be waiting for us in the shared stack
+        this.borrow();
+        assertEquals(1, this.pool.getMissCount());
+        assertEquals(1, this.pool.getThreadCacheCount());
+    }
+}
@@ -0,0 +1,39 @@
+package edu.brown.utils;
+
+import com.sun.japex.JapexDriverBase;
+import com.sun.japex.TestCase;
+
+/**
+ * Borrow an object from a TypedObjectPool and return it right away.
+ * The pool is shared by all of the driver threads if japex.numberOfThreads > 1.
+ */
+public class TypedObjectPoolBenchmark extends JapexDriverBase {
+
+    public static class PooledObject implements Poolable {
+        private boolean initialized = false;
+        public void init() {
+            this.initialized = true;
+        }
+        @Override
+        public void finish() {
+            this.initialized = false;
+        }
+        @Override
+        public boolean isInitialized() {
+            return (this.initialized);
+        }
+    } // END CLASS
+
+    private static final TypedObjectPool<PooledObject> POOL = TypedObjectPool.factory(PooledObject.class, 1000, 64, false);
+
+    @Override
+    public void run(TestCase testCase) {
+        try {
+            PooledObject obj = POOL.borrowObject();
+            obj.init();
+            POOL.returnObject(obj);
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -50,8 +50,12 @@
 
 package org.voltdb;
 
+import java.nio.ByteBuffer;
+
 import org.voltdb.ParameterSet;
+import org.voltdb.messaging.FastDeserializer;
 import org.voltdb.messaging.FastSerializableTestUtil;
+import org.voltdb.messaging.FastSerializer;
 
 import junit.framework.TestCase;
 
@@ -87,4 +91,37 @@ public class TestParameterSet extends TestCase {
         // Hence, this probably should be a byte array.
         assertEquals("foo", out.toArray()[0]);
     }
+
+    public void testNonASCIIStrings() {
+        params.setParameters(new Object[]{"f\u00f6\u00f6", "\u65e5\u672c", ""});
+        ParameterSet out = FastSerializableTestUtil.roundTrip(params);
+        assertEquals(3, out.toArray().length);
+        assertEquals("f\u00f6\u00f6", out.toArray()[0]);
+        assertEquals("\u65e5\u672c", out.toArray()[1]);
+        assertEquals("", out.toArray()[2]);
+    }
+
+    public void testSerializedBytes() throws Exception {
+        params.setParameters(new Object[]{1l, 2, "foo", 4.5d, null});
+        byte bytes[] = FastSerializer.serialize(params);
+
+        // Anything with attached bytes should write out exactly those bytes
+        ParameterSet out = new FastDeserializer(bytes).readObject(ParameterSet.class);
+        assertNull(out.getSerializedBytes());
+        out.setSerializedBytes(ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+        byte copy0[] = FastSerializer.serialize(out);
+        byte copy1[] = FastSerializer.serialize(out);
+        assertEquals(bytes.length, copy0.length);
+        for (int i = 0; i < bytes.length; i++) {
+            assertEquals(bytes[i], copy0[i]);
+            assertEquals(bytes[i], copy1[i]);
+        } // FOR
+
+        // But not after we give it new parameters
+        out.setParameters(new Object[]{"bar"});
+        assertNull(out.getSerializedBytes());
+        ParameterSet other = FastSerializableTestUtil.roundTrip(out);
+        assertEquals(1, other.toArray().length);
+        assertEquals("bar", other.toArray()[0]);
+    }
 }
@@ -0,0 +1,120 @@
+package org.voltdb;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class TestProcedureInvoker extends TestCase {
+
+    public static class MockProcedure extends VoltProcedure {
+        public Object lastParams[];
+
+        public long run(long a, int b, String c, long d[], double e, boolean f) {
+            this.lastParams = new Object[]{ a, b, c, d, e, f };
+            if (a < 0) throw new VoltAbortException("negative");
+            return (a + b + d.length);
+        }
+    } // END CLASS
+
+    public static class MockVoidProcedure extends VoltProcedure {
+        public int calls = 0;
+
+        public void run() {
+            this.calls++;
+        }
+    } // END CLASS
+
+    public static class MockSubProcedure extends MockVoidProcedure {
+        // Inherits run() from MockVoidProcedure
+    } // END CLASS
+
+    private static Method getRun(Class<?> clazz) {
+        for (Method m : clazz.getMethods()) {
+            if (m.getName().equals("run")) return (m);
+        } // FOR
+        return (null);
+    }
+
+    /**
+     * testInvoke
+     */
+    public void testInvoke() throws Exception {
+        ProcedureInvoker invoker = ProcedureInvoker.get(MockProcedure.class, getRun(MockProcedure.class));
+        assertNotNull(invoker);
+        assertSame(invoker, ProcedureInvoker.get(MockProcedure.class, getRun(MockProcedure.class)));
+
+        MockProcedure proc = new MockProcedure();
+        long d[] = { 1l, 2l, 3l };
+        Object params[] = { 10l, 20, "xyz", d, 1.5d, true };
+        Object result = invoker.invoke(proc, params);
+        assertEquals(Long.valueOf(33l), result);
+        assertEquals(Arrays.asList(params), Arrays.asList(proc.lastParams));
+
+        // Make sure that we get the same thing as reflection
+        MockProcedure other = new MockProcedure();
+        assertEquals(getRun(MockProcedure.class).invoke(other, params), result);
+        assertEquals(Arrays.asList(proc.lastParams), Arrays.asList(other.lastParams));
+    }
+
+    /**
+     * testInvokeWidening
+     */
+    public void testInvokeWidening() throws Exception {
+        ProcedureInvoker invoker = ProcedureInvoker.get(MockProcedure.class, getRun(MockProcedure.class));
+        MockProcedure proc = new MockProcedure();
+        Object params[] = { Integer.valueOf(5), Short.valueOf((short)6), "xyz", new long[0], 1.5d, false };
+        Object result = invoker.invoke(proc, params);
+        assertEquals(Long.valueOf(11l), result);
+        assertEquals(Long.valueOf(5l), proc.lastParams[0]);
+    }
+
+    /**
+     * testInvokeException
+     */
+    public void testInvokeException() throws Exception {
+        ProcedureInvoker invoker = ProcedureInvoker.get(MockProcedure.class, getRun(MockProcedure.class));
+        Object params[] = { -1l, 0, null, new long[0], 0d, false };
+        try {
+            invoker.invoke(new MockProcedure(), params);
+            fail("Expected VoltAbortException");
+        } catch (VoltProcedure.VoltAbortException ex) {
+            assertEquals("negative", ex.getMessage());
+        }
+    }
+
+    /**
+     * testInvokeVoid
+     */
+    public void testInvokeVoid() throws Exception {
+        ProcedureInvoker invoker = ProcedureInvoker.get(MockVoidProcedure.class, getRun(MockVoidProcedure.class));
+        assertNotNull(invoker);
+        MockVoidProcedure proc = new MockVoidProcedure();
+        assertNull(invoker.invoke(proc, new Object[0]));
+        assertEquals(1, proc.calls);
+    }
+
+    /**
+     * Two procedure classes that share the same inherited run() method
+     * must each get an invoker that works for their own instances
+     */
+    public void testInheritedRun() throws Exception {
+        Method run = getRun(MockSubProcedure.class);
+        assertEquals(MockVoidProcedure.class, run.getDeclaringClass());
+        assertEquals(run, getRun(MockVoidProcedure.class));
+
+        // Generate the subclass's invoker first so that it would be the one in the cache
+        ProcedureInvoker sub_invoker = ProcedureInvoker.get(MockSubProcedure.class, run);
+        assertNotNull(sub_invoker);
+        MockSubProcedure sub_proc = new MockSubProcedure();
+        assertNull(sub_invoker.invoke(sub_proc, new Object[0]));
+        assertEquals(1, sub_proc.calls);
+
+        ProcedureInvoker invoker = ProcedureInvoker.get(MockVoidProcedure.class, run);
+        assertNotNull(invoker);
+        assertNotSame(sub_invoker, invoker);
+        MockVoidProcedure proc = new MockVoidProcedure();
+        assertNull(invoker.invoke(proc, new Object[0]));
+        assertEquals(1, proc.calls);
+    }
+}
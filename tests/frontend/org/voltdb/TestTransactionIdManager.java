@@ -95,6 +95,74 @@ public class TestTransactionIdManager extends TestCase {
         }
     }
 
+    public void testConcurrentIds() throws Exception {
+        final int numThreads = 4;
+        final int numIds = (int)TransactionIdManager.COUNTER_MAX_VALUE * 2;
+        final long ids[][] = new long[numThreads][numIds];
+
+        Thread threads[] = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            final int thread = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int ii = 0; ii < numIds; ii++) {
+                        ids[thread][ii] = tim.getNextUniqueTransactionId();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        // Each thread's ids are increasing and no two threads generated the same id
+        HashSet<Long> generatedIds = new HashSet<Long>();
+        long maxId = 0;
+        for (int i = 0; i < numThreads; i++) {
+            for (int ii = 0; ii < numIds; ii++) {
+                if (ii > 0) assertTrue(ids[i][ii] > ids[i][ii-1]);
+                assertTrue(generatedIds.add(ids[i][ii]));
+                assertEquals(VoltDB.INITIATOR_SITE_ID, TransactionIdManager.getInitiatorIdFromTransactionId(ids[i][ii]));
+                maxId = Math.max(maxId, ids[i][ii]);
+            }
+        }
+        assertEquals(maxId, tim.getLastTxnId());
+    }
+
+    /**
+     * An id generated after another one has finished (by any thread) is always larger
+     */
+    public void testOrderAcrossThreads() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            final long before = tim.getNextUniqueTransactionId();
+            final long after[] = new long[1];
+            Thread t = new Thread() {
+                public void run() {
+                    after[0] = tim.getNextUniqueTransactionId();
+                }
+            };
+            t.start();
+            t.join();
+            assertTrue(after[0] > before);
+        }
+    }
+
+    /**
+     * If the clock moves backwards, the ids should only get DRIFT_CHECK ms ahead of it
+     */
+    public void testClockMovedBackwards() {
+        long last = tim.getNextUniqueTransactionId();
+        tim.setTimeDelta(-(TransactionIdManager.DRIFT_CHECK - 1));
+        for (int i = 0; i < TransactionIdManager.COUNTER_MAX_VALUE * 3; i++) {
+            long id = tim.getNextUniqueTransactionId();
+            assertTrue(id > last);
+            long now = System.currentTimeMillis() + tim.time_delta;
+            assertTrue(TransactionIdManager.getTimestampFromTransactionId(id) - now <= TransactionIdManager.DRIFT_CHECK);
+            last = id;
+        }
+    }
+
     public void testTimestampFromId() {
         long then = System.currentTimeMillis();
         long tid = tim.getNextUniqueTransactionId();
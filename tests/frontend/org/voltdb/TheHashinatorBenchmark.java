@@ -0,0 +1,36 @@
+package org.voltdb;
+
+import java.util.Random;
+
+import com.sun.japex.JapexDriverBase;
+import com.sun.japex.TestCase;
+
+/**
+ * Hash a mix of Long and String partitioning keys to a partition
+ */
+public class TheHashinatorBenchmark extends JapexDriverBase {
+    private static final int NUM_PARTITIONS = 64;
+    private static final int NUM_KEYS = 1024;
+
+    private final Object keys[] = new Object[NUM_KEYS];
+    private int next = 0;
+
+    @Override
+    public void initializeDriver() {
+        Random rand = new Random(0);
+        for (int i = 0; i < NUM_KEYS; i++) {
+            if (i % 2 == 0) {
+                this.keys[i] = rand.nextLong();
+            } else {
+                this.keys[i] = "KEY-" + rand.nextInt();
+            }
+        } // FOR
+    }
+
+    @Override
+    public void run(TestCase testCase) {
+        Object key = this.keys[this.next++ & (NUM_KEYS - 1)];
+        int partition = TheHashinator.hashToPartition(key, NUM_PARTITIONS);
+        assert(partition >= 0 && partition < NUM_PARTITIONS);
+    }
+}
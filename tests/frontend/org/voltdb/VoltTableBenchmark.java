@@ -0,0 +1,62 @@
+package org.voltdb;
+
+import java.io.IOException;
+
+import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.messaging.FastSerializer;
+
+import com.sun.japex.JapexDriverBase;
+import com.sun.japex.TestCase;
+
+/**
+ * Build a VoltTable, iterate over all of its rows, and then serialize
+ * and deserialize it. The number of rows is set by the "rows" driver parameter.
+ */
+public class VoltTableBenchmark extends JapexDriverBase {
+    private static final String PARAM_ROWS = "rows";
+    private static final int DEFAULT_ROWS = 100;
+
+    private final VoltTable.ColumnInfo columns[] = {
+        new VoltTable.ColumnInfo("ID", VoltType.BIGINT),
+        new VoltTable.ColumnInfo("NAME", VoltType.STRING),
+        new VoltTable.ColumnInfo("PRICE", VoltType.FLOAT),
+    };
+    private final FastSerializer fs = new FastSerializer();
+    private final FastDeserializer fds = new FastDeserializer(new byte[0]);
+    private VoltTable table;
+    private int num_rows;
+
+    @Override
+    public void initializeDriver() {
+        this.num_rows = (this.hasParam(PARAM_ROWS) ? this.getIntParam(PARAM_ROWS) : DEFAULT_ROWS);
+        this.table = new VoltTable(this.columns);
+    }
+
+    @Override
+    public void run(TestCase testCase) {
+        // Build
+        this.table.clearRowData();
+        for (int i = 0; i < this.num_rows; i++) {
+            this.table.addRow(i, "ITEM", i * 1.5d);
+        } // FOR
+
+        // Iterate
+        long sum = 0;
+        this.table.resetRowPosition();
+        while (this.table.advanceRow()) {
+            sum += this.table.getLong(0);
+        } // WHILE
+        assert(sum >= 0);
+
+        // Serialize
+        try {
+            fs.clear();
+            fs.writeObject(this.table);
+            fds.setBuffer(fs.getBuffer());
+            VoltTable clone = fds.readObject(VoltTable.class);
+            assert(clone.getRowCount() == this.num_rows);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
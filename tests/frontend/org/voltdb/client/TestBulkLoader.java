@@ -0,0 +1,132 @@
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Column;
+import org.voltdb.catalog.Table;
+import org.voltdb.utils.VoltTypeUtil;
+
+import edu.brown.BaseTestCase;
+import edu.brown.catalog.CatalogUtil;
+import edu.brown.hstore.HStoreConstants;
+import edu.brown.hstore.Hstoreservice.Status;
+import edu.brown.utils.PartitionEstimator;
+import edu.brown.utils.ProjectType;
+
+public class TestBulkLoader extends BaseTestCase {
+
+    private static final int NUM_PARTITIONS = 4;
+    private static final int NUM_ROWS = 100;
+
+    /**
+     * Records the async invocations and immediately tells the caller that they succeeded
+     */
+    private static class AsyncMockClient extends MockVoltClient {
+        final List<Object[]> asyncCalls = new ArrayList<Object[]>();
+
+        @Override
+        public boolean callProcedure(ProcedureCallback callback, String procName, Object... parameters) throws NoConnectionsException {
+            assertEquals("@LoadTablePartition", procName);
+            this.asyncCalls.add(parameters);
+            callback.clientCallback(new ClientResponseImpl(-1, -1, -1, Status.OK, HStoreConstants.EMPTY_RESULT, ""));
+            return (true);
+        }
+    }
+
+    private PartitionEstimator p_estimator;
+    private AsyncMockClient client;
+    private BulkLoader loader;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp(ProjectType.TPCC);
+        this.addPartitions(NUM_PARTITIONS);
+        this.p_estimator = new PartitionEstimator(catalog_db);
+        this.client = new AsyncMockClient();
+        this.loader = new BulkLoader(this.client, catalog);
+    }
+
+    private VoltTable generateTable(Table catalog_tbl) {
+        VoltTable vt = CatalogUtil.getVoltTable(catalog_tbl);
+        Column catalog_col = catalog_tbl.getPartitioncolumn();
+        for (int i = 0; i < NUM_ROWS; i++) {
+            Object row[] = new Object[catalog_tbl.getColumns().size()];
+            for (int j = 0; j < row.length; j++) {
+                VoltType vtype = VoltType.get(catalog_tbl.getColumns().get(j).getType());
+                row[j] = VoltTypeUtil.getRandomValue(vtype);
+            } // FOR
+            if (catalog_col != null) {
+                row[catalog_col.getIndex()] = (i % (NUM_PARTITIONS * 2)) + 1;
+            }
+            vt.addRow(row);
+        } // FOR
+        return (vt);
+    }
+
+    /**
+     * testSplitByPartition
+     */
+    public void testSplitByPartition() throws Exception {
+        Table catalog_tbl = this.getTable("CUSTOMER");
+        VoltTable vt = this.generateTable(catalog_tbl);
+
+        VoltTable partitioned[] = this.loader.splitByPartition(catalog_tbl, vt);
+        assertEquals(NUM_PARTITIONS, partitioned.length);
+        int total = 0;
+        for (int p = 0; p < partitioned.length; p++) {
+            assertNotNull("Partition " + p, partitioned[p]);
+            total += partitioned[p].getRowCount();
+            while (partitioned[p].advanceRow()) {
+                int expected = this.p_estimator.getTableRowPartition(catalog_tbl, partitioned[p].fetchRow(partitioned[p].getActiveRowIndex()));
+                assertEquals(expected, p);
+            } // WHILE
+        } // FOR
+        assertEquals(vt.getRowCount(), total);
+    }
+
+    /**
+     * testLoadPartitioned
+     */
+    public void testLoadPartitioned() throws Exception {
+        Table catalog_tbl = this.getTable("CUSTOMER");
+        VoltTable vt = this.generateTable(catalog_tbl);
+
+        ClientResponse cr = this.loader.load(catalog_tbl.getName(), vt);
+        assertNotNull(cr);
+        assertEquals(Status.OK, cr.getStatus());
+        assertEquals(0, this.client.numCalls);
+        assertEquals(NUM_PARTITIONS, this.client.asyncCalls.size());
+
+        int total = 0;
+        for (Object params[] : this.client.asyncCalls) {
+            int partition = (Integer)params[0];
+            assertEquals(catalog_tbl.getName(), params[1]);
+            VoltTable partition_vt = (VoltTable)params[2];
+            total += partition_vt.getRowCount();
+            while (partition_vt.advanceRow()) {
+                int expected = this.p_estimator.getTableRowPartition(catalog_tbl, partition_vt.fetchRow(partition_vt.getActiveRowIndex()));
+                assertEquals(expected, partition);
+            } // WHILE
+        } // FOR
+        assertEquals(vt.getRowCount(), total);
+    }
+
+    /**
+     * testLoadReplicated
+     */
+    public void testLoadReplicated() throws Exception {
+        Table catalog_tbl = this.getTable("ITEM");
+        assertTrue(catalog_tbl.getIsreplicated());
+        VoltTable vt = this.generateTable(catalog_tbl);
+
+        ClientResponse cr = this.loader.load(catalog_tbl.getName(), vt);
+        assertNotNull(cr);
+        assertEquals(1, this.client.numCalls);
+        assertEquals("@LoadMultipartitionTable", this.client.calledName);
+        assertEquals(0, this.client.asyncCalls.size());
+    }
+}
@@ -0,0 +1,42 @@
+package org.voltdb.messaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.voltdb.ParameterSet;
+import org.voltdb.types.TimestampType;
+
+import com.sun.japex.JapexDriverBase;
+import com.sun.japex.TestCase;
+
+/**
+ * Serialize a ParameterSet like the ones sent with a StoredProcedureInvocation
+ * and then deserialize it again. Both the serializer and deserializer are reused.
+ */
+public class FastSerializerBenchmark extends JapexDriverBase {
+    private final FastSerializer fs = new FastSerializer();
+    private final FastDeserializer fds = new FastDeserializer(new byte[0]);
+    private final ParameterSet params = new ParameterSet(
+        1l,
+        (short)2,
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ",
+        3.14d,
+        new TimestampType(),
+        new int[]{ 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 },
+        new long[]{ 11l, 12l, 13l, 14l, 15l, 16l, 17l, 18l, 19l, 20l }
+    );
+
+    @Override
+    public void run(TestCase testCase) {
+        try {
+            fs.clear();
+            fs.writeObject(params);
+            ByteBuffer buffer = fs.getBuffer();
+            fds.setBuffer(buffer);
+            ParameterSet clone = fds.readObject(ParameterSet.class);
+            assert(clone.size() == params.size());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -29,6 +29,7 @@ import junit.framework.Test;
 
 import org.voltdb.BackendTarget;
 import org.voltdb.SysProcSelector;
+import org.voltdb.TheHashinator;
 import org.voltdb.VoltTable;
 import org.voltdb.VoltTableRow;
 import org.voltdb.VoltType;
@@ -285,6 +286,63 @@ public class TestSystemProcedureSuite extends RegressionSuite {
     }
 
 
+    public void testLoadTablePartition() throws Exception {
+        Client client = getClient();
+        VoltTable results[] = client.callProcedure("@Statistics", SysProcSelector.PARTITIONCOUNT.name(), 0).getResults();
+        final int num_partitions = (int)results[0].asScalarLong();
+
+        // Split up the warehouses by partition just like the BulkLoader does
+        VoltTable partitioned[] = new VoltTable[num_partitions];
+        final int num_warehouses = 20;
+        for (int i = 1; i <= num_warehouses; i++) {
+            int p = TheHashinator.hashToPartition(new Short((short) i), num_partitions);
+            if (partitioned[p] == null) {
+                partitioned[p] = new VoltTable(
+                        new VoltTable.ColumnInfo("W_ID", VoltType.SMALLINT),
+                        new VoltTable.ColumnInfo("W_NAME", VoltType.STRING),
+                        new VoltTable.ColumnInfo("W_STREET_1", VoltType.STRING),
+                        new VoltTable.ColumnInfo("W_STREET_2", VoltType.STRING),
+                        new VoltTable.ColumnInfo("W_CITY", VoltType.STRING),
+                        new VoltTable.ColumnInfo("W_STATE", VoltType.STRING),
+                        new VoltTable.ColumnInfo("W_ZIP", VoltType.STRING),
+                        new VoltTable.ColumnInfo("W_TAX", VoltType.FLOAT),
+                        new VoltTable.ColumnInfo("W_YTD", VoltType.FLOAT));
+            }
+            partitioned[p].addRow(new Short((short) i), "name_" + i, "street1_" + i, "street2_" + i,
+                                  "city_" + i, "ma", "zip_" + i, new Double(i), new Double(i));
+        }
+        for (int p = 0; p < num_partitions; p++) {
+            if (partitioned[p] == null) continue;
+            results = client.callProcedure("@LoadTablePartition", p, "WAREHOUSE", partitioned[p]).getResults();
+            assertEquals(1, results.length);
+        }
+
+        // Every warehouse should be at exactly one partition
+        results = client.callProcedure("@Statistics", "table", 0).getResults();
+        long total = 0;
+        while (results[0].advanceRow()) {
+            if (results[0].getString("TABLE_NAME").equals("WAREHOUSE")) {
+                total += results[0].getLong("TABLE_ACTIVE_TUPLE_COUNT");
+            }
+        }
+        assertEquals(num_warehouses, total);
+    }
+
+    public void testLoadTablePartition_InvalidPartition() throws Exception {
+        Client client = getClient();
+        VoltTable vt = new VoltTable(new VoltTable.ColumnInfo("W_ID", VoltType.SMALLINT));
+        Object invalid[] = { -1, 9999, "0" };
+        for (Object partition : invalid) {
+            try {
+                client.callProcedure("@LoadTablePartition", partition, "WAREHOUSE", vt);
+                fail("Expected exception for partition " + partition);
+            } catch (ProcCallException ex) {
+                assertNotNull(ex.getMessage());
+            }
+        }
+    }
+
+
 
     /**
      * Build a list of the tests to be run. Use the regression suite